@@ -0,0 +1,67 @@
+package game;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the steady state allocation of {@link LifeEngine#update()}. Run with
+ * the GC profiler, which the {@code jmh} profile in the pom does by default,
+ * and read {@code gc.alloc.rate.norm}, the bytes allocated per generation.
+ * <p>
+ * The board is built once per trial and then updated for the whole run, so
+ * nothing but the updates allocates during the measured iterations. The board
+ * isn't restored, a soup burns down to ash and gliders leave the board, so the
+ * generations per second are those of a settled board, see
+ * {@link UpdateBenchmark} for the time of an update at the density of the
+ * pattern.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AllocationBenchmark {
+
+	@Param({ LifeEngines.REFERENCE, LifeEngines.SPARSE, LifeEngines.BITBOARD, LifeEngines.TILED,
+			LifeEngines.PARALLEL, LifeEngines.HASHLIFE })
+	public String engine;
+
+	@Param({ "50", "512", "2048" })
+	public int size;
+
+	@Param({ "gliders", "soup", "stillLifes" })
+	public String pattern;
+
+
+	private LifeEngine state;
+
+
+	@Setup(Level.Trial)
+	public void setup() {
+		state = LifeEngines.create(engine, size, size, UpdateBenchmark.colonies(pattern, size));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		UpdateBenchmark.close(state);
+	}
+
+	@Benchmark
+	public boolean update() {
+		return state.update();
+	}
+}
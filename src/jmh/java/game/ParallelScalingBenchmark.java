@@ -0,0 +1,76 @@
+package game;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how {@link ParallelBitBoardState} scales with the number of
+ * threads. The board is rebuilt every iteration like in
+ * {@link UpdateBenchmark}, the speedup is the throughput of a thread count over
+ * that of one thread.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ParallelScalingBenchmark {
+
+	@Param({ "1", "2", "4", "8" })
+	public int threads;
+
+	@Param({ "2048" })
+	public int size;
+
+	@Param({ "soup" })
+	public String pattern;
+
+
+	private List<Position> colonies;
+
+	private ForkJoinPool pool;
+
+	private LifeEngine state;
+
+
+	@Setup(Level.Trial)
+	public void setupPool() {
+		colonies = UpdateBenchmark.colonies(pattern, size);
+		pool = new ForkJoinPool(threads);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDownPool() {
+		pool.shutdown();
+	}
+
+	/**
+	 * Recreates the board before every iteration, see
+	 * {@link UpdateBenchmark#setup()}.
+	 */
+	@Setup(Level.Iteration)
+	public void setup() {
+		state = new ParallelBitBoardState(size, size, colonies, Rule.CONWAY, pool);
+	}
+
+	@Benchmark
+	public boolean update() {
+		return state.update();
+	}
+}
@@ -0,0 +1,62 @@
+package game;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link Position#compareTo(Position)} through the sorted
+ * collections the positions end up in.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PositionBenchmark {
+
+	@Param({ "1000", "100000" })
+	public int count;
+
+	private Position[] positions;
+
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		positions = new Position[count];
+		for (int i = 0; i < count; i++) {
+			positions[i] = new Position(random.nextInt(2048), random.nextInt(2048));
+		}
+	}
+
+	@Benchmark
+	public TreeSet<Position> treeSet() {
+		TreeSet<Position> set = new TreeSet<>();
+		for (Position pos : positions) {
+			set.add(pos);
+		}
+		return set;
+	}
+
+	@Benchmark
+	public Position[] sort() {
+		Position[] sorted = positions.clone();
+		Arrays.sort(sorted);
+		return sorted;
+	}
+}
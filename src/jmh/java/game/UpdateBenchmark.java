@@ -0,0 +1,176 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of {@link LifeEngine#update()} across engines, board
+ * sizes and colony densities.
+ * <p>
+ * The initial board is built once per trial, and every iteration restores it
+ * from that copy outside the measurement. The iterations are short, so the
+ * boards of the slower engines are measured within their first few
+ * generations, close to the density of the pattern rather than as ash, or
+ * empty once the gliders have left. The small boards of the fast engines
+ * settle within an iteration.
+ * <p>
+ * The restore allocates a whole board, which the GC profiler counts with the
+ * iteration, see {@link AllocationBenchmark} for the allocation per
+ * generation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class UpdateBenchmark {
+
+	/**
+	 * Seed for the random soup, fixed to make runs comparable.
+	 */
+	private static final long SEED = 42;
+
+
+	@Param({ LifeEngines.REFERENCE, LifeEngines.SPARSE, LifeEngines.BITBOARD, LifeEngines.TILED,
+			LifeEngines.PARALLEL, LifeEngines.HASHLIFE })
+	public String engine;
+
+	@Param({ "50", "512", "2048" })
+	public int size;
+
+	@Param({ "gliders", "soup", "stillLifes" })
+	public String pattern;
+
+
+	/**
+	 * The initial board.
+	 */
+	private BoardSnapshot initial;
+
+	private LifeEngine state;
+
+
+	@Setup(Level.Trial)
+	public void setupPattern() throws Exception {
+		LifeEngine start = LifeEngines.create(engine, size, size, colonies(pattern, size));
+		initial = new BoardSnapshot(size, size);
+		initial.capture(start);
+		close(start);
+	}
+
+	/**
+	 * Restores the initial board so that every iteration starts from the same
+	 * generation.
+	 */
+	@Setup(Level.Iteration)
+	public void setup() {
+		state = LifeEngines.restore(engine, initial);
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDown() throws Exception {
+		close(state);
+	}
+
+	@Benchmark
+	public boolean update() {
+		return state.update();
+	}
+
+
+	/**
+	 * Releases the memory of an engine that holds it outside the heap.
+	 */
+	static void close(LifeEngine state) throws Exception {
+		if (state instanceof AutoCloseable) {
+			((AutoCloseable) state).close();
+		}
+	}
+
+
+	static List<Position> colonies(String pattern, int size) {
+		switch (pattern) {
+		case "gliders":
+			return gliders(size);
+		case "soup":
+			return soup(size);
+		case "stillLifes":
+			return blocks(size);
+		default:
+			throw new IllegalArgumentException("Unknown pattern " + pattern);
+		}
+	}
+
+	/**
+	 * A glider in every 16x16 square.
+	 *
+	 *  #
+	 *   #
+	 * ###
+	 */
+	private static List<Position> gliders(int size) {
+		List<Position> colonies = new ArrayList<>();
+		for (int x = 0; x + 3 <= size; x += 16) {
+			for (int y = 0; y + 3 <= size; y += 16) {
+				colonies.add(new Position(x + 1, y));
+				colonies.add(new Position(x + 2, y + 1));
+				colonies.add(new Position(x, y + 2));
+				colonies.add(new Position(x + 1, y + 2));
+				colonies.add(new Position(x + 2, y + 2));
+			}
+		}
+		return colonies;
+	}
+
+	/**
+	 * Every cell is alive with probability 0.5.
+	 */
+	private static List<Position> soup(int size) {
+		Random random = new Random(SEED);
+		List<Position> colonies = new ArrayList<>();
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				if (random.nextBoolean()) {
+					colonies.add(new Position(x, y));
+				}
+			}
+		}
+		return colonies;
+	}
+
+	/**
+	 * A block in every 4x4 square.
+	 *
+	 * ##
+	 * ##
+	 */
+	private static List<Position> blocks(int size) {
+		List<Position> colonies = new ArrayList<>();
+		for (int x = 1; x + 2 < size; x += 4) {
+			for (int y = 1; y + 2 < size; y += 4) {
+				colonies.add(new Position(x, y));
+				colonies.add(new Position(x + 1, y));
+				colonies.add(new Position(x, y + 1));
+				colonies.add(new Position(x + 1, y + 1));
+			}
+		}
+		return colonies;
+	}
+}
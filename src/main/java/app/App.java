@@ -1,36 +1,328 @@
 package app;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Random;
 
+import com.google.common.collect.ImmutableSet;
+
+import game.CycleDetector;
+import game.GameOfLifeState;
+import game.HashLifeState;
+import game.LifeEngine;
+import game.LifeEngines;
+import game.LifePattern;
+import game.MacrocellFormat;
+import game.MacrocellPattern;
 import game.Position;
+import game.RleFormat;
+import game.Rule;
+import game.SnapshotFile;
+import game.Topology;
 
 /**
  * Launches a game of life simulation.
- * 
+ *
  * @author Henrik Josefsson 2020-06-30
  */
 public class App {
-	
+
 	private static final int BOARD_SIZE = 50;
-	
+
+	private static final long GENERATIONS = 1000;
+
+	private static final String ENGINE = "engine";
+
+	private static final String RULE = "rule";
+
+	private static final String HEADLESS = "headless";
+
+	private static final String SIZE = "size";
+
+	private static final String GENERATIONS_ARG = "generations";
+
+	private static final String PATTERN = "pattern";
+
+	private static final String SEED = "seed";
+
+	private static final String RATE = "rate";
+
+	private static final String OUTPUT = "output";
+
+	private static final String CHECKPOINT = "checkpoint";
+
+	private static final String RESUME = "resume";
+
+	private static final String CYCLES = "cycles";
+
+	private static final String TOPOLOGY = "topology";
+
+	private static final String EXPLORER = "explorer";
+
+	private static final String SOUP = "soup";
+
+	private static final String RLE_SUFFIX = ".rle";
+
+	private static final String USAGE = "Usage: app [--" + ENGINE + "=<name>] [--" + RULE + "=<rule>] [--" + SIZE + "=<n>]%n"
+			+ "           [--" + PATTERN + "=<pattern>] [--" + SEED + "=<n>] [--" + RATE + "=<n>]%n"
+			+ "           [--" + TOPOLOGY + "=<topology>] [--" + CHECKPOINT + "=<file>] [--" + RESUME + "=<file>]%n"
+			+ "           [--" + CYCLES + "=<n>]%n"
+			+ "           [--" + HEADLESS + " [--" + GENERATIONS_ARG + "=<n>] [--" + OUTPUT + "=<file>]]%n"
+			+ "  --" + ENGINE + "       The simulation engine, one of %s. Defaults to %s.%n"
+			+ "                 The " + LifeEngines.VECTOR + " engine needs a build with the vector profile and%n"
+			+ "                 java --add-modules=jdk.incubator.vector, otherwise it is " + LifeEngines.BITBOARD + ".%n"
+			+ "  --" + RULE + "         The rule in B/S notation, e.g. B36/S23. Defaults to the rule of the%n"
+			+ "                 pattern file, or %s.%n"
+			+ "  --" + SIZE + "         The board width and height. Defaults to " + BOARD_SIZE + ", or the pattern file size%n"
+			+ "                 if it is larger, or the board size of an RLE file with a topology.%n"
+			+ "                 At most " + GameOfLifeState.MAX_WIDTH + " in the graphical interface.%n"
+			+ "  --" + PATTERN + "      The initial colonies, " + EXPLORER + ", " + SOUP + ", or an RLE or Macrocell file centered%n"
+			+ "                 on the board, e.g. glider" + RLE_SUFFIX + " or computer" + HeadlessRunner.MACROCELL_SUFFIX + ". Defaults to " + EXPLORER + ".%n"
+			+ "                 Macrocell files are loaded without expanding them into cells when%n"
+			+ "                 running headless with the " + LifeEngines.HASHLIFE + " engine.%n"
+			+ "  --" + TOPOLOGY + "     How the board edges connect, bounded, torus, klein or infinite.%n"
+			+ "                 Colonies crossing a bounded edge die, torus and klein wrap them%n"
+			+ "                 around, klein mirrored across the top and bottom edges, and infinite%n"
+			+ "                 lets them leave the board. Defaults to the topology of an RLE file, e.g.%n"
+			+ "                 rule = B3/S23:T64,64 for a 64x64 torus, or to infinite for the%n"
+			+ "                 " + LifeEngines.UNBOUNDED + " engine, which can't be anything else, and to bounded%n"
+			+ "                 otherwise. Only the " + LifeEngines.REFERENCE + ", " + LifeEngines.SPARSE + " and " + LifeEngines.UNBOUNDED + " engines can be%n"
+			+ "                 infinite, and " + LifeEngines.HASHLIFE + " wraps only square boards with a power of two%n"
+			+ "                 side.%n"
+			+ "  --" + SEED + "         The random seed of the " + SOUP + " pattern. Defaults to 0.%n"
+			+ "  --" + RATE + "         The generations per second shown in the graphical interface, 0 for%n"
+			+ "                 as fast as possible. Defaults to " + GameRunner.DEFAULT_RATE + ".%n"
+			+ "  --" + CHECKPOINT + "   The snapshot file to save the graphical simulation to every minute%n"
+			+ "                 and whenever it pauses.%n"
+			+ "  --" + RESUME + "       The snapshot file to continue from, with its board size, rule,%n"
+			+ "                 topology and generation. Can't be combined with --" + PATTERN + ", --" + SIZE + ",%n"
+			+ "                 --" + RULE + " or --" + TOPOLOGY + ".%n"
+			+ "  --" + CYCLES + "       The number of generations searched for a repeating board. Headless%n"
+			+ "                 runs stop at the first cycle found. 0 to not search, which lets headless%n"
+			+ "                 runs advance many generations per step. Defaults to%n"
+			+ "                 " + CycleDetector.DEFAULT_HISTORY + ".%n"
+			+ "  --" + HEADLESS + "     Runs as fast as possible without a graphical interface and prints%n"
+			+ "                 the elapsed time, generations per second and final population.%n"
+			+ "  --" + GENERATIONS_ARG + "  The number of generations to run headless unless the simulation%n"
+			+ "                 stabilizes earlier. Defaults to " + GENERATIONS + ".%n"
+			+ "  --" + OUTPUT + "       The RLE or Macrocell file to save the final headless generation to.%n";
+
 	/**
-	 * Starts a game of life simulation with a small explorer colony configuration.
-	 * The user can change the initial configuration by clicking cells in the
-	 * graphical interface. The simulation starts when start is pressed and stops
-	 * when stop is pressed.
-	 * 
-	 * @param args No arguments. Any provided arguments will be ignored.
+	 * Starts a game of life simulation, by default with a small explorer colony
+	 * configuration. The user can change the initial configuration by clicking
+	 * cells in the graphical interface. The simulation starts when start is
+	 * pressed and stops when stop is pressed. With {@code --headless} the
+	 * simulation instead runs without a graphical interface and prints how fast
+	 * it ran.
+	 *
+	 * @param args See {@link #USAGE}. {@code --engine=<name>} selects the
+	 *             simulation engine, see {@link LifeEngines#names()}.
+	 *             {@code --rule=<rule>} selects the rule, see
+	 *             {@link Rule#parse(String)}.
 	 */
 	public static void main(String[] args) {
+		Runnable runner;
+		try {
+			Arguments arguments = new Arguments(args,
+					ImmutableSet.of(ENGINE, RULE, HEADLESS, SIZE, GENERATIONS_ARG, PATTERN, SEED, RATE, OUTPUT,
+							CHECKPOINT, RESUME, CYCLES, TOPOLOGY));
+			String engine = arguments.get(ENGINE, LifeEngines.DEFAULT);
+			if (engine.equals(LifeEngines.VECTOR) && !LifeEngines.isVectorAvailable()) {
+				System.err.println("The Vector API isn't available, the " + LifeEngines.VECTOR + " engine falls back to "
+						+ LifeEngines.BITBOARD);
+			}
+			boolean headless = arguments.has(HEADLESS);
+			int cycles = arguments.getInt(CYCLES, CycleDetector.DEFAULT_HISTORY);
+			if (arguments.has(OUTPUT) && !headless) {
+				throw new IllegalArgumentException("--" + OUTPUT + " requires --" + HEADLESS);
+			}
+			if (arguments.has(CHECKPOINT) && headless) {
+				throw new IllegalArgumentException("--" + CHECKPOINT + " can't be combined with --" + HEADLESS);
+			}
+			if (arguments.has(RESUME)) {
+				LifeEngine resumed = resume(arguments, engine);
+				if (headless) {
+					long generations = resumed.getGeneration() + arguments.getLong(GENERATIONS_ARG, GENERATIONS);
+					runner = new HeadlessRunner(engine, resumed, generations, System.out, output(arguments), cycles);
+				} else {
+					long rate = arguments.getLong(RATE, GameRunner.DEFAULT_RATE);
+					runner = new GameRunner(engine, resumed, rate, path(arguments, CHECKPOINT), cycles);
+				}
+			} else {
+				String patternName = arguments.get(PATTERN, EXPLORER);
+				LifePattern file = patternName.endsWith(RLE_SUFFIX) ? readPattern(patternName) : null;
+				MacrocellPattern macrocell = patternName.endsWith(HeadlessRunner.MACROCELL_SUFFIX)
+						? readMacrocell(patternName) : null;
+				Rule patternRule = file != null ? file.getRule() : macrocell != null ? macrocell.getRule() : Rule.CONWAY;
+				Rule rule = Rule.parse(arguments.get(RULE, patternRule.toString()));
+				int patternSize = file != null ? Math.max(file.getWidth(), file.getHeight())
+						: macrocell != null ? 1 << macrocell.getLevel() : 0;
+				int size = arguments.getInt(SIZE, Math.max(BOARD_SIZE, patternSize));
+				Topology topology = LifeEngines.defaultTopology(engine);
+				if (file != null && file.getTopology() != null) {
+					size = arguments.getInt(SIZE, patternBoardSize(file));
+					topology = file.getTopology();
+				}
+				topology = Topology.parse(arguments.get(TOPOLOGY, topology.toString()));
+				HashLifeState quadtree = macrocell != null ? macrocell.toEngine(size, size, rule) : null;
+				if (headless && quadtree != null && engine.equals(LifeEngines.HASHLIFE)
+						&& topology == Topology.BOUNDED) {
+					long generations = arguments.getLong(GENERATIONS_ARG, GENERATIONS);
+					runner = new HeadlessRunner(engine, quadtree, generations, System.out, output(arguments), cycles);
+				} else if (headless) {
+					long generations = arguments.getLong(GENERATIONS_ARG, GENERATIONS);
+					LifeEngine start = LifeEngines.create(engine, size, size, colonies(arguments, file, quadtree, size),
+							rule, topology);
+					runner = new HeadlessRunner(engine, start, generations, System.out, output(arguments), cycles);
+				} else {
+					long rate = arguments.getLong(RATE, GameRunner.DEFAULT_RATE);
+					// The graphical interface and its checkpoints go through board
+					// snapshots, which are limited to the size of the heap engines.
+					if (size > GameOfLifeState.MAX_WIDTH || size > GameOfLifeState.MAX_HEIGHT) {
+						throw new IllegalArgumentException("The graphical interface shows boards of at most "
+								+ GameOfLifeState.MAX_WIDTH + "x" + GameOfLifeState.MAX_HEIGHT + ", use --" + HEADLESS
+								+ " for the " + size + "x" + size + " board");
+					}
+					LifeEngine start = LifeEngines.create(engine, size, size, colonies(arguments, file, quadtree, size),
+							rule, topology);
+					runner = new GameRunner(engine, start, rate, path(arguments, CHECKPOINT), cycles);
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.printf(USAGE, LifeEngines.names(), LifeEngines.DEFAULT, Rule.CONWAY);
+			System.exit(1);
+			return;
+		}
+		runner.run();
+	}
+
+	/**
+	 * The initial colonies of a pattern file, or of a built in pattern if there
+	 * is no file.
+	 */
+	private static Collection<Position> colonies(Arguments arguments, LifePattern file, HashLifeState quadtree,
+			int size) {
+		if (file != null) {
+			return center(file, size);
+		}
+		if (quadtree != null) {
+			return quadtree.getColonies();
+		}
+		return pattern(arguments.get(PATTERN, EXPLORER), size, arguments.getLong(SEED, 0));
+	}
+
+	private static Path output(Arguments arguments) {
+		return path(arguments, OUTPUT);
+	}
+
+	private static Path path(Arguments arguments, String name) {
+		String path = arguments.get(name, null);
+		return path == null ? null : Paths.get(path);
+	}
+
+	/**
+	 * The engine continuing from the snapshot file of {@code --resume}.
+	 */
+	private static LifeEngine resume(Arguments arguments, String engine) {
+		for (String conflict : new String[] { PATTERN, SIZE, RULE, SEED, TOPOLOGY }) {
+			if (arguments.has(conflict)) {
+				throw new IllegalArgumentException("--" + RESUME + " can't be combined with --" + conflict);
+			}
+		}
+		Path path = path(arguments, RESUME);
+		try {
+			return LifeEngines.restore(engine, SnapshotFile.read(path));
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Failed to read " + path + ": " + e, e);
+		}
+	}
+
+	private static LifePattern readPattern(String fileName) {
+		try (Reader in = Files.newBufferedReader(Paths.get(fileName), StandardCharsets.US_ASCII)) {
+			return RleFormat.read(in);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Failed to read " + fileName + ": " + e, e);
+		}
+	}
+
+	private static MacrocellPattern readMacrocell(String fileName) {
+		try (Reader in = Files.newBufferedReader(Paths.get(fileName), StandardCharsets.US_ASCII)) {
+			return MacrocellFormat.read(in);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Failed to read " + fileName + ": " + e, e);
+		}
+	}
+
+	/**
+	 * The side of the square board an RLE file with a topology is meant for.
+	 */
+	private static int patternBoardSize(LifePattern pattern) {
+		if (pattern.getBoardWidth() != pattern.getBoardHeight()) {
+			throw new IllegalArgumentException(String.format("The %s is meant for a %dx%d %s board, only square boards "
+					+ "are supported", pattern, pattern.getBoardWidth(), pattern.getBoardHeight(), pattern.getTopology()));
+		}
+		return pattern.getBoardWidth();
+	}
+
+	/**
+	 * The pattern in the center of the board.
+	 */
+	private static Collection<Position> center(LifePattern pattern, int size) {
+		if (pattern.getWidth() > size || pattern.getHeight() > size) {
+			throw new IllegalArgumentException(
+					String.format("The %s doesn't fit a %dx%d board", pattern, size, size));
+		}
+		return pattern.getColonies((size - pattern.getWidth()) / 2, (size - pattern.getHeight()) / 2);
+	}
+
+	private static List<Position> pattern(String name, int size, long seed) {
+		switch (name) {
+		case EXPLORER:
+			return explorer(size);
+		case SOUP:
+			return soup(size, seed);
+		default:
+			throw new IllegalArgumentException("Unknown pattern " + name);
+		}
+	}
+
+	/**
+	 * Every cell is alive with probability 0.5.
+	 */
+	private static List<Position> soup(int size, long seed) {
+		Random random = new Random(seed);
+		List<Position> colonies = new ArrayList<>();
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				if (random.nextBoolean()) {
+					colonies.add(new Position(x, y));
+				}
+			}
+		}
+		return colonies;
+	}
+
+	/**
+	 * An explorer in the center of the board.
+	 */
+	private static List<Position> explorer(int size) {
+		int c = size / 2;
 		List<Position> colonies = new ArrayList<>(7);
-		colonies.add(new Position(25, 25));
-		colonies.add(new Position(24, 26));
-		colonies.add(new Position(25, 26));
-		colonies.add(new Position(26, 26));
-		colonies.add(new Position(24, 27));
-		colonies.add(new Position(26, 27));
-		colonies.add(new Position(25, 28));		
-		new GameRunner(BOARD_SIZE, colonies).run();
-	}		
+		colonies.add(new Position(c, c));
+		colonies.add(new Position(c - 1, c + 1));
+		colonies.add(new Position(c, c + 1));
+		colonies.add(new Position(c + 1, c + 1));
+		colonies.add(new Position(c - 1, c + 2));
+		colonies.add(new Position(c + 1, c + 2));
+		colonies.add(new Position(c, c + 3));
+		return colonies;
+	}
 }
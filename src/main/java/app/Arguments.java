@@ -0,0 +1,86 @@
+package app;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Command line arguments on the form {@code --name=value} or {@code --name}.
+ */
+class Arguments {
+
+	private final Map<String, String> values = new TreeMap<>();
+
+
+	/**
+	 * @param args    The command line arguments. Must not be {@code null}.
+	 * @param allowed The names of all legal arguments.
+	 * @throws IllegalArgumentException If an argument is malformed or not allowed.
+	 */
+	Arguments(String[] args, Set<String> allowed) {
+		Objects.requireNonNull(args);
+		for (String arg : args) {
+			if (!arg.startsWith("--") || arg.length() == 2) {
+				throw new IllegalArgumentException("Malformed argument " + arg);
+			}
+			int split = arg.indexOf('=');
+			String name = split < 0 ? arg.substring(2) : arg.substring(2, split);
+			String value = split < 0 ? "" : arg.substring(split + 1);
+			if (!allowed.contains(name)) {
+				throw new IllegalArgumentException("Unknown argument " + arg);
+			}
+			values.put(name, value);
+		}
+	}
+
+	/**
+	 * @param name The argument name.
+	 * @return Whether the argument was given.
+	 */
+	boolean has(String name) {
+		return values.containsKey(name);
+	}
+
+	/**
+	 * @param name         The argument name.
+	 * @param defaultValue The value to use if the argument wasn't given.
+	 * @return The argument value.
+	 */
+	String get(String name, String defaultValue) {
+		return values.getOrDefault(name, defaultValue);
+	}
+
+	/**
+	 * @param name         The argument name.
+	 * @param defaultValue The value to use if the argument wasn't given.
+	 * @return The argument value.
+	 * @throws IllegalArgumentException If the argument value isn't an integer.
+	 */
+	long getLong(String name, long defaultValue) {
+		String value = values.get(name);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(String.format("The %s argument must be an integer, was %s", name, value));
+		}
+	}
+
+	/**
+	 * @param name         The argument name.
+	 * @param defaultValue The value to use if the argument wasn't given.
+	 * @return The argument value.
+	 * @throws IllegalArgumentException If the argument value isn't an integer in
+	 *                                  the {@code int} range.
+	 */
+	int getInt(String name, int defaultValue) {
+		long value = getLong(name, defaultValue);
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(String.format("The %s argument is too large, was %d", name, value));
+		}
+		return (int) value;
+	}
+}
@@ -0,0 +1,63 @@
+package app;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import game.LifeEngine;
+import game.SnapshotFile;
+
+/**
+ * Periodically saves the current generation of a simulation to a
+ * {@link SnapshotFile}, so that a long run can be resumed after the
+ * application has stopped.
+ */
+class Checkpointer {
+
+	private final Path path;
+
+	private final long intervalNanos;
+
+	private long lastSave;
+
+
+	/**
+	 * @param path     The file to save to. Must not be {@code null}.
+	 * @param interval The seconds between two checkpoints. Must be positive.
+	 */
+	Checkpointer(Path path, long interval) {
+		if (interval <= 0) {
+			throw new IllegalArgumentException("Non-positive checkpoint interval " + interval);
+		}
+		this.path = Objects.requireNonNull(path);
+		this.intervalNanos = TimeUnit.SECONDS.toNanos(interval);
+		this.lastSave = System.nanoTime();
+	}
+
+	/**
+	 * Saves the engine if the interval has passed since the last checkpoint.
+	 *
+	 * @param engine The engine to save. Must not be {@code null}.
+	 */
+	void maybeSave(LifeEngine engine) {
+		if (System.nanoTime() - lastSave >= intervalNanos) {
+			save(engine);
+		}
+	}
+
+	/**
+	 * Saves the engine. A failed checkpoint is reported but doesn't stop the
+	 * simulation, the previous checkpoint is then left as it was.
+	 *
+	 * @param engine The engine to save. Must not be {@code null}.
+	 */
+	void save(LifeEngine engine) {
+		lastSave = System.nanoTime();
+		try {
+			SnapshotFile.write(engine, path);
+		} catch (IOException e) {
+			System.err.println("Failed to save checkpoint " + path + ": " + e);
+		}
+	}
+}
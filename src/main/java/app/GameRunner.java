@@ -1,56 +1,274 @@
 package app;
 
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
-import game.GameOfLifeState;
+import game.CycleDetector;
+import game.LifeEngine;
+import game.LifeEngines;
+import game.LifeMetrics;
+import game.MeteredEngine;
 import game.Position;
+import game.SnapshotFile;
 import gui.Gui;
 
-public class GameRunner implements Runnable {		
-	
-	private static final int SLEEP_TIME = 500;
-	
-	
-	private final int boardSize;
-	
-	private final List<Position> seedColonies;
-	
+/**
+ * Runs a game of life simulation with a GUI. The simulation runs at its own
+ * rate, and the GUI is only sent the latest generation at most
+ * {@value #FRAMES_PER_SECOND} times per second. The generations in between
+ * are computed but never drawn.
+ */
+public class GameRunner implements Runnable {
 
 	/**
-	 * @param boardSize The width and height of the game board.
-	 * @param colonies The initial colony configuration. Must not be {@code null}.
+	 * The simulation rate meaning as fast as possible.
 	 */
-	public GameRunner(int boardSize, List<Position> colonies) {
-		Objects.nonNull(colonies);
-		this.boardSize = boardSize;
-		this.seedColonies = colonies;
+	public static final long UNLIMITED = 0;
+
+	/**
+	 * The default simulation rate.
+	 */
+	public static final long DEFAULT_RATE = 2;
+
+	/**
+	 * The highest rate at which generations are sent to the GUI.
+	 */
+	private static final int FRAMES_PER_SECOND = 60;
+
+	private static final long FRAME_NANOS = TimeUnit.SECONDS.toNanos(1) / FRAMES_PER_SECOND;
+
+	/**
+	 * The largest number of generations computed between two frames when
+	 * running as fast as possible. Keeps the GUI responsive to pausing.
+	 */
+	private static final long MAX_BATCH = 1 << 16;
+
+	/**
+	 * The seconds between two checkpoints of a running simulation.
+	 */
+	private static final long CHECKPOINT_SECONDS = 60;
+
+
+	private final String engineName;
+
+	private final LifeEngines.Factory engineFactory;
+
+	/**
+	 * The engine to start from.
+	 */
+	private final LifeEngine initialState;
+
+	/**
+	 * Target generations per second, or {@link #UNLIMITED}.
+	 */
+	private final long rate;
+
+	/**
+	 * Saves checkpoints, or {@code null}.
+	 */
+	private final Checkpointer checkpointer;
+
+	/**
+	 * The number of generations searched for cycles, 0 to not search.
+	 */
+	private final int cycleHistory;
+
+
+	/**
+	 * @param engineName The name of the simulation engine, see
+	 *                   {@link LifeEngines#names()}. Used for the boards the
+	 *                   user edits.
+	 * @param engine     The engine to run from its current generation. Must not
+	 *                   be {@code null}.
+	 * @param rate       The target number of generations per second, or
+	 *                   {@link #UNLIMITED} to run as fast as possible. Must not
+	 *                   be negative.
+	 * @param checkpoint The file to save the current generation to every
+	 *                   {@value #CHECKPOINT_SECONDS} seconds and whenever the
+	 *                   simulation pauses, or {@code null} to not save it. See
+	 *                   {@link SnapshotFile}.
+	 * @param cycleHistory The number of generations searched for a repeating
+	 *                     board, see {@link CycleDetector}. Every generation
+	 *                     is computed and observed on its own until the first
+	 *                     cycle is found, which is reported on standard out. 0
+	 *                     to not search.
+	 * @throws IllegalArgumentException If there is no engine with the given name,
+	 *                                  or the rate or cycle history is negative.
+	 */
+	public GameRunner(String engineName, LifeEngine engine, long rate, Path checkpoint, int cycleHistory) {
+		if (rate < 0) {
+			throw new IllegalArgumentException("Negative generation rate " + rate);
+		}
+		if (cycleHistory < 0) {
+			throw new IllegalArgumentException("Negative cycle history " + cycleHistory);
+		}
+		this.engineFactory = LifeEngines.factory(engineName);
+		this.engineName = engineName;
+		this.initialState = Objects.requireNonNull(engine);
+		this.rate = rate;
+		this.checkpointer = checkpoint == null ? null : new Checkpointer(checkpoint, CHECKPOINT_SECONDS);
+		this.cycleHistory = cycleHistory;
 	}
 
 	/**
-	 * Runs the game of life simulation with a GUI.
+	 * Runs the game of life simulation with a GUI. The {@link LifeMetrics} of
+	 * the simulation are shown in the GUI and registered over JMX.
 	 */
 	public void run() {
-		GameOfLifeState gameState = new GameOfLifeState(boardSize, boardSize, seedColonies);
-		Gui gui = new Gui(boardSize, boardSize, seedColonies);
+		LifeMetrics metrics = new LifeMetrics();
+		metrics.register(engineName);
+		MeteredEngine gameState = new MeteredEngine(initialState, metrics);
+		int width = gameState.getWidth();
+		int height = gameState.getHeight();
+		Gui gui = new Gui(gameState);
+		gui.showMetrics(metrics);
+		CycleDetector cycles = detector(gameState);
+		long batch = 1;
+		long deadline = System.nanoTime();
 		while (true) {
 			if (gui.isPaused()) {
 				gui.lockBoard(false);
+				if (checkpointer != null) {
+					checkpointer.save(gameState);
+				}
+				gui.waitStart();
+				deadline = System.nanoTime();
 			}
-			gui.waitStart();
 			gui.lockBoard(true);
-			if (gui.dirty()) {
-				gameState = new GameOfLifeState(boardSize, boardSize, gui.getBoardState());
-				
+			List<Position> edits = gui.takeEdits();
+			if (edits != null) {
+				// The replaced engine may hold its board outside the heap.
+				close(gameState);
+				gameState = new MeteredEngine(
+						engineFactory.create(width, height, edits, gameState.getRule(), gameState.getTopology()),
+						metrics);
+				cycles = detector(gameState);
+			}
+			long skipped = gui.takeFastForward();
+			if (skipped > 0) {
+				// Fast forward, showing only the last generation.
+				advance(gameState, skipped, cycles);
+				gui.updateBoard(gameState);
+				if (gui.isPaused()) {
+					continue;
+				}
+			}
+			if (rate != UNLIMITED) {
+				// Enough generations for one frame, but at least one.
+				batch = Math.max(1, rate / FRAMES_PER_SECOND);
+			}
+			long start = System.nanoTime();
+			boolean hasChanged = advance(gameState, batch, cycles);
+			if (!hasChanged && batch > 1) {
+				// An unchanged board after several generations may be an
+				// oscillator, only a board that doesn't change in a single update
+				// is stable.
+				hasChanged = gameState.update();
+				observe(cycles, hasChanged);
+			}
+			if (hasChanged) {
+				gui.updateBoard(gameState);
 			}
-			boolean hasChanged = gameState.update();
-			gui.updateBoard(gameState.getColonies());
 			gui.pause(!hasChanged);
-			try {
-				Thread.sleep(SLEEP_TIME);
-			} catch (InterruptedException e) {
-				e.printStackTrace();
+			if (checkpointer != null) {
+				checkpointer.maybeSave(gameState);
 			}
+			if (rate == UNLIMITED) {
+				batch = nextBatch(batch, System.nanoTime() - start);
+			} else {
+				deadline = waitUntil(deadline + TimeUnit.SECONDS.toNanos(batch) / rate);
+			}
+		}
+	}
+
+	private void close(MeteredEngine engine) {
+		try {
+			engine.close();
+		} catch (Exception e) {
+			throw new IllegalStateException("Failed to close the " + engineName + " engine", e);
+		}
+	}
+
+	private CycleDetector detector(LifeEngine engine) {
+		return cycleHistory == 0 ? null : new CycleDetector(engine, cycleHistory);
+	}
+
+	/**
+	 * Advances the engine the given number of generations. While a cycle is
+	 * searched for, the generations are computed one at a time and every one of
+	 * them is observed, so that the cycle is found at the generation it starts
+	 * and with its true period. Otherwise, and once a cycle has been found, they
+	 * are computed in a single step.
+	 *
+	 * @param generations The number of generations, at least one.
+	 * @return Whether the last generation differs from the one before it, or
+	 *         after a step whether it differs from the generation before the
+	 *         step.
+	 */
+	private static boolean advance(LifeEngine engine, long generations, CycleDetector cycles) {
+		long done = 0;
+		boolean changed = false;
+		while (done < generations && cycles != null && cycles.getPeriod() == 0) {
+			changed = engine.update();
+			observe(cycles, changed);
+			done++;
+		}
+		if (done < generations) {
+			engine.step(generations - done);
+			changed = !engine.getChanges().isEmpty();
+			observe(cycles, changed);
+		}
+		return changed;
+	}
+
+	/**
+	 * Follows the last update of the engine, and reports the first cycle found.
+	 * A still life is not reported, since the simulation pauses on its own.
+	 */
+	private static void observe(CycleDetector cycles, boolean hasChanged) {
+		if (cycles == null) {
+			return;
+		}
+		boolean found = cycles.getPeriod() != 0;
+		if (cycles.observe() && !found && hasChanged) {
+			System.out.printf("Entered period-%d cycle at generation %d%n", cycles.getPeriod(),
+					cycles.getCycleStart());
+		}
+	}
+
+	/**
+	 * Scales the batch size so that a batch takes about one frame.
+	 *
+	 * @param batch   The last batch size.
+	 * @param elapsed The nanoseconds it took to compute the last batch.
+	 * @return The next batch size.
+	 */
+	private static long nextBatch(long batch, long elapsed) {
+		double scale = FRAME_NANOS / (double) Math.max(1, elapsed);
+		// Grow slowly to avoid overshooting on a single fast batch.
+		long next = (long) (batch * Math.min(2, scale));
+		return Math.max(1, Math.min(MAX_BATCH, next));
+	}
+
+	/**
+	 * Sleeps until the given time unless it has already passed.
+	 *
+	 * @param deadline The time to wait for, see {@link System#nanoTime()}.
+	 * @return The deadline, or the current time if the deadline had already
+	 *         passed. A slow simulation doesn't try to catch up afterwards.
+	 */
+	private static long waitUntil(long deadline) {
+		long remaining = deadline - System.nanoTime();
+		if (remaining <= 0) {
+			return System.nanoTime();
+		}
+		try {
+			TimeUnit.NANOSECONDS.sleep(remaining);
+		} catch (InterruptedException e) {
+			e.printStackTrace();
 		}
+		return deadline;
 	}
 }
@@ -0,0 +1,243 @@
+package app;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Objects;
+
+import game.CycleDetector;
+import game.HashLifeState;
+import game.LatencyHistogram;
+import game.LifeEngine;
+import game.LifeMetrics;
+import game.MacrocellFormat;
+import game.MeteredEngine;
+import game.Position;
+import game.RleFormat;
+import game.Topology;
+
+/**
+ * Runs a game of life simulation without a graphical interface, as fast as
+ * possible, and prints how long it took.
+ */
+public class HeadlessRunner implements Runnable {
+
+	/**
+	 * The file name suffix of Macrocell files.
+	 */
+	public static final String MACROCELL_SUFFIX = ".mc";
+
+	private static final double NANOS_PER_SECOND = 1e9;
+
+	/**
+	 * The number of generations advanced in a single step when cycles aren't
+	 * searched for.
+	 */
+	private static final long STEP_GENERATIONS = 1024;
+
+
+	private final String engineName;
+
+	private final LifeEngine gameState;
+
+	private final long maxGenerations;
+
+	private final PrintStream out;
+
+	/**
+	 * Where to save the final generation, or {@code null}.
+	 */
+	private final Path output;
+
+	/**
+	 * The number of generations searched for cycles, 0 to not search.
+	 */
+	private final int cycleHistory;
+
+
+	/**
+	 * @param engineName     The name of the simulation engine, only printed.
+	 * @param engine         The engine to run from its current generation. Must
+	 *                       not be {@code null}. Closed at the end of the run if
+	 *                       it is {@link AutoCloseable}.
+	 * @param maxGenerations The generation to run to unless the simulation
+	 *                       stabilizes earlier. Must not be negative.
+	 * @param out            Where to print the results. Must not be
+	 *                       {@code null}.
+	 * @param output         The file to save the final generation to, or
+	 *                       {@code null} to not save it. Saved as Macrocell if
+	 *                       the name ends with {@value #MACROCELL_SUFFIX}, and as
+	 *                       RLE otherwise.
+	 * @param cycleHistory   The number of generations searched for a repeating
+	 *                       board, see {@link CycleDetector}. The run stops at
+	 *                       the first cycle found. 0 to not search, which lets
+	 *                       the engine advance many generations in a single
+	 *                       {@link LifeEngine#step(long)}.
+	 * @throws IllegalArgumentException If the generation count or cycle history
+	 *                                  is negative.
+	 */
+	public HeadlessRunner(String engineName, LifeEngine engine, long maxGenerations, PrintStream out, Path output,
+			int cycleHistory) {
+		if (maxGenerations < 0) {
+			throw new IllegalArgumentException("Negative generation count " + maxGenerations);
+		}
+		if (cycleHistory < 0) {
+			throw new IllegalArgumentException("Negative cycle history " + cycleHistory);
+		}
+		this.engineName = Objects.requireNonNull(engineName);
+		this.gameState = Objects.requireNonNull(engine);
+		this.maxGenerations = maxGenerations;
+		this.out = Objects.requireNonNull(out);
+		this.output = output;
+		this.cycleHistory = cycleHistory;
+	}
+
+	/**
+	 * Runs the simulation until it has run the maximum number of generations,
+	 * stabilized or entered a cycle, and prints the elapsed time, the
+	 * generations per second, the update latencies and the final population.
+	 * Saves the final generation if there is an output file. The
+	 * {@link LifeMetrics} of the run are registered over JMX while it runs.
+	 *
+	 * @throws UncheckedIOException If saving the final generation fails.
+	 */
+	@Override
+	public void run() {
+		out.printf("Engine:             %s%n", engineName);
+		out.printf("Rule:               %s%n", gameState.getRule());
+		out.printf("Board:              %dx%d%n", gameState.getWidth(), gameState.getHeight());
+		out.printf("Initial population: %d%n", gameState.getPopulation());
+		LifeMetrics metrics = new LifeMetrics();
+		metrics.register(engineName);
+		MeteredEngine engine = new MeteredEngine(gameState, metrics);
+		try {
+			simulate(engine, metrics);
+		} finally {
+			metrics.unregister();
+			// The run owns the engine, release off-heap boards right away, also
+			// when the run fails.
+			try {
+				engine.close();
+			} catch (Exception e) {
+				throw new IllegalStateException("Failed to close the " + engineName + " engine", e);
+			}
+		}
+	}
+
+
+	/**
+	 * Runs the simulation and prints the results, see {@link #run()}.
+	 */
+	private void simulate(LifeEngine engine, LifeMetrics metrics) {
+		boolean stable = false;
+		CycleDetector cycles = cycleHistory == 0 ? null : new CycleDetector(engine, cycleHistory);
+		long firstGeneration = engine.getGeneration();
+		long start = System.nanoTime();
+		if (cycles != null) {
+			while (engine.getGeneration() < maxGenerations) {
+				if (!engine.update()) {
+					stable = true;
+					break;
+				}
+				if (cycles.observe()) {
+					break;
+				}
+			}
+		} else {
+			stable = stepToEnd(engine);
+		}
+		long elapsed = System.nanoTime() - start;
+		double seconds = elapsed / NANOS_PER_SECOND;
+		String end = "";
+		if (stable) {
+			end = " (stable)";
+		} else if (cycles != null && cycles.getPeriod() != 0) {
+			end = String.format(" (entered period-%d cycle at generation %d)", cycles.getPeriod(),
+					cycles.getCycleStart());
+		}
+		out.printf("Generations:        %d%s%n", gameState.getGeneration(), end);
+		out.printf("Time:               %.3f s%n", seconds);
+		out.printf("Generations/s:      %.1f%n", (gameState.getGeneration() - firstGeneration) / seconds);
+		LatencyHistogram latency = metrics.getUpdateLatency();
+		out.printf("Update latency:     p50 %d ns, p99 %d ns, max %d ns per generation%n",
+				latency.getValueAtPercentile(50), latency.getValueAtPercentile(99), latency.getMax());
+		out.printf("Births/deaths:      %d/%d%n", metrics.getBirths(), metrics.getDeaths());
+		out.printf("Final population:   %d%n", gameState.getPopulation());
+		if (output != null) {
+			save();
+			out.printf("Saved:              %s%n", output);
+		}
+	}
+
+	/**
+	 * Advances the engine to the last generation with multi-generation steps,
+	 * which lets the engine skip its per-generation bookkeeping. Only checks
+	 * whether the board has stabilized between the steps.
+	 *
+	 * @param engine The engine to advance.
+	 * @return Whether the board stabilized before the last generation.
+	 */
+	private boolean stepToEnd(LifeEngine engine) {
+		while (engine.getGeneration() < maxGenerations) {
+			engine.step(Math.min(STEP_GENERATIONS, maxGenerations - engine.getGeneration()));
+			// An unchanged board after several generations may be an oscillator,
+			// only a board that doesn't change in a single update is stable.
+			if (engine.getChanges().isEmpty() && engine.getGeneration() < maxGenerations
+					&& !engine.update()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void save() {
+		try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.US_ASCII)) {
+			if (output.toString().endsWith(MACROCELL_SUFFIX)) {
+				MacrocellFormat.write(toQuadtree(gameState), writer);
+			} else {
+				RleFormat.write(gameState, writer);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to save " + output, e);
+		}
+	}
+
+	/**
+	 * Copies the current generation into a quadtree for writing it as
+	 * Macrocell. Colonies of an infinite engine may lie outside its board, so
+	 * they are moved to a board spanning their bounding box.
+	 */
+	private static HashLifeState toQuadtree(LifeEngine engine) {
+		if (engine instanceof HashLifeState) {
+			return (HashLifeState) engine;
+		}
+		if (engine.getTopology() != Topology.INFINITE) {
+			return new HashLifeState(engine.getWidth(), engine.getHeight(), engine.getColonies(), engine.getRule());
+		}
+		Collection<Position> colonies = engine.getColonies();
+		long minX = 0, minY = 0, maxX = 0, maxY = 0;
+		for (Position p : colonies) {
+			minX = Math.min(minX, p.getX());
+			minY = Math.min(minY, p.getY());
+			maxX = Math.max(maxX, p.getX());
+			maxY = Math.max(maxY, p.getY());
+		}
+		long width = Math.max(engine.getWidth(), maxX - minX + 1);
+		long height = Math.max(engine.getHeight(), maxY - minY + 1);
+		if (width > HashLifeState.MAX_SIZE || height > HashLifeState.MAX_SIZE) {
+			throw new IllegalArgumentException("Colonies spanning " + width + "x" + height
+					+ " are too far apart for a Macrocell file");
+		}
+		Collection<Position> shifted = new ArrayList<>(colonies.size());
+		for (Position p : colonies) {
+			shifted.add(new Position((int) (p.getX() - minX), (int) (p.getY() - minY)));
+		}
+		return new HashLifeState((int) width, (int) height, shifted, engine.getRule());
+	}
+}
@@ -0,0 +1,600 @@
+package game;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Objects;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Bit packed game of life game state. Every board row is stored as an array of
+ * longs with 64 cells per long and the next generation is computed for 64
+ * cells at a time by counting neighbors with bitwise full adders. Behaves
+ * exactly like {@link GameOfLifeState} but is considerably faster for large
+ * and dense boards.
+ */
+public class BitBoardState implements LifeEngine {
+
+	/**
+	 * The largest number of generations computed in a single sweep over the
+	 * board.
+	 */
+	static final int PIPELINE_DEPTH = 8;
+
+	private final int width;
+	private final int height;
+	private final Rule rule;
+
+	/**
+	 * Number of longs needed to store a single row.
+	 */
+	private final int words;
+
+	/**
+	 * Always empty row used as the neighbor of the first and last row of a
+	 * bounded board.
+	 */
+	private final long[] emptyRow;
+
+	private final Topology topology;
+
+	/**
+	 * The rows above the first row and below the last row in the current
+	 * generation, see {@link #beginGeneration()}.
+	 */
+	private long[] northHalo;
+	private long[] southHalo;
+
+	/**
+	 * The mirrored halo rows of a Klein bottle.
+	 */
+	private long[] northMirror;
+	private long[] southMirror;
+
+
+	private long[][] rows;
+	private long[][] nextRows;
+
+	/**
+	 * The rows before the last update or step.
+	 */
+	private long[][] previousRows;
+
+	/**
+	 * The rows before the last step over several generations, allocated by the
+	 * first such step and then reused.
+	 */
+	private long[][] stepStart;
+
+	/**
+	 * Ring buffers of the last three rows computed of every intermediate
+	 * generation of a sweep, see {@link #advance(int)}.
+	 */
+	private long[][][] pipeline;
+
+	/**
+	 * The births and deaths of the last update or step, the population and the
+	 * hash of the board.
+	 */
+	final ChangeCounter counter = new ChangeCounter();
+	private long generation = 0;
+
+
+	/**
+	 * Initializes the game of life game state.
+	 *
+	 * @param width    The board width. Must be positive and less than
+	 *                 {@value GameOfLifeState#MAX_WIDTH}.
+	 * @param height   The board height. Must be positive and less than
+	 *                 {@value GameOfLifeState#MAX_HEIGHT}.
+	 * @param colonies The initial colony positions. May be empty, but must not be
+	 *                 {@code null}. All positions must be inside the board.
+	 */
+	public BitBoardState(int width, int height, Collection<Position> colonies) {
+		this(width, height, colonies, Rule.CONWAY);
+	}
+
+	/**
+	 * Initializes the game state.
+	 *
+	 * @param width    The board width. Must be positive and less than
+	 *                 {@value GameOfLifeState#MAX_WIDTH}.
+	 * @param height   The board height. Must be positive and less than
+	 *                 {@value GameOfLifeState#MAX_HEIGHT}.
+	 * @param colonies The initial colony positions. May be empty, but must not be
+	 *                 {@code null}. All positions must be inside the board.
+	 * @param rule     The rule deciding which colonies survive and are born. Must
+	 *                 not be {@code null}.
+	 */
+	public BitBoardState(int width, int height, Collection<Position> colonies, Rule rule) {
+		this(width, height, colonies, rule, Topology.BOUNDED);
+	}
+
+	/**
+	 * Initializes the game state. The board may be bounded, a torus or a Klein
+	 * bottle. The rows next to the top and bottom edges are copied into halo
+	 * rows before every generation, and the cells next to the left and right
+	 * edges are shifted into the words next to each row, so the cells are
+	 * still computed 64 at a time without any per cell wrapping.
+	 *
+	 * @param width    The board width. Must be positive and less than
+	 *                 {@value GameOfLifeState#MAX_WIDTH}.
+	 * @param height   The board height. Must be positive and less than
+	 *                 {@value GameOfLifeState#MAX_HEIGHT}.
+	 * @param colonies The initial colony positions. May be empty, but must not be
+	 *                 {@code null}. All positions must be inside the board.
+	 * @param rule     The rule deciding which colonies survive and are born. Must
+	 *                 not be {@code null}.
+	 * @param topology How the board edges connect. Must not be {@code null} or
+	 *                 {@link Topology#INFINITE}.
+	 * @throws IllegalArgumentException If the topology is infinite.
+	 */
+	public BitBoardState(int width, int height, Collection<Position> colonies, Rule rule, Topology topology) {
+		GameOfLifeState.rangeCheck(width, 1, GameOfLifeState.MAX_WIDTH, "width");
+		GameOfLifeState.rangeCheck(height, 1, GameOfLifeState.MAX_HEIGHT, "height");
+		Objects.requireNonNull(colonies);
+		checkTopology(topology);
+		this.width = width;
+		this.height = height;
+		this.rule = Objects.requireNonNull(rule);
+		this.topology = topology;
+		this.words = (width + Long.SIZE - 1) / Long.SIZE;
+		this.emptyRow = new long[words];
+		this.northHalo = emptyRow;
+		this.southHalo = emptyRow;
+		if (topology == Topology.KLEIN_BOTTLE) {
+			this.northMirror = new long[words];
+			this.southMirror = new long[words];
+		}
+		this.rows = new long[height][words];
+		this.nextRows = new long[height][words];
+		for (Position pos : colonies) {
+			GameOfLifeState.rangeCheck(pos.getX(), 0, width - 1, "colony x-coordinate");
+			GameOfLifeState.rangeCheck(pos.getY(), 0, height - 1, "colony y-coordinate");
+			rows[pos.getY()][pos.getX() / Long.SIZE] |= 1L << pos.getX();
+		}
+		this.previousRows = rows;
+		counter.setPopulation(countPopulation(rows));
+	}
+
+	/**
+	 * Restores the game state from a snapshot, at the generation of the
+	 * snapshot. The snapshot rows are copied as they are.
+	 *
+	 * @param snapshot The snapshot. Must not be {@code null}.
+	 */
+	public BitBoardState(BoardSnapshot snapshot) {
+		this(snapshot.getWidth(), snapshot.getHeight(), Collections.emptyList(), snapshot.getRule(),
+				snapshot.getTopology());
+		for (int y = 0; y < height; y++) {
+			System.arraycopy(snapshot.getRow(y), 0, rows[y], 0, words);
+		}
+		counter.setPopulation(countPopulation(rows));
+		this.generation = snapshot.getGeneration();
+	}
+
+	@Override
+	public boolean update() {
+		counter.reset();
+		beginGeneration();
+		long changed = stepRows(0, height, counter);
+		finishGeneration();
+		return changed != 0;
+	}
+
+	/**
+	 * Advances the game state the given number of generations. Up to
+	 * {@value #PIPELINE_DEPTH} generations are computed in a single sweep over
+	 * the board, see {@link #advance(int)}, so the board is read from memory
+	 * once per sweep rather than once per generation. A board that stops
+	 * changing skips the remaining generations.
+	 *
+	 * @param generations The number of generations to advance. Must not be
+	 *                    negative.
+	 */
+	@Override
+	public void step(long generations) {
+		if (generations < 0) {
+			throw new IllegalArgumentException("Negative generation count " + generations);
+		}
+		if (generations == 1) {
+			// A single update leaves the previous generation in nextRows.
+			update();
+			return;
+		}
+		counter.reset();
+		if (stepStart == null) {
+			stepStart = new long[height][words];
+		}
+		for (int y = 0; y < height; y++) {
+			System.arraycopy(rows[y], 0, stepStart[y], 0, words);
+		}
+		long remaining = generations;
+		while (remaining > 0) {
+			int batch = (int) Math.min(remaining, PIPELINE_DEPTH);
+			remaining -= batch;
+			if (!advance(batch)) {
+				// The board no longer changes.
+				generation += remaining;
+				break;
+			}
+		}
+		previousRows = stepStart;
+	}
+
+	@Override
+	public ImmutableSet<Position> getColonies() {
+		ImmutableSet.Builder<Position> builder = ImmutableSet.builder();
+		forEachLive((x, y) -> builder.add(new Position(x, y)));
+		return builder.build();
+	}
+
+	@Override
+	public void forEachLive(CellConsumer consumer) {
+		for (int y = 0; y < height; y++) {
+			long[] row = rows[y];
+			for (int i = 0; i < words; i++) {
+				for (long word = row[i]; word != 0; word &= word - 1) {
+					consumer.accept(i * Long.SIZE + Long.numberOfTrailingZeros(word), y);
+				}
+			}
+		}
+	}
+
+	@Override
+	public ChangeSet getChanges() {
+		return new ChangeSet.Builder().addRows(previousRows, rows).build();
+	}
+
+	@Override
+	public long getBirths() {
+		return counter.getBirths();
+	}
+
+	@Override
+	public long getDeaths() {
+		return counter.getDeaths();
+	}
+
+	@Override
+	public long getPopulation() {
+		return counter.getPopulation();
+	}
+
+	@Override
+	public boolean trackHash() {
+		counter.startHashing(this);
+		return true;
+	}
+
+	@Override
+	public long getHash() {
+		return counter.getHash();
+	}
+
+	@Override
+	public boolean isColony(int x, int y) {
+		if (x < 0 || x >= width || y < 0 || y >= height) {
+			return false;
+		}
+		return (rows[y][x / Long.SIZE] & 1L << x) != 0;
+	}
+
+	@Override
+	public long getGeneration() {
+		return generation;
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public Rule getRule() {
+		return rule;
+	}
+
+	@Override
+	public Topology getTopology() {
+		return topology;
+	}
+
+
+	/**
+	 * Computes the next generation of the rows in {@code [from, to)}. Only the
+	 * current generation is read and only the given rows of the next generation
+	 * are written, so disjoint row ranges can be computed concurrently, each
+	 * with a counter of its own.
+	 *
+	 * @param counter Counts the births and deaths in the rows.
+	 * @return A word with a bit set for every cell position that changed in any
+	 *         of the rows.
+	 */
+	long stepRows(int from, int to, ChangeCounter counter) {
+		long changed = 0;
+		for (int y = from; y < to; y++) {
+			long[] above = y > 0 ? rows[y - 1] : northHalo;
+			long[] below = y < height - 1 ? rows[y + 1] : southHalo;
+			long rowChanged = stepRow(above, rows[y], below, nextRows[y]);
+			if (rowChanged != 0) {
+				// The row is still in the cache, unchanged rows cost nothing.
+				counter.count(rows[y], nextRows[y], y);
+			}
+			changed |= rowChanged;
+		}
+		return changed;
+	}
+
+	/**
+	 * Prepares the halo rows of the current generation. Must be called before
+	 * the rows of a generation are computed by {@link #stepRows(int, int)}.
+	 */
+	void beginGeneration() {
+		if (topology == Topology.TORUS) {
+			northHalo = rows[height - 1];
+			southHalo = rows[0];
+		} else if (topology == Topology.KLEIN_BOTTLE) {
+			mirror(rows[height - 1], northMirror, width);
+			mirror(rows[0], southMirror, width);
+			northHalo = northMirror;
+			southHalo = southMirror;
+		}
+	}
+
+	/**
+	 * Makes the next generation computed by {@link #stepRows(int, int)} the
+	 * current generation.
+	 */
+	void finishGeneration() {
+		long[][] tmp = rows;
+		rows = nextRows;
+		nextRows = tmp;
+		previousRows = nextRows;
+		generation++;
+	}
+
+	/**
+	 * Computes several generations in a single sweep down the board. Row
+	 * {@code y} of generation {@code g} only depends on rows {@code y - 1} to
+	 * {@code y + 1} of generation {@code g - 1}, so while the sweep computes row
+	 * {@code y} of the first generation it can compute row {@code y - 1} of the
+	 * second, row {@code y - 2} of the third and so on. Every intermediate
+	 * generation then only needs its last three rows, which stay in the cache,
+	 * and only the first and last generations are full boards.
+	 * <p>
+	 * The rows next to the top and bottom edges of a wrapping board aren't
+	 * known until the sweep has reached the other edge, so such boards are
+	 * computed a generation at a time.
+	 *
+	 * @param depth The number of generations, in
+	 *              {@code [1..}{@value #PIPELINE_DEPTH}{@code ]}.
+	 * @return Whether the last generation differs from the one before it.
+	 */
+	boolean advance(int depth) {
+		if (topology != Topology.BOUNDED) {
+			boolean changed = false;
+			for (int g = 0; g < depth; g++) {
+				beginGeneration();
+				changed = stepRows(0, height, counter) != 0;
+				long[][] tmp = rows;
+				rows = nextRows;
+				nextRows = tmp;
+				generation++;
+			}
+			return changed;
+		}
+		if (pipeline == null) {
+			pipeline = new long[PIPELINE_DEPTH - 1][3][words];
+		}
+		long changed = 0;
+		for (int y = 0; y < height + depth - 1; y++) {
+			for (int g = 1; g <= depth && y - g + 1 >= 0; g++) {
+				int r = y - g + 1;
+				if (r >= height) {
+					continue;
+				}
+				long[] out = g == depth ? nextRows[r] : pipeline[g - 1][r % 3];
+				long[] row = pipelineRow(g - 1, r);
+				long rowChanged = stepRow(pipelineRow(g - 1, r - 1), row, pipelineRow(g - 1, r + 1), out);
+				if (rowChanged != 0) {
+					// Every generation of the sweep is counted, not only the last.
+					counter.count(row, out, r);
+				}
+				if (g == depth) {
+					changed |= rowChanged;
+				}
+			}
+		}
+		long[][] tmp = rows;
+		rows = nextRows;
+		nextRows = tmp;
+		generation += depth;
+		return changed != 0;
+	}
+
+	/**
+	 * @return Row {@code y} of generation {@code g} of the sweep in
+	 *         {@link #advance(int)}, where generation 0 is the current one.
+	 */
+	private long[] pipelineRow(int g, int y) {
+		if (y < 0 || y >= height) {
+			return emptyRow;
+		}
+		return g == 0 ? rows[y] : pipeline[g - 1][y % 3];
+	}
+
+	/**
+	 * Computes the next generation of a single row. Both single updates and the
+	 * sweeps of {@link #advance(int)} compute every row here, so a subclass can
+	 * replace the row kernel alone.
+	 *
+	 * @param above The row above, or a halo row.
+	 * @param row   The row.
+	 * @param below The row below, or a halo row.
+	 * @param out   The next generation of the row.
+	 * @return A word with a bit set for every cell that changed.
+	 */
+	long stepRow(long[] above, long[] row, long[] below, long[] out) {
+		return stepRow(rule, width, topology.wraps(), above, row, below, out);
+	}
+
+	/**
+	 * Computes the next generation of a single row of any bit packed board.
+	 *
+	 * @param rule  The rule.
+	 * @param width The board width.
+	 * @param wrap  Whether the left and right edges are connected.
+	 * @param above The row above, or a halo row.
+	 * @param row   The row.
+	 * @param below The row below, or a halo row.
+	 * @param out   The next generation of the row.
+	 * @return A word with a bit set for every cell that changed.
+	 */
+	static long stepRow(Rule rule, int width, boolean wrap, long[] above, long[] row, long[] below, long[] out) {
+		int words = row.length;
+		long lastWordMask = width % Long.SIZE == 0 ? -1L : (1L << width % Long.SIZE) - 1;
+		long changed = 0;
+		long abovePrev = word(above, -1, width, wrap), aboveCur = word(above, 0, width, wrap);
+		long rowPrev = word(row, -1, width, wrap), rowCur = word(row, 0, width, wrap);
+		long belowPrev = word(below, -1, width, wrap), belowCur = word(below, 0, width, wrap);
+		for (int i = 0; i < words; i++) {
+			boolean last = i == words - 1;
+			long aboveNext = word(above, i + 1, width, wrap);
+			long rowNext = word(row, i + 1, width, wrap);
+			long belowNext = word(below, i + 1, width, wrap);
+			long next = nextWord(rule,
+					abovePrev, aboveCur, aboveNext,
+					rowPrev, rowCur, rowNext,
+					belowPrev, belowCur, belowNext);
+			if (last) {
+				next &= lastWordMask;
+			}
+			out[i] = next;
+			changed |= next ^ row[i];
+			abovePrev = aboveCur;
+			aboveCur = aboveNext;
+			rowPrev = rowCur;
+			rowCur = rowNext;
+			belowPrev = belowCur;
+			belowCur = belowNext;
+		}
+		return changed;
+	}
+
+	/**
+	 * @return The number of living colonies on a bit packed board.
+	 */
+	static long countPopulation(long[][] rows) {
+		long population = 0;
+		for (long[] row : rows) {
+			for (long word : row) {
+				population += Long.bitCount(word);
+			}
+		}
+		return population;
+	}
+
+	/**
+	 * Checks that a topology fits a bit packed board, which has a fixed size.
+	 *
+	 * @throws IllegalArgumentException If the topology is infinite.
+	 */
+	static void checkTopology(Topology topology) {
+		if (Objects.requireNonNull(topology) == Topology.INFINITE) {
+			throw new IllegalArgumentException("A bit packed board can't be infinite");
+		}
+	}
+
+	/**
+	 * Gets a word of a row, including the cells across the left and right edges
+	 * of a wrapping board. Word -1 is the word to the left of the row, with the
+	 * last cell of the row in its highest bit, and the last word of the row has
+	 * the first cell of the row right after the last cell of the board.
+	 *
+	 * @param row   The row.
+	 * @param i     The word index, in {@code [-1..row.length]}.
+	 * @param width The board width.
+	 * @param wrap  Whether the left and right edges are connected. Words
+	 *              outside the row are empty otherwise.
+	 * @return The cells of the word.
+	 */
+	static long word(long[] row, int i, int width, boolean wrap) {
+		int last = row.length - 1;
+		if (i < 0) {
+			return wrap ? row[last] >>> (width - 1) << 63 : 0;
+		}
+		if (i > last) {
+			return wrap && width % Long.SIZE == 0 ? row[0] & 1 : 0;
+		}
+		if (wrap && i == last && width % Long.SIZE != 0) {
+			return row[i] | (row[0] & 1) << width;
+		}
+		return row[i];
+	}
+
+	/**
+	 * Mirrors a row, so that the cell at x ends up at {@code width - 1 - x}.
+	 *
+	 * @param row   The row.
+	 * @param out   The mirrored row, as long as the row.
+	 * @param width The board width.
+	 */
+	static void mirror(long[] row, long[] out, int width) {
+		int words = row.length;
+		// Reversing the bits of all words puts cell x at words * 64 - 1 - x,
+		// which is then shifted down to width - 1 - x.
+		int shift = words * Long.SIZE - width;
+		for (int i = 0; i < words; i++) {
+			long low = Long.reverse(row[words - 1 - i]);
+			long high = i + 1 < words ? Long.reverse(row[words - 2 - i]) : 0;
+			out[i] = shift == 0 ? low : low >>> shift | high << (Long.SIZE - shift);
+		}
+	}
+
+	/**
+	 * Computes the next generation of 64 cells. Each argument triple after the
+	 * rule holds the word to the left, the word itself and the word to the right
+	 * of a row.
+	 */
+	static long nextWord(Rule rule,
+			long abovePrev, long above, long aboveNext,
+			long rowPrev, long row, long rowNext,
+			long belowPrev, long below, long belowNext) {
+		// The eight neighbor masks. Bit i of west holds the cell to the left of
+		// cell i, bit i of east holds the cell to the right of cell i.
+		long nw = (above << 1) | (abovePrev >>> 63);
+		long n = above;
+		long ne = (above >>> 1) | (aboveNext << 63);
+		long w = (row << 1) | (rowPrev >>> 63);
+		long e = (row >>> 1) | (rowNext << 63);
+		long sw = (below << 1) | (belowPrev >>> 63);
+		long s = below;
+		long se = (below >>> 1) | (belowNext << 63);
+
+		// Add the neighbor masks with full adders. Every output holds one bit
+		// of the per cell neighbor count.
+		long aboveSum = nw ^ n ^ ne;
+		long aboveCarry = (nw & n) | (ne & (nw ^ n));
+		long sideSum = w ^ e;
+		long sideCarry = w & e;
+		long belowSum = sw ^ s ^ se;
+		long belowCarry = (sw & s) | (se & (sw ^ s));
+
+		long ones = aboveSum ^ sideSum ^ belowSum;
+		long onesCarry = (aboveSum & sideSum) | (belowSum & (aboveSum ^ sideSum));
+		long twosSum = aboveCarry ^ sideCarry ^ belowCarry;
+		long twosCarry = (aboveCarry & sideCarry) | (belowCarry & (aboveCarry ^ sideCarry));
+		long twos = twosSum ^ onesCarry;
+		long foursCarry = twosSum & onesCarry;
+		long fours = twosCarry ^ foursCarry;
+		long eights = twosCarry & foursCarry;
+
+		return rule.nextBits(ones, twos, fours, eights, row);
+	}
+}
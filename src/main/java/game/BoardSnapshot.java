@@ -0,0 +1,287 @@
+package game;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * A copy of the colonies of a single generation, bit packed with one
+ * {@code long} word per 64 cells of a row like {@link BitBoardState}. The
+ * colonies an infinite engine has outside its board are kept in a separate
+ * list of {@link Position#toLong() packed positions}. A
+ * snapshot is filled by one thread with {@link #capture(LifeEngine)} and then
+ * handed to another thread, see {@link SnapshotExchange}. It must not be
+ * captured into while another thread reads it.
+ */
+public final class BoardSnapshot {
+
+	private final int width;
+	private final int height;
+	private final int words;
+	private final long[][] rows;
+
+	/**
+	 * The packed positions of the colonies outside the board, the first
+	 * {@code outsideCount} are used. Only an infinite board has any.
+	 */
+	private long[] outside = new long[0];
+	private int outsideCount = 0;
+	private long generation = 0;
+	private long population = 0;
+	private Rule rule = Rule.CONWAY;
+	private Topology topology = Topology.BOUNDED;
+
+
+	/**
+	 * Creates an empty snapshot of generation 0 with Conway's rule on a bounded
+	 * board.
+	 *
+	 * @param width  The board width.
+	 * @param height The board height.
+	 * @throws IllegalArgumentException If either dimension is outside its legal range.
+	 */
+	public BoardSnapshot(int width, int height) {
+		GameOfLifeState.rangeCheck(width, 1, GameOfLifeState.MAX_WIDTH, "width");
+		GameOfLifeState.rangeCheck(height, 1, GameOfLifeState.MAX_HEIGHT, "height");
+		this.width = width;
+		this.height = height;
+		this.words = (width + Long.SIZE - 1) / Long.SIZE;
+		this.rows = new long[height][words];
+	}
+
+	/**
+	 * Replaces the content of this snapshot with the current generation of an
+	 * engine, including the colonies outside the board of an infinite engine.
+	 *
+	 * @param engine The engine to copy. Must have the same dimensions as this
+	 *               snapshot.
+	 * @throws IllegalArgumentException If the engine has other dimensions.
+	 */
+	public void capture(LifeEngine engine) {
+		if (engine.getWidth() != width || engine.getHeight() != height) {
+			throw new IllegalArgumentException(String.format("A %dx%d engine doesn't fit a %dx%d snapshot",
+					engine.getWidth(), engine.getHeight(), width, height));
+		}
+		for (long[] row : rows) {
+			Arrays.fill(row, 0);
+		}
+		outsideCount = 0;
+		if (engine.getTopology() == Topology.INFINITE) {
+			engine.forEachLive((x, y) -> {
+				if (0 <= x && x < width && 0 <= y && y < height) {
+					rows[y][x >>> 6] |= 1L << x;
+				} else {
+					addOutside(Position.toLong(x, y));
+				}
+			});
+		} else {
+			engine.forEachLive((x, y) -> rows[y][x >>> 6] |= 1L << x);
+		}
+		population = engine.getPopulation();
+		generation = engine.getGeneration();
+		rule = engine.getRule();
+		topology = engine.getTopology();
+	}
+
+	/**
+	 * @return The board width.
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return The board height.
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return The generation the snapshot was captured from.
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * @return The number of living colonies, including those outside the
+	 *         board.
+	 */
+	public long getPopulation() {
+		return population;
+	}
+
+	/**
+	 * @return The rule of the engine the snapshot was captured from. Never
+	 *         {@code null}.
+	 */
+	public Rule getRule() {
+		return rule;
+	}
+
+	/**
+	 * @return How the board edges of the engine the snapshot was captured from
+	 *         connect. Never {@code null}.
+	 */
+	public Topology getTopology() {
+		return topology;
+	}
+
+	/**
+	 * Gets the living colonies. The collection is a view of the snapshot,
+	 * positions are created while it is iterated, so it can be passed to an
+	 * engine constructor without building a list first.
+	 *
+	 * @return The colony positions, row by row and then those outside the
+	 *         board. Never {@code null}.
+	 */
+	public Collection<Position> getColonies() {
+		return new AbstractCollection<Position>() {
+			@Override
+			public Iterator<Position> iterator() {
+				return new Iterator<Position>() {
+					/**
+					 * The index of the current word, counted row by row.
+					 */
+					private int index = -1;
+					private long word = 0;
+					private int nextOutside = 0;
+
+					@Override
+					public boolean hasNext() {
+						while (word == 0 && index + 1 < height * words) {
+							index++;
+							word = rows[index / words][index % words];
+						}
+						return word != 0 || nextOutside < outsideCount;
+					}
+
+					@Override
+					public Position next() {
+						if (!hasNext()) {
+							throw new NoSuchElementException();
+						}
+						if (word == 0) {
+							return Position.fromLong(outside[nextOutside++]);
+						}
+						int x = index % words * Long.SIZE + Long.numberOfTrailingZeros(word);
+						word &= word - 1;
+						return new Position(x, index / words);
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return (int) population;
+			}
+		};
+	}
+
+	/**
+	 * @param x The x-coordinate, in {@code [0..getWidth())}.
+	 * @param y The y-coordinate, in {@code [0..getHeight())}.
+	 * @return Whether there is a living colony at the given position on the
+	 *         board.
+	 */
+	public boolean isAlive(int x, int y) {
+		return (rows[y][x >>> 6] >>> x & 1) != 0;
+	}
+
+	/**
+	 * @return The number of words in a row.
+	 */
+	public int getWordCount() {
+		return words;
+	}
+
+	/**
+	 * Gets 64 cells of a row. Bit {@code b} of word {@code i} is the cell at
+	 * x-coordinate {@code i * 64 + b}. Bits beyond the board width are 0.
+	 *
+	 * @param y The row, in {@code [0..getHeight())}.
+	 * @param i The word index, in {@code [0..getWordCount())}.
+	 * @return The cells.
+	 */
+	public long getWord(int y, int i) {
+		return rows[y][i];
+	}
+
+	/**
+	 * @param y The row, in {@code [0..getHeight())}.
+	 * @return The row itself, not a copy. See {@link #getWord(int, int)}.
+	 */
+	long[] getRow(int y) {
+		return rows[y];
+	}
+
+	/**
+	 * @return The number of colonies outside the board.
+	 */
+	int getOutsideCount() {
+		return outsideCount;
+	}
+
+	/**
+	 * @param i The index, in {@code [0..getOutsideCount())}.
+	 * @return The {@link Position#toLong() packed position} of a colony outside
+	 *         the board.
+	 */
+	long getOutside(int i) {
+		return outside[i];
+	}
+
+	/**
+	 * Adds a colony outside the board while the snapshot is restored.
+	 *
+	 * @param key The {@link Position#toLong() packed position} of the colony.
+	 * @throws IllegalArgumentException If the position is on the board.
+	 */
+	void addOutside(long key) {
+		int x = Position.x(key);
+		int y = Position.y(key);
+		if (0 <= x && x < width && 0 <= y && y < height) {
+			throw new IllegalArgumentException("The colony at " + Position.fromLong(key) + " is on the board");
+		}
+		if (outsideCount == outside.length) {
+			outside = Arrays.copyOf(outside, Math.max(16, outside.length * 2));
+		}
+		outside[outsideCount++] = key;
+	}
+
+	/**
+	 * Sets the generation, rule and topology after the rows have been filled
+	 * through {@link #getRow(int)} and the colonies outside the board added
+	 * through {@link #addOutside(long)}, and counts the population.
+	 *
+	 * @param generation The generation of the rows.
+	 * @param rule       The rule of the rows. Must not be {@code null}.
+	 * @param topology   The topology of the rows. Must not be {@code null}.
+	 * @throws IllegalArgumentException If there are colonies outside a board
+	 *                                  that isn't infinite.
+	 */
+	void restore(long generation, Rule rule, Topology topology) {
+		if (outsideCount > 0 && topology != Topology.INFINITE) {
+			throw new IllegalArgumentException("Colonies outside a " + topology + " board");
+		}
+		this.generation = generation;
+		this.rule = Objects.requireNonNull(rule);
+		this.topology = Objects.requireNonNull(topology);
+		this.population = countPopulation() + outsideCount;
+	}
+
+
+	private long countPopulation() {
+		long population = 0;
+		for (long[] row : rows) {
+			for (long word : row) {
+				population += Long.bitCount(word);
+			}
+		}
+		return population;
+	}
+}
@@ -0,0 +1,16 @@
+package game;
+
+/**
+ * Receives cells by their coordinates, see
+ * {@link LifeEngine#forEachLive(CellConsumer)}. Takes primitive coordinates so
+ * that walking a board never creates a {@link Position}.
+ */
+@FunctionalInterface
+public interface CellConsumer {
+
+	/**
+	 * @param x The x-coordinate of the cell.
+	 * @param y The y-coordinate of the cell.
+	 */
+	void accept(int x, int y);
+}
@@ -0,0 +1,153 @@
+package game;
+
+/**
+ * Counts the births and deaths of the generations an engine computes, while it
+ * computes them, so that {@link LifeEngine#getBirths()} and
+ * {@link LifeEngine#getDeaths()} never have to compare the board with an
+ * earlier generation. Also keeps the population, which a bit packed engine
+ * would otherwise have to count over the whole board, and the Zobrist hash of
+ * the board once it is {@link #startHashing(LifeEngine) tracked}, see
+ * {@link CycleDetector}.
+ * <p>
+ * Parts of a board that are computed concurrently are counted by counters of
+ * their own, see {@link #split()}, and added together afterwards.
+ */
+final class ChangeCounter {
+
+	private long births = 0;
+	private long deaths = 0;
+	private long population = 0;
+	private boolean hashing = false;
+	private long hash = 0;
+
+
+	/**
+	 * @return A new counter for a part of the board, which hashes the changes
+	 *         if this counter does. Its population and hash are those of the
+	 *         changes alone, to be {@link #add(ChangeCounter) added} to this
+	 *         counter.
+	 */
+	ChangeCounter split() {
+		ChangeCounter counter = new ChangeCounter();
+		counter.hashing = hashing;
+		return counter;
+	}
+
+	/**
+	 * Starts counting the births and deaths of a new update or step.
+	 */
+	void reset() {
+		births = 0;
+		deaths = 0;
+	}
+
+	/**
+	 * Counts a colony born in the given cell.
+	 */
+	void born(int x, int y) {
+		births++;
+		population++;
+		if (hashing) {
+			hash ^= CycleDetector.key(x, y);
+		}
+	}
+
+	/**
+	 * Counts the colony that died in the given cell.
+	 */
+	void died(int x, int y) {
+		deaths++;
+		population--;
+		if (hashing) {
+			hash ^= CycleDetector.key(x, y);
+		}
+	}
+
+	/**
+	 * Counts the changes between two words of a bit packed row.
+	 *
+	 * @param before The word before the change.
+	 * @param after  The word after the change.
+	 * @param x      The x-coordinate of the first cell in the words.
+	 * @param y      The y-coordinate of the row.
+	 */
+	void count(long before, long after, int x, int y) {
+		int born = Long.bitCount(after & ~before);
+		int died = Long.bitCount(before & ~after);
+		births += born;
+		deaths += died;
+		population += born - died;
+		if (hashing) {
+			for (long changed = before ^ after; changed != 0; changed &= changed - 1) {
+				hash ^= CycleDetector.key(x + Long.numberOfTrailingZeros(changed), y);
+			}
+		}
+	}
+
+	/**
+	 * Counts the changes between two versions of a bit packed row, see
+	 * {@link BitBoardState}.
+	 *
+	 * @param before The row before the change.
+	 * @param after  The row after the change.
+	 * @param y      The y-coordinate of the row.
+	 */
+	void count(long[] before, long[] after, int y) {
+		for (int i = 0; i < after.length; i++) {
+			if (before[i] != after[i]) {
+				count(before[i], after[i], i * Long.SIZE, y);
+			}
+		}
+	}
+
+	/**
+	 * Adds the changes counted by a counter {@link #split() split} from this
+	 * one.
+	 */
+	void add(ChangeCounter counter) {
+		births += counter.births;
+		deaths += counter.deaths;
+		population += counter.population;
+		hash ^= counter.hash;
+	}
+
+	/**
+	 * Starts keeping the hash of the board, unless it is already kept.
+	 *
+	 * @param engine The engine whose current generation the hash starts from.
+	 */
+	void startHashing(LifeEngine engine) {
+		if (!hashing) {
+			hashing = true;
+			hash = 0;
+			engine.forEachLive((x, y) -> hash ^= CycleDetector.key(x, y));
+		}
+	}
+
+	/**
+	 * @return The hash of the board.
+	 * @throws IllegalStateException If the hash isn't kept.
+	 */
+	long getHash() {
+		if (!hashing) {
+			throw new IllegalStateException("The hash of the board isn't kept");
+		}
+		return hash;
+	}
+
+	long getBirths() {
+		return births;
+	}
+
+	long getDeaths() {
+		return deaths;
+	}
+
+	long getPopulation() {
+		return population;
+	}
+
+	void setPopulation(long population) {
+		this.population = population;
+	}
+}
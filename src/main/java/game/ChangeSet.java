@@ -0,0 +1,148 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * An immutable list of cells that changed between two generations. Every
+ * change is either a birth, a colony that appeared, or a death, a colony that
+ * disappeared. Changes are stored in primitive arrays, so a change set costs
+ * memory proportional to the number of changes rather than the population.
+ */
+public final class ChangeSet {
+
+	/**
+	 * The change set without any changes.
+	 */
+	public static final ChangeSet EMPTY = new Builder().build();
+
+
+	private final int[] xs;
+	private final int[] ys;
+	private final boolean[] births;
+
+
+	private ChangeSet(int[] xs, int[] ys, boolean[] births) {
+		this.xs = xs;
+		this.ys = ys;
+		this.births = births;
+	}
+
+	/**
+	 * @return The number of changes.
+	 */
+	public int size() {
+		return xs.length;
+	}
+
+	/**
+	 * @return Whether there are no changes.
+	 */
+	public boolean isEmpty() {
+		return xs.length == 0;
+	}
+
+	/**
+	 * @param i The change index, in {@code [0..size())}.
+	 * @return The x-coordinate of the changed cell.
+	 */
+	public int getX(int i) {
+		return xs[i];
+	}
+
+	/**
+	 * @param i The change index, in {@code [0..size())}.
+	 * @return The y-coordinate of the changed cell.
+	 */
+	public int getY(int i) {
+		return ys[i];
+	}
+
+	/**
+	 * @param i The change index, in {@code [0..size())}.
+	 * @return {@code true} if a colony was born in the cell, {@code false} if
+	 *         the colony in the cell died.
+	 */
+	public boolean isBirth(int i) {
+		return births[i];
+	}
+
+
+	/**
+	 * Collects changes for a {@link ChangeSet}.
+	 */
+	public static final class Builder {
+
+		private int[] xs = new int[16];
+		private int[] ys = new int[16];
+		private boolean[] births = new boolean[16];
+		private int size = 0;
+
+
+		/**
+		 * Adds a change.
+		 *
+		 * @param x     The x-coordinate of the changed cell.
+		 * @param y     The y-coordinate of the changed cell.
+		 * @param birth {@code true} for a birth, {@code false} for a death.
+		 * @return This builder.
+		 */
+		public Builder add(int x, int y, boolean birth) {
+			if (size == xs.length) {
+				xs = Arrays.copyOf(xs, size * 2);
+				ys = Arrays.copyOf(ys, size * 2);
+				births = Arrays.copyOf(births, size * 2);
+			}
+			xs[size] = x;
+			ys[size] = y;
+			births[size] = birth;
+			size++;
+			return this;
+		}
+
+		/**
+		 * Adds a change for every bit that differs between two words of a bit
+		 * packed row.
+		 *
+		 * @param before The word before the change.
+		 * @param after  The word after the change.
+		 * @param x      The x-coordinate of the first cell in the words.
+		 * @param y      The y-coordinate of the row.
+		 * @return This builder.
+		 */
+		Builder addWord(long before, long after, int x, int y) {
+			long changed = before ^ after;
+			while (changed != 0) {
+				int bit = Long.numberOfTrailingZeros(changed);
+				add(x + bit, y, (after >>> bit & 1) != 0);
+				changed &= changed - 1;
+			}
+			return this;
+		}
+
+		/**
+		 * Adds a change for every cell that differs between two bit packed
+		 * boards, see {@link BitBoardState}.
+		 *
+		 * @param before The rows before the change.
+		 * @param after  The rows after the change.
+		 * @return This builder.
+		 */
+		Builder addRows(long[][] before, long[][] after) {
+			for (int y = 0; y < after.length; y++) {
+				for (int i = 0; i < after[y].length; i++) {
+					if (before[y][i] != after[y][i]) {
+						addWord(before[y][i], after[y][i], i * Long.SIZE, y);
+					}
+				}
+			}
+			return this;
+		}
+
+		/**
+		 * @return The change set. Never {@code null}.
+		 */
+		public ChangeSet build() {
+			return new ChangeSet(Arrays.copyOf(xs, size), Arrays.copyOf(ys, size), Arrays.copyOf(births, size));
+		}
+	}
+}
@@ -0,0 +1,231 @@
+package game;
+
+import java.util.Objects;
+
+/**
+ * Detects when the board of an engine returns to an earlier generation, i.e.
+ * when the simulation has entered a cycle such as a blinker. A still life is a
+ * cycle of period 1.
+ * <p>
+ * Every generation is identified by a Zobrist hash, the exclusive or of a
+ * random 64 bit key per living colony. The engines keep the hash themselves,
+ * see {@link LifeEngine#trackHash()}: the keys of the cells that change are
+ * added while a generation is computed, so observing a generation takes
+ * constant time and the engine pays in proportion to the births and deaths.
+ * The hash of an engine that doesn't keep it is updated from the births and
+ * deaths reported by {@link LifeEngine#getChanges()} instead, which costs
+ * what the engine needs to find its changes.
+ * <p>
+ * The hashes of the last generations are kept in a ring buffer indexed by an
+ * open addressing table, so looking up a generation takes constant expected
+ * time. Cycles longer than the history are not detected. Two different boards
+ * get the same hash with a probability of about {@code 2^-64}, in which case a
+ * cycle is reported that isn't there.
+ */
+public final class CycleDetector {
+
+	/**
+	 * The default number of generations remembered.
+	 */
+	public static final int DEFAULT_HISTORY = 1024;
+
+	/**
+	 * Mixed into every cell key, so that the empty board and the cell at (0, 0)
+	 * don't get trivial hashes.
+	 */
+	private static final long SEED = 0x9E3779B97F4A7C15L;
+
+
+	private final LifeEngine engine;
+	private final int history;
+
+	/**
+	 * The hashes of the last observed generations, oldest first from
+	 * {@code count % history}.
+	 */
+	private final long[] hashes;
+	private final long[] generations;
+
+	/**
+	 * Ring buffer indices plus one, 0 for an empty slot, hashed by the hash of
+	 * the generation at that index.
+	 */
+	private final int[] table;
+	private final int mask;
+
+	/**
+	 * Whether the engine keeps the hash.
+	 */
+	private final boolean tracked;
+
+	private long count = 0;
+	private long hash;
+	private long period = 0;
+	private long cycleStart = -1;
+
+
+	/**
+	 * Starts following an engine from its current generation, remembering the
+	 * last {@value #DEFAULT_HISTORY} observed generations.
+	 *
+	 * @param engine The engine. Must not be {@code null}.
+	 */
+	public CycleDetector(LifeEngine engine) {
+		this(engine, DEFAULT_HISTORY);
+	}
+
+	/**
+	 * Starts following an engine from its current generation.
+	 *
+	 * @param engine  The engine. Must not be {@code null}.
+	 * @param history The number of observed generations remembered, the longest
+	 *                detectable period. Must be positive.
+	 */
+	public CycleDetector(LifeEngine engine, int history) {
+		GameOfLifeState.rangeCheck(history, 1, 1 << 24, "history");
+		this.engine = Objects.requireNonNull(engine);
+		this.history = history;
+		this.hashes = new long[history];
+		this.generations = new long[history];
+		this.table = new int[Integer.highestOneBit(history) * 4];
+		this.mask = table.length - 1;
+		this.tracked = engine.trackHash();
+		if (tracked) {
+			hash = engine.getHash();
+		} else {
+			engine.forEachLive((x, y) -> hash ^= key(x, y));
+		}
+		record();
+	}
+
+	/**
+	 * Observes the generation the engine was advanced to by the last
+	 * {@link LifeEngine#update()} or {@link LifeEngine#step(long)}. Must be
+	 * called once after every update or step, or the hash of an engine that
+	 * doesn't keep it no longer matches the board, and generations that aren't
+	 * observed can't be found again. After a step over several generations, the
+	 * detected period is a multiple of the true period. Takes constant time
+	 * unless the engine doesn't keep the hash, see the class documentation.
+	 *
+	 * @return Whether the generation equals one of the remembered generations.
+	 *         See {@link #getPeriod()} and {@link #getCycleStart()}.
+	 */
+	public boolean observe() {
+		if (tracked) {
+			hash = engine.getHash();
+		} else {
+			ChangeSet changes = engine.getChanges();
+			for (int i = 0; i < changes.size(); i++) {
+				hash ^= key(changes.getX(i), changes.getY(i));
+			}
+		}
+		int index = find(hash);
+		if (index >= 0) {
+			// Only the first repetition is reported, later generations of the
+			// cycle repeat the same one.
+			if (period == 0) {
+				cycleStart = generations[index];
+				period = engine.getGeneration() - cycleStart;
+			}
+		}
+		record();
+		return index >= 0;
+	}
+
+	/**
+	 * @return The period of the first cycle found, or 0 if no cycle has been
+	 *         found.
+	 */
+	public long getPeriod() {
+		return period;
+	}
+
+	/**
+	 * @return The generation the first cycle found was entered at, or -1 if no
+	 *         cycle has been found.
+	 */
+	public long getCycleStart() {
+		return cycleStart;
+	}
+
+	/**
+	 * @return The hash of the current generation. Equal boards always have the
+	 *         same hash.
+	 */
+	public long getHash() {
+		return hash;
+	}
+
+
+	/**
+	 * Remembers the current generation, forgetting the oldest one if the
+	 * history is full.
+	 */
+	private void record() {
+		int index = (int) (count % history);
+		if (count >= history) {
+			int slot = findSlot(hashes[index]);
+			if (table[slot] == index + 1) {
+				remove(slot);
+			}
+		}
+		hashes[index] = hash;
+		generations[index] = engine.getGeneration();
+		table[findSlot(hash)] = index + 1;
+		count++;
+	}
+
+	/**
+	 * @return The ring buffer index of the latest remembered generation with the
+	 *         given hash, or -1 if there is none.
+	 */
+	private int find(long hash) {
+		return table[findSlot(hash)] - 1;
+	}
+
+	/**
+	 * @return The table slot of the given hash, or the empty slot where it
+	 *         belongs. The table only holds the latest generation of every hash,
+	 *         so a cycle doesn't make the probe sequences grow.
+	 */
+	private int findSlot(long hash) {
+		int slot = slot(hash);
+		while (table[slot] != 0 && hashes[table[slot] - 1] != hash) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Empties a table slot, moving later entries of its probe sequence back so
+	 * that lookups never stop early.
+	 */
+	private void remove(int hole) {
+		for (int slot = (hole + 1) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+			int home = slot(hashes[table[slot] - 1]);
+			// The entry may fill the hole unless its home lies cyclically in
+			// (hole, slot].
+			if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+				table[hole] = table[slot];
+				hole = slot;
+			}
+		}
+		table[hole] = 0;
+	}
+
+	private int slot(long hash) {
+		return (int) (hash ^ hash >>> 32) & mask;
+	}
+
+	/**
+	 * The Zobrist key of a cell. Keys are computed by the SplitMix64 finalizer
+	 * instead of looked up, so boards of any size need no key table. The
+	 * engines that keep the hash use the same keys.
+	 */
+	static long key(int x, int y) {
+		long z = ((long) x << 32 | y & 0xFFFFFFFFL) + SEED;
+		z = (z ^ z >>> 30) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ z >>> 27) * 0x94D049BB133111EBL;
+		return z ^ z >>> 31;
+	}
+}
@@ -1,12 +1,7 @@
 package game;
 
 import java.util.Collection;
-import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
-import java.util.TreeMap;
-import java.util.TreeSet;
-import java.util.stream.Collectors;
 
 import com.google.common.collect.ImmutableSet;
 
@@ -14,21 +9,16 @@ import com.google.common.collect.ImmutableSet;
  * Game of life game state. This class stores the living colonies for the
  * current generation. To advance to next generation see
  * {@link GameOfLifeState#update()}.
+ * <p>
+ * Positions are stored packed into a {@code long}, see
+ * {@link Position#toLong()}, which can't hold the position at
+ * {@code x = Integer.MIN_VALUE, y = 0}, so colonies must stay strictly
+ * between the smallest and largest x-coordinate.
  * 
  * @author Henrik Josefsson 2020-06-29
  */
-public class GameOfLifeState {
+public class GameOfLifeState implements LifeEngine {
 			
-	/**
-	 * Number of neighbors needed for an already present colony to survive.
-	 */
-	private static final int SURVIVE_COUNT = 2;
-	
-	/**
-	 * Number of neighbors needed for a new colony to be born.
-	 */
-	private static final int BORN_COUNT = 3;
-	
 	/**
 	 * Maximum legal board width.
 	 */
@@ -42,10 +32,26 @@ public class GameOfLifeState {
 	
 	private final int width;
 	private final int height;
+	private final Rule rule;
+	private final Topology topology;
 	
 	
-	private Set<Position> colonies = new TreeSet<>();
-	private int generation = 0;
+	/**
+	 * The living colonies, mapped to 1.
+	 */
+	private LongByteMap colonies;
+	
+	/**
+	 * The colonies before the last update or step.
+	 */
+	private LongByteMap previousColonies;
+
+	/**
+	 * The births and deaths of the last update or step, and the hash of the
+	 * board.
+	 */
+	private final ChangeCounter counter = new ChangeCounter();
+	private long generation = 0;
 	
 
 	/**
@@ -59,15 +65,74 @@ public class GameOfLifeState {
 	 *                 {@code null}.
 	 */
 	public GameOfLifeState(int width, int height, Collection<Position> colonies) {
+		this(width, height, colonies, Rule.CONWAY);
+	}
+	
+	/**
+	 * Initializes the game state.
+	 * 
+	 * @param width    The board width. Must be positive and less than
+	 *                 {@value #MAX_WIDTH}.
+	 * @param height   The board height. Must be positive and less than
+	 *                 {@value #MAX_HEIGHT}.
+	 * @param colonies The initial colony positions. May be empty, but must not be
+	 *                 {@code null}.
+	 * @param rule     The rule deciding which colonies survive and are born. Must
+	 *                 not be {@code null}.
+	 */
+	public GameOfLifeState(int width, int height, Collection<Position> colonies, Rule rule) {
+		this(width, height, colonies, rule, Topology.BOUNDED);
+	}
+
+	/**
+	 * Initializes the game state. All topologies are supported.
+	 * 
+	 * @param width    The board width. Must be positive and less than
+	 *                 {@value #MAX_WIDTH}.
+	 * @param height   The board height. Must be positive and less than
+	 *                 {@value #MAX_HEIGHT}.
+	 * @param colonies The initial colony positions. May be empty, but must not be
+	 *                 {@code null}. Must be inside the board if the topology
+	 *                 wraps, and the x-coordinates must be strictly
+	 *                 between {@code Integer.MIN_VALUE} and
+	 *                 {@code Integer.MAX_VALUE}.
+	 * @param rule     The rule deciding which colonies survive and are born. Must
+	 *                 not be {@code null}.
+	 * @param topology How the board edges connect. Must not be {@code null}.
+	 */
+	public GameOfLifeState(int width, int height, Collection<Position> colonies, Rule rule, Topology topology) {
 		rangeCheck(width, 1, MAX_WIDTH, "width");
 		rangeCheck(height, 1, MAX_HEIGHT, "height");
 		Objects.requireNonNull(colonies);
 		this.width = width;
 		this.height = height;
-		// Make a deep copy.
+		this.rule = Objects.requireNonNull(rule);
+		this.topology = Objects.requireNonNull(topology);
+		this.colonies = new LongByteMap(colonies.size());
 		for (Position pos : colonies) {
-			this.colonies.add(new Position(pos.getX(), pos.getY()));
+			if (topology.wraps()) {
+				// Wrapping only maps positions next to the board onto it.
+				rangeCheck(pos.getX(), 0, width - 1, "colony x-coordinate");
+				rangeCheck(pos.getY(), 0, height - 1, "colony y-coordinate");
+			} else {
+				// The neighbors of every colony must have an x-coordinate too.
+				rangeCheck(pos.getX(), Integer.MIN_VALUE + 1, Integer.MAX_VALUE - 1, "colony x-coordinate");
+			}
+			setAlive(this.colonies, pos.toLong());
 		}
+		this.previousColonies = this.colonies;
+	}
+
+	/**
+	 * Restores the game state from a snapshot, at the generation of the
+	 * snapshot.
+	 *
+	 * @param snapshot The snapshot. Must not be {@code null}.
+	 */
+	public GameOfLifeState(BoardSnapshot snapshot) {
+		this(snapshot.getWidth(), snapshot.getHeight(), snapshot.getColonies(), snapshot.getRule(),
+				snapshot.getTopology());
+		this.generation = snapshot.getGeneration();
 	}
 		
 	/**
@@ -79,64 +144,195 @@ public class GameOfLifeState {
 	 *         It is not meaningful to perform any further updates if false since
 	 *         the game state will never change after that.
 	 */
+	@Override
 	public boolean update() {
-		Set<Position> newColonies = getNewColonies();
-		boolean isSame = colonies.containsAll(newColonies) && colonies.size() == newColonies.size();
-		colonies = newColonies;
-		generation++;
-		return !isSame;
+		counter.reset();
+		return nextGeneration();
 	}
 	
-	/**
-	 * @return The current game of life colonies. Never {@code null}.
-	 */
+	@Override
+	public void step(long generations) {
+		if (generations < 0) {
+			throw new IllegalArgumentException("Negative generation count " + generations);
+		}
+		LongByteMap before = colonies;
+		counter.reset();
+		for (long i = 0; i < generations; i++) {
+			nextGeneration();
+		}
+		previousColonies = before;
+	}
+	
+	@Override
 	public ImmutableSet<Position> getColonies() {
-		return ImmutableSet.copyOf(colonies);
+		ImmutableSet.Builder<Position> builder = ImmutableSet.builder();
+		forEachLive((x, y) -> builder.add(new Position(x, y)));
+		return builder.build();
+	}
+
+	@Override
+	public void forEachLive(CellConsumer consumer) {
+		for (int i = 0; i < colonies.capacity(); i++) {
+			long key = colonies.keyAt(i);
+			if (key != LongByteMap.EMPTY) {
+				consumer.accept(Position.x(key), Position.y(key));
+			}
+		}
 	}
 	
-	/**
-	 * @return The current game generation.
-	 */
-	public int getGeneration() {
+	@Override
+	public ChangeSet getChanges() {
+		ChangeSet.Builder builder = new ChangeSet.Builder();
+		for (int i = 0; i < colonies.capacity(); i++) {
+			long key = colonies.keyAt(i);
+			if (key != LongByteMap.EMPTY && previousColonies.get(key) == 0) {
+				builder.add(Position.x(key), Position.y(key), true);
+			}
+		}
+		for (int i = 0; i < previousColonies.capacity(); i++) {
+			long key = previousColonies.keyAt(i);
+			if (key != LongByteMap.EMPTY && colonies.get(key) == 0) {
+				builder.add(Position.x(key), Position.y(key), false);
+			}
+		}
+		return builder.build();
+	}
+	
+	@Override
+	public long getBirths() {
+		return counter.getBirths();
+	}
+	
+	@Override
+	public long getDeaths() {
+		return counter.getDeaths();
+	}
+	
+	@Override
+	public long getPopulation() {
+		return colonies.size();
+	}
+	
+	@Override
+	public boolean trackHash() {
+		counter.startHashing(this);
+		return true;
+	}
+	
+	@Override
+	public long getHash() {
+		return counter.getHash();
+	}
+	
+	@Override
+	public boolean isColony(int x, int y) {
+		return colonies.get(Position.toLong(x, y)) != 0;
+	}
+	
+	@Override
+	public long getGeneration() {
 		return generation;
 	}
 	
+	@Override
+	public int getWidth() {
+		return width;
+	}
 	
-	private Set<Position> getNewColonies() {
-		Map<Position, Integer> neighbourCount = getNeighbourCount();
-		return neighbourCount.entrySet().stream()
-				.filter(e -> insideBoard(e.getKey()) && isAlive(e.getKey(), e.getValue()))
-				.map(e -> e.getKey())
-				.collect(Collectors.toSet());
+	@Override
+	public int getHeight() {
+		return height;
 	}
 	
-	private Map<Position, Integer> getNeighbourCount() {
-		Map<Position, Integer> possibleColonies = new TreeMap<>();
-		for (Position pos : colonies) {
-			// Add one neighbor to all tiles in a 3x3 area centered around pos.
-			for (int i = -1; i <= 1; i++) {
-				for (int j = -1; j <= 1; j++) {
-					possibleColonies.compute(
-							new Position(pos.getX() + i, pos.getY() + j),
-							(p, val) -> val == null ? 1 : val + 1);
+	@Override
+	public Rule getRule() {
+		return rule;
+	}
+	
+	@Override
+	public Topology getTopology() {
+		return topology;
+	}
+	
+	
+	/**
+	 * Advances to the next generation, adding its births and deaths to those
+	 * already counted.
+	 * 
+	 * @return Whether at least one colony was removed or added.
+	 */
+	private boolean nextGeneration() {
+		long changes = counter.getBirths() + counter.getDeaths();
+		LongByteMap newColonies = getNewColonies();
+		previousColonies = colonies;
+		colonies = newColonies;
+		generation++;
+		return counter.getBirths() + counter.getDeaths() != changes;
+	}
+	
+	/**
+	 * Computes the colonies of the next generation and counts their births and
+	 * deaths. Every living colony is in the neighbor count, as its own
+	 * neighbor count is subtracted rather than left out.
+	 */
+	private LongByteMap getNewColonies() {
+		LongByteMap neighbourCount = getNeighbourCount();
+		LongByteMap newColonies = new LongByteMap(colonies.size());
+		for (int i = 0; i < neighbourCount.capacity(); i++) {
+			long key = neighbourCount.keyAt(i);
+			if (key == LongByteMap.EMPTY) {
+				continue;
+			}
+			boolean alive = colonies.get(key) != 0;
+			boolean nextAlive = (topology != Topology.BOUNDED || insideBoard(key))
+					&& rule.isAlive(alive, neighbourCount.valueAt(i));
+			if (nextAlive) {
+				setAlive(newColonies, key);
+				if (!alive) {
+					counter.born(Position.x(key), Position.y(key));
+				}
+			} else if (alive) {
+				counter.died(Position.x(key), Position.y(key));
+			}
+		}
+		return newColonies;
+	}
+	
+	private LongByteMap getNeighbourCount() {
+		LongByteMap possibleColonies = new LongByteMap(colonies.size() * 9);
+		for (int i = 0; i < colonies.capacity(); i++) {
+			long key = colonies.keyAt(i);
+			if (key == LongByteMap.EMPTY) {
+				continue;
+			}
+			// Add one neighbor to all tiles in a 3x3 area centered around the
+			// colony, wrapped across the edges of the board.
+			for (int dx = -1; dx <= 1; dx++) {
+				for (int dy = -1; dy <= 1; dy++) {
+					int x = Position.x(key) + dx;
+					int y = Position.y(key) + dy;
+					possibleColonies.add(
+							Position.toLong(topology.wrapX(x, y, width, height), topology.wrapY(y, height)), 1);
 				}
 			}
 			// Subtract one neighbor from self. Can't neighbor yourself.
-			possibleColonies.put(pos, possibleColonies.get(pos) - 1);
+			possibleColonies.add(key, -1);
 		}
 		return possibleColonies;
 	}
 	
-	private boolean isAlive(Position pos, int neighbours) {
-		return SURVIVE_COUNT == neighbours && colonies.contains(pos) || BORN_COUNT == neighbours;
+	private boolean insideBoard(long key) {
+		return inRange(Position.x(key), 0, width) && inRange(Position.y(key), 0, height);		
 	}
 	
-	private boolean insideBoard(Position pos) {
-		return inRange(pos.getX(), 0, width) && inRange(pos.getY(), 0, height);		
+	private static void setAlive(LongByteMap colonies, long key) {
+		if (colonies.get(key) == 0) {
+			colonies.add(key, 1);
+		}
 	}
 	
 	
-	private static void rangeCheck(int val, int min, int max, String name) {
+	static void rangeCheck(int val, int min, int max, String name) {
 		if (!inRange(val, min, max + 1)) {
 			String message = String.format("The %s with value %d is outside the legal range [%d..%d]", name, val, min, max);
 			throw new IllegalArgumentException(message);
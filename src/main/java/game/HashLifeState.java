@@ -0,0 +1,952 @@
+package game;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Hashlife game of life game state. The board is stored as a quadtree where
+ * identical sub trees are shared, and the future of every tree node is
+ * memoized. Highly regular patterns can therefore be advanced a very large
+ * number of generations in a single {@link #step(long)}.
+ * <p>
+ * A bounded board behaves just like {@link GameOfLifeState}. A step is only
+ * taken in one large leap when the living colonies are far enough from the
+ * board edges that they can't reach them during the leap. Otherwise the state
+ * is advanced a generation at a time and clipped against the board. A wrapping
+ * board has no edges to keep away from and always leaps up to half its size. A
+ * board that returns to an earlier state during a step is periodic, and whole
+ * periods are skipped without being computed.
+ */
+public class HashLifeState implements LifeEngine {
+
+	/**
+	 * Maximum legal board width and height.
+	 */
+	public static final int MAX_SIZE = 1 << 30;
+
+	private static final int INITIAL_TABLE_SIZE = 1 << 12;
+
+	/**
+	 * Initial number of nodes at which unreachable nodes are discarded.
+	 */
+	private static final int INITIAL_COLLECT_LIMIT = 1 << 22;
+
+
+	/**
+	 * A canonical quadtree node. A node at level {@code k} covers a square with
+	 * side {@code 2^k}. Level 0 nodes are single cells.
+	 */
+	static final class Node {
+
+		final Node nw;
+		final Node ne;
+		final Node sw;
+		final Node se;
+		final int level;
+		final long population;
+		final int hash;
+
+		/**
+		 * Bounding box of the living cells relative to the node origin. Not
+		 * meaningful for empty nodes.
+		 */
+		final int minX;
+		final int minY;
+		final int maxX;
+		final int maxY;
+
+		/**
+		 * The memoized center of this node {@code 2^resultExponent} generations
+		 * ahead.
+		 */
+		Node result;
+		int resultExponent;
+
+		/**
+		 * The memoized horizontal mirror of this node.
+		 */
+		Node mirror;
+
+		/**
+		 * Next node in the same hash table bucket.
+		 */
+		Node next;
+
+
+		private Node(boolean alive) {
+			this.nw = null;
+			this.ne = null;
+			this.sw = null;
+			this.se = null;
+			this.level = 0;
+			this.population = alive ? 1 : 0;
+			this.hash = alive ? 1 : 0;
+			this.minX = 0;
+			this.minY = 0;
+			this.maxX = 0;
+			this.maxY = 0;
+		}
+
+		private Node(Node nw, Node ne, Node sw, Node se, int hash) {
+			this.nw = nw;
+			this.ne = ne;
+			this.sw = sw;
+			this.se = se;
+			this.level = nw.level + 1;
+			this.population = nw.population + ne.population + sw.population + se.population;
+			this.hash = hash;
+			int half = 1 << nw.level;
+			int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+			int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+			Node[] children = { nw, ne, sw, se };
+			for (int i = 0; i < children.length; i++) {
+				Node child = children[i];
+				if (child.population == 0) {
+					continue;
+				}
+				int dx = (i & 1) == 0 ? 0 : half;
+				int dy = (i & 2) == 0 ? 0 : half;
+				minX = Math.min(minX, dx + child.minX);
+				minY = Math.min(minY, dy + child.minY);
+				maxX = Math.max(maxX, dx + child.maxX);
+				maxY = Math.max(maxY, dy + child.maxY);
+			}
+			this.minX = minX;
+			this.minY = minY;
+			this.maxX = maxX;
+			this.maxY = maxY;
+		}
+	}
+
+
+	static final Node DEAD = new Node(false);
+	static final Node ALIVE = new Node(true);
+
+
+	private final int width;
+	private final int height;
+	private final Rule rule;
+	private final Topology topology;
+
+	/**
+	 * The level of the board node.
+	 */
+	private final int level;
+
+	/**
+	 * Hash table of all canonical nodes.
+	 */
+	private Node[] table = new Node[INITIAL_TABLE_SIZE];
+	private int tableSize = 0;
+	private int collectLimit = INITIAL_COLLECT_LIMIT;
+
+	/**
+	 * Canonical empty node for every level, created on demand.
+	 */
+	private final Node[] emptyNodes = new Node[32];
+
+	/**
+	 * The board with its north west corner at (0, 0).
+	 */
+	private Node board;
+
+	/**
+	 * The board before the last update or step.
+	 */
+	private Node previousBoard;
+
+	/**
+	 * Whether the hash of the board is kept, see {@link #trackHash()}.
+	 */
+	private boolean hashing = false;
+	private long hash = 0;
+	private long generation = 0;
+	private long cacheHits = 0;
+	private long cacheMisses = 0;
+
+
+	/**
+	 * Initializes the game of life game state.
+	 *
+	 * @param width    The board width. Must be positive and less than
+	 *                 {@value #MAX_SIZE}.
+	 * @param height   The board height. Must be positive and less than
+	 *                 {@value #MAX_SIZE}.
+	 * @param colonies The initial colony positions. May be empty, but must not be
+	 *                 {@code null}. All positions must be inside the board.
+	 */
+	public HashLifeState(int width, int height, Collection<Position> colonies) {
+		this(width, height, colonies, Rule.CONWAY);
+	}
+
+	/**
+	 * Initializes the game state.
+	 *
+	 * @param width    The board width. Must be positive and less than
+	 *                 {@value #MAX_SIZE}.
+	 * @param height   The board height. Must be positive and less than
+	 *                 {@value #MAX_SIZE}.
+	 * @param colonies The initial colony positions. May be empty, but must not be
+	 *                 {@code null}. All positions must be inside the board.
+	 * @param rule     The rule deciding which colonies survive and are born. Must
+	 *                 not be {@code null}.
+	 */
+	public HashLifeState(int width, int height, Collection<Position> colonies, Rule rule) {
+		this(width, height, colonies, rule, Topology.BOUNDED);
+	}
+
+	/**
+	 * Initializes the game state. The board may be bounded, a torus or a Klein
+	 * bottle. A wrapping board must be a square with a power of two side of at
+	 * least 4, so that it is exactly the board node. The board then tiles the
+	 * plane, and every leap computes the center of a node of twice the size
+	 * built from copies of the board, see {@link #wrappedLeap(int)}.
+	 *
+	 * @param width    The board width. Must be positive and less than
+	 *                 {@value #MAX_SIZE}.
+	 * @param height   The board height. Must be positive and less than
+	 *                 {@value #MAX_SIZE}.
+	 * @param colonies The initial colony positions. May be empty, but must not be
+	 *                 {@code null}. All positions must be inside the board.
+	 * @param rule     The rule deciding which colonies survive and are born. Must
+	 *                 not be {@code null}.
+	 * @param topology How the board edges connect. Must not be {@code null} or
+	 *                 {@link Topology#INFINITE}.
+	 * @throws IllegalArgumentException If the topology is infinite, or wraps and
+	 *                                  the board isn't a square with a power of
+	 *                                  two side of at least 4.
+	 */
+	public HashLifeState(int width, int height, Collection<Position> colonies, Rule rule, Topology topology) {
+		GameOfLifeState.rangeCheck(width, 1, MAX_SIZE, "width");
+		GameOfLifeState.rangeCheck(height, 1, MAX_SIZE, "height");
+		Objects.requireNonNull(colonies);
+		if (Objects.requireNonNull(topology) == Topology.INFINITE) {
+			throw new IllegalArgumentException("A hashlife board can't be infinite");
+		}
+		this.width = width;
+		this.height = height;
+		this.rule = Objects.requireNonNull(rule);
+		this.topology = topology;
+		int size = Math.max(width, height);
+		this.level = Math.max(2, Integer.SIZE - Integer.numberOfLeadingZeros(size - 1));
+		if (topology.wraps() && (width != height || width != 1 << level)) {
+			throw new IllegalArgumentException(String.format(
+					"A %s hashlife board must be a square with a power of two side of at least 4, not %dx%d",
+					topology, width, height));
+		}
+		// Sorting the colonies in Z-order puts every quadrant in a contiguous range.
+		long[] keys = new long[colonies.size()];
+		int i = 0;
+		for (Position pos : colonies) {
+			GameOfLifeState.rangeCheck(pos.getX(), 0, width - 1, "colony x-coordinate");
+			GameOfLifeState.rangeCheck(pos.getY(), 0, height - 1, "colony y-coordinate");
+			keys[i++] = zOrder(pos.getX(), pos.getY());
+		}
+		Arrays.sort(keys);
+		this.board = build(keys, 0, keys.length, level, 0);
+		this.previousBoard = board;
+	}
+
+	/**
+	 * Restores the game state from a snapshot, at the generation of the
+	 * snapshot.
+	 *
+	 * @param snapshot The snapshot. Must not be {@code null}.
+	 */
+	public HashLifeState(BoardSnapshot snapshot) {
+		this(snapshot.getWidth(), snapshot.getHeight(), snapshot.getColonies(), snapshot.getRule(),
+				snapshot.getTopology());
+		this.generation = snapshot.getGeneration();
+	}
+
+	@Override
+	public boolean update() {
+		Node before = board;
+		step(1);
+		return board != before;
+	}
+
+	@Override
+	public void step(long generations) {
+		if (generations < 0) {
+			throw new IllegalArgumentException("Negative generation count " + generations);
+		}
+		if (tableSize > collectLimit) {
+			collect();
+		}
+		previousBoard = board;
+		long remaining = generations;
+		// Brent's cycle detection. Canonical boards are equal only if identical,
+		// so a periodic board is recognized by comparing it against a saved one.
+		Node saved = board;
+		long savedGeneration = generation;
+		int leaps = 0;
+		int leapLimit = 1;
+		while (remaining > 0 && board.population > 0) {
+			int exponent;
+			if (topology.wraps()) {
+				exponent = Math.min(log2(remaining), level - 1);
+				board = wrappedLeap(exponent);
+			} else {
+				// Colonies spread at most one cell per generation, so a leap
+				// shorter than the distance to the nearest edge can never be
+				// affected by it.
+				int margin = Math.min(
+						Math.min(board.minX, width - 1 - board.maxX),
+						Math.min(board.minY, height - 1 - board.maxY));
+				exponent = Math.min(log2(remaining), margin > 0 ? log2(margin) : 0);
+				board = result(expand(board), exponent);
+				if (margin == 0) {
+					board = clip(board, 0, 0);
+				}
+			}
+			remaining -= 1L << exponent;
+			generation += 1L << exponent;
+			if (board == saved) {
+				long period = generation - savedGeneration;
+				long skipped = remaining / period * period;
+				remaining -= skipped;
+				generation += skipped;
+			} else if (++leaps == leapLimit) {
+				saved = board;
+				savedGeneration = generation;
+				leaps = 0;
+				leapLimit <<= 1;
+			}
+		}
+		// An empty board stays empty.
+		generation += remaining;
+		if (hashing) {
+			hash ^= changedKeys(previousBoard, board, 0, 0);
+		}
+	}
+
+	@Override
+	public ImmutableSet<Position> getColonies() {
+		ImmutableSet.Builder<Position> builder = ImmutableSet.builder();
+		forEachLive((x, y) -> builder.add(new Position(x, y)));
+		return builder.build();
+	}
+
+	@Override
+	public void forEachLive(CellConsumer consumer) {
+		forEachLive(board, 0, 0, consumer);
+	}
+
+	@Override
+	public ChangeSet getChanges() {
+		ChangeSet.Builder builder = new ChangeSet.Builder();
+		addChanges(previousBoard, board, 0, 0, builder);
+		return builder.build();
+	}
+
+	/**
+	 * Counts the colonies that are alive after the last update or step but
+	 * weren't before it, since a step leaps over the generations in between.
+	 * Only the sub trees that differ are visited.
+	 */
+	@Override
+	public long getBirths() {
+		return born(previousBoard, board);
+	}
+
+	/**
+	 * Counts the colonies that were alive before the last update or step but
+	 * aren't after it, see {@link #getBirths()}.
+	 */
+	@Override
+	public long getDeaths() {
+		return born(board, previousBoard);
+	}
+
+	@Override
+	public long getPopulation() {
+		return board.population;
+	}
+
+	/**
+	 * The hash is updated after every update or step from the cells that
+	 * differ between the quadtrees before and after it, so a step leaping over
+	 * many generations costs no more than its changes.
+	 */
+	@Override
+	public boolean trackHash() {
+		if (!hashing) {
+			hashing = true;
+			hash = hashBoard();
+		}
+		return true;
+	}
+
+	@Override
+	public long getHash() {
+		if (!hashing) {
+			throw new IllegalStateException("The hash of the board isn't kept");
+		}
+		return hash;
+	}
+
+	@Override
+	public boolean isColony(int x, int y) {
+		if (x < 0 || x >= width || y < 0 || y >= height) {
+			return false;
+		}
+		Node node = board;
+		while (node.level > 0 && node.population > 0) {
+			int half = 1 << (node.level - 1);
+			boolean east = x >= half;
+			boolean south = y >= half;
+			node = south ? (east ? node.se : node.sw) : (east ? node.ne : node.nw);
+			x -= east ? half : 0;
+			y -= south ? half : 0;
+		}
+		return node.population > 0;
+	}
+
+	@Override
+	public long getGeneration() {
+		return generation;
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public Rule getRule() {
+		return rule;
+	}
+
+	@Override
+	public Topology getTopology() {
+		return topology;
+	}
+
+	/**
+	 * Replaces the board with a pattern. A pattern of the board size whose
+	 * colonies are all on the board, such as a saved board, keeps its position.
+	 * Other patterns are shrunk to the smallest quadrant holding all their
+	 * colonies and centered as far as they can be moved in steps of their own
+	 * size.
+	 *
+	 * @param pattern    A canonical node of this state. Must not be
+	 *                   {@code null}.
+	 * @param generation The generation of the pattern.
+	 * @throws IllegalArgumentException If the colonies don't fit the board.
+	 */
+	void load(Node pattern, long generation) {
+		if (pattern.level == level && (pattern.population == 0 || pattern.maxX < width && pattern.maxY < height)) {
+			board = pattern;
+			previousBoard = board;
+			this.generation = generation;
+			if (hashing) {
+				hash = hashBoard();
+			}
+			return;
+		}
+		Node root = pattern;
+		while (root.level > 2 && root.population > 0 && singleQuadrant(root) != null) {
+			root = singleQuadrant(root);
+		}
+		int size = 1 << root.level;
+		int x = 0;
+		int y = 0;
+		if (root.population > 0) {
+			x = Math.max(0, ((width - (root.maxX - root.minX + 1)) / 2 - root.minX) / size * size);
+			y = Math.max(0, ((height - (root.maxY - root.minY + 1)) / 2 - root.minY) / size * size);
+			if (root.level > level || x + root.maxX >= width || y + root.maxY >= height) {
+				throw new IllegalArgumentException(String.format("A %dx%d pattern doesn't fit a %dx%d board",
+						root.maxX - root.minX + 1, root.maxY - root.minY + 1, width, height));
+			}
+		}
+		board = root.population > 0 ? place(root, level, x, y) : empty(level);
+		previousBoard = board;
+		this.generation = generation;
+		if (hashing) {
+			hash = hashBoard();
+		}
+	}
+
+	/**
+	 * @return The board node. Cells outside the board width and height are
+	 *         always dead.
+	 */
+	Node getBoard() {
+		return board;
+	}
+
+	/**
+	 * @return The number of canonical quadtree nodes currently stored.
+	 */
+	public int getCacheSize() {
+		return tableSize;
+	}
+
+	/**
+	 * @return The number of times a memoized node result has been reused.
+	 */
+	public long getCacheHits() {
+		return cacheHits;
+	}
+
+	/**
+	 * @return The number of times a node result had to be computed.
+	 */
+	public long getCacheMisses() {
+		return cacheMisses;
+	}
+
+
+	/**
+	 * Computes the center of a node of level {@code k >= 2}, advanced
+	 * {@code 2^min(exponent, k - 2)} generations.
+	 */
+	private Node result(Node node, int exponent) {
+		int effective = Math.min(exponent, node.level - 2);
+		if (node.result != null && node.resultExponent == effective) {
+			cacheHits++;
+			return node.result;
+		}
+		cacheMisses++;
+		Node result;
+		if (node.population == 0) {
+			result = empty(node.level - 1);
+		} else if (node.level == 2) {
+			result = step4x4(node);
+		} else {
+			// The nine overlapping sub nodes of half the size.
+			Node n00 = node.nw;
+			Node n01 = horizontalCenter(node.nw, node.ne);
+			Node n02 = node.ne;
+			Node n10 = verticalCenter(node.nw, node.sw);
+			Node n11 = center(node);
+			Node n12 = verticalCenter(node.ne, node.se);
+			Node n20 = node.sw;
+			Node n21 = horizontalCenter(node.sw, node.se);
+			Node n22 = node.se;
+			if (effective == node.level - 2) {
+				// Full speed, advance half the generations in each of two passes.
+				n00 = result(n00, effective);
+				n01 = result(n01, effective);
+				n02 = result(n02, effective);
+				n10 = result(n10, effective);
+				n11 = result(n11, effective);
+				n12 = result(n12, effective);
+				n20 = result(n20, effective);
+				n21 = result(n21, effective);
+				n22 = result(n22, effective);
+			} else {
+				// Reduced speed, advance all generations in the second pass.
+				n00 = center(n00);
+				n01 = center(n01);
+				n02 = center(n02);
+				n10 = center(n10);
+				n11 = center(n11);
+				n12 = center(n12);
+				n20 = center(n20);
+				n21 = center(n21);
+				n22 = center(n22);
+			}
+			result = node(
+					result(node(n00, n01, n10, n11), effective),
+					result(node(n01, n02, n11, n12), effective),
+					result(node(n10, n11, n20, n21), effective),
+					result(node(n11, n12, n21, n22), effective));
+		}
+		node.result = result;
+		node.resultExponent = effective;
+		return result;
+	}
+
+	/**
+	 * Advances a wrapping board {@code 2^exponent} generations, at most half the
+	 * board size. The board tiles the plane, so a node of twice the size made of
+	 * copies of the board holds everything that can reach the center of the
+	 * node during the leap. The center is the board shifted by half its size in
+	 * both directions, which is undone by swapping its quadrants.
+	 * <p>
+	 * On a Klein bottle the copy below the board is mirrored, and the quadrants
+	 * shifted across the top edge are mirrored back.
+	 */
+	private Node wrappedLeap(int exponent) {
+		if (topology == Topology.TORUS) {
+			Node result = result(node(board, board, board, board), exponent);
+			return node(result.se, result.sw, result.ne, result.nw);
+		}
+		Node mirrored = mirror(board);
+		Node result = result(node(board, board, mirrored, mirrored), exponent);
+		return node(mirror(result.sw), mirror(result.se), result.ne, result.nw);
+	}
+
+	/**
+	 * Mirrors a node horizontally. The mirror is memoized in the node.
+	 */
+	private Node mirror(Node node) {
+		if (node.level == 0 || node.population == 0) {
+			return node;
+		}
+		if (node.mirror == null) {
+			node.mirror = node(mirror(node.ne), mirror(node.nw), mirror(node.se), mirror(node.sw));
+			node.mirror.mirror = node;
+		}
+		return node.mirror;
+	}
+
+	/**
+	 * Computes the 2x2 center of a 4x4 node one generation ahead.
+	 */
+	private Node step4x4(Node node) {
+		// Bit y * 4 + x holds the cell at (x, y).
+		int cells = 0;
+		Node[] quadrants = { node.nw, node.ne, node.sw, node.se };
+		for (int i = 0; i < quadrants.length; i++) {
+			Node q = quadrants[i];
+			int shift = ((i & 2) << 2) | ((i & 1) << 1);
+			cells |= (int) q.nw.population << shift;
+			cells |= (int) q.ne.population << (shift + 1);
+			cells |= (int) q.sw.population << (shift + 4);
+			cells |= (int) q.se.population << (shift + 5);
+		}
+		return node(
+				nextCell(cells, 1, 1),
+				nextCell(cells, 2, 1),
+				nextCell(cells, 1, 2),
+				nextCell(cells, 2, 2));
+	}
+
+	private Node nextCell(int cells, int x, int y) {
+		// Bit dy * 3 + dx of the neighborhood holds the cell at (x + dx - 1, y + dy - 1).
+		int neighborhood = 0;
+		for (int dy = 0; dy < 3; dy++) {
+			neighborhood |= (cells >>> ((y + dy - 1) * 4 + x - 1) & 0b111) << dy * 3;
+		}
+		return rule.isAlive(neighborhood) ? ALIVE : DEAD;
+	}
+
+	/**
+	 * Creates a node of one level higher with the given node in its center.
+	 */
+	private Node expand(Node node) {
+		Node e = empty(node.level - 1);
+		return node(
+				node(e, e, e, node.nw),
+				node(e, e, node.ne, e),
+				node(e, node.sw, e, e),
+				node(node.se, e, e, e));
+	}
+
+	/**
+	 * Removes all colonies outside the board from a node with its north west
+	 * corner at (x, y).
+	 */
+	private Node clip(Node node, int x, int y) {
+		if (node.population == 0 || x + node.maxX < width && y + node.maxY < height) {
+			return node;
+		}
+		if (x + node.minX >= width || y + node.minY >= height) {
+			return empty(node.level);
+		}
+		int half = 1 << (node.level - 1);
+		return node(
+				clip(node.nw, x, y),
+				clip(node.ne, x + half, y),
+				clip(node.sw, x, y + half),
+				clip(node.se, x + half, y + half));
+	}
+
+	/**
+	 * Builds a node of the given level, with its north west corner at (0, 0),
+	 * that is empty except for a pattern at (x, y). The pattern position must be
+	 * a multiple of the pattern size.
+	 */
+	private Node place(Node pattern, int level, int x, int y) {
+		if (level == pattern.level) {
+			return pattern;
+		}
+		int half = 1 << (level - 1);
+		boolean east = x >= half;
+		boolean south = y >= half;
+		Node child = place(pattern, level - 1, east ? x - half : x, south ? y - half : y);
+		Node e = empty(level - 1);
+		return node(
+				!east && !south ? child : e,
+				east && !south ? child : e,
+				!east && south ? child : e,
+				east && south ? child : e);
+	}
+
+	/**
+	 * Gets the sub node of half the size in the center of a node.
+	 */
+	private Node center(Node node) {
+		return node(node.nw.se, node.ne.sw, node.sw.ne, node.se.nw);
+	}
+
+	/**
+	 * Gets the sub node of half the size centered on the border between two
+	 * horizontally adjacent nodes.
+	 */
+	private Node horizontalCenter(Node west, Node east) {
+		return node(west.ne, east.nw, west.se, east.sw);
+	}
+
+	/**
+	 * Gets the sub node of half the size centered on the border between two
+	 * vertically adjacent nodes.
+	 */
+	private Node verticalCenter(Node north, Node south) {
+		return node(north.sw, north.se, south.nw, south.ne);
+	}
+
+	/**
+	 * Calls the consumer with the living cells of a node with its north west
+	 * corner at (x, y).
+	 */
+	private static void forEachLive(Node node, int x, int y, CellConsumer consumer) {
+		if (node.population == 0) {
+			return;
+		}
+		if (node.level == 0) {
+			consumer.accept(x, y);
+			return;
+		}
+		int half = 1 << (node.level - 1);
+		forEachLive(node.nw, x, y, consumer);
+		forEachLive(node.ne, x + half, y, consumer);
+		forEachLive(node.sw, x, y + half, consumer);
+		forEachLive(node.se, x + half, y + half, consumer);
+	}
+
+	/**
+	 * Adds every cell that differs between two nodes of the same level. Shared
+	 * sub trees are identical and are skipped.
+	 */
+	private void addChanges(Node before, Node after, int x, int y, ChangeSet.Builder builder) {
+		if (before == after) {
+			return;
+		}
+		if (before.level == 0) {
+			builder.add(x, y, after.population > 0);
+			return;
+		}
+		int half = 1 << (before.level - 1);
+		addChanges(before.nw, after.nw, x, y, builder);
+		addChanges(before.ne, after.ne, x + half, y, builder);
+		addChanges(before.sw, after.sw, x, y + half, builder);
+		addChanges(before.se, after.se, x + half, y + half, builder);
+	}
+
+	/**
+	 * @return The exclusive or of the Zobrist keys of every cell that differs
+	 *         between two nodes of the same level, see {@link CycleDetector}.
+	 *         Shared sub trees are identical and are skipped.
+	 */
+	private static long changedKeys(Node before, Node after, int x, int y) {
+		if (before == after) {
+			return 0;
+		}
+		if (before.level == 0) {
+			return CycleDetector.key(x, y);
+		}
+		int half = 1 << (before.level - 1);
+		return changedKeys(before.nw, after.nw, x, y) ^ changedKeys(before.ne, after.ne, x + half, y)
+				^ changedKeys(before.sw, after.sw, x, y + half) ^ changedKeys(before.se, after.se, x + half, y + half);
+	}
+
+	/**
+	 * @return The Zobrist hash of the current board, see {@link CycleDetector},
+	 *         which holds the keys of the cells that differ from an empty board.
+	 */
+	private long hashBoard() {
+		return changedKeys(empty(board.level), board, 0, 0);
+	}
+
+	/**
+	 * @return The number of cells alive in {@code after} but not in
+	 *         {@code before}, two nodes of the same level. Shared sub trees are
+	 *         identical and are skipped.
+	 */
+	private static long born(Node before, Node after) {
+		if (before == after || after.population == 0) {
+			return 0;
+		}
+		if (before.population == 0) {
+			return after.population;
+		}
+		if (before.level == 0) {
+			// Both cells are alive.
+			return 0;
+		}
+		return born(before.nw, after.nw) + born(before.ne, after.ne) + born(before.sw, after.sw)
+				+ born(before.se, after.se);
+	}
+
+	/**
+	 * Builds a node of the given level from a Z-ordered range of colony keys.
+	 */
+	private Node build(long[] keys, int from, int to, int level, long base) {
+		if (from == to) {
+			return empty(level);
+		}
+		if (level == 0) {
+			return ALIVE;
+		}
+		long quarter = 1L << 2 * (level - 1);
+		int ne = lowerBound(keys, from, to, base + quarter);
+		int sw = lowerBound(keys, ne, to, base + 2 * quarter);
+		int se = lowerBound(keys, sw, to, base + 3 * quarter);
+		return node(
+				build(keys, from, ne, level - 1, base),
+				build(keys, ne, sw, level - 1, base + quarter),
+				build(keys, sw, se, level - 1, base + 2 * quarter),
+				build(keys, se, to, level - 1, base + 3 * quarter));
+	}
+
+	/**
+	 * Gets the canonical empty node of a level.
+	 */
+	Node empty(int level) {
+		Node node = emptyNodes[level];
+		if (node == null) {
+			node = level == 0 ? DEAD : node(empty(level - 1), empty(level - 1), empty(level - 1), empty(level - 1));
+			emptyNodes[level] = node;
+		}
+		return node;
+	}
+
+	/**
+	 * Gets the canonical node with the given children. The children must be
+	 * canonical nodes of this state, or {@link #DEAD} and {@link #ALIVE}, of the
+	 * same level.
+	 */
+	Node node(Node nw, Node ne, Node sw, Node se) {
+		int hash = hash(nw, ne, sw, se);
+		int bucket = hash & (table.length - 1);
+		for (Node node = table[bucket]; node != null; node = node.next) {
+			if (node.nw == nw && node.ne == ne && node.sw == sw && node.se == se) {
+				return node;
+			}
+		}
+		Node node = new Node(nw, ne, sw, se, hash);
+		insert(node);
+		return node;
+	}
+
+	private void insert(Node node) {
+		int bucket = node.hash & (table.length - 1);
+		node.next = table[bucket];
+		table[bucket] = node;
+		tableSize++;
+		if (tableSize > table.length - (table.length >> 2)) {
+			resize(table.length << 1);
+		}
+	}
+
+	private void resize(int capacity) {
+		Node[] old = table;
+		table = new Node[capacity];
+		for (Node chain : old) {
+			while (chain != null) {
+				Node next = chain.next;
+				int bucket = chain.hash & (capacity - 1);
+				chain.next = table[bucket];
+				table[bucket] = chain;
+				chain = next;
+			}
+		}
+	}
+
+	/**
+	 * Discards all nodes that are no longer reachable from the board, along with
+	 * every memoized result.
+	 */
+	private void collect() {
+		table = new Node[INITIAL_TABLE_SIZE];
+		tableSize = 0;
+		Arrays.fill(emptyNodes, null);
+		reinsert(board);
+		if (tableSize > collectLimit / 2) {
+			collectLimit *= 2;
+		}
+	}
+
+	private void reinsert(Node node) {
+		if (node.level == 0) {
+			return;
+		}
+		for (Node other = table[node.hash & (table.length - 1)]; other != null; other = other.next) {
+			if (other == node) {
+				return;
+			}
+		}
+		reinsert(node.nw);
+		reinsert(node.ne);
+		reinsert(node.sw);
+		reinsert(node.se);
+		node.result = null;
+		node.mirror = null;
+		insert(node);
+	}
+
+
+	private static int hash(Node nw, Node ne, Node sw, Node se) {
+		int hash = nw.hash;
+		hash = hash * 0x9E3779B1 + ne.hash;
+		hash = hash * 0x9E3779B1 + sw.hash;
+		hash = hash * 0x9E3779B1 + se.hash;
+		return hash ^ hash >>> 16;
+	}
+
+	/**
+	 * @return The only non-empty child of a node, or {@code null} if there are
+	 *         several.
+	 */
+	private static Node singleQuadrant(Node node) {
+		Node found = null;
+		for (Node child : new Node[] { node.nw, node.ne, node.sw, node.se }) {
+			if (child.population > 0) {
+				if (found != null) {
+					return null;
+				}
+				found = child;
+			}
+		}
+		return found;
+	}
+
+	private static int log2(long value) {
+		return Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+	}
+
+	/**
+	 * Interleaves the coordinate bits with x in the even and y in the odd bits.
+	 * The Morton key of the origin is removed, so the keys of the board start
+	 * at 0 and the quadrants of a node are consecutive key ranges.
+	 */
+	private static long zOrder(int x, int y) {
+		return Position.mortonKey(x, y) ^ Position.mortonKey(0, 0);
+	}
+
+	private static int lowerBound(long[] keys, int from, int to, long key) {
+		int low = from;
+		int high = to;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (keys[mid] < key) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
@@ -0,0 +1,133 @@
+package game;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of non-negative values, such as latencies in nanoseconds, with a
+ * fixed relative precision. Like an HdrHistogram the buckets are log-linear:
+ * every power of two is split into {@value #SUB_BUCKETS} equally wide buckets,
+ * so a recorded value is off by less than 1 part in {@value #SUB_BUCKETS}
+ * whatever its magnitude, and every {@code long} fits into a few thousand
+ * buckets allocated up front.
+ * <p>
+ * Recording never allocates or locks. Values may be recorded and read from
+ * any thread, but reads that race with recording may see some of the values
+ * of a recording and not others.
+ */
+public final class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+
+	/**
+	 * The number of buckets every power of two is split into.
+	 */
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * Enough buckets for {@link Long#MAX_VALUE}.
+	 */
+	private static final int BUCKETS = index(Long.MAX_VALUE) + 1;
+
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+
+	/**
+	 * Records a value.
+	 *
+	 * @param value The value. Negative values are recorded as 0.
+	 */
+	public void record(long value) {
+		value = Math.max(0, value);
+		counts.incrementAndGet(index(value));
+		count.increment();
+		sum.add(value);
+		if (value > max.get()) {
+			max.accumulateAndGet(value, Math::max);
+		}
+	}
+
+	/**
+	 * @return The number of recorded values.
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * @return The exact largest recorded value, 0 if there is none.
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @return The exact mean of the recorded values, 0 if there are none.
+	 */
+	public double getMean() {
+		long n = count.sum();
+		return n == 0 ? 0 : sum.sum() / (double) n;
+	}
+
+	/**
+	 * Gets the value at a percentile, rounded up to the largest value of its
+	 * bucket but never above the largest recorded value.
+	 *
+	 * @param percentile The percentile, in {@code [0..100]}.
+	 * @return The value that the given percentage of the recorded values are
+	 *         at or below, 0 if there are no values.
+	 * @throws IllegalArgumentException If the percentile is outside
+	 *                                  {@code [0..100]}.
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (!(0 <= percentile && percentile <= 100)) {
+			throw new IllegalArgumentException("The percentile " + percentile + " is outside [0..100]");
+		}
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			total += counts.get(i);
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= rank) {
+				return Math.min(highestValue(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+
+	/**
+	 * Maps a value to its bucket. Values below {@code 2 * SUB_BUCKETS} get a
+	 * bucket each, larger values share their bucket with the values that have
+	 * the same {@value #SUB_BUCKET_BITS} bits after the highest set bit.
+	 */
+	private static int index(long value) {
+		int shift = Math.max(0, Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+		return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+	}
+
+	/**
+	 * @return The largest value mapped to a bucket.
+	 */
+	private static long highestValue(int index) {
+		if (index < 2 * SUB_BUCKETS) {
+			return index;
+		}
+		int shift = (index >>> SUB_BUCKET_BITS) - 1;
+		long subBucket = index - ((long) shift << SUB_BUCKET_BITS);
+		// The last bucket ends at Long.MAX_VALUE, where the next would start
+		// with an overflow.
+		return (subBucket + 1 << shift) - 1;
+	}
+}
@@ -0,0 +1,174 @@
+package game;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * A game of life simulation engine. An engine stores the living colonies of the
+ * current generation on a board and knows how to advance them to the next
+ * generation. Implementations differ only in how the board is represented and
+ * must all produce the same colonies for the same generation.
+ */
+public interface LifeEngine {
+
+	/**
+	 * Performs a game of life generation update. During the generation update
+	 * colonies with too few or too many neighbors are eliminated and new colonies
+	 * are born in tiles with the correct number of neighbors.
+	 *
+	 * @return Whether at least one colony was removed or added during the update.
+	 *         It is not meaningful to perform any further updates if false since
+	 *         the game state will never change after that.
+	 */
+	boolean update();
+
+	/**
+	 * Advances the game state the given number of generations.
+	 *
+	 * @param generations The number of generations to advance. Must not be
+	 *                    negative.
+	 */
+	default void step(long generations) {
+		if (generations < 0) {
+			throw new IllegalArgumentException("Negative generation count " + generations);
+		}
+		for (long i = 0; i < generations; i++) {
+			update();
+		}
+	}
+
+	/**
+	 * @return The current game of life colonies. Never {@code null}.
+	 * @see #forEachLive(CellConsumer)
+	 */
+	ImmutableSet<Position> getColonies();
+
+	/**
+	 * Calls a consumer with every living colony of the current generation.
+	 * Engines walk their own board storage, so unlike {@link #getColonies()}
+	 * nothing is copied or allocated. The engine must not be updated by the
+	 * consumer.
+	 *
+	 * @param consumer Receives the colonies in no particular order. Must not be
+	 *                 {@code null}.
+	 */
+	default void forEachLive(CellConsumer consumer) {
+		for (Position pos : getColonies()) {
+			consumer.accept(pos.getX(), pos.getY());
+		}
+	}
+
+	/**
+	 * Gets the colonies that were born or died during the last call to
+	 * {@link #update()} or {@link #step(long)}. A step over several generations
+	 * only reports the cells that differ between the first and the last
+	 * generation.
+	 *
+	 * @return The changes. Empty before the first update. Never {@code null}.
+	 */
+	ChangeSet getChanges();
+
+	/**
+	 * Gets the number of colonies born during the last call to {@link #update()}
+	 * or {@link #step(long)}. A step over several generations counts the births
+	 * of every generation it computes. Engines that leap over generations count
+	 * the colonies that are alive after the step but weren't before it.
+	 * <p>
+	 * The default implementation counts the births in {@link #getChanges()}.
+	 * Engines count them while they compute the generations instead, so that
+	 * they can be read after every update without looking at the board.
+	 *
+	 * @return The number of births. 0 before the first update.
+	 */
+	default long getBirths() {
+		ChangeSet changes = getChanges();
+		long births = 0;
+		for (int i = 0; i < changes.size(); i++) {
+			if (changes.isBirth(i)) {
+				births++;
+			}
+		}
+		return births;
+	}
+
+	/**
+	 * Gets the number of colonies that died during the last call to
+	 * {@link #update()} or {@link #step(long)}, counted like
+	 * {@link #getBirths()}.
+	 *
+	 * @return The number of deaths. 0 before the first update.
+	 */
+	default long getDeaths() {
+		ChangeSet changes = getChanges();
+		long deaths = 0;
+		for (int i = 0; i < changes.size(); i++) {
+			if (!changes.isBirth(i)) {
+				deaths++;
+			}
+		}
+		return deaths;
+	}
+
+	/**
+	 * @return The number of living colonies in the current generation.
+	 */
+	long getPopulation();
+
+	/**
+	 * Starts keeping the Zobrist hash of the board up to date, see
+	 * {@link CycleDetector}. The hash is computed once from the current
+	 * generation, and from then on the keys of the cells that change are added
+	 * while the generations are computed, so that {@link #getHash()} costs
+	 * nothing. Calling this again does nothing.
+	 * <p>
+	 * The default implementation doesn't keep the hash.
+	 *
+	 * @return Whether the engine keeps the hash.
+	 */
+	default boolean trackHash() {
+		return false;
+	}
+
+	/**
+	 * @return The Zobrist hash of the current generation, see
+	 *         {@link CycleDetector}. Equal boards always have the same hash.
+	 * @throws IllegalStateException If the engine doesn't keep the hash, see
+	 *                               {@link #trackHash()}.
+	 */
+	default long getHash() {
+		throw new IllegalStateException("The engine doesn't keep the hash of the board");
+	}
+
+	/**
+	 * @param x The x-coordinate.
+	 * @param y The y-coordinate.
+	 * @return Whether there is a living colony at the given position.
+	 */
+	boolean isColony(int x, int y);
+
+	/**
+	 * @return The current game generation.
+	 */
+	long getGeneration();
+
+	/**
+	 * @return The board width.
+	 */
+	int getWidth();
+
+	/**
+	 * @return The board height.
+	 */
+	int getHeight();
+
+	/**
+	 * @return The rule used to compute the next generation. Never {@code null}.
+	 */
+	Rule getRule();
+
+	/**
+	 * @return How the edges of the board connect. Never {@code null}.
+	 */
+	default Topology getTopology() {
+		return Topology.BOUNDED;
+	}
+}
@@ -0,0 +1,299 @@
+package game;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Creates {@link LifeEngine} implementations by name.
+ */
+public final class LifeEngines {
+
+	/**
+	 * The name of the reference engine, {@link GameOfLifeState}.
+	 */
+	public static final String REFERENCE = "reference";
+
+	/**
+	 * The name of the bit packed engine, {@link BitBoardState}.
+	 */
+	public static final String BITBOARD = "bitboard";
+
+	/**
+	 * The name of the quadtree memoizing engine, {@link HashLifeState}.
+	 */
+	public static final String HASHLIFE = "hashlife";
+
+	/**
+	 * The name of the primitive keyed sparse engine, {@link SparseState}.
+	 */
+	public static final String SPARSE = "sparse";
+
+	/**
+	 * The name of the multi threaded bit packed engine,
+	 * {@link ParallelBitBoardState}.
+	 */
+	public static final String PARALLEL = "parallel";
+
+	/**
+	 * The name of the bit packed engine that skips unchanged tiles,
+	 * {@link TiledBitBoardState}.
+	 */
+	public static final String TILED = "tiled";
+
+	/**
+	 * The name of the engine on an unbounded plane, {@link UnboundedState}.
+	 */
+	public static final String UNBOUNDED = "unbounded";
+
+	/**
+	 * The name of the bit packed engine storing the board outside the Java
+	 * heap, {@link OffHeapBitBoardState}.
+	 */
+	public static final String OFF_HEAP = "offheap";
+
+	/**
+	 * The name of the bit packed engine computing several words per instruction
+	 * with the incubating Vector API, {@code VectorBitBoardState}. It is only
+	 * compiled with the {@code vector} Maven profile and needs the
+	 * {@code jdk.incubator.vector} module at run time, without either this name
+	 * creates a {@link BitBoardState}, see {@link #isVectorAvailable()}.
+	 */
+	public static final String VECTOR = "vector";
+
+	/**
+	 * The engine used when no engine is explicitly selected.
+	 */
+	public static final String DEFAULT = REFERENCE;
+
+
+	/**
+	 * Creates an engine for a board, an initial colony configuration, a rule and
+	 * a topology.
+	 */
+	@FunctionalInterface
+	public interface Factory {
+
+		/**
+		 * @param width    The board width.
+		 * @param height   The board height.
+		 * @param colonies The initial colony positions. May be empty, but must not
+		 *                 be {@code null}.
+		 * @param rule     The rule deciding which colonies survive and are born.
+		 *                 Must not be {@code null}.
+		 * @param topology How the board edges connect. Must not be {@code null}.
+		 * @return A new engine. Never {@code null}.
+		 * @throws IllegalArgumentException If the engine doesn't support the
+		 *                                  topology for the board.
+		 */
+		LifeEngine create(int width, int height, Collection<Position> colonies, Rule rule, Topology topology);
+	}
+
+	/**
+	 * Creates an engine from a snapshot.
+	 */
+	@FunctionalInterface
+	public interface Restorer {
+
+		/**
+		 * @param snapshot The snapshot to continue from. Must not be {@code null}.
+		 * @return A new engine with the colonies, rule, topology and generation
+		 *         of the snapshot. Never {@code null}.
+		 */
+		LifeEngine restore(BoardSnapshot snapshot);
+	}
+
+
+	private static final Map<String, Factory> FACTORIES = new TreeMap<>();
+
+	private static final Map<String, Restorer> RESTORERS = new TreeMap<>();
+
+	private static final String VECTOR_CLASS = "game.VectorBitBoardState";
+
+	/**
+	 * The constructors of the vector engine, or {@code null} if it isn't
+	 * available.
+	 */
+	private static final Constructor<? extends LifeEngine> VECTOR_CONSTRUCTOR;
+	private static final Constructor<? extends LifeEngine> VECTOR_RESTORER;
+
+	static {
+		FACTORIES.put(REFERENCE, GameOfLifeState::new);
+		FACTORIES.put(BITBOARD, BitBoardState::new);
+		FACTORIES.put(HASHLIFE, HashLifeState::new);
+		FACTORIES.put(SPARSE, SparseState::new);
+		FACTORIES.put(PARALLEL, ParallelBitBoardState::new);
+		FACTORIES.put(TILED, TiledBitBoardState::new);
+		FACTORIES.put(UNBOUNDED, UnboundedState::new);
+		FACTORIES.put(OFF_HEAP, OffHeapBitBoardState::new);
+		RESTORERS.put(REFERENCE, GameOfLifeState::new);
+		RESTORERS.put(BITBOARD, BitBoardState::new);
+		RESTORERS.put(HASHLIFE, HashLifeState::new);
+		RESTORERS.put(SPARSE, SparseState::new);
+		RESTORERS.put(PARALLEL, ParallelBitBoardState::new);
+		RESTORERS.put(TILED, TiledBitBoardState::new);
+		RESTORERS.put(UNBOUNDED, UnboundedState::new);
+		RESTORERS.put(OFF_HEAP, OffHeapBitBoardState::new);
+		Constructor<? extends LifeEngine> constructor = null;
+		Constructor<? extends LifeEngine> restorer = null;
+		try {
+			// Initializing the class loads the Vector API, which fails without
+			// the module.
+			Class<? extends LifeEngine> vector = Class.forName(VECTOR_CLASS).asSubclass(LifeEngine.class);
+			constructor = vector.getConstructor(int.class, int.class, Collection.class, Rule.class, Topology.class);
+			restorer = vector.getConstructor(BoardSnapshot.class);
+		} catch (ClassNotFoundException | NoSuchMethodException | LinkageError e) {
+			constructor = null;
+			restorer = null;
+		}
+		VECTOR_CONSTRUCTOR = constructor;
+		VECTOR_RESTORER = restorer;
+		if (constructor != null) {
+			FACTORIES.put(VECTOR, (width, height, colonies, rule, topology) -> newVectorEngine(VECTOR_CONSTRUCTOR,
+					width, height, colonies, rule, topology));
+			RESTORERS.put(VECTOR, snapshot -> newVectorEngine(VECTOR_RESTORER, snapshot));
+		} else {
+			FACTORIES.put(VECTOR, BitBoardState::new);
+			RESTORERS.put(VECTOR, BitBoardState::new);
+		}
+	}
+
+
+	private LifeEngines() {
+	}
+
+	/**
+	 * Creates a new engine.
+	 *
+	 * @param name     The engine name. Must be one of {@link #names()}.
+	 * @param width    The board width.
+	 * @param height   The board height.
+	 * @param colonies The initial colony positions. May be empty, but must not be
+	 *                 {@code null}.
+	 * @return A new engine. Never {@code null}.
+	 * @throws IllegalArgumentException If there is no engine with the given name.
+	 */
+	public static LifeEngine create(String name, int width, int height, Collection<Position> colonies) {
+		return create(name, width, height, colonies, Rule.CONWAY);
+	}
+
+	/**
+	 * Creates a new engine with its default topology, see
+	 * {@link #defaultTopology(String)}.
+	 *
+	 * @param name     The engine name. Must be one of {@link #names()}.
+	 * @param width    The board width.
+	 * @param height   The board height.
+	 * @param colonies The initial colony positions. May be empty, but must not be
+	 *                 {@code null}.
+	 * @param rule     The rule deciding which colonies survive and are born. Must
+	 *                 not be {@code null}.
+	 * @return A new engine. Never {@code null}.
+	 * @throws IllegalArgumentException If there is no engine with the given name.
+	 */
+	public static LifeEngine create(String name, int width, int height, Collection<Position> colonies, Rule rule) {
+		return create(name, width, height, colonies, rule, defaultTopology(name));
+	}
+
+	/**
+	 * Creates a new engine.
+	 *
+	 * @param name     The engine name. Must be one of {@link #names()}.
+	 * @param width    The board width.
+	 * @param height   The board height.
+	 * @param colonies The initial colony positions. May be empty, but must not be
+	 *                 {@code null}.
+	 * @param rule     The rule deciding which colonies survive and are born. Must
+	 *                 not be {@code null}.
+	 * @param topology How the board edges connect. Must not be {@code null}.
+	 * @return A new engine. Never {@code null}.
+	 * @throws IllegalArgumentException If there is no engine with the given name,
+	 *                                  or it doesn't support the topology for the
+	 *                                  board.
+	 */
+	public static LifeEngine create(String name, int width, int height, Collection<Position> colonies, Rule rule,
+			Topology topology) {
+		return factory(name).create(width, height, colonies, rule, topology);
+	}
+
+	/**
+	 * Creates a new engine that continues from a snapshot, see
+	 * {@link SnapshotFile}.
+	 *
+	 * @param name     The engine name. Must be one of {@link #names()}.
+	 * @param snapshot The snapshot to continue from. Must not be {@code null}.
+	 * @return A new engine at the generation of the snapshot. Never
+	 *         {@code null}.
+	 * @throws IllegalArgumentException If there is no engine with the given name.
+	 */
+	public static LifeEngine restore(String name, BoardSnapshot snapshot) {
+		factory(name);
+		return RESTORERS.get(name).restore(Objects.requireNonNull(snapshot));
+	}
+
+	/**
+	 * Gets the topology an engine is created with when no topology is
+	 * explicitly selected.
+	 *
+	 * @param name The engine name. Must be one of {@link #names()}.
+	 * @return {@link Topology#INFINITE} for the {@value #UNBOUNDED} engine,
+	 *         {@link Topology#BOUNDED} for all other engines. Never
+	 *         {@code null}.
+	 * @throws IllegalArgumentException If there is no engine with the given name.
+	 */
+	public static Topology defaultTopology(String name) {
+		factory(name);
+		return name.equals(UNBOUNDED) ? Topology.INFINITE : Topology.BOUNDED;
+	}
+
+	/**
+	 * Gets the factory for an engine.
+	 *
+	 * @param name The engine name. Must be one of {@link #names()}.
+	 * @return The engine factory. Never {@code null}.
+	 * @throws IllegalArgumentException If there is no engine with the given name.
+	 */
+	public static Factory factory(String name) {
+		Objects.requireNonNull(name);
+		Factory factory = FACTORIES.get(name);
+		if (factory == null) {
+			String message = String.format("Unknown engine %s, expected one of %s", name, names());
+			throw new IllegalArgumentException(message);
+		}
+		return factory;
+	}
+
+	/**
+	 * @return Whether the {@value #VECTOR} engine uses the Vector API, rather
+	 *         than falling back to {@link BitBoardState} because it wasn't
+	 *         compiled or the {@code jdk.incubator.vector} module is missing.
+	 */
+	public static boolean isVectorAvailable() {
+		return VECTOR_CONSTRUCTOR != null;
+	}
+
+	/**
+	 * @return The names of all available engines in alphabetical order.
+	 */
+	public static ImmutableSet<String> names() {
+		return ImmutableSet.copyOf(FACTORIES.keySet());
+	}
+
+
+	private static LifeEngine newVectorEngine(Constructor<? extends LifeEngine> constructor, Object... args) {
+		try {
+			return constructor.newInstance(args);
+		} catch (InvocationTargetException e) {
+			Throwables.throwIfUnchecked(e.getCause());
+			throw new IllegalStateException(e.getCause());
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Failed to create the vector engine", e);
+		}
+	}
+}
@@ -0,0 +1,206 @@
+package game;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Metrics of a running simulation: generations per second, population, births
+ * and deaths, and the latency of the updates. The metrics are recorded by
+ * {@link MeteredEngine} on the simulation thread, and may be read from any
+ * other thread, such as the GUI or a JMX client once the metrics are
+ * {@link #register(String) registered}.
+ * <p>
+ * Recording only adds to striped counters and a {@link LatencyHistogram}, so it
+ * never locks or allocates. The births, deaths and population recorded are
+ * counted by the engines while they compute the generations, so recording
+ * doesn't look at the board either.
+ */
+public final class LifeMetrics implements LifeMetricsMXBean {
+
+	/**
+	 * The JMX domain of registered metrics.
+	 */
+	public static final String DOMAIN = "game";
+
+	/**
+	 * The shortest time the generation rate is measured over.
+	 */
+	private static final long RATE_WINDOW_NANOS = 1_000_000_000L;
+
+
+	private final LongAdder generations = new LongAdder();
+	private final LongAdder births = new LongAdder();
+	private final LongAdder deaths = new LongAdder();
+	private final LatencyHistogram latency = new LatencyHistogram();
+
+	private volatile long population = 0;
+	private volatile long lastBirths = 0;
+	private volatile long lastDeaths = 0;
+
+	/**
+	 * The start of the current generation rate window, and the generations
+	 * computed when it started. Guarded by {@code this}.
+	 */
+	private long windowStart = System.nanoTime();
+	private long windowGenerations = 0;
+	private double generationsPerSecond = 0;
+
+	/**
+	 * The name the metrics are registered under, or {@code null}.
+	 */
+	private ObjectName registeredName = null;
+
+
+	/**
+	 * Records an update.
+	 *
+	 * @param generations The number of generations advanced by the update.
+	 *                    Must not be negative.
+	 * @param nanos       The nanoseconds the update took.
+	 * @param population  The number of living colonies after the update.
+	 * @param births      The number of colonies born during the update.
+	 * @param deaths      The number of colonies that died during the update.
+	 */
+	public void record(long generations, long nanos, long population, long births, long deaths) {
+		if (generations < 0) {
+			throw new IllegalArgumentException("Negative generation count " + generations);
+		}
+		this.generations.add(generations);
+		this.births.add(births);
+		this.deaths.add(deaths);
+		if (generations > 0) {
+			latency.record(nanos / generations);
+		}
+		this.population = population;
+		this.lastBirths = births;
+		this.lastDeaths = deaths;
+	}
+
+	/**
+	 * @return The histogram of the nanoseconds per generation of every update.
+	 *         Multi-generation steps are recorded once with their mean.
+	 */
+	public LatencyHistogram getUpdateLatency() {
+		return latency;
+	}
+
+	@Override
+	public long getGenerations() {
+		return generations.sum();
+	}
+
+	/**
+	 * The rate is measured from the previous measurement that is at least a
+	 * second old, so it lags the simulation by up to a second and readers
+	 * polling more often share the same measurement.
+	 */
+	@Override
+	public synchronized double getGenerationsPerSecond() {
+		long now = System.nanoTime();
+		long elapsed = now - windowStart;
+		if (elapsed >= RATE_WINDOW_NANOS) {
+			long total = generations.sum();
+			generationsPerSecond = (total - windowGenerations) * 1e9 / elapsed;
+			windowStart = now;
+			windowGenerations = total;
+		}
+		return generationsPerSecond;
+	}
+
+	@Override
+	public long getPopulation() {
+		return population;
+	}
+
+	@Override
+	public long getBirths() {
+		return births.sum();
+	}
+
+	@Override
+	public long getDeaths() {
+		return deaths.sum();
+	}
+
+	@Override
+	public long getLastBirths() {
+		return lastBirths;
+	}
+
+	@Override
+	public long getLastDeaths() {
+		return lastDeaths;
+	}
+
+	@Override
+	public long getUpdateCount() {
+		return latency.getCount();
+	}
+
+	@Override
+	public double getUpdateLatencyMeanNanos() {
+		return latency.getMean();
+	}
+
+	@Override
+	public long getUpdateLatency50thNanos() {
+		return latency.getValueAtPercentile(50);
+	}
+
+	@Override
+	public long getUpdateLatency99thNanos() {
+		return latency.getValueAtPercentile(99);
+	}
+
+	@Override
+	public long getUpdateLatencyMaxNanos() {
+		return latency.getMax();
+	}
+
+	/**
+	 * Registers the metrics with the platform MBean server, under the name
+	 * {@code game:type=LifeMetrics,name=<name>}.
+	 *
+	 * @param name The name of the simulation, such as the engine name. Must not
+	 *             be {@code null}.
+	 * @return The name the metrics are registered under.
+	 * @throws IllegalStateException If the metrics are already registered, or
+	 *                               the name is taken by other metrics.
+	 */
+	public synchronized ObjectName register(String name) {
+		if (registeredName != null) {
+			throw new IllegalStateException("The metrics are already registered as " + registeredName);
+		}
+		try {
+			ObjectName objectName = new ObjectName(
+					DOMAIN + ":type=" + LifeMetrics.class.getSimpleName() + ",name=" + ObjectName.quote(name));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+			registeredName = objectName;
+			return objectName;
+		} catch (JMException e) {
+			throw new IllegalStateException("Failed to register the metrics of " + name, e);
+		}
+	}
+
+	/**
+	 * Unregisters the metrics from the platform MBean server. Does nothing if
+	 * the metrics aren't registered.
+	 */
+	public synchronized void unregister() {
+		if (registeredName == null) {
+			return;
+		}
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			server.unregisterMBean(registeredName);
+		} catch (JMException e) {
+			throw new IllegalStateException("Failed to unregister " + registeredName, e);
+		} finally {
+			registeredName = null;
+		}
+	}
+}
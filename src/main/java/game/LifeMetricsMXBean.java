@@ -0,0 +1,70 @@
+package game;
+
+/**
+ * Management interface of {@link LifeMetrics}, through which monitoring tools
+ * read the metrics of a simulation over JMX.
+ */
+public interface LifeMetricsMXBean {
+
+	/**
+	 * @return The number of generations computed.
+	 */
+	long getGenerations();
+
+	/**
+	 * @return The generations computed per second, measured over at least the
+	 *         last second.
+	 */
+	double getGenerationsPerSecond();
+
+	/**
+	 * @return The number of living colonies after the last update.
+	 */
+	long getPopulation();
+
+	/**
+	 * @return The number of colonies born.
+	 */
+	long getBirths();
+
+	/**
+	 * @return The number of colonies that died.
+	 */
+	long getDeaths();
+
+	/**
+	 * @return The number of colonies born in the last update.
+	 */
+	long getLastBirths();
+
+	/**
+	 * @return The number of colonies that died in the last update.
+	 */
+	long getLastDeaths();
+
+	/**
+	 * @return The number of updates timed.
+	 */
+	long getUpdateCount();
+
+	/**
+	 * @return The mean nanoseconds per generation of an update.
+	 */
+	double getUpdateLatencyMeanNanos();
+
+	/**
+	 * @return The median nanoseconds per generation of an update.
+	 */
+	long getUpdateLatency50thNanos();
+
+	/**
+	 * @return The 99th percentile of the nanoseconds per generation of an
+	 *         update.
+	 */
+	long getUpdateLatency99thNanos();
+
+	/**
+	 * @return The largest nanoseconds per generation of an update.
+	 */
+	long getUpdateLatencyMaxNanos();
+}
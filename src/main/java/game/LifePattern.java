@@ -0,0 +1,148 @@
+package game;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * A pattern read from a file, see {@link RleFormat}. The living cells are
+ * stored as packed coordinates in a single {@code long} array, so a pattern
+ * costs 8 bytes per cell no matter how it is loaded into an engine.
+ */
+public final class LifePattern {
+
+	private final int width;
+	private final int height;
+	private final Rule rule;
+	private final Topology topology;
+	private final int boardWidth;
+	private final int boardHeight;
+
+	/**
+	 * The living cells, {@code x << 32 | y}.
+	 */
+	private final long[] cells;
+
+
+	/**
+	 * @param width       The pattern width.
+	 * @param height      The pattern height.
+	 * @param rule        The rule the pattern is meant for.
+	 * @param topology    The topology of the board the pattern is meant for, or
+	 *                    {@code null} if the file didn't say.
+	 * @param boardWidth  The width of that board, 0 without a topology.
+	 * @param boardHeight The height of that board, 0 without a topology.
+	 * @param cells       The living cells, {@code x << 32 | y} with every
+	 *                    coordinate inside the pattern. Not copied.
+	 */
+	LifePattern(int width, int height, Rule rule, Topology topology, int boardWidth, int boardHeight,
+			long[] cells) {
+		this.width = width;
+		this.height = height;
+		this.rule = Objects.requireNonNull(rule);
+		this.topology = topology;
+		this.boardWidth = boardWidth;
+		this.boardHeight = boardHeight;
+		this.cells = cells;
+	}
+
+	/**
+	 * @return The pattern width.
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return The pattern height.
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return The rule the pattern is meant for. {@link Rule#CONWAY} if the file
+	 *         didn't say. Never {@code null}.
+	 */
+	public Rule getRule() {
+		return rule;
+	}
+
+	/**
+	 * @return The topology of the board the pattern is meant for, or
+	 *         {@code null} if the file didn't say, in which case the pattern
+	 *         may be put on any board.
+	 */
+	public Topology getTopology() {
+		return topology;
+	}
+
+	/**
+	 * @return The width of the board the pattern is meant for, 0 if the file
+	 *         didn't give a topology.
+	 */
+	public int getBoardWidth() {
+		return boardWidth;
+	}
+
+	/**
+	 * @return The height of the board the pattern is meant for, 0 if the file
+	 *         didn't give a topology.
+	 */
+	public int getBoardHeight() {
+		return boardHeight;
+	}
+
+	/**
+	 * @return The number of living cells.
+	 */
+	public int getPopulation() {
+		return cells.length;
+	}
+
+	/**
+	 * Gets the living cells moved to a position on a board. The collection is a
+	 * view of the pattern, positions are created while it is iterated, so it
+	 * can be passed to an engine constructor without building a list first.
+	 *
+	 * @param offsetX The board x-coordinate of the left pattern column.
+	 * @param offsetY The board y-coordinate of the top pattern row.
+	 * @return The cell positions. Never {@code null}.
+	 */
+	public Collection<Position> getColonies(int offsetX, int offsetY) {
+		return new AbstractCollection<Position>() {
+			@Override
+			public Iterator<Position> iterator() {
+				return new Iterator<Position>() {
+					private int i = 0;
+
+					@Override
+					public boolean hasNext() {
+						return i < cells.length;
+					}
+
+					@Override
+					public Position next() {
+						if (i == cells.length) {
+							throw new NoSuchElementException();
+						}
+						long cell = cells[i++];
+						return new Position(offsetX + (int) (cell >>> 32), offsetY + (int) cell);
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return cells.length;
+			}
+		};
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%dx%d %s pattern with %d cells", width, height, rule, cells.length);
+	}
+}
@@ -0,0 +1,167 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from {@code long} keys to {@code byte} values with
+ * linear probing. Missing keys have the value 0. Clearing the map keeps its
+ * storage, so a map that is cleared and refilled with about the same number of
+ * keys never allocates.
+ */
+final class LongByteMap {
+
+	/**
+	 * Marks an unused slot. Can't be used as a key.
+	 */
+	static final long EMPTY = Long.MIN_VALUE;
+
+	private static final int MIN_CAPACITY = 16;
+
+
+	private long[] keys;
+	private byte[] values;
+	private int size = 0;
+
+	/**
+	 * Number of keys at which the storage is doubled.
+	 */
+	private int growLimit;
+
+
+	/**
+	 * @param expectedSize The number of keys to make room for.
+	 */
+	LongByteMap(int expectedSize) {
+		allocate(capacityFor(expectedSize));
+	}
+
+	/**
+	 * Creates a copy of a map.
+	 *
+	 * @param other The map to copy.
+	 */
+	LongByteMap(LongByteMap other) {
+		this.keys = other.keys.clone();
+		this.values = other.values.clone();
+		this.size = other.size;
+		this.growLimit = other.growLimit;
+	}
+
+	/**
+	 * @param key The key. Must not be {@link #EMPTY}.
+	 * @return The value of the key, or 0 if the key isn't present.
+	 */
+	byte get(long key) {
+		int mask = keys.length - 1;
+		for (int i = slot(key, mask); keys[i] != EMPTY; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				return values[i];
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Adds to the value of a key, inserting the key if it isn't present.
+	 *
+	 * @param key   The key. Must not be {@link #EMPTY}.
+	 * @param delta The value to add.
+	 */
+	void add(long key, int delta) {
+		int mask = keys.length - 1;
+		int i = slot(key, mask);
+		while (keys[i] != EMPTY) {
+			if (keys[i] == key) {
+				values[i] += delta;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = (byte) delta;
+		if (++size > growLimit) {
+			resize(keys.length << 1);
+		}
+	}
+
+	/**
+	 * Removes all keys without releasing the storage.
+	 */
+	void clear() {
+		if (size > 0) {
+			Arrays.fill(keys, EMPTY);
+			size = 0;
+		}
+	}
+
+	/**
+	 * @return The number of keys.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return The number of slots. Slots are numbered from 0 and any slot may
+	 *         be {@link #EMPTY}.
+	 */
+	int capacity() {
+		return keys.length;
+	}
+
+	/**
+	 * @param slot The slot number.
+	 * @return The key in the slot, or {@link #EMPTY}.
+	 */
+	long keyAt(int slot) {
+		return keys[slot];
+	}
+
+	/**
+	 * @param slot The slot number.
+	 * @return The value in the slot. Not meaningful for empty slots.
+	 */
+	byte valueAt(int slot) {
+		return values[slot];
+	}
+
+
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		byte[] oldValues = values;
+		allocate(capacity);
+		int mask = capacity - 1;
+		for (int j = 0; j < oldKeys.length; j++) {
+			long key = oldKeys[j];
+			if (key == EMPTY) {
+				continue;
+			}
+			int i = slot(key, mask);
+			while (keys[i] != EMPTY) {
+				i = (i + 1) & mask;
+			}
+			keys[i] = key;
+			values[i] = oldValues[j];
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new byte[capacity];
+		Arrays.fill(keys, EMPTY);
+		growLimit = capacity >> 1;
+	}
+
+	private static int capacityFor(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while (capacity >> 1 < expectedSize) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	private static int slot(long key, int mask) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ hash >>> 32) & mask;
+	}
+}
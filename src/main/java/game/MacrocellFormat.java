@@ -0,0 +1,262 @@
+package game;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Reads and writes patterns in the Macrocell format of Golly, a deduplicated
+ * quadtree with one line per unique node, e.g. a glider:
+ *
+ * <pre>
+ * [M2] (golly 2.0)
+ * #R B3/S23
+ * .*$..*$***$
+ * 4 1 0 0 0
+ * </pre>
+ *
+ * Lines starting with {@code .}, {@code *} or {@code $} are 8x8 leaf nodes,
+ * row by row. Other lines are a node level followed by the numbers of its
+ * north west, north east, south west and south east children, where the nodes
+ * are numbered from 1 in the order they appear and 0 is an empty child. The
+ * last node is the root. Patterns are loaded straight into a
+ * {@link HashLifeState} quadtree without ever expanding them into cells.
+ */
+public final class MacrocellFormat {
+
+	private static final String HEADER = "[M2]";
+
+	/**
+	 * The highest node level, see {@link HashLifeState#MAX_SIZE}.
+	 */
+	private static final int MAX_LEVEL = 30;
+
+	private static final int LEAF_SIZE = 8;
+
+
+	private MacrocellFormat() {
+	}
+
+	/**
+	 * Reads a pattern. The rule defaults to {@link Rule#CONWAY} and the
+	 * generation to 0 if the file doesn't have {@code #R} and {@code #G} lines.
+	 * Other comment lines are skipped.
+	 *
+	 * @param in The pattern source. Must not be {@code null}. Not closed.
+	 * @return The pattern. Never {@code null}.
+	 * @throws IOException              If reading fails.
+	 * @throws IllegalArgumentException If the pattern is malformed or a
+	 *                                  multi-state pattern.
+	 */
+	public static MacrocellPattern read(Reader in) throws IOException {
+		BufferedReader reader = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+		String header = reader.readLine();
+		if (header == null || !header.startsWith(HEADER)) {
+			throw new IllegalArgumentException("Malformed macrocell file, expected a " + HEADER + " header");
+		}
+		Rule rule = Rule.CONWAY;
+		long generation = 0;
+		int count = 0;
+		byte[] levels = new byte[64];
+		int[] children = new int[64 * 4];
+		long[] leaves = new long[64];
+		int lineNumber = 1;
+		for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+			lineNumber++;
+			if (line.isEmpty()) {
+				continue;
+			}
+			char first = line.charAt(0);
+			if (first == '#') {
+				if (line.startsWith("#R")) {
+					rule = RleFormat.parseRule(line.substring(2));
+				} else if (line.startsWith("#G")) {
+					generation = parseNumber(line.substring(2).trim(), lineNumber);
+				}
+				continue;
+			}
+			if (count == levels.length) {
+				levels = Arrays.copyOf(levels, count * 2);
+				children = Arrays.copyOf(children, count * 2 * 4);
+				leaves = Arrays.copyOf(leaves, count * 2);
+			}
+			if (first == '.' || first == '*' || first == '$') {
+				levels[count] = MacrocellPattern.LEAF_LEVEL;
+				leaves[count] = parseLeaf(line, lineNumber);
+			} else {
+				String[] fields = line.trim().split("\\s+");
+				if (fields.length != 5) {
+					throw error(lineNumber, "Expected a level and four children, was " + line);
+				}
+				int level = (int) parseNumber(fields[0], lineNumber);
+				if (level <= MacrocellPattern.LEAF_LEVEL) {
+					throw error(lineNumber, "Multi-state patterns aren't supported");
+				}
+				if (level > MAX_LEVEL) {
+					throw error(lineNumber, "Level " + level + " is larger than the largest board");
+				}
+				levels[count] = (byte) level;
+				for (int i = 0; i < 4; i++) {
+					long child = parseNumber(fields[i + 1], lineNumber);
+					if (child > count || child > 0 && levels[(int) child - 1] != level - 1) {
+						throw error(lineNumber, "Child " + child + " isn't an earlier node of level " + (level - 1));
+					}
+					children[count * 4 + i] = (int) child;
+				}
+			}
+			count++;
+		}
+		if (count == 0) {
+			throw error(lineNumber, "No nodes");
+		}
+		return new MacrocellPattern(rule, generation, count, levels, children, leaves);
+	}
+
+	/**
+	 * Writes the current generation of a hashlife engine. Every unique non-empty
+	 * node of the board is written once.
+	 *
+	 * @param engine The engine to write. Must not be {@code null}.
+	 * @param out    The destination. Must not be {@code null}. Neither flushed
+	 *               nor closed.
+	 * @throws IOException If writing fails.
+	 */
+	public static void write(HashLifeState engine, Writer out) throws IOException {
+		String newline = System.lineSeparator();
+		out.write(HEADER + " (game-of-life)" + newline);
+		out.write("#R " + engine.getRule() + newline);
+		if (engine.getGeneration() != 0) {
+			out.write("#G " + engine.getGeneration() + newline);
+		}
+		HashLifeState.Node board = engine.getBoard();
+		if (board.level <= MacrocellPattern.LEAF_LEVEL || board.population == 0) {
+			// A board smaller than a leaf is written as a single leaf.
+			out.write(leafLine(board) + newline);
+		} else {
+			new NodeWriter(out).write(board);
+		}
+	}
+
+
+	/**
+	 * Parses a leaf line, {@code .} for a dead cell, {@code *} for a living
+	 * cell and {@code $} for the end of a row. Missing cells are dead.
+	 */
+	private static long parseLeaf(String line, int lineNumber) {
+		long cells = 0;
+		int x = 0;
+		int y = 0;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (c == '$') {
+				x = 0;
+				y++;
+				continue;
+			}
+			if (c != '.' && c != '*') {
+				throw error(lineNumber, "Unexpected character '" + c + "' in leaf");
+			}
+			if (x >= LEAF_SIZE || y >= LEAF_SIZE) {
+				throw error(lineNumber, "Cells outside the 8x8 leaf");
+			}
+			if (c == '*') {
+				cells |= 1L << (y * LEAF_SIZE + x);
+			}
+			x++;
+		}
+		return cells;
+	}
+
+	/**
+	 * Formats the cells of a node of at most level 3 as a leaf line.
+	 */
+	private static String leafLine(HashLifeState.Node node) {
+		long cells = leafCells(node, 0, 0);
+		StringBuilder line = new StringBuilder();
+		for (int y = 0; y < LEAF_SIZE && cells >>> (y * LEAF_SIZE) != 0; y++) {
+			long row = cells >>> (y * LEAF_SIZE) & 0xFF;
+			for (int x = 0; row >>> x != 0; x++) {
+				line.append((row >>> x & 1) != 0 ? '*' : '.');
+			}
+			line.append('$');
+		}
+		return line.length() == 0 ? "$" : line.toString();
+	}
+
+	private static long leafCells(HashLifeState.Node node, int x, int y) {
+		if (node.population == 0) {
+			return 0;
+		}
+		if (node.level == 0) {
+			return 1L << (y * LEAF_SIZE + x);
+		}
+		int half = 1 << (node.level - 1);
+		return leafCells(node.nw, x, y)
+				| leafCells(node.ne, x + half, y)
+				| leafCells(node.sw, x, y + half)
+				| leafCells(node.se, x + half, y + half);
+	}
+
+	private static long parseNumber(String value, int lineNumber) {
+		try {
+			long number = Long.parseLong(value);
+			if (number < 0) {
+				throw error(lineNumber, "Negative number " + value);
+			}
+			return number;
+		} catch (NumberFormatException e) {
+			throw error(lineNumber, "Malformed number " + value);
+		}
+	}
+
+	private static IllegalArgumentException error(int lineNumber, String message) {
+		return new IllegalArgumentException(String.format("Malformed macrocell file on line %d: %s", lineNumber, message));
+	}
+
+
+	/**
+	 * Writes nodes children first, numbering them in the order they are
+	 * written.
+	 */
+	private static final class NodeWriter {
+
+		private final Writer out;
+		private final Map<HashLifeState.Node, Integer> numbers = new IdentityHashMap<>();
+		private final String newline = System.lineSeparator();
+
+
+		NodeWriter(Writer out) {
+			this.out = out;
+		}
+
+		/**
+		 * @return The number of the node, 0 for an empty node.
+		 */
+		int write(HashLifeState.Node node) throws IOException {
+			if (node.population == 0) {
+				return 0;
+			}
+			Integer number = numbers.get(node);
+			if (number != null) {
+				return number;
+			}
+			if (node.level == MacrocellPattern.LEAF_LEVEL) {
+				out.write(leafLine(node));
+			} else {
+				int nw = write(node.nw);
+				int ne = write(node.ne);
+				int sw = write(node.sw);
+				int se = write(node.se);
+				out.write(node.level + " " + nw + " " + ne + " " + sw + " " + se);
+			}
+			out.write(newline);
+			number = numbers.size() + 1;
+			numbers.put(node, number);
+			return number;
+		}
+	}
+}
@@ -0,0 +1,162 @@
+package game;
+
+import java.util.Collections;
+import java.util.Objects;
+
+/**
+ * A pattern read from a Macrocell file, see {@link MacrocellFormat}. The
+ * pattern is kept as the deduplicated quadtree of the file, one entry per
+ * unique node, so it costs memory proportional to the number of unique nodes
+ * rather than the number of cells.
+ */
+public final class MacrocellPattern {
+
+	/**
+	 * The level of the 8x8 leaf nodes.
+	 */
+	static final int LEAF_LEVEL = 3;
+
+
+	private final Rule rule;
+	private final long generation;
+	private final int count;
+
+	/**
+	 * The level of every node, indexed by node number minus one.
+	 */
+	private final byte[] levels;
+
+	/**
+	 * The child node numbers of every non-leaf node, four per node, 0 for an
+	 * empty child.
+	 */
+	private final int[] children;
+
+	/**
+	 * The cells of every leaf node, bit {@code y * 8 + x} for the cell at
+	 * (x, y).
+	 */
+	private final long[] leaves;
+
+
+	/**
+	 * @param rule       The rule the pattern is meant for.
+	 * @param generation The generation of the pattern.
+	 * @param count      The number of nodes. The last node is the root.
+	 * @param levels     The level of every node. Not copied.
+	 * @param children   The four children of every non-leaf node. Not copied.
+	 * @param leaves     The cells of every leaf node. Not copied.
+	 */
+	MacrocellPattern(Rule rule, long generation, int count, byte[] levels, int[] children, long[] leaves) {
+		this.rule = Objects.requireNonNull(rule);
+		this.generation = generation;
+		this.count = count;
+		this.levels = levels;
+		this.children = children;
+		this.leaves = leaves;
+	}
+
+	/**
+	 * @return The rule the pattern is meant for. {@link Rule#CONWAY} if the file
+	 *         didn't say. Never {@code null}.
+	 */
+	public Rule getRule() {
+		return rule;
+	}
+
+	/**
+	 * @return The generation of the pattern. 0 if the file didn't say.
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * @return The number of unique nodes.
+	 */
+	public int getNodeCount() {
+		return count;
+	}
+
+	/**
+	 * @return The level of the root node. The pattern covers a square with side
+	 *         {@code 2^level}.
+	 */
+	public int getLevel() {
+		return levels[count - 1];
+	}
+
+	/**
+	 * Creates a hashlife engine with the pattern on its board, using the rule of
+	 * the pattern.
+	 *
+	 * @param width  The board width.
+	 * @param height The board height.
+	 * @return The engine at the generation of the pattern. Never {@code null}.
+	 * @throws IllegalArgumentException If the board size is illegal or the
+	 *                                  pattern doesn't fit the board.
+	 * @see #toEngine(int, int, Rule)
+	 */
+	public HashLifeState toEngine(int width, int height) {
+		return toEngine(width, height, rule);
+	}
+
+	/**
+	 * Creates a hashlife engine with the pattern on its board. The pattern is
+	 * centered as far as possible without splitting its quadtree nodes, so
+	 * every node of the file becomes exactly one canonical node of the engine.
+	 *
+	 * @param width  The board width.
+	 * @param height The board height.
+	 * @param rule   The rule of the engine. Must not be {@code null}.
+	 * @return The engine at the generation of the pattern. Never {@code null}.
+	 * @throws IllegalArgumentException If the board size is illegal or the
+	 *                                  pattern doesn't fit the board.
+	 */
+	public HashLifeState toEngine(int width, int height, Rule rule) {
+		HashLifeState engine = new HashLifeState(width, height, Collections.emptyList(), rule);
+		HashLifeState.Node[] nodes = new HashLifeState.Node[count + 1];
+		for (int i = 1; i <= count; i++) {
+			int level = levels[i - 1];
+			if (level == LEAF_LEVEL) {
+				nodes[i] = leaf(engine, leaves[i - 1], 0, 0, LEAF_LEVEL);
+			} else {
+				HashLifeState.Node empty = engine.empty(level - 1);
+				int base = (i - 1) * 4;
+				nodes[i] = engine.node(
+						child(nodes, children[base], empty),
+						child(nodes, children[base + 1], empty),
+						child(nodes, children[base + 2], empty),
+						child(nodes, children[base + 3], empty));
+			}
+		}
+		engine.load(nodes[count], generation);
+		return engine;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("2^%d %s macrocell pattern with %d nodes", getLevel(), rule, count);
+	}
+
+
+	private static HashLifeState.Node child(HashLifeState.Node[] nodes, int number, HashLifeState.Node empty) {
+		return number == 0 ? empty : nodes[number];
+	}
+
+	/**
+	 * Builds the node of the given level with its north west corner at (x, y)
+	 * of an 8x8 leaf.
+	 */
+	private static HashLifeState.Node leaf(HashLifeState engine, long cells, int x, int y, int level) {
+		if (level == 0) {
+			return (cells >>> (y * 8 + x) & 1) != 0 ? HashLifeState.ALIVE : HashLifeState.DEAD;
+		}
+		int half = 1 << (level - 1);
+		return engine.node(
+				leaf(engine, cells, x, y, level - 1),
+				leaf(engine, cells, x + half, y, level - 1),
+				leaf(engine, cells, x, y + half, level - 1),
+				leaf(engine, cells, x + half, y + half, level - 1));
+	}
+}
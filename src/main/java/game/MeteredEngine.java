@@ -0,0 +1,147 @@
+package game;
+
+import java.util.Objects;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Engine that records the {@link LifeMetrics} of another engine. Every update
+ * and step is timed, and its births, deaths and resulting population are
+ * read from the engine, which counts them while it computes the generations,
+ * see {@link LifeEngine#getBirths()}. Otherwise the engine behaves exactly
+ * like the engine it wraps.
+ * <p>
+ * A step over several generations is recorded as a single update, with the
+ * births and deaths of all its generations.
+ */
+public final class MeteredEngine implements LifeEngine, AutoCloseable {
+
+	private final LifeEngine engine;
+	private final LifeMetrics metrics;
+
+
+	/**
+	 * @param engine  The engine to record the metrics of. Must not be
+	 *                {@code null}, and must only be updated through this
+	 *                engine from now on.
+	 * @param metrics Where to record the metrics. Must not be {@code null}.
+	 */
+	public MeteredEngine(LifeEngine engine, LifeMetrics metrics) {
+		this.engine = Objects.requireNonNull(engine);
+		this.metrics = Objects.requireNonNull(metrics);
+	}
+
+	/**
+	 * @return The engine whose metrics are recorded.
+	 */
+	public LifeEngine getEngine() {
+		return engine;
+	}
+
+	/**
+	 * @return Where the metrics are recorded.
+	 */
+	public LifeMetrics getMetrics() {
+		return metrics;
+	}
+
+	@Override
+	public boolean update() {
+		long start = System.nanoTime();
+		boolean changed = engine.update();
+		record(1, System.nanoTime() - start);
+		return changed;
+	}
+
+	@Override
+	public void step(long generations) {
+		long start = System.nanoTime();
+		engine.step(generations);
+		record(generations, System.nanoTime() - start);
+	}
+
+	@Override
+	public ImmutableSet<Position> getColonies() {
+		return engine.getColonies();
+	}
+
+	@Override
+	public void forEachLive(CellConsumer consumer) {
+		engine.forEachLive(consumer);
+	}
+
+	@Override
+	public ChangeSet getChanges() {
+		return engine.getChanges();
+	}
+
+	@Override
+	public long getBirths() {
+		return engine.getBirths();
+	}
+
+	@Override
+	public long getDeaths() {
+		return engine.getDeaths();
+	}
+
+	@Override
+	public long getPopulation() {
+		return engine.getPopulation();
+	}
+
+	@Override
+	public boolean trackHash() {
+		return engine.trackHash();
+	}
+
+	@Override
+	public long getHash() {
+		return engine.getHash();
+	}
+
+	@Override
+	public boolean isColony(int x, int y) {
+		return engine.isColony(x, y);
+	}
+
+	@Override
+	public long getGeneration() {
+		return engine.getGeneration();
+	}
+
+	@Override
+	public int getWidth() {
+		return engine.getWidth();
+	}
+
+	@Override
+	public int getHeight() {
+		return engine.getHeight();
+	}
+
+	@Override
+	public Rule getRule() {
+		return engine.getRule();
+	}
+
+	@Override
+	public Topology getTopology() {
+		return engine.getTopology();
+	}
+
+	/**
+	 * Closes the wrapped engine if it is {@link AutoCloseable}.
+	 */
+	@Override
+	public void close() throws Exception {
+		if (engine instanceof AutoCloseable) {
+			((AutoCloseable) engine).close();
+		}
+	}
+
+
+	private void record(long generations, long nanos) {
+		metrics.record(generations, nanos, engine.getPopulation(), engine.getBirths(), engine.getDeaths());
+	}
+}
@@ -0,0 +1,464 @@
+package game;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Objects;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Bit packed game of life game state stored outside the Java heap. The board
+ * is packed like in {@link BitBoardState}, but the current and the next
+ * generation live in two direct buffers that are swapped after every
+ * generation, so a large board adds nothing to the heap the garbage collector
+ * has to trace or copy. Rows are computed one at a time from three rows
+ * copied onto the heap, which is all the heap memory a generation needs.
+ * <p>
+ * Boards may be up to {@value #MAX_SIZE}x{@value #MAX_SIZE}, a 512 MiB
+ * buffer per generation. The direct memory of the JVM, see
+ * {@code -XX:MaxDirectMemorySize}, must hold two generations, and a third
+ * after the first step over several generations. The memory is released by
+ * {@link #close()}, or otherwise when the engine is garbage collected.
+ */
+public class OffHeapBitBoardState implements LifeEngine, AutoCloseable {
+
+	/**
+	 * The largest board width and height.
+	 */
+	public static final int MAX_SIZE = 1 << 16;
+
+	private final int width;
+	private final int height;
+	private final Rule rule;
+	private final Topology topology;
+
+	/**
+	 * Number of longs needed to store a single row.
+	 */
+	private final int words;
+
+	/**
+	 * The last three rows read of the current generation, row y in
+	 * {@code window[y % 3]}, and the next generation of the row being computed.
+	 */
+	private final long[][] window = new long[3][];
+	private final long[] out;
+
+	/**
+	 * The rows above the first row and below the last row, see
+	 * {@link #readHalos()}.
+	 */
+	private final long[] northHalo;
+	private final long[] southHalo;
+
+	private ByteBuffer current;
+	private ByteBuffer next;
+
+	/**
+	 * The generation before the last update or step, either {@link #next} or
+	 * {@link #stepStart}.
+	 */
+	private ByteBuffer previous;
+
+	/**
+	 * The generation before the last step over several generations, allocated
+	 * by the first such step and then reused.
+	 */
+	private ByteBuffer stepStart;
+
+	/**
+	 * The births and deaths of the last update or step, the population and the
+	 * hash of the board.
+	 */
+	private final ChangeCounter counter = new ChangeCounter();
+	private long generation = 0;
+	private boolean closed = false;
+
+
+	/**
+	 * Initializes the game of life game state.
+	 *
+	 * @param width    The board width. Must be positive and at most
+	 *                 {@value #MAX_SIZE}.
+	 * @param height   The board height. Must be positive and at most
+	 *                 {@value #MAX_SIZE}.
+	 * @param colonies The initial colony positions. May be empty, but must not be
+	 *                 {@code null}. All positions must be inside the board.
+	 */
+	public OffHeapBitBoardState(int width, int height, Collection<Position> colonies) {
+		this(width, height, colonies, Rule.CONWAY);
+	}
+
+	/**
+	 * Initializes the game state.
+	 *
+	 * @param width    The board width. Must be positive and at most
+	 *                 {@value #MAX_SIZE}.
+	 * @param height   The board height. Must be positive and at most
+	 *                 {@value #MAX_SIZE}.
+	 * @param colonies The initial colony positions. May be empty, but must not be
+	 *                 {@code null}. All positions must be inside the board.
+	 * @param rule     The rule deciding which colonies survive and are born. Must
+	 *                 not be {@code null}.
+	 */
+	public OffHeapBitBoardState(int width, int height, Collection<Position> colonies, Rule rule) {
+		this(width, height, colonies, rule, Topology.BOUNDED);
+	}
+
+	/**
+	 * Initializes the game state.
+	 *
+	 * @param width    The board width. Must be positive and at most
+	 *                 {@value #MAX_SIZE}.
+	 * @param height   The board height. Must be positive and at most
+	 *                 {@value #MAX_SIZE}.
+	 * @param colonies The initial colony positions. May be empty, but must not be
+	 *                 {@code null}. All positions must be inside the board.
+	 * @param rule     The rule deciding which colonies survive and are born. Must
+	 *                 not be {@code null}.
+	 * @param topology How the board edges connect. Must not be {@code null} or
+	 *                 {@link Topology#INFINITE}.
+	 * @throws IllegalArgumentException If the topology is infinite.
+	 */
+	public OffHeapBitBoardState(int width, int height, Collection<Position> colonies, Rule rule, Topology topology) {
+		GameOfLifeState.rangeCheck(width, 1, MAX_SIZE, "width");
+		GameOfLifeState.rangeCheck(height, 1, MAX_SIZE, "height");
+		Objects.requireNonNull(colonies);
+		BitBoardState.checkTopology(topology);
+		this.width = width;
+		this.height = height;
+		this.rule = Objects.requireNonNull(rule);
+		this.topology = topology;
+		this.words = (width + Long.SIZE - 1) / Long.SIZE;
+		for (int i = 0; i < window.length; i++) {
+			window[i] = new long[words];
+		}
+		this.out = new long[words];
+		this.northHalo = new long[words];
+		this.southHalo = new long[words];
+		for (Position pos : colonies) {
+			GameOfLifeState.rangeCheck(pos.getX(), 0, width - 1, "colony x-coordinate");
+			GameOfLifeState.rangeCheck(pos.getY(), 0, height - 1, "colony y-coordinate");
+		}
+		this.current = allocate();
+		this.next = allocate();
+		LongBuffer cells = current.asLongBuffer();
+		for (Position pos : colonies) {
+			int index = pos.getY() * words + pos.getX() / Long.SIZE;
+			cells.put(index, cells.get(index) | 1L << pos.getX());
+		}
+		this.previous = current;
+		counter.setPopulation(countPopulation());
+	}
+
+	/**
+	 * Restores the game state from a snapshot, at the generation of the
+	 * snapshot. The snapshot rows are copied as they are.
+	 *
+	 * @param snapshot The snapshot. Must not be {@code null}.
+	 */
+	public OffHeapBitBoardState(BoardSnapshot snapshot) {
+		this(snapshot.getWidth(), snapshot.getHeight(), Collections.emptyList(), snapshot.getRule(),
+				snapshot.getTopology());
+		LongBuffer cells = current.asLongBuffer();
+		for (int y = 0; y < height; y++) {
+			cells.put(snapshot.getRow(y));
+		}
+		counter.setPopulation(countPopulation());
+		this.generation = snapshot.getGeneration();
+	}
+
+	@Override
+	public boolean update() {
+		ensureOpen();
+		counter.reset();
+		boolean changed = advance();
+		previous = next;
+		return changed;
+	}
+
+	/**
+	 * Advances the game state the given number of generations. A board that
+	 * stops changing skips the remaining generations.
+	 *
+	 * @param generations The number of generations to advance. Must not be
+	 *                    negative.
+	 */
+	@Override
+	public void step(long generations) {
+		ensureOpen();
+		if (generations < 0) {
+			throw new IllegalArgumentException("Negative generation count " + generations);
+		}
+		if (generations == 1) {
+			// A single update leaves the previous generation in next.
+			update();
+			return;
+		}
+		counter.reset();
+		if (stepStart == null) {
+			stepStart = allocate();
+		}
+		stepStart.duplicate().put(current.duplicate());
+		for (long done = 0; done < generations; done++) {
+			if (!advance()) {
+				// The board no longer changes.
+				generation += generations - done - 1;
+				break;
+			}
+		}
+		previous = stepStart;
+	}
+
+	@Override
+	public ImmutableSet<Position> getColonies() {
+		ImmutableSet.Builder<Position> builder = ImmutableSet.builder();
+		forEachLive((x, y) -> builder.add(new Position(x, y)));
+		return builder.build();
+	}
+
+	@Override
+	public void forEachLive(CellConsumer consumer) {
+		ensureOpen();
+		LongBuffer cells = current.asLongBuffer();
+		for (int y = 0; y < height; y++) {
+			for (int i = 0; i < words; i++) {
+				for (long word = cells.get(); word != 0; word &= word - 1) {
+					consumer.accept(i * Long.SIZE + Long.numberOfTrailingZeros(word), y);
+				}
+			}
+		}
+	}
+
+	@Override
+	public ChangeSet getChanges() {
+		ensureOpen();
+		ChangeSet.Builder builder = new ChangeSet.Builder();
+		if (previous == current) {
+			return builder.build();
+		}
+		LongBuffer before = previous.asLongBuffer();
+		LongBuffer after = current.asLongBuffer();
+		for (int y = 0; y < height; y++) {
+			for (int i = 0; i < words; i++) {
+				long beforeWord = before.get();
+				long afterWord = after.get();
+				if (beforeWord != afterWord) {
+					builder.addWord(beforeWord, afterWord, i * Long.SIZE, y);
+				}
+			}
+		}
+		return builder.build();
+	}
+
+	@Override
+	public long getBirths() {
+		ensureOpen();
+		return counter.getBirths();
+	}
+
+	@Override
+	public long getDeaths() {
+		ensureOpen();
+		return counter.getDeaths();
+	}
+
+	@Override
+	public long getPopulation() {
+		ensureOpen();
+		return counter.getPopulation();
+	}
+
+	@Override
+	public boolean trackHash() {
+		ensureOpen();
+		counter.startHashing(this);
+		return true;
+	}
+
+	@Override
+	public long getHash() {
+		ensureOpen();
+		return counter.getHash();
+	}
+
+	@Override
+	public boolean isColony(int x, int y) {
+		ensureOpen();
+		if (x < 0 || x >= width || y < 0 || y >= height) {
+			return false;
+		}
+		return (current.getLong((y * words + x / Long.SIZE) * Long.BYTES) & 1L << x) != 0;
+	}
+
+	@Override
+	public long getGeneration() {
+		return generation;
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public Rule getRule() {
+		return rule;
+	}
+
+	@Override
+	public Topology getTopology() {
+		return topology;
+	}
+
+	/**
+	 * Releases the off-heap memory of the board. Afterwards only the
+	 * generation, board size, rule and topology may be queried, everything
+	 * else throws an {@link IllegalStateException}. Closing a closed engine
+	 * does nothing.
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		free(current);
+		free(next);
+		if (stepStart != null) {
+			free(stepStart);
+		}
+		current = null;
+		next = null;
+		previous = null;
+		stepStart = null;
+	}
+
+	/**
+	 * @return Whether {@link #close()} has been called.
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+
+	/**
+	 * Computes the next generation into {@link #next} and swaps the buffers.
+	 * Its births and deaths are added to those already counted.
+	 *
+	 * @return Whether the next generation differs from the current one.
+	 */
+	private boolean advance() {
+		readHalos();
+		LongBuffer from = current.asLongBuffer();
+		LongBuffer to = next.asLongBuffer();
+		boolean wrap = topology.wraps();
+		long changed = 0;
+		from.get(window[0]);
+		for (int y = 0; y < height; y++) {
+			long[] above = y > 0 ? window[(y - 1) % 3] : northHalo;
+			long[] row = window[y % 3];
+			long[] below = southHalo;
+			if (y < height - 1) {
+				// Overwrites row y - 2, which is no longer needed.
+				below = window[(y + 1) % 3];
+				from.get(below);
+			}
+			long rowChanged = BitBoardState.stepRow(rule, width, wrap, above, row, below, out);
+			if (rowChanged != 0) {
+				counter.count(row, out, y);
+			}
+			changed |= rowChanged;
+			to.put(out);
+		}
+		ByteBuffer tmp = current;
+		current = next;
+		next = tmp;
+		generation++;
+		return changed != 0;
+	}
+
+	/**
+	 * Reads the halo rows of the current generation, see
+	 * {@link BitBoardState#beginGeneration()}. They stay empty on a bounded
+	 * board.
+	 */
+	private void readHalos() {
+		if (!topology.wraps()) {
+			return;
+		}
+		LongBuffer cells = current.asLongBuffer();
+		cells.position((height - 1) * words);
+		cells.get(northHalo);
+		cells.position(0);
+		cells.get(southHalo);
+		if (topology == Topology.KLEIN_BOTTLE) {
+			long[] row = window[0];
+			System.arraycopy(northHalo, 0, row, 0, words);
+			BitBoardState.mirror(row, northHalo, width);
+			System.arraycopy(southHalo, 0, row, 0, words);
+			BitBoardState.mirror(row, southHalo, width);
+		}
+	}
+
+	private long countPopulation() {
+		long count = 0;
+		LongBuffer cells = current.asLongBuffer();
+		while (cells.hasRemaining()) {
+			count += Long.bitCount(cells.get());
+		}
+		return count;
+	}
+
+	private void ensureOpen() {
+		if (closed) {
+			throw new IllegalStateException("The engine has been closed");
+		}
+	}
+
+	/**
+	 * @return A zeroed direct buffer for a generation, in native byte order so
+	 *         that words are copied without swapping bytes.
+	 */
+	private ByteBuffer allocate() {
+		return ByteBuffer.allocateDirect(height * words * Long.BYTES).order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Releases the memory of a direct buffer right away instead of when it is
+	 * garbage collected. There is no public API for it, so the cleaner of the
+	 * buffer is invoked through {@code sun.misc.Unsafe} on Java 9 and later and
+	 * through the buffer itself on Java 8. If neither works the memory is left
+	 * to the garbage collector.
+	 */
+	private static void free(ByteBuffer buffer) {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			invokeCleaner.invoke(theUnsafe.get(null), buffer);
+			return;
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// Java 8, try the cleaner of the buffer.
+		}
+		try {
+			Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(buffer);
+			cleaner.getClass().getMethod("clean").invoke(cleaner);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// Left to the garbage collector.
+		}
+	}
+}
@@ -0,0 +1,222 @@
+package game;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Bit packed game of life game state that computes every generation in
+ * parallel. The board is split into horizontal strips of rows that are
+ * computed as tasks in a {@link ForkJoinPool}. Each row of the next generation
+ * only depends on the current generation, which is never written during an
+ * update, so the rows on either side of a strip boundary need no special
+ * treatment.
+ */
+public class ParallelBitBoardState extends BitBoardState {
+
+	/**
+	 * The smallest number of rows worth computing in a separate task.
+	 */
+	private static final int MIN_STRIP_HEIGHT = 16;
+
+	/**
+	 * Number of strips per worker thread. More strips than threads lets the pool
+	 * balance the load when some strips finish early.
+	 */
+	private static final int STRIPS_PER_THREAD = 4;
+
+
+	private final ForkJoinPool pool;
+
+	/**
+	 * The largest number of rows computed by a single task.
+	 */
+	private final int stripHeight;
+
+
+	/**
+	 * Initializes the game of life game state using the common fork join pool.
+	 * The parallelism of the common pool can be configured with the
+	 * {@code java.util.concurrent.ForkJoinPool.common.parallelism} system
+	 * property.
+	 *
+	 * @param width    The board width. Must be positive and less than
+	 *                 {@value GameOfLifeState#MAX_WIDTH}.
+	 * @param height   The board height. Must be positive and less than
+	 *                 {@value GameOfLifeState#MAX_HEIGHT}.
+	 * @param colonies The initial colony positions. May be empty, but must not be
+	 *                 {@code null}. All positions must be inside the board.
+	 */
+	public ParallelBitBoardState(int width, int height, Collection<Position> colonies) {
+		this(width, height, colonies, Rule.CONWAY, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Initializes the game state using the common fork join pool.
+	 *
+	 * @param width    The board width. Must be positive and less than
+	 *                 {@value GameOfLifeState#MAX_WIDTH}.
+	 * @param height   The board height. Must be positive and less than
+	 *                 {@value GameOfLifeState#MAX_HEIGHT}.
+	 * @param colonies The initial colony positions. May be empty, but must not be
+	 *                 {@code null}. All positions must be inside the board.
+	 * @param rule     The rule deciding which colonies survive and are born. Must
+	 *                 not be {@code null}.
+	 */
+	public ParallelBitBoardState(int width, int height, Collection<Position> colonies, Rule rule) {
+		this(width, height, colonies, rule, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Initializes the game of life game state.
+	 *
+	 * @param width    The board width. Must be positive and less than
+	 *                 {@value GameOfLifeState#MAX_WIDTH}.
+	 * @param height   The board height. Must be positive and less than
+	 *                 {@value GameOfLifeState#MAX_HEIGHT}.
+	 * @param colonies The initial colony positions. May be empty, but must not be
+	 *                 {@code null}. All positions must be inside the board.
+	 * @param rule     The rule deciding which colonies survive and are born. Must
+	 *                 not be {@code null}.
+	 * @param pool     The pool to compute the strips in. Its parallelism decides
+	 *                 the number of threads used. Must not be {@code null}. The
+	 *                 pool is owned by the caller and is never shut down by the
+	 *                 game state.
+	 */
+	public ParallelBitBoardState(int width, int height, Collection<Position> colonies, Rule rule, ForkJoinPool pool) {
+		this(width, height, colonies, rule, Topology.BOUNDED, pool);
+	}
+
+	/**
+	 * Initializes the game state using the common fork join pool.
+	 *
+	 * @param width    The board width. Must be positive and less than
+	 *                 {@value GameOfLifeState#MAX_WIDTH}.
+	 * @param height   The board height. Must be positive and less than
+	 *                 {@value GameOfLifeState#MAX_HEIGHT}.
+	 * @param colonies The initial colony positions. May be empty, but must not be
+	 *                 {@code null}. All positions must be inside the board.
+	 * @param rule     The rule deciding which colonies survive and are born. Must
+	 *                 not be {@code null}.
+	 * @param topology How the board edges connect. Must not be {@code null} or
+	 *                 {@link Topology#INFINITE}.
+	 * @throws IllegalArgumentException If the topology is infinite.
+	 */
+	public ParallelBitBoardState(int width, int height, Collection<Position> colonies, Rule rule, Topology topology) {
+		this(width, height, colonies, rule, topology, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Initializes the game state.
+	 *
+	 * @param width    The board width. Must be positive and less than
+	 *                 {@value GameOfLifeState#MAX_WIDTH}.
+	 * @param height   The board height. Must be positive and less than
+	 *                 {@value GameOfLifeState#MAX_HEIGHT}.
+	 * @param colonies The initial colony positions. May be empty, but must not be
+	 *                 {@code null}. All positions must be inside the board.
+	 * @param rule     The rule deciding which colonies survive and are born. Must
+	 *                 not be {@code null}.
+	 * @param topology How the board edges connect. Must not be {@code null} or
+	 *                 {@link Topology#INFINITE}.
+	 * @param pool     The pool to compute the strips in. Must not be
+	 *                 {@code null}. The pool is owned by the caller and is never
+	 *                 shut down by the game state.
+	 * @throws IllegalArgumentException If the topology is infinite.
+	 */
+	public ParallelBitBoardState(int width, int height, Collection<Position> colonies, Rule rule, Topology topology,
+			ForkJoinPool pool) {
+		super(width, height, colonies, rule, topology);
+		this.pool = Objects.requireNonNull(pool);
+		this.stripHeight = stripHeight(height, pool);
+	}
+
+	/**
+	 * Restores the game state from a snapshot, at the generation of the
+	 * snapshot, using the common fork join pool.
+	 *
+	 * @param snapshot The snapshot. Must not be {@code null}.
+	 */
+	public ParallelBitBoardState(BoardSnapshot snapshot) {
+		super(snapshot);
+		this.pool = ForkJoinPool.commonPool();
+		this.stripHeight = stripHeight(getHeight(), pool);
+	}
+
+	@Override
+	public boolean update() {
+		counter.reset();
+		return nextGeneration();
+	}
+
+	/**
+	 * Computes the generations one at a time, each of them in parallel.
+	 */
+	@Override
+	boolean advance(int depth) {
+		boolean changed = false;
+		for (int i = 0; i < depth; i++) {
+			changed = nextGeneration();
+		}
+		return changed;
+	}
+
+
+	/**
+	 * Computes the next generation in parallel, adding its births and deaths
+	 * to those already counted.
+	 *
+	 * @return Whether the next generation differs from the current one.
+	 */
+	private boolean nextGeneration() {
+		beginGeneration();
+		long changed = pool.invoke(new StripTask(0, getHeight(), counter));
+		finishGeneration();
+		return changed != 0;
+	}
+
+	/**
+	 * @return The strip height giving every thread of the pool a few strips, but
+	 *         no strip lower than {@link #MIN_STRIP_HEIGHT}.
+	 */
+	private static int stripHeight(int height, ForkJoinPool pool) {
+		int strips = pool.getParallelism() * STRIPS_PER_THREAD;
+		return Math.max(MIN_STRIP_HEIGHT, (height + strips - 1) / strips);
+	}
+
+	/**
+	 * Computes the next generation of a range of rows, splitting it in halves
+	 * until it is no higher than {@link ParallelBitBoardState#stripHeight}. The
+	 * half computed by another thread counts its births and deaths separately,
+	 * and they are added up once it is done.
+	 */
+	@SuppressWarnings("serial")
+	private class StripTask extends RecursiveTask<Long> {
+
+		private final int from;
+		private final int to;
+		private final ChangeCounter counter;
+
+
+		StripTask(int from, int to, ChangeCounter counter) {
+			this.from = from;
+			this.to = to;
+			this.counter = counter;
+		}
+
+		@Override
+		protected Long compute() {
+			if (to - from <= stripHeight) {
+				return stepRows(from, to, counter);
+			}
+			int mid = (from + to) >>> 1;
+			StripTask upper = new StripTask(from, mid, counter.split());
+			upper.fork();
+			long changed = new StripTask(mid, to, counter).compute();
+			changed |= upper.join();
+			counter.add(upper.counter);
+			return changed;
+		}
+	}
+}
@@ -1,9 +1,8 @@
 package game;
 
-import com.google.common.collect.ComparisonChain;
-
 /**
- * A 2-d coordinate.
+ * A 2-d coordinate. A position can also be packed into a single {@code long},
+ * see {@link #toLong()}, for collections keyed on primitives.
  * 
  * @author Henrik Josefsson 2020-06-29
  */
@@ -22,6 +21,60 @@ public class Position implements Comparable<Position>{
 		this.y = y;
 	}
 	
+	/**
+	 * Unpacks a position packed with {@link #toLong()}.
+	 * 
+	 * @param key The packed position.
+	 * @return The position.
+	 */
+	public static Position fromLong(long key) {
+		return new Position(x(key), y(key));
+	}
+	
+	/**
+	 * Packs a position into a {@code long} with x in the high and y in the low
+	 * 32 bits. Every position packs into a different key.
+	 * 
+	 * @param x The x-coordinate.
+	 * @param y The y-coordinate.
+	 * @return The packed position.
+	 */
+	public static long toLong(int x, int y) {
+		return (long) x << 32 | y & 0xFFFFFFFFL;
+	}
+	
+	/**
+	 * @param key A packed position.
+	 * @return The x-coordinate of the packed position.
+	 */
+	public static int x(long key) {
+		return (int) (key >> 32);
+	}
+	
+	/**
+	 * @param key A packed position.
+	 * @return The y-coordinate of the packed position.
+	 */
+	public static int y(long key) {
+		return (int) key;
+	}
+	
+	/**
+	 * Computes the Morton key of a coordinate, which interleaves the bits of x
+	 * and y. Positions close to each other mostly have close keys, so sorting by
+	 * the key visits the plane in Z-order curves. Negative coordinates are
+	 * ordered before positive ones.
+	 * 
+	 * @param x The x-coordinate.
+	 * @param y The y-coordinate.
+	 * @return The key, with the bits of x in the even and the bits of y in the
+	 *         odd positions. Compare keys with
+	 *         {@link Long#compareUnsigned(long, long)}.
+	 */
+	public static long mortonKey(int x, int y) {
+		return spread(x ^ Integer.MIN_VALUE) | spread(y ^ Integer.MIN_VALUE) << 1;
+	}
+	
 	/**
 	 * @return The x-coordinate.
 	 */
@@ -36,10 +89,26 @@ public class Position implements Comparable<Position>{
 		return y;
 	}
 	
+	/**
+	 * @return The position packed into a {@code long}, see
+	 *         {@link #toLong(int, int)}.
+	 */
+	public long toLong() {
+		return toLong(x, y);
+	}
+	
+	/**
+	 * @return The Morton key of the position, see {@link #mortonKey(int, int)}.
+	 */
+	public long mortonKey() {
+		return mortonKey(x, y);
+	}
+	
+	/**
+	 * Orders positions by x and then by y.
+	 */
 	public int compareTo(Position o) {
-		return ComparisonChain.start()
-				.compare(x, o.x)
-				.compare(y,  o.y).result();
+		return x != o.x ? Integer.compare(x, o.x) : Integer.compare(y, o.y);
 	}
 
 	@Override
@@ -65,5 +134,19 @@ public class Position implements Comparable<Position>{
 		if (y != other.y)
 			return false;
 		return true;
-	}		
+	}
+	
+	
+	/**
+	 * Spreads the 32 bits of a value out to every other bit of a {@code long}.
+	 */
+	private static long spread(int value) {
+		long bits = value & 0xFFFFFFFFL;
+		bits = (bits | bits << 16) & 0x0000FFFF0000FFFFL;
+		bits = (bits | bits << 8) & 0x00FF00FF00FF00FFL;
+		bits = (bits | bits << 4) & 0x0F0F0F0F0F0F0F0FL;
+		bits = (bits | bits << 2) & 0x3333333333333333L;
+		bits = (bits | bits << 1) & 0x5555555555555555L;
+		return bits;
+	}
 }
@@ -0,0 +1,504 @@
+package game;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Reads and writes patterns in the run length encoded (RLE) format, e.g.
+ *
+ * <pre>
+ * #N Glider
+ * x = 3, y = 3, rule = B3/S23
+ * bob$2bo$3o!
+ * </pre>
+ *
+ * Both directions stream: the reader parses the pattern body one character at
+ * a time from a fixed buffer, and the writer reads the engine one row at a
+ * time through {@link LifeEngine#isColony(int, int)}, looking only at the
+ * 64x64 tiles that hold colonies. Neither holds more than the cells read, or
+ * the list of those tiles.
+ */
+public final class RleFormat {
+
+	/**
+	 * The longest line written, as recommended by the format.
+	 */
+	private static final int MAX_LINE_LENGTH = 70;
+
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * The base 2 logarithm of the width and height of the tiles a pattern is
+	 * written in.
+	 */
+	private static final int TILE_SHIFT = 6;
+	private static final int TILE_SIZE = 1 << TILE_SHIFT;
+
+
+	private RleFormat() {
+	}
+
+	/**
+	 * Reads a pattern. Comment lines starting with {@code #} are skipped. The
+	 * rule defaults to {@link Rule#CONWAY} if the header has none. A Golly
+	 * topology suffix of the rule, e.g. {@code B3/S23:T64,64} for a 64x64
+	 * torus, gives the topology and board size of the pattern. Every tag
+	 * letter other than {@code b} is a living cell, as multi-state patterns are
+	 * read as two-state patterns.
+	 *
+	 * @param in The pattern source. Must not be {@code null}. Not closed.
+	 * @return The pattern. Never {@code null}.
+	 * @throws IOException              If reading fails.
+	 * @throws IllegalArgumentException If the pattern is malformed or has a
+	 *                                  topology without a {@link Topology}.
+	 */
+	public static LifePattern read(Reader in) throws IOException {
+		return new Parser(in).parse();
+	}
+
+	/**
+	 * Writes the current generation of an engine, cropped to the bounding box
+	 * of its colonies. The rule of a torus or Klein bottle gets the Golly
+	 * topology suffix with the board size.
+	 *
+	 * @param engine The engine to write. Must not be {@code null}.
+	 * @param out    The destination. Must not be {@code null}. Neither flushed
+	 *               nor closed.
+	 * @throws IOException If writing fails.
+	 */
+	public static void write(LifeEngine engine, Writer out) throws IOException {
+		// The bounding box as min x, min y, max x and max y, and the tiles holding
+		// colonies. Colonies of an infinite engine may be far apart, so only the
+		// cells of these tiles are looked at rather than the whole bounding box.
+		long[] box = { Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE };
+		LongByteMap tileSet = new LongByteMap(16);
+		engine.forEachLive((x, y) -> {
+			box[0] = Math.min(box[0], x);
+			box[1] = Math.min(box[1], y);
+			box[2] = Math.max(box[2], x);
+			box[3] = Math.max(box[3], y);
+			long tile = tileKey(x >> TILE_SHIFT, y >> TILE_SHIFT);
+			if (tileSet.get(tile) == 0) {
+				tileSet.add(tile, 1);
+			}
+		});
+		long[] tiles = new long[tileSet.size()];
+		int count = 0;
+		for (int i = 0; i < tileSet.capacity(); i++) {
+			if (tileSet.keyAt(i) != LongByteMap.EMPTY) {
+				tiles[count++] = tileSet.keyAt(i);
+			}
+		}
+		Arrays.sort(tiles);
+		long minX = 0, minY = 0, maxX = -1, maxY = -1;
+		if (tiles.length > 0) {
+			minX = box[0];
+			minY = box[1];
+			maxX = box[2];
+			maxY = box[3];
+		}
+		out.write(String.format("x = %d, y = %d, rule = %s%s%n", maxX - minX + 1, maxY - minY + 1, engine.getRule(),
+				topologySuffix(engine)));
+		Emitter emitter = new Emitter(out);
+		long y = minY;
+		for (int first = 0; first < tiles.length;) {
+			// The tiles of a row of tiles, sorted by column.
+			int tileY = (int) (tiles[first] >> 32);
+			int last = first;
+			while (last < tiles.length && tiles[last] >> 32 == tileY) {
+				last++;
+			}
+			long top = Math.max((long) tileY << TILE_SHIFT, minY);
+			long bottom = Math.min(((long) tileY << TILE_SHIFT) + TILE_SIZE - 1, maxY);
+			emitter.endRows(top - y);
+			for (y = top; y <= bottom; y++) {
+				writeRow(engine, (int) y, tiles, first, last, minX, emitter);
+				emitter.endRows(1);
+			}
+			first = last;
+		}
+		emitter.end();
+	}
+
+
+	/**
+	 * Writes the runs of a row, looking only at the cells of the given tiles.
+	 * Dead cells at the end of the row are implied.
+	 */
+	private static void writeRow(LifeEngine engine, int y, long[] tiles, int first, int last, long minX,
+			Emitter emitter) throws IOException {
+		long x = minX;
+		long start = 0;
+		long run = 0;
+		for (int i = first; i < last; i++) {
+			long left = (long) tileColumn(tiles[i]) << TILE_SHIFT;
+			for (long cell = left; cell < left + TILE_SIZE; cell++) {
+				if (!engine.isColony((int) cell, y)) {
+					continue;
+				}
+				if (run > 0 && start + run == cell) {
+					run++;
+					continue;
+				}
+				x = writeRun(start, run, x, emitter);
+				start = cell;
+				run = 1;
+			}
+		}
+		writeRun(start, run, x, emitter);
+	}
+
+	/**
+	 * Writes a run of living colonies and the dead cells before it.
+	 *
+	 * @return The column after the run.
+	 */
+	private static long writeRun(long start, long run, long x, Emitter emitter) throws IOException {
+		if (run == 0) {
+			return x;
+		}
+		if (start > x) {
+			emitter.run(start - x, 'b');
+		}
+		emitter.run(run, 'o');
+		return start + run;
+	}
+
+	/**
+	 * @return The Golly topology suffix of the rule of a wrapping board, which
+	 *         behaves differently on a board of another size, or an empty
+	 *         string.
+	 */
+	private static String topologySuffix(LifeEngine engine) {
+		switch (engine.getTopology()) {
+		case TORUS:
+			return String.format(":T%d,%d", engine.getWidth(), engine.getHeight());
+		case KLEIN_BOTTLE:
+			return String.format(":K%d*,%d", engine.getWidth(), engine.getHeight());
+		default:
+			return "";
+		}
+	}
+
+	/**
+	 * @return The key of a tile of {@link #write}, which sorts by row and then
+	 *         column, as the row in the high and the column with a flipped sign
+	 *         bit in the low half.
+	 */
+	private static long tileKey(int tileX, int tileY) {
+		return (long) tileY << 32 | (tileX ^ Integer.MIN_VALUE) & 0xFFFFFFFFL;
+	}
+
+	private static int tileColumn(long tile) {
+		return (int) tile ^ Integer.MIN_VALUE;
+	}
+
+
+	/**
+	 * Parses a rule in B/S notation or the older S/B notation, e.g.
+	 * {@code 23/3}. Rules with a Golly topology suffix, e.g. {@code :T64,64},
+	 * are rejected, as only the RLE header maps them to a {@link Topology}.
+	 */
+	static Rule parseRule(String notation) {
+		String rule = notation.trim();
+		if (rule.indexOf(':') >= 0) {
+			throw new IllegalArgumentException("Unsupported topology suffix in rule " + notation);
+		}
+		if (rule.toUpperCase(Locale.ROOT).startsWith("B")) {
+			return Rule.parse(rule);
+		}
+		int split = rule.indexOf('/');
+		if (split < 0) {
+			throw new IllegalArgumentException("Malformed rule " + notation);
+		}
+		return Rule.parse("B" + rule.substring(split + 1) + "/S" + rule.substring(0, split));
+	}
+
+
+	/**
+	 * Streaming RLE parser. Reads characters through its own buffer instead of
+	 * line by line, so a body line is never turned into a string.
+	 */
+	private static final class Parser {
+
+		private final Reader in;
+		private final char[] buffer = new char[BUFFER_SIZE];
+		private int position = 0;
+		private int limit = 0;
+		private int line = 1;
+
+		private int width;
+		private int height;
+		private Rule rule = Rule.CONWAY;
+		private Topology topology = null;
+		private int boardWidth = 0;
+		private int boardHeight = 0;
+		private long[] cells = new long[64];
+		private int size = 0;
+
+
+		Parser(Reader in) {
+			this.in = in;
+		}
+
+		LifePattern parse() throws IOException {
+			skipComments();
+			parseHeader(readLine());
+			parseBody();
+			return new LifePattern(width, height, rule, topology, boardWidth, boardHeight, Arrays.copyOf(cells, size));
+		}
+
+		private void skipComments() throws IOException {
+			while (true) {
+				int c = peek();
+				if (c == '#') {
+					readLine();
+				} else if (c == '\n' || c == '\r' || c == ' ' || c == '\t') {
+					next();
+				} else {
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Parses {@code x = <width>, y = <height>[, rule = <rule>]}.
+		 */
+		private void parseHeader(String header) {
+			width = -1;
+			height = -1;
+			// Only commas before another field split, as a topology suffix of the
+			// rule has one too.
+			for (String field : header.split(",(?=[^,]*=)")) {
+				int split = field.indexOf('=');
+				if (split < 0) {
+					throw error("Malformed header field " + field.trim());
+				}
+				String name = field.substring(0, split).trim();
+				String value = field.substring(split + 1).trim();
+				switch (name) {
+				case "x":
+					width = parseSize(name, value);
+					break;
+				case "y":
+					height = parseSize(name, value);
+					break;
+				case "rule":
+					int suffix = value.indexOf(':');
+					rule = parseRule(suffix < 0 ? value : value.substring(0, suffix));
+					if (suffix >= 0) {
+						parseTopology(value.substring(suffix + 1).trim());
+					}
+					break;
+				default:
+					// Unknown fields are ignored, as by other readers.
+				}
+			}
+			if (width < 0 || height < 0) {
+				throw error("Header without pattern size " + header);
+			}
+			if (topology != null && (width > boardWidth || height > boardHeight)) {
+				throw error(String.format("The %dx%d pattern doesn't fit its %dx%d board", width, height, boardWidth,
+						boardHeight));
+			}
+		}
+
+		/**
+		 * Parses the Golly topology suffix of a rule, {@code P<w>,<h>} for a
+		 * bounded plane, {@code T<w>,<h>} for a torus or {@code K<w>*,<h>} for a
+		 * Klein bottle with twisted top and bottom edges. Other topologies,
+		 * shifted edges and edges at infinity can't be run and are rejected.
+		 */
+		private void parseTopology(String suffix) {
+			String[] sizes = suffix.length() > 0 ? suffix.substring(1).split(",", -1) : new String[0];
+			if (sizes.length != 2) {
+				throw error("Malformed topology " + suffix);
+			}
+			switch (Character.toUpperCase(suffix.charAt(0))) {
+			case 'P':
+				topology = Topology.BOUNDED;
+				break;
+			case 'T':
+				topology = Topology.TORUS;
+				break;
+			case 'K':
+				if (!sizes[0].endsWith("*")) {
+					throw error("Unsupported topology " + suffix + ", only the top and bottom edges can be twisted");
+				}
+				sizes[0] = sizes[0].substring(0, sizes[0].length() - 1);
+				topology = Topology.KLEIN_BOTTLE;
+				break;
+			default:
+				throw error("Unsupported topology " + suffix + ", expected a bounded plane, torus or Klein bottle");
+			}
+			boardWidth = parseBoardSize(suffix, sizes[0]);
+			boardHeight = parseBoardSize(suffix, sizes[1]);
+		}
+
+		private int parseBoardSize(String suffix, String value) {
+			int size;
+			try {
+				size = Integer.parseInt(value);
+			} catch (NumberFormatException e) {
+				throw error("Unsupported topology " + suffix + ", expected a board size, was " + value);
+			}
+			if (size <= 0) {
+				throw error("Unsupported topology " + suffix + ", edges at infinity can't be run");
+			}
+			return size;
+		}
+
+		private int parseSize(String name, String value) {
+			try {
+				int size = Integer.parseInt(value);
+				if (size < 0) {
+					throw error("Negative pattern " + name + " " + value);
+				}
+				return size;
+			} catch (NumberFormatException e) {
+				throw error("Malformed pattern " + name + " " + value);
+			}
+		}
+
+		private void parseBody() throws IOException {
+			int x = 0;
+			int y = 0;
+			long count = 0;
+			while (true) {
+				int c = next();
+				if (c >= '0' && c <= '9') {
+					count = count * 10 + c - '0';
+					if (count > Integer.MAX_VALUE) {
+						throw error("Run count too large");
+					}
+					continue;
+				}
+				int run = count == 0 ? 1 : (int) count;
+				if (c == '!' || c == -1) {
+					return;
+				} else if (c == '$') {
+					y += run;
+					x = 0;
+				} else if (c == 'b' || c == '.') {
+					x += run;
+				} else if (Character.isLetter(c)) {
+					if (x + (long) run > width || y >= height) {
+						throw error(String.format("Cells outside the %dx%d pattern", width, height));
+					}
+					for (int i = 0; i < run; i++) {
+						add(x++, y);
+					}
+				} else if (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+					continue;
+				} else {
+					throw error("Unexpected character '" + (char) c + "'");
+				}
+				count = 0;
+			}
+		}
+
+		private void add(int x, int y) {
+			if (size == cells.length) {
+				cells = Arrays.copyOf(cells, size * 2);
+			}
+			cells[size++] = (long) x << 32 | y;
+		}
+
+		/**
+		 * Reads the rest of the current line, without the line break.
+		 */
+		private String readLine() throws IOException {
+			StringBuilder text = new StringBuilder();
+			for (int c = next(); c != '\n' && c != -1; c = next()) {
+				if (c != '\r') {
+					text.append((char) c);
+				}
+			}
+			return text.toString();
+		}
+
+		private int peek() throws IOException {
+			if (position == limit && !fill()) {
+				return -1;
+			}
+			return buffer[position];
+		}
+
+		private int next() throws IOException {
+			if (position == limit && !fill()) {
+				return -1;
+			}
+			char c = buffer[position++];
+			if (c == '\n') {
+				line++;
+			}
+			return c;
+		}
+
+		private boolean fill() throws IOException {
+			int read = in.read(buffer);
+			while (read == 0) {
+				read = in.read(buffer);
+			}
+			position = 0;
+			limit = Math.max(0, read);
+			return read > 0;
+		}
+
+		private IllegalArgumentException error(String message) {
+			return new IllegalArgumentException(String.format("Malformed RLE on line %d: %s", line, message));
+		}
+	}
+
+
+	/**
+	 * Writes runs, merging row ends and breaking lines at
+	 * {@link #MAX_LINE_LENGTH}.
+	 */
+	private static final class Emitter {
+
+		private final Writer out;
+		private int lineLength = 0;
+
+		/**
+		 * The number of row ends not yet written.
+		 */
+		private long rowEnds = 0;
+
+
+		Emitter(Writer out) {
+			this.out = out;
+		}
+
+		void run(long run, char tag) throws IOException {
+			if (rowEnds > 0) {
+				write(rowEnds, '$');
+				rowEnds = 0;
+			}
+			write(run, tag);
+		}
+
+		void endRows(long rows) {
+			rowEnds += rows;
+		}
+
+		void end() throws IOException {
+			// Row ends after the last row are implied.
+			write(1, '!');
+			out.write(System.lineSeparator());
+		}
+
+		private void write(long run, char tag) throws IOException {
+			String token = run == 1 ? String.valueOf(tag) : run + String.valueOf(tag);
+			if (lineLength + token.length() > MAX_LINE_LENGTH) {
+				out.write(System.lineSeparator());
+				lineLength = 0;
+			}
+			out.write(token);
+			lineLength += token.length();
+		}
+	}
+}
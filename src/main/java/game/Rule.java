@@ -0,0 +1,196 @@
+package game;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * A Life-like cellular automaton rule in B/S notation, e.g. {@code B3/S23} for
+ * Conway's game of life. A dead cell is born if its number of living neighbors
+ * is one of the birth counts, and a living cell survives if its number of
+ * living neighbors is one of the survival counts.
+ * <p>
+ * Rules where cells are born without neighbors ({@code B0}) are not supported
+ * since they would make the infinite empty area around every pattern come
+ * alive.
+ */
+public final class Rule {
+
+	/**
+	 * Conway's game of life.
+	 */
+	public static final Rule CONWAY = parse("B3/S23");
+
+	/**
+	 * HighLife, which has a self replicating pattern.
+	 */
+	public static final Rule HIGHLIFE = parse("B36/S23");
+
+	/**
+	 * Day &amp; Night, where living and dead cells behave symmetrically.
+	 */
+	public static final Rule DAY_AND_NIGHT = parse("B3678/S34678");
+
+	/**
+	 * Seeds, where every living cell dies in every generation.
+	 */
+	public static final Rule SEEDS = parse("B2/S");
+
+
+	/**
+	 * Bit n is set if a cell with n neighbors is born or survives.
+	 */
+	private final int birthMask;
+	private final int surviveMask;
+
+	/**
+	 * Whether this is Conway's rule, which has a faster bit sliced evaluation.
+	 */
+	private final boolean conway;
+
+	/**
+	 * The next state of a cell indexed by {@code (alive ? 9 : 0) + neighbors}.
+	 */
+	private final boolean[] countTable = new boolean[18];
+
+	/**
+	 * The next state of the center cell of a 3x3 neighborhood indexed by the
+	 * neighborhood, see {@link #isAlive(int)}.
+	 */
+	private final boolean[] neighborhoodTable = new boolean[512];
+
+
+	private Rule(int birthMask, int surviveMask) {
+		this.birthMask = birthMask;
+		this.surviveMask = surviveMask;
+		this.conway = birthMask == 1 << 3 && surviveMask == (1 << 2 | 1 << 3);
+		for (int n = 0; n <= 8; n++) {
+			countTable[n] = (birthMask >>> n & 1) != 0;
+			countTable[9 + n] = (surviveMask >>> n & 1) != 0;
+		}
+		for (int cells = 0; cells < neighborhoodTable.length; cells++) {
+			boolean alive = (cells >>> 4 & 1) != 0;
+			int neighbors = Integer.bitCount(cells & ~(1 << 4));
+			neighborhoodTable[cells] = isAlive(alive, neighbors);
+		}
+	}
+
+	/**
+	 * Parses a rule in B/S notation, e.g. {@code B36/S23}. Letters are case
+	 * insensitive.
+	 *
+	 * @param notation The rule. Must not be {@code null}.
+	 * @return The rule. Never {@code null}.
+	 * @throws IllegalArgumentException If the rule is malformed or a
+	 *                                  {@code B0} rule.
+	 */
+	public static Rule parse(String notation) {
+		Objects.requireNonNull(notation);
+		String upper = notation.trim().toUpperCase(Locale.ROOT);
+		int split = upper.indexOf('/');
+		if (!upper.startsWith("B") || split < 0 || !upper.startsWith("S", split + 1)) {
+			throw new IllegalArgumentException("Malformed rule " + notation + ", expected B<counts>/S<counts>");
+		}
+		int birthMask = parseCounts(upper.substring(1, split), notation);
+		int surviveMask = parseCounts(upper.substring(split + 2), notation);
+		if ((birthMask & 1) != 0) {
+			throw new IllegalArgumentException("Unsupported rule " + notation + ", cells can't be born without neighbors");
+		}
+		return new Rule(birthMask, surviveMask);
+	}
+
+	/**
+	 * @param alive     Whether the cell is alive.
+	 * @param neighbors The number of living neighbors, in {@code [0..8]}.
+	 * @return Whether the cell is alive in the next generation.
+	 */
+	public boolean isAlive(boolean alive, int neighbors) {
+		return countTable[alive ? 9 + neighbors : neighbors];
+	}
+
+	/**
+	 * @param neighborhood A 3x3 neighborhood where bit {@code y * 3 + x} holds
+	 *                     the cell at (x, y). Bit 4 is the center cell.
+	 * @return Whether the center cell is alive in the next generation.
+	 */
+	public boolean isAlive(int neighborhood) {
+		return neighborhoodTable[neighborhood];
+	}
+
+	/**
+	 * Computes the next state of 64 cells at a time from bit sliced neighbor
+	 * counts. Bit i of every argument belongs to cell i.
+	 *
+	 * @param ones   Bit 0 of the neighbor count.
+	 * @param twos   Bit 1 of the neighbor count.
+	 * @param fours  Bit 2 of the neighbor count.
+	 * @param eights Bit 3 of the neighbor count.
+	 * @param alive  The current cells.
+	 * @return The next cells.
+	 */
+	long nextBits(long ones, long twos, long fours, long eights, long alive) {
+		if (conway) {
+			// Two neighbors keeps a colony alive, three neighbors gives birth.
+			return twos & ~fours & ~eights & (ones | alive);
+		}
+		long next = 0;
+		for (int n = 0; n <= 8; n++) {
+			boolean birth = (birthMask >>> n & 1) != 0;
+			boolean survive = (surviveMask >>> n & 1) != 0;
+			if (!birth && !survive) {
+				continue;
+			}
+			long count = ((n & 1) != 0 ? ones : ~ones)
+					& ((n & 2) != 0 ? twos : ~twos)
+					& ((n & 4) != 0 ? fours : ~fours)
+					& ((n & 8) != 0 ? eights : ~eights);
+			next |= count & (birth && survive ? -1L : birth ? ~alive : alive);
+		}
+		return next;
+	}
+
+	@Override
+	public int hashCode() {
+		return birthMask * 31 + surviveMask;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof Rule))
+			return false;
+		Rule other = (Rule) obj;
+		return birthMask == other.birthMask && surviveMask == other.surviveMask;
+	}
+
+	/**
+	 * @return The rule in B/S notation, e.g. {@code B3/S23}.
+	 */
+	@Override
+	public String toString() {
+		return "B" + counts(birthMask) + "/S" + counts(surviveMask);
+	}
+
+
+	private static int parseCounts(String counts, String notation) {
+		int mask = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			int count = counts.charAt(i) - '0';
+			if (count < 0 || count > 8 || (mask >>> count & 1) != 0) {
+				throw new IllegalArgumentException("Malformed rule " + notation + ", bad neighbor count " + counts.charAt(i));
+			}
+			mask |= 1 << count;
+		}
+		return mask;
+	}
+
+	private static String counts(int mask) {
+		StringBuilder builder = new StringBuilder();
+		for (int n = 0; n <= 8; n++) {
+			if ((mask >>> n & 1) != 0) {
+				builder.append(n);
+			}
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,86 @@
+package game;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands generations from a single simulation thread to a single reader thread
+ * without either thread ever waiting for the other. Three
+ * {@link BoardSnapshot}s are rotated: the writer owns one it captures into,
+ * the reader owns one it reads from, and the third is the latest published
+ * snapshot. Publishing and polling atomically swap the owned snapshot with the
+ * published one, so a snapshot is never written while it is read. Generations
+ * published faster than the reader polls are dropped, the reader always gets
+ * the latest one.
+ */
+public final class SnapshotExchange {
+
+	/**
+	 * Set in {@link #published} when the published snapshot hasn't been
+	 * polled yet.
+	 */
+	private static final int FRESH = 4;
+
+	private static final int INDEX = 3;
+
+
+	private final BoardSnapshot[] snapshots;
+
+	/**
+	 * The index of the published snapshot, possibly combined with
+	 * {@link #FRESH}.
+	 */
+	private final AtomicInteger published = new AtomicInteger(0);
+
+	/**
+	 * The index of the snapshot owned by the writer. Only used by the writer.
+	 */
+	private int back = 1;
+
+	/**
+	 * The index of the snapshot owned by the reader. Only used by the reader.
+	 */
+	private int front = 2;
+
+
+	/**
+	 * @param width  The board width.
+	 * @param height The board height.
+	 * @throws IllegalArgumentException If either dimension is outside its legal range.
+	 */
+	public SnapshotExchange(int width, int height) {
+		snapshots = new BoardSnapshot[] { new BoardSnapshot(width, height), new BoardSnapshot(width, height),
+				new BoardSnapshot(width, height) };
+	}
+
+	/**
+	 * Publishes the current generation of an engine, replacing any published
+	 * generation that hasn't been polled. Must only be called by the writer
+	 * thread.
+	 *
+	 * @param engine The engine to copy. Must have the dimensions of the
+	 *               exchange.
+	 * @throws IllegalArgumentException If the engine has other dimensions.
+	 */
+	public void publish(LifeEngine engine) {
+		snapshots[back].capture(engine);
+		back = published.getAndSet(back | FRESH) & INDEX;
+	}
+
+	/**
+	 * Takes the latest published snapshot. The snapshot stays valid, and
+	 * unchanged, until the next call to this method. Must only be called by the
+	 * reader thread.
+	 *
+	 * @return The snapshot, or {@code null} if nothing has been published since
+	 *         the last call.
+	 */
+	public BoardSnapshot poll() {
+		if ((published.get() & FRESH) == 0) {
+			return null;
+		}
+		// Only the writer can change the published snapshot in between, and it
+		// only ever publishes fresh ones.
+		front = published.getAndSet(front) & INDEX;
+		return snapshots[front];
+	}
+}
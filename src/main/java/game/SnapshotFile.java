@@ -0,0 +1,233 @@
+package game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads and writes a single generation in a compact binary format. The file is
+ * a {@value #HEADER_SIZE} byte header followed by the bit packed rows of a
+ * {@link BoardSnapshot}, all little endian:
+ *
+ * <pre>
+ * offset size
+ *      0    4 magic, "LIFE"
+ *      4    4 format version, {@value #VERSION}
+ *      8    4 board width
+ *     12    4 board height
+ *     16    8 generation
+ *     24    8 population
+ *     32    1 topology, the ordinal of a {@link Topology}
+ *     34    2 rule length n
+ *     36    n rule in B/S notation, ASCII
+ *     64      rows, (width + 63) / 64 words of 8 bytes per row
+ * </pre>
+ *
+ * The rows of an infinite board are followed by the colonies outside the
+ * board: an 8 byte count and then the {@link Position#toLong() packed
+ * position} of every colony, 8 bytes each.
+ * <p>
+ * Files of version 1 have no topology, they hold the rule length at offset 32
+ * and the rule at offset 34, and are read as bounded boards. Files of version
+ * 2 have no colonies outside the board.
+ *
+ * A file is read by mapping it into memory and copying the rows in bulk, so
+ * restoring a board costs about as much as copying its bits, rather than
+ * parsing cells. A 2048x2048 board is a 512 KiB file.
+ */
+public final class SnapshotFile {
+
+	/**
+	 * The size of the header, also the offset of the rows.
+	 */
+	private static final int HEADER_SIZE = 64;
+
+	private static final int MAGIC = 0x4546494C;
+
+	private static final int VERSION = 3;
+
+	private static final int TOPOLOGY_OFFSET = 32;
+
+	private static final int RULE_OFFSET = 34;
+
+	/**
+	 * The offset of the rule length in files of version 1.
+	 */
+	private static final int VERSION_1_RULE_OFFSET = 32;
+
+	private static final int MAX_RULE_LENGTH = HEADER_SIZE - RULE_OFFSET - Short.BYTES;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+
+	private SnapshotFile() {
+	}
+
+	/**
+	 * Writes the current generation of an engine. The file is first written
+	 * next to the destination and then moved over it, so the destination always
+	 * holds a complete snapshot even if writing fails half way.
+	 *
+	 * @param engine The engine to write. Must not be {@code null}. Its board
+	 *               must be no larger than {@value GameOfLifeState#MAX_WIDTH}x
+	 *               {@value GameOfLifeState#MAX_HEIGHT}.
+	 * @param path   The destination. Replaced if it exists.
+	 * @throws IOException              If writing fails.
+	 * @throws IllegalArgumentException If the board is too large for a
+	 *                                  snapshot.
+	 */
+	public static void write(LifeEngine engine, Path path) throws IOException {
+		BoardSnapshot snapshot = new BoardSnapshot(engine.getWidth(), engine.getHeight());
+		snapshot.capture(engine);
+		write(snapshot, path);
+	}
+
+	/**
+	 * Writes a snapshot, see {@link #write(LifeEngine, Path)}.
+	 *
+	 * @param snapshot The snapshot to write. Must not be {@code null}.
+	 * @param path     The destination. Replaced if it exists.
+	 * @throws IOException If writing fails.
+	 */
+	public static void write(BoardSnapshot snapshot, Path path) throws IOException {
+		byte[] rule = snapshot.getRule().toString().getBytes(StandardCharsets.US_ASCII);
+		if (rule.length > MAX_RULE_LENGTH) {
+			throw new IllegalArgumentException("Rule " + snapshot.getRule() + " is too long for a snapshot");
+		}
+		Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putInt(snapshot.getWidth());
+			buffer.putInt(snapshot.getHeight());
+			buffer.putLong(snapshot.getGeneration());
+			buffer.putLong(snapshot.getPopulation());
+			buffer.put((byte) snapshot.getTopology().ordinal());
+			buffer.position(RULE_OFFSET);
+			buffer.putShort((short) rule.length);
+			buffer.put(rule);
+			buffer.position(HEADER_SIZE);
+			for (int y = 0; y < snapshot.getHeight(); y++) {
+				for (long word : snapshot.getRow(y)) {
+					putLong(word, buffer, channel);
+				}
+			}
+			if (snapshot.getTopology() == Topology.INFINITE) {
+				putLong(snapshot.getOutsideCount(), buffer, channel);
+				for (int i = 0; i < snapshot.getOutsideCount(); i++) {
+					putLong(snapshot.getOutside(i), buffer, channel);
+				}
+			}
+			drain(buffer, channel);
+			channel.force(false);
+		}
+		Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Reads a snapshot by mapping the file into memory.
+	 *
+	 * @param path The file to read.
+	 * @return The snapshot. Never {@code null}.
+	 * @throws IOException              If reading fails.
+	 * @throws IllegalArgumentException If the file isn't a snapshot, is of
+	 *                                  an unknown version, or is truncated or
+	 *                                  corrupt.
+	 */
+	public static BoardSnapshot read(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < HEADER_SIZE) {
+				throw error(path, "truncated header");
+			}
+			MappedByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			file.order(ByteOrder.LITTLE_ENDIAN);
+			if (file.getInt(0) != MAGIC) {
+				throw error(path, "not a snapshot file");
+			}
+			int version = file.getInt(4);
+			if (version < 1 || version > VERSION) {
+				throw error(path, "unsupported version " + version);
+			}
+			int ruleOffset = version == 1 ? VERSION_1_RULE_OFFSET : RULE_OFFSET;
+			int topology = version == 1 ? Topology.BOUNDED.ordinal() : file.get(TOPOLOGY_OFFSET);
+			BoardSnapshot snapshot = new BoardSnapshot(file.getInt(8), file.getInt(12));
+			long generation = file.getLong(16);
+			long population = file.getLong(24);
+			int ruleLength = file.getShort(ruleOffset);
+			if (generation < 0 || ruleLength < 0 || ruleLength > HEADER_SIZE - ruleOffset - Short.BYTES
+					|| topology < 0 || topology >= Topology.values().length) {
+				throw error(path, "corrupt header");
+			}
+			int words = snapshot.getWordCount();
+			long rowsEnd = HEADER_SIZE + (long) snapshot.getHeight() * words * Long.BYTES;
+			boolean hasOutside = version >= 3 && topology == Topology.INFINITE.ordinal();
+			long outsideCount = hasOutside && size >= rowsEnd + Long.BYTES ? file.getLong((int) rowsEnd) : 0;
+			long expectedSize = hasOutside ? rowsEnd + Long.BYTES + outsideCount * Long.BYTES : rowsEnd;
+			if (outsideCount < 0 || outsideCount > size / Long.BYTES || size != expectedSize) {
+				throw error(path, String.format("%d bytes don't match a %dx%d board", size, snapshot.getWidth(),
+						snapshot.getHeight()));
+			}
+			byte[] rule = new byte[ruleLength];
+			file.position(ruleOffset + Short.BYTES);
+			file.get(rule);
+			file.position(HEADER_SIZE);
+			LongBuffer rows = file.slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+			int extraBits = words * Long.SIZE - snapshot.getWidth();
+			long outside = extraBits == 0 ? 0 : -1L << (Long.SIZE - extraBits);
+			for (int y = 0; y < snapshot.getHeight(); y++) {
+				long[] row = snapshot.getRow(y);
+				rows.get(row);
+				if ((row[words - 1] & outside) != 0) {
+					throw error(path, "colonies outside the board on row " + y);
+				}
+			}
+			if (hasOutside) {
+				rows.get();
+			}
+			for (long i = 0; i < outsideCount; i++) {
+				try {
+					snapshot.addOutside(rows.get());
+				} catch (IllegalArgumentException e) {
+					throw error(path, e.getMessage());
+				}
+			}
+			snapshot.restore(generation, Rule.parse(new String(rule, StandardCharsets.US_ASCII)),
+					Topology.values()[topology]);
+			if (snapshot.getPopulation() != population) {
+				throw error(path, "population " + snapshot.getPopulation() + " doesn't match the header " + population);
+			}
+			return snapshot;
+		}
+	}
+
+
+	private static void putLong(long value, ByteBuffer buffer, FileChannel channel) throws IOException {
+		if (buffer.remaining() < Long.BYTES) {
+			drain(buffer, channel);
+		}
+		buffer.putLong(value);
+	}
+
+	private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	private static IllegalArgumentException error(Path path, String message) {
+		return new IllegalArgumentException("Malformed snapshot file " + path + ": " + message);
+	}
+}
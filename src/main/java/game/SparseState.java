@@ -0,0 +1,323 @@
+package game;
+
+import java.util.Collection;
+import java.util.Objects;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Sparse game of life game state. Works like {@link GameOfLifeState} by only
+ * storing the living colonies, but every position is packed into a
+ * {@code long} and neighbors are counted in a primitive open addressing hash
+ * table. All tables are reused between generations, so updating a stable
+ * population doesn't allocate anything.
+ */
+public class SparseState implements LifeEngine {
+
+	/**
+	 * Added to the neighbor count of a position that holds a living colony.
+	 */
+	private static final int ALIVE_FLAG = 0x10;
+
+
+	private final int width;
+	private final int height;
+	private final Rule rule;
+	private final Topology topology;
+
+
+	private LongByteMap colonies;
+	private LongByteMap nextColonies;
+
+	/**
+	 * The colonies before the last update or step.
+	 */
+	private LongByteMap previousColonies;
+
+	/**
+	 * Neighbor count of every position next to a living colony.
+	 */
+	private final LongByteMap neighbourCount;
+
+	/**
+	 * The births and deaths of the last update or step, and the hash of the
+	 * board.
+	 */
+	private final ChangeCounter counter = new ChangeCounter();
+	private long generation = 0;
+
+
+	/**
+	 * Initializes the game of life game state.
+	 *
+	 * @param width    The board width. Must be positive and less than
+	 *                 {@value GameOfLifeState#MAX_WIDTH}.
+	 * @param height   The board height. Must be positive and less than
+	 *                 {@value GameOfLifeState#MAX_HEIGHT}.
+	 * @param colonies The initial colony positions. May be empty, but must not be
+	 *                 {@code null}. All positions must be inside the board.
+	 */
+	public SparseState(int width, int height, Collection<Position> colonies) {
+		this(width, height, colonies, Rule.CONWAY);
+	}
+
+	/**
+	 * Initializes the game state.
+	 *
+	 * @param width    The board width. Must be positive and less than
+	 *                 {@value GameOfLifeState#MAX_WIDTH}.
+	 * @param height   The board height. Must be positive and less than
+	 *                 {@value GameOfLifeState#MAX_HEIGHT}.
+	 * @param colonies The initial colony positions. May be empty, but must not be
+	 *                 {@code null}. All positions must be inside the board.
+	 * @param rule     The rule deciding which colonies survive and are born. Must
+	 *                 not be {@code null}.
+	 */
+	public SparseState(int width, int height, Collection<Position> colonies, Rule rule) {
+		this(width, height, colonies, rule, Topology.BOUNDED);
+	}
+
+	/**
+	 * Initializes the game state. All topologies are supported, on an infinite
+	 * board colonies may leave the board.
+	 *
+	 * @param width    The board width. Must be positive and less than
+	 *                 {@value GameOfLifeState#MAX_WIDTH}.
+	 * @param height   The board height. Must be positive and less than
+	 *                 {@value GameOfLifeState#MAX_HEIGHT}.
+	 * @param colonies The initial colony positions. May be empty, but must not be
+	 *                 {@code null}. Must be inside the board unless the board
+	 *                 is infinite, and the x-coordinates must be strictly
+	 *                 between {@code Integer.MIN_VALUE} and
+	 *                 {@code Integer.MAX_VALUE}.
+	 * @param rule     The rule deciding which colonies survive and are born. Must
+	 *                 not be {@code null}.
+	 * @param topology How the board edges connect. Must not be {@code null}.
+	 */
+	public SparseState(int width, int height, Collection<Position> colonies, Rule rule, Topology topology) {
+		GameOfLifeState.rangeCheck(width, 1, GameOfLifeState.MAX_WIDTH, "width");
+		GameOfLifeState.rangeCheck(height, 1, GameOfLifeState.MAX_HEIGHT, "height");
+		Objects.requireNonNull(colonies);
+		this.width = width;
+		this.height = height;
+		this.rule = Objects.requireNonNull(rule);
+		this.topology = Objects.requireNonNull(topology);
+		this.colonies = new LongByteMap(colonies.size());
+		this.nextColonies = new LongByteMap(colonies.size());
+		this.neighbourCount = new LongByteMap(colonies.size() * 9);
+		for (Position pos : colonies) {
+			if (topology == Topology.INFINITE) {
+				// The neighbors of every colony must have an x-coordinate too.
+				GameOfLifeState.rangeCheck(pos.getX(), Integer.MIN_VALUE + 1, Integer.MAX_VALUE - 1,
+						"colony x-coordinate");
+			} else {
+				GameOfLifeState.rangeCheck(pos.getX(), 0, width - 1, "colony x-coordinate");
+				GameOfLifeState.rangeCheck(pos.getY(), 0, height - 1, "colony y-coordinate");
+			}
+			long key = Position.toLong(pos.getX(), pos.getY());
+			if (this.colonies.get(key) == 0) {
+				this.colonies.add(key, 1);
+			}
+		}
+		this.previousColonies = this.colonies;
+	}
+
+	/**
+	 * Restores the game state from a snapshot, at the generation of the
+	 * snapshot.
+	 *
+	 * @param snapshot The snapshot. Must not be {@code null}.
+	 */
+	public SparseState(BoardSnapshot snapshot) {
+		this(snapshot.getWidth(), snapshot.getHeight(), snapshot.getColonies(), snapshot.getRule(),
+				snapshot.getTopology());
+		this.generation = snapshot.getGeneration();
+	}
+
+	@Override
+	public boolean update() {
+		counter.reset();
+		return nextGeneration();
+	}
+
+	@Override
+	public void step(long generations) {
+		if (generations < 0) {
+			throw new IllegalArgumentException("Negative generation count " + generations);
+		}
+		// A single update leaves the previous generation in nextColonies.
+		LongByteMap before = generations > 1 ? new LongByteMap(colonies) : colonies;
+		counter.reset();
+		for (long i = 0; i < generations; i++) {
+			nextGeneration();
+		}
+		previousColonies = before;
+	}
+
+	@Override
+	public ImmutableSet<Position> getColonies() {
+		ImmutableSet.Builder<Position> builder = ImmutableSet.builder();
+		forEachLive((x, y) -> builder.add(new Position(x, y)));
+		return builder.build();
+	}
+
+	@Override
+	public void forEachLive(CellConsumer consumer) {
+		for (int i = 0; i < colonies.capacity(); i++) {
+			long key = colonies.keyAt(i);
+			if (key != LongByteMap.EMPTY) {
+				consumer.accept(Position.x(key), Position.y(key));
+			}
+		}
+	}
+
+	@Override
+	public ChangeSet getChanges() {
+		ChangeSet.Builder builder = new ChangeSet.Builder();
+		for (int i = 0; i < colonies.capacity(); i++) {
+			long key = colonies.keyAt(i);
+			if (key != LongByteMap.EMPTY && previousColonies.get(key) == 0) {
+				builder.add(Position.x(key), Position.y(key), true);
+			}
+		}
+		for (int i = 0; i < previousColonies.capacity(); i++) {
+			long key = previousColonies.keyAt(i);
+			if (key != LongByteMap.EMPTY && colonies.get(key) == 0) {
+				builder.add(Position.x(key), Position.y(key), false);
+			}
+		}
+		return builder.build();
+	}
+
+	@Override
+	public long getBirths() {
+		return counter.getBirths();
+	}
+
+	@Override
+	public long getDeaths() {
+		return counter.getDeaths();
+	}
+
+	@Override
+	public long getPopulation() {
+		return colonies.size();
+	}
+
+	@Override
+	public boolean trackHash() {
+		counter.startHashing(this);
+		return true;
+	}
+
+	@Override
+	public long getHash() {
+		return counter.getHash();
+	}
+
+	@Override
+	public boolean isColony(int x, int y) {
+		return colonies.get(Position.toLong(x, y)) != 0;
+	}
+
+	@Override
+	public long getGeneration() {
+		return generation;
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public Rule getRule() {
+		return rule;
+	}
+
+	@Override
+	public Topology getTopology() {
+		return topology;
+	}
+
+
+	/**
+	 * Advances to the next generation, adding its births and deaths to those
+	 * already counted.
+	 *
+	 * @return Whether at least one colony was removed or added.
+	 */
+	private boolean nextGeneration() {
+		countNeighbours();
+		boolean changed = false;
+		nextColonies.clear();
+		for (int i = 0; i < neighbourCount.capacity(); i++) {
+			long key = neighbourCount.keyAt(i);
+			if (key == LongByteMap.EMPTY) {
+				continue;
+			}
+			int count = neighbourCount.valueAt(i);
+			boolean alive = (count & ALIVE_FLAG) != 0;
+			boolean nextAlive = rule.isAlive(alive, count & ~ALIVE_FLAG);
+			if (nextAlive && topology == Topology.BOUNDED && !insideBoard(key)) {
+				nextAlive = false;
+			}
+			if (nextAlive) {
+				nextColonies.add(key, 1);
+			}
+			if (nextAlive != alive) {
+				if (nextAlive) {
+					counter.born(Position.x(key), Position.y(key));
+				} else {
+					counter.died(Position.x(key), Position.y(key));
+				}
+				changed = true;
+			}
+		}
+		LongByteMap tmp = colonies;
+		colonies = nextColonies;
+		nextColonies = tmp;
+		previousColonies = nextColonies;
+		generation++;
+		return changed;
+	}
+
+	/**
+	 * Counts the neighbors of every position next to a living colony. Packed
+	 * positions are never {@link LongByteMap#EMPTY} on or next to the board,
+	 * or anywhere else but at {@code x = Integer.MIN_VALUE}.
+	 */
+	private void countNeighbours() {
+		neighbourCount.clear();
+		for (int i = 0; i < colonies.capacity(); i++) {
+			long key = colonies.keyAt(i);
+			if (key == LongByteMap.EMPTY) {
+				continue;
+			}
+			int x = Position.x(key);
+			int y = Position.y(key);
+			// Add one neighbor to all tiles in a 3x3 area centered around the
+			// colony, except the colony itself which is flagged as alive. The
+			// area is wrapped across the edges of the board.
+			for (int dx = -1; dx <= 1; dx++) {
+				for (int dy = -1; dy <= 1; dy++) {
+					int delta = dx == 0 && dy == 0 ? ALIVE_FLAG : 1;
+					int nx = topology.wrapX(x + dx, y + dy, width, height);
+					int ny = topology.wrapY(y + dy, height);
+					neighbourCount.add(Position.toLong(nx, ny), delta);
+				}
+			}
+		}
+	}
+
+	private boolean insideBoard(long key) {
+		int x = Position.x(key);
+		int y = Position.y(key);
+		return 0 <= x && x < width && 0 <= y && y < height;
+	}
+}
@@ -0,0 +1,521 @@
+package game;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Objects;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Bit packed game of life game state that only recomputes the parts of the
+ * board that can change. The board is stored like in {@link BitBoardState} and
+ * divided into tiles that are one word (64 cells) wide and
+ * {@value #TILE_HEIGHT} rows high. A tile is only recomputed if it or one of
+ * its eight neighbor tiles changed in the last generation, so empty and
+ * settled regions cost nothing.
+ * <p>
+ * A tile that didn't change holds the same cells in both generation buffers.
+ * Skipped tiles therefore never need to be copied when the buffers are
+ * swapped.
+ */
+public class TiledBitBoardState implements LifeEngine {
+
+	/**
+	 * The number of rows in a tile.
+	 */
+	static final int TILE_HEIGHT = 32;
+
+
+	private final int width;
+	private final int height;
+	private final Rule rule;
+
+	/**
+	 * Number of longs needed to store a single row, and the number of tile
+	 * columns.
+	 */
+	private final int words;
+
+	/**
+	 * Number of tile rows.
+	 */
+	private final int tileRows;
+
+	/**
+	 * Mask with a bit set for every cell in the last word of a row that is
+	 * inside the board.
+	 */
+	private final long lastWordMask;
+
+	/**
+	 * Always empty row used as the neighbor of the first and last row of a
+	 * bounded board.
+	 */
+	private final long[] emptyRow;
+
+	private final Topology topology;
+
+	/**
+	 * The rows above the first row and below the last row in the current
+	 * generation.
+	 */
+	private long[] northHalo;
+	private long[] southHalo;
+
+	/**
+	 * The mirrored halo rows of a Klein bottle.
+	 */
+	private long[] northMirror;
+	private long[] southMirror;
+
+
+	private long[][] rows;
+	private long[][] nextRows;
+
+	/**
+	 * The rows before the last update or step. If this is {@link #nextRows}
+	 * only the dirty tiles can differ from the current rows.
+	 */
+	private long[][] previousRows;
+
+	/**
+	 * The tiles that changed in the last generation, numbered row by row.
+	 */
+	private int[] dirtyTiles;
+	private int dirtyCount;
+	private int[] nextDirtyTiles;
+
+	/**
+	 * The tiles to recompute in the current update and whether each tile is
+	 * one of them.
+	 */
+	private final int[] activeTiles;
+	private final boolean[] active;
+
+	/**
+	 * The tiles of the current generation as they were before the last step
+	 * over several generations. Only the touched tiles are copied.
+	 */
+	private long[][] stepStart;
+
+	/**
+	 * The tiles that changed during the last step over several generations and
+	 * whether each tile is one of them.
+	 */
+	private int[] touchedTiles;
+	private int touchedCount = 0;
+	private boolean[] touched;
+
+	/**
+	 * Whether updates are part of a step that records the touched tiles.
+	 */
+	private boolean tracking = false;
+
+	/**
+	 * The births and deaths of the last update or step, the population and the
+	 * hash of the board.
+	 */
+	private final ChangeCounter counter = new ChangeCounter();
+	private long generation = 0;
+
+
+	/**
+	 * Initializes the game of life game state.
+	 *
+	 * @param width    The board width. Must be positive and less than
+	 *                 {@value GameOfLifeState#MAX_WIDTH}.
+	 * @param height   The board height. Must be positive and less than
+	 *                 {@value GameOfLifeState#MAX_HEIGHT}.
+	 * @param colonies The initial colony positions. May be empty, but must not be
+	 *                 {@code null}. All positions must be inside the board.
+	 */
+	public TiledBitBoardState(int width, int height, Collection<Position> colonies) {
+		this(width, height, colonies, Rule.CONWAY);
+	}
+
+	/**
+	 * Initializes the game state.
+	 *
+	 * @param width    The board width. Must be positive and less than
+	 *                 {@value GameOfLifeState#MAX_WIDTH}.
+	 * @param height   The board height. Must be positive and less than
+	 *                 {@value GameOfLifeState#MAX_HEIGHT}.
+	 * @param colonies The initial colony positions. May be empty, but must not be
+	 *                 {@code null}. All positions must be inside the board.
+	 * @param rule     The rule deciding which colonies survive and are born. Must
+	 *                 not be {@code null}.
+	 */
+	public TiledBitBoardState(int width, int height, Collection<Position> colonies, Rule rule) {
+		this(width, height, colonies, rule, Topology.BOUNDED);
+	}
+
+	/**
+	 * Initializes the game state. The board may be bounded, a torus or a Klein
+	 * bottle. The edges are handled like in {@link BitBoardState}, and a tile
+	 * next to an edge of a wrapping board also activates the tiles next to the
+	 * opposite edge.
+	 *
+	 * @param width    The board width. Must be positive and less than
+	 *                 {@value GameOfLifeState#MAX_WIDTH}.
+	 * @param height   The board height. Must be positive and less than
+	 *                 {@value GameOfLifeState#MAX_HEIGHT}.
+	 * @param colonies The initial colony positions. May be empty, but must not be
+	 *                 {@code null}. All positions must be inside the board.
+	 * @param rule     The rule deciding which colonies survive and are born. Must
+	 *                 not be {@code null}.
+	 * @param topology How the board edges connect. Must not be {@code null} or
+	 *                 {@link Topology#INFINITE}.
+	 * @throws IllegalArgumentException If the topology is infinite.
+	 */
+	public TiledBitBoardState(int width, int height, Collection<Position> colonies, Rule rule, Topology topology) {
+		GameOfLifeState.rangeCheck(width, 1, GameOfLifeState.MAX_WIDTH, "width");
+		GameOfLifeState.rangeCheck(height, 1, GameOfLifeState.MAX_HEIGHT, "height");
+		Objects.requireNonNull(colonies);
+		BitBoardState.checkTopology(topology);
+		this.width = width;
+		this.height = height;
+		this.rule = Objects.requireNonNull(rule);
+		this.topology = topology;
+		this.words = (width + Long.SIZE - 1) / Long.SIZE;
+		this.tileRows = (height + TILE_HEIGHT - 1) / TILE_HEIGHT;
+		this.lastWordMask = width % Long.SIZE == 0 ? -1L : (1L << width % Long.SIZE) - 1;
+		this.emptyRow = new long[words];
+		this.northHalo = emptyRow;
+		this.southHalo = emptyRow;
+		if (topology == Topology.KLEIN_BOTTLE) {
+			this.northMirror = new long[words];
+			this.southMirror = new long[words];
+		}
+		this.rows = new long[height][words];
+		this.nextRows = new long[height][words];
+		int tiles = words * tileRows;
+		this.dirtyTiles = new int[tiles];
+		this.nextDirtyTiles = new int[tiles];
+		this.activeTiles = new int[tiles];
+		this.active = new boolean[tiles];
+		for (Position pos : colonies) {
+			GameOfLifeState.rangeCheck(pos.getX(), 0, width - 1, "colony x-coordinate");
+			GameOfLifeState.rangeCheck(pos.getY(), 0, height - 1, "colony y-coordinate");
+			rows[pos.getY()][pos.getX() / Long.SIZE] |= 1L << pos.getX();
+			nextRows[pos.getY()][pos.getX() / Long.SIZE] |= 1L << pos.getX();
+		}
+		// Every tile may change in the first generation.
+		for (int tile = 0; tile < tiles; tile++) {
+			dirtyTiles[tile] = tile;
+		}
+		this.dirtyCount = tiles;
+		this.previousRows = nextRows;
+		counter.setPopulation(BitBoardState.countPopulation(rows));
+	}
+
+	/**
+	 * Restores the game state from a snapshot, at the generation of the
+	 * snapshot. The snapshot rows are copied as they are.
+	 *
+	 * @param snapshot The snapshot. Must not be {@code null}.
+	 */
+	public TiledBitBoardState(BoardSnapshot snapshot) {
+		this(snapshot.getWidth(), snapshot.getHeight(), Collections.emptyList(), snapshot.getRule(),
+				snapshot.getTopology());
+		for (int y = 0; y < height; y++) {
+			System.arraycopy(snapshot.getRow(y), 0, rows[y], 0, words);
+			System.arraycopy(snapshot.getRow(y), 0, nextRows[y], 0, words);
+		}
+		counter.setPopulation(BitBoardState.countPopulation(rows));
+		this.generation = snapshot.getGeneration();
+	}
+
+	@Override
+	public boolean update() {
+		counter.reset();
+		return nextGeneration();
+	}
+
+	/**
+	 * Advances the game state the given number of generations. Instead of
+	 * copying the whole board for {@link #getChanges()}, every tile is copied
+	 * the first time it changes during the step, and a board without changed
+	 * tiles skips the remaining generations.
+	 *
+	 * @param generations The number of generations to advance. Must not be
+	 *                    negative.
+	 */
+	@Override
+	public void step(long generations) {
+		if (generations < 0) {
+			throw new IllegalArgumentException("Negative generation count " + generations);
+		}
+		if (generations == 1) {
+			// A single update keeps the previous generation in nextRows, which
+			// lets getChanges() look at the dirty tiles only.
+			update();
+			return;
+		}
+		if (stepStart == null) {
+			stepStart = new long[height][words];
+			touched = new boolean[words * tileRows];
+			touchedTiles = new int[words * tileRows];
+		}
+		for (int i = 0; i < touchedCount; i++) {
+			touched[touchedTiles[i]] = false;
+		}
+		touchedCount = 0;
+		counter.reset();
+		tracking = true;
+		long done = 0;
+		while (done < generations && dirtyCount > 0) {
+			nextGeneration();
+			done++;
+		}
+		tracking = false;
+		// Without dirty tiles every remaining generation equals the current one.
+		generation += generations - done;
+		previousRows = stepStart;
+	}
+
+	@Override
+	public ImmutableSet<Position> getColonies() {
+		ImmutableSet.Builder<Position> builder = ImmutableSet.builder();
+		forEachLive((x, y) -> builder.add(new Position(x, y)));
+		return builder.build();
+	}
+
+	@Override
+	public void forEachLive(CellConsumer consumer) {
+		for (int y = 0; y < height; y++) {
+			long[] row = rows[y];
+			for (int i = 0; i < words; i++) {
+				for (long word = row[i]; word != 0; word &= word - 1) {
+					consumer.accept(i * Long.SIZE + Long.numberOfTrailingZeros(word), y);
+				}
+			}
+		}
+	}
+
+	@Override
+	public ChangeSet getChanges() {
+		ChangeSet.Builder builder = new ChangeSet.Builder();
+		// After a single update only the dirty tiles can have changed, after a
+		// step only the touched tiles.
+		boolean stepped = previousRows != nextRows;
+		int[] tiles = stepped ? touchedTiles : dirtyTiles;
+		int count = stepped ? touchedCount : dirtyCount;
+		for (int j = 0; j < count; j++) {
+			int tileRow = tiles[j] / words;
+			int i = tiles[j] % words;
+			int to = Math.min(height, (tileRow + 1) * TILE_HEIGHT);
+			for (int y = tileRow * TILE_HEIGHT; y < to; y++) {
+				builder.addWord(previousRows[y][i], rows[y][i], i * Long.SIZE, y);
+			}
+		}
+		return builder.build();
+	}
+
+	@Override
+	public long getBirths() {
+		return counter.getBirths();
+	}
+
+	@Override
+	public long getDeaths() {
+		return counter.getDeaths();
+	}
+
+	@Override
+	public long getPopulation() {
+		return counter.getPopulation();
+	}
+
+	@Override
+	public boolean trackHash() {
+		counter.startHashing(this);
+		return true;
+	}
+
+	@Override
+	public long getHash() {
+		return counter.getHash();
+	}
+
+	@Override
+	public boolean isColony(int x, int y) {
+		if (x < 0 || x >= width || y < 0 || y >= height) {
+			return false;
+		}
+		return (rows[y][x / Long.SIZE] & 1L << x) != 0;
+	}
+
+	@Override
+	public long getGeneration() {
+		return generation;
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public Rule getRule() {
+		return rule;
+	}
+
+	@Override
+	public Topology getTopology() {
+		return topology;
+	}
+
+	/**
+	 * @return The number of tiles that changed in the last generation.
+	 */
+	public int getDirtyTileCount() {
+		return dirtyCount;
+	}
+
+
+	/**
+	 * Computes the next generation of the tiles next to a dirty tile, adding
+	 * its births and deaths to those already counted.
+	 *
+	 * @return Whether any tile changed.
+	 */
+	private boolean nextGeneration() {
+		int activeCount = 0;
+		for (int i = 0; i < dirtyCount; i++) {
+			int tileRow = dirtyTiles[i] / words;
+			int tileCol = dirtyTiles[i] % words;
+			if (topology.wraps()) {
+				activeCount = activateWrapped(tileRow, tileCol, activeCount);
+				continue;
+			}
+			for (int r = Math.max(0, tileRow - 1); r <= Math.min(tileRows - 1, tileRow + 1); r++) {
+				for (int c = Math.max(0, tileCol - 1); c <= Math.min(words - 1, tileCol + 1); c++) {
+					activeCount = activate(r * words + c, activeCount);
+				}
+			}
+		}
+		if (topology == Topology.TORUS) {
+			northHalo = rows[height - 1];
+			southHalo = rows[0];
+		} else if (topology == Topology.KLEIN_BOTTLE) {
+			BitBoardState.mirror(rows[height - 1], northMirror, width);
+			BitBoardState.mirror(rows[0], southMirror, width);
+			northHalo = northMirror;
+			southHalo = southMirror;
+		}
+		int nextDirtyCount = 0;
+		for (int i = 0; i < activeCount; i++) {
+			int tile = activeTiles[i];
+			active[tile] = false;
+			if (stepTile(tile / words, tile % words)) {
+				nextDirtyTiles[nextDirtyCount++] = tile;
+				if (tracking && !touched[tile]) {
+					touch(tile);
+				}
+			}
+		}
+		long[][] tmpRows = rows;
+		rows = nextRows;
+		nextRows = tmpRows;
+		int[] tmpTiles = dirtyTiles;
+		dirtyTiles = nextDirtyTiles;
+		nextDirtyTiles = tmpTiles;
+		dirtyCount = nextDirtyCount;
+		previousRows = nextRows;
+		generation++;
+		return dirtyCount > 0;
+	}
+
+	/**
+	 * Adds a tile to the tiles to recompute, unless it already is one of them.
+	 *
+	 * @return The new number of active tiles.
+	 */
+	private int activate(int tile, int activeCount) {
+		if (!active[tile]) {
+			active[tile] = true;
+			activeTiles[activeCount++] = tile;
+		}
+		return activeCount;
+	}
+
+	/**
+	 * Activates the neighbor tiles of a dirty tile on a wrapping board, where
+	 * the tiles next to an edge neighbor the tiles next to the opposite edge.
+	 * The top and bottom edges of a Klein bottle are connected mirrored, so a
+	 * dirty tile next to either of them activates the whole tile row next to the
+	 * other one.
+	 *
+	 * @return The new number of active tiles.
+	 */
+	private int activateWrapped(int tileRow, int tileCol, int activeCount) {
+		for (int dr = -1; dr <= 1; dr++) {
+			int r = Math.floorMod(tileRow + dr, tileRows);
+			boolean across = tileRow + dr < 0 || tileRow + dr >= tileRows;
+			if (across && topology == Topology.KLEIN_BOTTLE) {
+				for (int c = 0; c < words; c++) {
+					activeCount = activate(r * words + c, activeCount);
+				}
+				continue;
+			}
+			for (int dc = -1; dc <= 1; dc++) {
+				activeCount = activate(r * words + Math.floorMod(tileCol + dc, words), activeCount);
+			}
+		}
+		return activeCount;
+	}
+
+	/**
+	 * Records a tile as touched by the current step and copies its cells from
+	 * before the step, which are still the current cells since it is the first
+	 * change of the tile.
+	 */
+	private void touch(int tile) {
+		touched[tile] = true;
+		touchedTiles[touchedCount++] = tile;
+		int i = tile % words;
+		int to = Math.min(height, (tile / words + 1) * TILE_HEIGHT);
+		for (int y = tile / words * TILE_HEIGHT; y < to; y++) {
+			stepStart[y][i] = rows[y][i];
+		}
+	}
+
+	/**
+	 * Computes the next generation of a single tile and counts its births and
+	 * deaths.
+	 *
+	 * @return Whether any cell in the tile changed.
+	 */
+	private boolean stepTile(int tileRow, int i) {
+		boolean wrap = topology.wraps();
+		long mask = i == words - 1 ? lastWordMask : -1L;
+		boolean changed = false;
+		int to = Math.min(height, (tileRow + 1) * TILE_HEIGHT);
+		for (int y = tileRow * TILE_HEIGHT; y < to; y++) {
+			long[] above = y > 0 ? rows[y - 1] : northHalo;
+			long[] row = rows[y];
+			long[] below = y < height - 1 ? rows[y + 1] : southHalo;
+			long next = BitBoardState.nextWord(rule,
+					BitBoardState.word(above, i - 1, width, wrap),
+					BitBoardState.word(above, i, width, wrap),
+					BitBoardState.word(above, i + 1, width, wrap),
+					BitBoardState.word(row, i - 1, width, wrap),
+					BitBoardState.word(row, i, width, wrap),
+					BitBoardState.word(row, i + 1, width, wrap),
+					BitBoardState.word(below, i - 1, width, wrap),
+					BitBoardState.word(below, i, width, wrap),
+					BitBoardState.word(below, i + 1, width, wrap)) & mask;
+			nextRows[y][i] = next;
+			if (next != row[i]) {
+				counter.count(row[i], next, i * Long.SIZE, y);
+				changed = true;
+			}
+		}
+		return changed;
+	}
+}
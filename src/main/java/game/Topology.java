@@ -0,0 +1,117 @@
+package game;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * How the edges of a board connect. Every engine handles the edges itself, see
+ * the engine constructors for the topologies each of them supports.
+ * <p>
+ * The order of the constants is part of the {@link SnapshotFile} format and
+ * must not change.
+ */
+public enum Topology {
+
+	/**
+	 * Everything outside the board is dead, so colonies crossing an edge die.
+	 */
+	BOUNDED("bounded"),
+
+	/**
+	 * The left edge is connected to the right edge and the top edge to the
+	 * bottom edge, so colonies leaving the board on one side come back on the
+	 * other.
+	 */
+	TORUS("torus"),
+
+	/**
+	 * The left edge is connected to the right edge like on a torus, but the top
+	 * edge is connected to the bottom edge mirrored, so a colony leaving at the
+	 * top at x comes back at the bottom at {@code width - 1 - x}.
+	 */
+	KLEIN_BOTTLE("klein"),
+
+	/**
+	 * There are no edges, colonies may leave the board and keep living outside
+	 * it. The board is only the initially visible area.
+	 */
+	INFINITE("infinite");
+
+
+	private final String name;
+
+
+	private Topology(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Gets a topology by the name used on the command line.
+	 *
+	 * @param name The name, one of {@code bounded}, {@code torus},
+	 *             {@code klein} and {@code infinite}, case insensitive.
+	 * @return The topology. Never {@code null}.
+	 * @throws IllegalArgumentException If there is no topology with the name.
+	 */
+	public static Topology parse(String name) {
+		Objects.requireNonNull(name);
+		for (Topology topology : values()) {
+			if (topology.name.equals(name.toLowerCase(Locale.ROOT))) {
+				return topology;
+			}
+		}
+		throw new IllegalArgumentException("Unknown topology " + name + ", expected bounded, torus, klein or infinite");
+	}
+
+	/**
+	 * @return Whether the edges of the board are connected to each other.
+	 */
+	public boolean wraps() {
+		return this == TORUS || this == KLEIN_BOTTLE;
+	}
+
+	/**
+	 * @return The name used on the command line.
+	 */
+	@Override
+	public String toString() {
+		return name;
+	}
+
+	/**
+	 * Maps the x-coordinate of a position at most one cell outside the board
+	 * onto the board. Coordinates of topologies without wrapping are returned
+	 * as they are.
+	 *
+	 * @param x      The x-coordinate, in {@code [-1..width]}.
+	 * @param y      The y-coordinate, in {@code [-1..height]}. Decides whether
+	 *               the x-coordinate is mirrored.
+	 * @param width  The board width.
+	 * @param height The board height.
+	 * @return The x-coordinate on the board.
+	 */
+	int wrapX(int x, int y, int width, int height) {
+		if (!wraps()) {
+			return x;
+		}
+		if (this == KLEIN_BOTTLE && (y < 0 || y >= height)) {
+			x = width - 1 - x;
+		}
+		return x < 0 ? x + width : x >= width ? x - width : x;
+	}
+
+	/**
+	 * Maps the y-coordinate of a position at most one cell outside the board
+	 * onto the board, see {@link #wrapX(int, int, int, int)}.
+	 *
+	 * @param y      The y-coordinate, in {@code [-1..height]}.
+	 * @param height The board height.
+	 * @return The y-coordinate on the board.
+	 */
+	int wrapY(int y, int height) {
+		if (!wraps()) {
+			return y;
+		}
+		return y < 0 ? y + height : y >= height ? y - height : y;
+	}
+}
@@ -0,0 +1,606 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Game of life game state on an unbounded plane. The plane is divided into
+ * tiles of {@value #TILE_SIZE}x{@value #TILE_SIZE} cells, bit packed with one
+ * {@code long} per tile row like {@link BitBoardState}, and only the tiles
+ * holding living colonies are stored, in a hash table keyed by tile
+ * coordinates. Memory is therefore proportional to the number of live tiles
+ * rather than to the extent of the pattern, so a glider gun can run for
+ * millions of generations without ever reaching an edge.
+ * <p>
+ * Like in {@link TiledBitBoardState} a tile is only recomputed if it or one of
+ * its neighbor tiles changed in the last generation. A missing tile is created
+ * when a changed neighbor has living colonies next to it, and a tile is
+ * discarded once it is empty and no longer changes.
+ * <p>
+ * The board width and height only describe the area initially shown. The
+ * plane ends where the coordinates no longer fit an {@code int}, colonies
+ * die there just like at the edge of a bounded board.
+ */
+public class UnboundedState implements LifeEngine {
+
+	/**
+	 * The width and height of a tile.
+	 */
+	static final int TILE_SIZE = Long.SIZE;
+
+	private static final int TILE_SHIFT = 6;
+
+	/**
+	 * The smallest and largest tile coordinates whose cells have {@code int}
+	 * coordinates.
+	 */
+	static final int MIN_TILE = Integer.MIN_VALUE >> TILE_SHIFT;
+	static final int MAX_TILE = Integer.MAX_VALUE >> TILE_SHIFT;
+
+	private static final int INITIAL_TABLE_SIZE = 1 << 6;
+
+	/**
+	 * The rows of a missing tile.
+	 */
+	private static final long[] EMPTY_ROWS = new long[TILE_SIZE];
+
+
+	/**
+	 * A stored tile. The cell at (x, y) of the tile is bit x of row y.
+	 */
+	private static final class Tile {
+
+		final int tx;
+		final int ty;
+		long[] rows = new long[TILE_SIZE];
+
+		/**
+		 * The next generation while the tile is computed, afterwards the
+		 * previous generation.
+		 */
+		long[] nextRows = new long[TILE_SIZE];
+
+		/**
+		 * The rows before the last step over several generations, allocated the
+		 * first time the tile changes during such a step.
+		 */
+		long[] stepStart;
+		int population = 0;
+		boolean active = false;
+		boolean changed = false;
+		boolean touched = false;
+
+		/**
+		 * Whether the tile was empty before the last step over several
+		 * generations, so that it can be discarded during the step.
+		 */
+		boolean startEmpty;
+		boolean removed = false;
+
+		/**
+		 * Next tile in the same hash table bucket.
+		 */
+		Tile next;
+
+
+		Tile(int tx, int ty) {
+			this.tx = tx;
+			this.ty = ty;
+		}
+	}
+
+
+	private final int width;
+	private final int height;
+	private final Rule rule;
+
+	/**
+	 * Hash table of all stored tiles.
+	 */
+	private Tile[] table = new Tile[INITIAL_TABLE_SIZE];
+	private int tileCount = 0;
+
+	/**
+	 * The tiles that changed in the last generation.
+	 */
+	private List<Tile> dirty = new ArrayList<>();
+	private List<Tile> nextDirty = new ArrayList<>();
+
+	/**
+	 * The tiles to recompute in the current update.
+	 */
+	private final List<Tile> active = new ArrayList<>();
+
+	/**
+	 * The tiles that changed during the last step over several generations.
+	 */
+	private final List<Tile> touched = new ArrayList<>();
+
+	/**
+	 * The number of touched tiles that have been discarded since.
+	 */
+	private int removedTouched = 0;
+
+	/**
+	 * Whether updates are part of a step that records the touched tiles.
+	 */
+	private boolean tracking = false;
+
+	/**
+	 * Whether the last call was a step over several generations, so that the
+	 * changes are found in the touched tiles instead of the dirty tiles.
+	 */
+	private boolean stepped = false;
+	private long population = 0;
+
+	/**
+	 * The births and deaths of the last update or step, and the hash of the
+	 * board.
+	 */
+	private final ChangeCounter counter = new ChangeCounter();
+	private long generation = 0;
+
+
+	/**
+	 * Initializes the game state with Conway's rule.
+	 *
+	 * @param width    The width of the area initially shown. Must be positive
+	 *                 and less than {@value GameOfLifeState#MAX_WIDTH}.
+	 * @param height   The height of the area initially shown. Must be positive
+	 *                 and less than {@value GameOfLifeState#MAX_HEIGHT}.
+	 * @param colonies The initial colony positions, anywhere on the plane. May
+	 *                 be empty, but must not be {@code null}.
+	 */
+	public UnboundedState(int width, int height, Collection<Position> colonies) {
+		this(width, height, colonies, Rule.CONWAY);
+	}
+
+	/**
+	 * Initializes the game state.
+	 *
+	 * @param width    The width of the area initially shown. Must be positive
+	 *                 and less than {@value GameOfLifeState#MAX_WIDTH}.
+	 * @param height   The height of the area initially shown. Must be positive
+	 *                 and less than {@value GameOfLifeState#MAX_HEIGHT}.
+	 * @param colonies The initial colony positions, anywhere on the plane. May
+	 *                 be empty, but must not be {@code null}.
+	 * @param rule     The rule deciding which colonies survive and are born. Must
+	 *                 not be {@code null}.
+	 */
+	public UnboundedState(int width, int height, Collection<Position> colonies, Rule rule) {
+		this(width, height, colonies, rule, Topology.INFINITE);
+	}
+
+	/**
+	 * Initializes the game state. The plane has no edges, so the only supported
+	 * topology is {@link Topology#INFINITE}.
+	 *
+	 * @param width    The width of the area initially shown. Must be positive
+	 *                 and less than {@value GameOfLifeState#MAX_WIDTH}.
+	 * @param height   The height of the area initially shown. Must be positive
+	 *                 and less than {@value GameOfLifeState#MAX_HEIGHT}.
+	 * @param colonies The initial colony positions, anywhere on the plane. May
+	 *                 be empty, but must not be {@code null}.
+	 * @param rule     The rule deciding which colonies survive and are born. Must
+	 *                 not be {@code null}.
+	 * @param topology Must be {@link Topology#INFINITE}.
+	 * @throws IllegalArgumentException If the topology isn't infinite.
+	 */
+	public UnboundedState(int width, int height, Collection<Position> colonies, Rule rule, Topology topology) {
+		GameOfLifeState.rangeCheck(width, 1, GameOfLifeState.MAX_WIDTH, "width");
+		GameOfLifeState.rangeCheck(height, 1, GameOfLifeState.MAX_HEIGHT, "height");
+		Objects.requireNonNull(colonies);
+		if (Objects.requireNonNull(topology) != Topology.INFINITE) {
+			throw new IllegalArgumentException("An unbounded board can't be " + topology);
+		}
+		this.width = width;
+		this.height = height;
+		this.rule = Objects.requireNonNull(rule);
+		for (Position pos : colonies) {
+			Tile tile = find(pos.getX() >> TILE_SHIFT, pos.getY() >> TILE_SHIFT);
+			if (tile == null) {
+				tile = create(pos.getX() >> TILE_SHIFT, pos.getY() >> TILE_SHIFT);
+				// Every tile may change in the first generation.
+				dirty.add(tile);
+			}
+			long bit = 1L << pos.getX();
+			int y = pos.getY() & (TILE_SIZE - 1);
+			if ((tile.rows[y] & bit) == 0) {
+				tile.rows[y] |= bit;
+				tile.nextRows[y] |= bit;
+				tile.population++;
+				population++;
+			}
+		}
+	}
+
+	/**
+	 * Restores the game state from a snapshot, at the generation of the
+	 * snapshot.
+	 *
+	 * @param snapshot The snapshot. Must not be {@code null}. Must be of an
+	 *                 infinite board.
+	 * @throws IllegalArgumentException If the snapshot isn't of an infinite
+	 *                                  board.
+	 */
+	public UnboundedState(BoardSnapshot snapshot) {
+		this(snapshot.getWidth(), snapshot.getHeight(), snapshot.getColonies(), snapshot.getRule(),
+				snapshot.getTopology());
+		this.generation = snapshot.getGeneration();
+	}
+
+	@Override
+	public boolean update() {
+		counter.reset();
+		return nextGeneration();
+	}
+
+	/**
+	 * Advances the game state the given number of generations. Every tile is
+	 * copied the first time it changes during the step, for
+	 * {@link #getChanges()}, and a board without changed tiles skips the
+	 * remaining generations.
+	 *
+	 * @param generations The number of generations to advance. Must not be
+	 *                    negative.
+	 */
+	@Override
+	public void step(long generations) {
+		if (generations < 0) {
+			throw new IllegalArgumentException("Negative generation count " + generations);
+		}
+		if (generations == 1) {
+			update();
+			return;
+		}
+		for (Tile tile : touched) {
+			tile.touched = false;
+		}
+		touched.clear();
+		removedTouched = 0;
+		counter.reset();
+		tracking = true;
+		long done = 0;
+		while (done < generations && !dirty.isEmpty()) {
+			nextGeneration();
+			done++;
+		}
+		tracking = false;
+		// Without dirty tiles every remaining generation equals the current one.
+		generation += generations - done;
+		stepped = true;
+	}
+
+	@Override
+	public ImmutableSet<Position> getColonies() {
+		ImmutableSet.Builder<Position> builder = ImmutableSet.builder();
+		forEachLive((x, y) -> builder.add(new Position(x, y)));
+		return builder.build();
+	}
+
+	@Override
+	public void forEachLive(CellConsumer consumer) {
+		for (Tile chain : table) {
+			for (Tile tile = chain; tile != null; tile = tile.next) {
+				int x = tile.tx << TILE_SHIFT;
+				int y = tile.ty << TILE_SHIFT;
+				for (int r = 0; r < TILE_SIZE; r++) {
+					for (long word = tile.rows[r]; word != 0; word &= word - 1) {
+						consumer.accept(x + Long.numberOfTrailingZeros(word), y + r);
+					}
+				}
+			}
+		}
+	}
+
+	@Override
+	public ChangeSet getChanges() {
+		ChangeSet.Builder builder = new ChangeSet.Builder();
+		// After a single update only the dirty tiles can have changed, after a
+		// step only the touched tiles.
+		for (Tile tile : stepped ? touched : dirty) {
+			long[] before = stepped ? tile.stepStart : tile.nextRows;
+			int x = tile.tx << TILE_SHIFT;
+			int y = tile.ty << TILE_SHIFT;
+			for (int r = 0; r < TILE_SIZE; r++) {
+				builder.addWord(before[r], tile.rows[r], x, y + r);
+			}
+		}
+		return builder.build();
+	}
+
+	@Override
+	public long getBirths() {
+		return counter.getBirths();
+	}
+
+	@Override
+	public long getDeaths() {
+		return counter.getDeaths();
+	}
+
+	@Override
+	public long getPopulation() {
+		return population;
+	}
+
+	@Override
+	public boolean trackHash() {
+		counter.startHashing(this);
+		return true;
+	}
+
+	@Override
+	public long getHash() {
+		return counter.getHash();
+	}
+
+	@Override
+	public boolean isColony(int x, int y) {
+		Tile tile = find(x >> TILE_SHIFT, y >> TILE_SHIFT);
+		return tile != null && (tile.rows[y & (TILE_SIZE - 1)] & 1L << x) != 0;
+	}
+
+	@Override
+	public long getGeneration() {
+		return generation;
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public Rule getRule() {
+		return rule;
+	}
+
+	@Override
+	public Topology getTopology() {
+		return Topology.INFINITE;
+	}
+
+	/**
+	 * @return The number of stored tiles.
+	 */
+	public int getTileCount() {
+		return tileCount;
+	}
+
+	/**
+	 * @return The number of tiles that changed in the last generation.
+	 */
+	public int getDirtyTileCount() {
+		return dirty.size();
+	}
+
+
+	/**
+	 * Computes the next generation of the tiles next to a changed tile, adding
+	 * its births and deaths to those already counted.
+	 *
+	 * @return Whether any tile changed.
+	 */
+	private boolean nextGeneration() {
+		active.clear();
+		for (Tile tile : dirty) {
+			activateAround(tile);
+		}
+		for (Tile tile : active) {
+			stepTile(tile);
+		}
+		nextDirty.clear();
+		for (Tile tile : active) {
+			tile.active = false;
+			if (tile.changed) {
+				nextDirty.add(tile);
+				if (tracking && !tile.touched) {
+					touch(tile);
+				}
+			}
+			long[] tmp = tile.rows;
+			tile.rows = tile.nextRows;
+			tile.nextRows = tmp;
+			// A touched tile that had colonies is kept until the step is over,
+			// since getChanges() needs its cells from before the step.
+			if (!tile.changed && tile.population == 0 && !(tracking && tile.touched && !tile.startEmpty)) {
+				remove(tile);
+			}
+		}
+		// Discarded tiles have no changes, so a long step over a moving
+		// pattern doesn't hold on to every tile it has passed.
+		if (removedTouched > touched.size() / 2) {
+			touched.removeIf(tile -> tile.removed);
+			removedTouched = 0;
+		}
+		List<Tile> tmp = dirty;
+		dirty = nextDirty;
+		nextDirty = tmp;
+		stepped = false;
+		generation++;
+		return !dirty.isEmpty();
+	}
+
+	/**
+	 * Activates a changed tile and its neighbors. A missing neighbor is only
+	 * created if the tile has living colonies next to it, since colonies can
+	 * only be born there next to them.
+	 */
+	private void activateAround(Tile tile) {
+		for (int dy = -1; dy <= 1; dy++) {
+			for (int dx = -1; dx <= 1; dx++) {
+				int tx = tile.tx + dx;
+				int ty = tile.ty + dy;
+				if (tx < MIN_TILE || tx > MAX_TILE || ty < MIN_TILE || ty > MAX_TILE) {
+					continue;
+				}
+				Tile neighbor = find(tx, ty);
+				if (neighbor == null) {
+					if (!touchesEdge(tile, dx, dy)) {
+						continue;
+					}
+					neighbor = create(tx, ty);
+				}
+				if (!neighbor.active) {
+					neighbor.active = true;
+					active.add(neighbor);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return Whether a tile has living colonies next to its neighbor in the
+	 *         given direction.
+	 */
+	private static boolean touchesEdge(Tile tile, int dx, int dy) {
+		long column = dx < 0 ? 1 : dx > 0 ? 1L << (TILE_SIZE - 1) : -1L;
+		if (dy < 0) {
+			return (tile.rows[0] & column) != 0;
+		}
+		if (dy > 0) {
+			return (tile.rows[TILE_SIZE - 1] & column) != 0;
+		}
+		for (long row : tile.rows) {
+			if ((row & column) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Computes the next generation of a tile into its next rows, and whether it
+	 * changed. Counts its births and deaths.
+	 */
+	private void stepTile(Tile tile) {
+		long[] n = rows(tile.tx, tile.ty - 1);
+		long[] s = rows(tile.tx, tile.ty + 1);
+		long[] w = rows(tile.tx - 1, tile.ty);
+		long[] e = rows(tile.tx + 1, tile.ty);
+		long[] nw = rows(tile.tx - 1, tile.ty - 1);
+		long[] ne = rows(tile.tx + 1, tile.ty - 1);
+		long[] sw = rows(tile.tx - 1, tile.ty + 1);
+		long[] se = rows(tile.tx + 1, tile.ty + 1);
+		long[] rows = tile.rows;
+		long[] out = tile.nextRows;
+		int tileX = tile.tx << TILE_SHIFT;
+		int tileY = tile.ty << TILE_SHIFT;
+		boolean changed = false;
+		int count = 0;
+		int last = TILE_SIZE - 1;
+		for (int y = 0; y < TILE_SIZE; y++) {
+			boolean top = y == 0;
+			boolean bottom = y == last;
+			long next = BitBoardState.nextWord(rule,
+					top ? nw[last] : w[y - 1], top ? n[last] : rows[y - 1], top ? ne[last] : e[y - 1],
+					w[y], rows[y], e[y],
+					bottom ? sw[0] : w[y + 1], bottom ? s[0] : rows[y + 1], bottom ? se[0] : e[y + 1]);
+			out[y] = next;
+			if (next != rows[y]) {
+				counter.count(rows[y], next, tileX, tileY + y);
+				changed = true;
+			}
+			count += Long.bitCount(next);
+		}
+		population += count - tile.population;
+		tile.population = count;
+		tile.changed = changed;
+	}
+
+	/**
+	 * Records a tile as touched by the current step and copies its cells from
+	 * before the step, which are still the current cells since it is the first
+	 * change of the tile.
+	 */
+	private void touch(Tile tile) {
+		tile.touched = true;
+		touched.add(tile);
+		if (tile.stepStart == null) {
+			tile.stepStart = new long[TILE_SIZE];
+		}
+		System.arraycopy(tile.rows, 0, tile.stepStart, 0, TILE_SIZE);
+		tile.startEmpty = true;
+		for (long row : tile.rows) {
+			tile.startEmpty &= row == 0;
+		}
+	}
+
+	/**
+	 * @return The current rows of a tile, empty if the tile is missing.
+	 */
+	private long[] rows(int tx, int ty) {
+		Tile tile = find(tx, ty);
+		return tile == null ? EMPTY_ROWS : tile.rows;
+	}
+
+	private Tile find(int tx, int ty) {
+		for (Tile tile = table[slot(tx, ty)]; tile != null; tile = tile.next) {
+			if (tile.tx == tx && tile.ty == ty) {
+				return tile;
+			}
+		}
+		return null;
+	}
+
+	private Tile create(int tx, int ty) {
+		Tile tile = new Tile(tx, ty);
+		int slot = slot(tx, ty);
+		tile.next = table[slot];
+		table[slot] = tile;
+		tileCount++;
+		if (tileCount > table.length - (table.length >> 2)) {
+			resize(table.length << 1);
+		}
+		return tile;
+	}
+
+	private void remove(Tile tile) {
+		int slot = slot(tile.tx, tile.ty);
+		if (table[slot] == tile) {
+			table[slot] = tile.next;
+		} else {
+			Tile previous = table[slot];
+			while (previous.next != tile) {
+				previous = previous.next;
+			}
+			previous.next = tile.next;
+		}
+		tile.next = null;
+		tile.removed = true;
+		if (tile.touched) {
+			removedTouched++;
+		}
+		tileCount--;
+	}
+
+	private void resize(int capacity) {
+		Tile[] old = table;
+		table = new Tile[capacity];
+		for (Tile chain : old) {
+			while (chain != null) {
+				Tile next = chain.next;
+				int slot = slot(chain.tx, chain.ty);
+				chain.next = table[slot];
+				table[slot] = chain;
+				chain = next;
+			}
+		}
+	}
+
+	private int slot(int tx, int ty) {
+		int hash = tx * 0x9E3779B1 + ty;
+		hash *= 0x85EBCA6B;
+		return (hash ^ hash >>> 16) & (table.length - 1);
+	}
+}
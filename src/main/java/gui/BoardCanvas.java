@@ -0,0 +1,167 @@
+package gui;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.LongConsumer;
+
+import game.Position;
+
+/**
+ * A game board painted from a single image with one pixel per cell. The image
+ * is scaled up to the cell size when painted, and clicks are mapped to cells
+ * arithmetically, so the cost of the board doesn't depend on the number of
+ * Swing components.
+ */
+@SuppressWarnings("serial")
+class BoardCanvas extends FixedCell {
+
+	/**
+	 * The smallest cell size at which cell borders are drawn.
+	 */
+	private static final int MIN_BORDER_CELL_SIZE = 4;
+
+
+	private final int cols;
+	private final int rows;
+	private final int cellSize;
+	private final int livingRgb;
+	private final int deadRgb;
+	private final Color borderColor;
+
+	private final BufferedImage image;
+
+	/**
+	 * The image pixels, row by row. Pixel {@code y * cols + x} is the cell at
+	 * (x, y).
+	 */
+	private final int[] pixels;
+
+
+	/**
+	 * @param cols         The number of cell columns.
+	 * @param rows         The number of cell rows.
+	 * @param cellSize     The width and height of a single cell in pixels.
+	 * @param livingColor  The color of a cell with a colony in it.
+	 * @param deadColor    The color of a cell without a colony in it.
+	 * @param borderColor  The color of the cell borders.
+	 * @param clickHandler Called on the event dispatch thread with the position
+	 *                     of every clicked cell, packed with
+	 *                     {@link Position#toLong(int, int)}. Must not be
+	 *                     {@code null}.
+	 */
+	BoardCanvas(int cols, int rows, int cellSize, Color livingColor, Color deadColor, Color borderColor,
+			LongConsumer clickHandler) {
+		super(cols * cellSize, rows * cellSize);
+		Objects.requireNonNull(clickHandler);
+		this.cols = cols;
+		this.rows = rows;
+		this.cellSize = cellSize;
+		this.livingRgb = livingColor.getRGB();
+		this.deadRgb = deadColor.getRGB();
+		this.borderColor = borderColor;
+		this.image = new BufferedImage(cols, rows, BufferedImage.TYPE_INT_RGB);
+		this.pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		Arrays.fill(pixels, deadRgb);
+		setOpaque(true);
+		addMouseListener(new MouseAdapter() {
+			@Override
+			public void mouseClicked(MouseEvent e) {
+				int x = e.getX() / cellSize;
+				int y = e.getY() / cellSize;
+				if (x < cols && y < rows) {
+					clickHandler.accept(Position.toLong(x, y));
+				}
+			}
+		});
+	}
+
+	/**
+	 * @return The number of cell columns.
+	 */
+	int getCols() {
+		return cols;
+	}
+
+	/**
+	 * @return The number of cell rows.
+	 */
+	int getRows() {
+		return rows;
+	}
+
+	/**
+	 * @param x The cell column.
+	 * @param y The cell row.
+	 * @return Whether the cell is marked as living.
+	 */
+	boolean isAlive(int x, int y) {
+		return pixels[y * cols + x] == livingRgb;
+	}
+
+	/**
+	 * Marks a cell as living or dead. The change is visible after the next
+	 * repaint.
+	 *
+	 * @param x     The cell column.
+	 * @param y     The cell row.
+	 * @param alive Whether the cell is living.
+	 */
+	void setAlive(int x, int y, boolean alive) {
+		pixels[y * cols + x] = alive ? livingRgb : deadRgb;
+	}
+
+	/**
+	 * Marks every cell as dead. The change is visible after the next repaint.
+	 */
+	void clear() {
+		Arrays.fill(pixels, deadRgb);
+	}
+
+	/**
+	 * Repaints a rectangle of cells.
+	 *
+	 * @param minX The first cell column.
+	 * @param minY The first cell row.
+	 * @param maxX The last cell column.
+	 * @param maxY The last cell row.
+	 */
+	void repaintCells(int minX, int minY, int maxX, int maxY) {
+		repaint(minX * cellSize, minY * cellSize, (maxX - minX + 1) * cellSize, (maxY - minY + 1) * cellSize);
+	}
+
+	@Override
+	protected void paintComponent(Graphics g) {
+		Graphics2D g2 = (Graphics2D) g;
+		g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+		g2.drawImage(image, 0, 0, cols * cellSize, rows * cellSize, null);
+		if (cellSize >= MIN_BORDER_CELL_SIZE) {
+			paintBorders(g2);
+		}
+	}
+
+
+	/**
+	 * Draws a one pixel border along the inside of every cell edge.
+	 */
+	private void paintBorders(Graphics2D g) {
+		int width = cols * cellSize;
+		int height = rows * cellSize;
+		g.setColor(borderColor);
+		for (int x = 0; x < cols; x++) {
+			g.drawLine(x * cellSize, 0, x * cellSize, height - 1);
+			g.drawLine((x + 1) * cellSize - 1, 0, (x + 1) * cellSize - 1, height - 1);
+		}
+		for (int y = 0; y < rows; y++) {
+			g.drawLine(0, y * cellSize, width - 1, y * cellSize);
+			g.drawLine(0, (y + 1) * cellSize - 1, width - 1, (y + 1) * cellSize - 1);
+		}
+	}
+}
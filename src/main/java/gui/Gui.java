@@ -1,30 +1,44 @@
 package gui;
 
 import java.awt.Color;
-import java.awt.Component;
+import java.awt.Dimension;
 import java.awt.EventQueue;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.awt.event.MouseEvent;
-import java.awt.event.MouseListener;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
-import java.util.function.Consumer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
 import javax.swing.JButton;
+import javax.swing.JComponent;
 import javax.swing.JFrame;
+import javax.swing.JLabel;
 import javax.swing.JPanel;
-import javax.swing.border.LineBorder;
+import javax.swing.JScrollPane;
+import javax.swing.Timer;
 
+import game.BoardSnapshot;
+import game.LifeEngine;
+import game.LifeMetrics;
 import game.Position;
+import game.SnapshotExchange;
 
 /**
  * Simple graphical interface with a square board and a start and stop button to
  * be used for visualizing game of life iterations.
+ * <p>
+ * The interface is driven by a single simulation thread. Generations are
+ * handed to the event dispatch thread through a {@link SnapshotExchange}, and
+ * board edits are handed back as a complete colony list, so neither thread
+ * ever waits for the other.
  * 
  * @author Henrik Josefsson 2020-06-30
  */
@@ -46,32 +60,85 @@ public class Gui {
 	private static final Color BORDER_COLOR = Color.WHITE;
 	
 	/**
-	 * The width and height of a single cell.
+	 * The largest width and height of a single cell.
 	 */
 	private static final int CELL_SIZE = 15;
 	
+	/**
+	 * The largest width and height of the board. Cells are made smaller than
+	 * {@link #CELL_SIZE} for large boards to fit.
+	 */
+	private static final int MAX_BOARD_SIZE = 800;
+	
+	/**
+	 * The milliseconds between two polls for a new generation, about 60 times
+	 * per second.
+	 */
+	private static final int FRAME_MILLIS = 16;
+	
+	/**
+	 * The milliseconds between two refreshes of the stats bar.
+	 */
+	private static final int STATS_MILLIS = 500;
+	
+	private static final double NANOS_PER_MICRO = 1e3;
+	
+	/**
+	 * The number of generations skipped by the fast forward button.
+	 */
+	private static final long FAST_FORWARD_GENERATIONS = 1000;
 	
-	private final FixedCell cells[][];	
+	
+	private final BoardCanvas board;	
 	private final JButton start = new JButton("Start");
 	private final JButton stop = new JButton("Stop");	
+	private final JButton fastForward = new JButton("Skip " + FAST_FORWARD_GENERATIONS);
 	private final JFrame frame = new JFrame();
+	private final JLabel stats = new JLabel(" ");
+	
+	/**
+	 * Generations published by the simulation thread.
+	 */
+	private final SnapshotExchange generations;
+	
+	/**
+	 * The colonies on the board after the latest manual edit that hasn't been
+	 * taken by the simulation thread, or {@code null}.
+	 */
+	private final AtomicReference<List<Position>> edits = new AtomicReference<>();
+	
+	/**
+	 * The generations to skip that haven't been taken by the simulation thread.
+	 */
+	private final AtomicLong skipped = new AtomicLong();
+	
+	/**
+	 * The cells shown on the board, bit packed like {@link BoardSnapshot}. Only
+	 * used on the event dispatch thread.
+	 */
+	private final long[][] shown;
 	
 	
 	/**
 	 * The resume/pause state. Whenever the stop button is pressed this will be set
 	 * to true and false whenever the start button is pressed.
 	 */
-	private boolean isPaused = true;
+	private volatile boolean isPaused = true;
 	
 	/**
 	 * Whether the board is locked and doesn't respond to mouseclick.
 	 */
-	private boolean boardLocked = false;
+	private volatile boolean boardLocked = false;
+	
+	/**
+	 * The thread waiting in {@link #waitStart()}, or {@code null}.
+	 */
+	private volatile Thread waiting = null;
 	
 	/**
-	 * Whether any board cell has been manually edited.
+	 * The metrics shown in the stats bar, or {@code null}.
 	 */
-	private boolean isDirty = false;
+	private volatile LifeMetrics metrics = null;
 
 	
 	/**
@@ -82,11 +149,14 @@ public class Gui {
 	 * @param initialColonies List of initial seeding colonies. May be empty but
 	 *                        must not be {@code null}.
 	 */
-	public Gui(int cols, int rows, List<Position> initialColonies) {
+	public Gui(int cols, int rows, Collection<Position> initialColonies) {
 		Objects.requireNonNull(initialColonies);
 		initFrame();		
-		cells = new FixedCell[rows][cols];
-		JPanel board = initBoard();
+		int cellSize = Math.max(1, Math.min(CELL_SIZE, MAX_BOARD_SIZE / Math.max(cols, rows)));
+		board = new BoardCanvas(cols, rows, cellSize, LIVING_CELL_COLOR, DEAD_CELL_COLOR, BORDER_COLOR,
+				this::toggleCell);
+		generations = new SnapshotExchange(cols, rows);
+		shown = new long[rows][(cols + Long.SIZE - 1) / Long.SIZE];
 		JPanel menu = initMenu();		
 		GridBagConstraints constraint = new GridBagConstraints();
 		constraint.gridy = 0;		
@@ -94,17 +164,32 @@ public class Gui {
 		constraint.gridy = 0;
 		constraint.gridheight = 1;
 		constraint.gridwidth = 1;
-		frame.getContentPane().add(board, constraint);		
+		frame.getContentPane().add(wrapBoard(), constraint);		
 		constraint.gridy = 1;
 		frame.getContentPane().add(menu, constraint);	
+		constraint.gridy = 2;
+		frame.getContentPane().add(stats, constraint);
 		try {
-			updateBoard(initialColonies);
+			update(initialColonies);
 		} catch (Exception e) {
 			throw new RuntimeException("Failed to initialize board", e);
 		}
+		new Timer(FRAME_MILLIS, e -> showLatest()).start();
+		new Timer(STATS_MILLIS, e -> showStats()).start();
 		frame.setVisible(true);		
 	}
 	
+	/**
+	 * Initializes the graphical interface with the board of an engine.
+	 * 
+	 * @param engine The engine to show the current generation of. Must not be
+	 *               {@code null}.
+	 */
+	public Gui(LifeEngine engine) {
+		this(engine.getWidth(), engine.getHeight(), Collections.emptyList());
+		updateBoard(engine);
+	}
+	
 	/**
 	 * Updates the game board with the provided list of colony positions. All
 	 * colonies not on the list will be marked as dead.
@@ -121,20 +206,46 @@ public class Gui {
 		});
 	}
 	
+	/**
+	 * Updates the game board with the current generation of an engine. The
+	 * generation is copied right away and shown on the next frame, replacing any
+	 * earlier generation that hasn't been shown yet. Must only be called from a
+	 * single thread.
+	 * 
+	 * @param engine The engine to show. Must have the dimensions of the board.
+	 */
+	public void updateBoard(LifeEngine engine) {
+		generations.publish(engine);
+	}
+	
+	/**
+	 * Shows metrics in the stats bar below the buttons, refreshed twice per
+	 * second.
+	 * 
+	 * @param metrics The metrics of the simulation shown on the board. Must not
+	 *                be {@code null}.
+	 */
+	public void showMetrics(LifeMetrics metrics) {
+		this.metrics = Objects.requireNonNull(metrics);
+	}
+	
 	/**
 	 * Pauses or resumes the game. The game board can only be edited while the game is paused.
 	 * 
 	 * @param pauseFlag Whether to pause or resume the game.
 	 */
-	public synchronized void pause(boolean pauseFlag) {
+	public void pause(boolean pauseFlag) {
 		isPaused = pauseFlag;
-		this.notifyAll();
+		Thread thread = waiting;
+		if (!pauseFlag && thread != null) {
+			LockSupport.unpark(thread);
+		}
 	}
 	
 	/**
 	 * @return {@code true} if stop was the last button to be pressed in the interface.
 	 */
-	public synchronized boolean isPaused() {
+	public boolean isPaused() {
 		return isPaused;
 	}
 	
@@ -143,16 +254,30 @@ public class Gui {
 	 * 
 	 * @param lockFlag Whether to lock the board.
 	 */
-	public synchronized void lockBoard(boolean lockFlag) {
+	public void lockBoard(boolean lockFlag) {
 		boardLocked = lockFlag;
 	}
 	
 	/**
-	 * @return Whether the board has been manually edited since last time
-	 *         {@link #getBoardState()} was called.
+	 * Takes the colonies on the board after the latest manual edit.
+	 * 
+	 * @return The colony positions, or {@code null} if the board hasn't been
+	 *         manually edited since the last call.
+	 */
+	public List<Position> takeEdits() {
+		return edits.getAndSet(null);
+	}
+	
+	/**
+	 * Takes the generations to skip requested with the fast forward button.
+	 * The simulation thread should advance them in a single step without
+	 * showing the generations in between.
+	 * 
+	 * @return The number of generations to skip, 0 if fast forward hasn't been
+	 *         pressed since the last call.
 	 */
-	public synchronized boolean dirty() {
-		return isDirty;
+	public long takeFastForward() {
+		return skipped.getAndSet(0);
 	}
 	
 	/**
@@ -161,7 +286,7 @@ public class Gui {
 	 * @return The cell board column count.
 	 */
 	public int getBoardWidth() {
-		return cells.length;
+		return board.getCols();
 	}
 	
 	/**
@@ -170,40 +295,20 @@ public class Gui {
 	 * @return The cell board row count.
 	 */
 	public int getBoardHeight() {
-		return cells[0].length;
+		return board.getRows();
 	}
 	
 	/**
-	 * Gets the position of currently active colonies on the board.
-	 * 
-	 * @return The list of active colony positions. Never {@code null}.
-	 * @throws InterruptedException 
+	 * Puases execution until the game is unpaused or fast forward is pressed. The
+	 * game is unpaused by pressing the start button in the interface and paused
+	 * by pressing the stop button. Must only be called from a single thread.
 	 */
-	public synchronized List<Position> getBoardState() {
-		List<Position> colonies = new ArrayList<>();
-		for (int i = 0; i < cells.length; i++) {
-			for (int j = 0; j < cells[0].length; j++) {
-				if (cells[i][j].getBackground().equals(LIVING_CELL_COLOR)) {
-					colonies.add(new Position(i, j));
-				}
-			}
-		}
-		isDirty = false;
-		return colonies;
-	}
-
-	/**
-	 * Puases execution until the game is unpaused. The game is unpaused by pressing
-	 * the start button in the interface and paused by pressing the stop button.
-	 */
-	public synchronized void waitStart() {
-		while (isPaused) {
-			try {
-				this.wait();
-			} catch (InterruptedException e) {
-				// No op.
-			}
+	public void waitStart() {
+		waiting = Thread.currentThread();
+		while (isPaused && skipped.get() == 0) {
+			LockSupport.park(this);
 		}
+		waiting = null;
 	}		
 
 	private void initFrame() {			
@@ -217,6 +322,7 @@ public class Gui {
 		
 		menu.add(start);
 		menu.add(stop);	
+		menu.add(fastForward);
 		start.addActionListener(new ActionListener() {			
 			@Override
 			public void actionPerformed(ActionEvent e) {
@@ -229,81 +335,122 @@ public class Gui {
 				pause(true);
 			}
 		});
+		fastForward.addActionListener(new ActionListener() {			
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				skipped.addAndGet(FAST_FORWARD_GENERATIONS);
+				Thread thread = waiting;
+				if (thread != null) {
+					LockSupport.unpark(thread);
+				}
+			}
+		});
 		return menu;
 	}
 	
-	private JPanel initBoard() {		
-		JPanel board  = new JPanel();
-		board.setLayout(new GridBagLayout());
-		GridBagConstraints constraint = new GridBagConstraints();
-		for (int i = 0; i < cells.length; i++) {
-			for (int j = 0; j < cells[0].length; j++) {
-				cells[i][j] = new FixedCell(CELL_SIZE, CELL_SIZE);
-				cells[i][j].setBackground(DEAD_CELL_COLOR);
-				cells[i][j].setBorder(new LineBorder(BORDER_COLOR));
-				cells[i][j].addMouseListener(new MouseListener() {
-					
-					@Override
-					public void mouseReleased(MouseEvent e) {
-						// no op.
-					}
-					
-					@Override
-					public void mousePressed(MouseEvent e) {
-						// no op.
-					}
-					
-					@Override
-					public void mouseExited(MouseEvent e) {
-						// no op.
-						
-					}
-					
-					@Override
-					public void mouseEntered(MouseEvent e) {
-						// no op.
-					}
-					
-					@Override
-					public void mouseClicked(MouseEvent e) {
-						Component c = e.getComponent();
-						setManualCellColor(c);
-					}
-				});
-				constraint.gridx = i;
-				constraint.gridy = j;
-				constraint.weightx = 0;
-				constraint.weighty = 0;
-				board.add(cells[i][j], constraint);
-			}			
-		}	
-		return board;
+	/**
+	 * Puts the board in a scroll pane if it doesn't fit in
+	 * {@link #MAX_BOARD_SIZE}.
+	 */
+	private JComponent wrapBoard() {
+		Dimension size = board.getPreferredSize();
+		if (size.width <= MAX_BOARD_SIZE && size.height <= MAX_BOARD_SIZE) {
+			return board;
+		}
+		JScrollPane scrollPane = new JScrollPane(board);
+		scrollPane.setPreferredSize(new Dimension(MAX_BOARD_SIZE, MAX_BOARD_SIZE));
+		scrollPane.setMinimumSize(new Dimension(MAX_BOARD_SIZE, MAX_BOARD_SIZE));
+		return scrollPane;
 	}
 	
-	private synchronized void update(Collection<Position> colonies) {
+	private void update(Collection<Position> colonies) {
 		Objects.requireNonNull(colonies);
-		updateAllCells(c -> c.setBackground(DEAD_CELL_COLOR));
+		board.clear();
+		for (long[] row : shown) {
+			Arrays.fill(row, 0);
+		}
 		for (Position pos : colonies) {
-			cells[pos.getX()][pos.getY()].setBackground(LIVING_CELL_COLOR);
+			board.setAlive(pos.getX(), pos.getY(), true);
+			shown[pos.getY()][pos.getX() >>> 6] |= 1L << pos.getX();
 		}		
-		frame.getContentPane().repaint();	
+		board.repaint();	
 	}
 	
-	private void updateAllCells(Consumer<FixedCell> consumer) {
-		for(int i = 0; i < cells.length; i++) {
-			for (int j = 0; j < cells[0].length; j++) {
-				consumer.accept(cells[i][j]);
+	/**
+	 * Shows the latest published generation, if there is a new one. Only the
+	 * cells that differ from the shown ones are redrawn.
+	 */
+	private void showLatest() {
+		BoardSnapshot snapshot = generations.poll();
+		if (snapshot == null) {
+			return;
+		}
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+		for (int y = 0; y < shown.length; y++) {
+			for (int i = 0; i < shown[y].length; i++) {
+				long word = snapshot.getWord(y, i);
+				long changed = shown[y][i] ^ word;
+				if (changed == 0) {
+					continue;
+				}
+				shown[y][i] = word;
+				minX = Math.min(minX, i * Long.SIZE + Long.numberOfTrailingZeros(changed));
+				maxX = Math.max(maxX, i * Long.SIZE + Long.SIZE - 1 - Long.numberOfLeadingZeros(changed));
+				minY = Math.min(minY, y);
+				maxY = y;
+				while (changed != 0) {
+					int bit = Long.numberOfTrailingZeros(changed);
+					board.setAlive(i * Long.SIZE + bit, y, (word >>> bit & 1) != 0);
+					changed &= changed - 1;
+				}
 			}
-		}	
+		}
+		if (minX <= maxX) {
+			// Swing merges all dirty regions of a component into their bounding
+			// box anyway, so a single repaint of the bounding box is just as
+			// precise.
+			board.repaintCells(minX, minY, maxX, maxY);
+		}
 	}
 	
-	private synchronized void setManualCellColor(Component c) {
-		if (c == null || boardLocked) {
+	private void showStats() {
+		LifeMetrics shownMetrics = metrics;
+		if (shownMetrics == null) {
 			return;
 		}
-		Color color = c.getBackground().equals(DEAD_CELL_COLOR) ?
-				LIVING_CELL_COLOR : DEAD_CELL_COLOR;
-		c.setBackground(color);
-		isDirty = true;
+		stats.setText(String.format("Generations %d | Population %d | Births %d | Deaths %d | %.1f gen/s"
+				+ " | Update p50 %.1f \u00b5s, p99 %.1f \u00b5s",
+				shownMetrics.getGenerations(), shownMetrics.getPopulation(), shownMetrics.getLastBirths(),
+				shownMetrics.getLastDeaths(), shownMetrics.getGenerationsPerSecond(),
+				shownMetrics.getUpdateLatency50thNanos() / NANOS_PER_MICRO,
+				shownMetrics.getUpdateLatency99thNanos() / NANOS_PER_MICRO));
+	}
+	
+	private void toggleCell(long pos) {
+		if (boardLocked) {
+			return;
+		}
+		int x = Position.x(pos);
+		int y = Position.y(pos);
+		board.setAlive(x, y, !board.isAlive(x, y));
+		shown[y][x >>> 6] ^= 1L << x;
+		board.repaintCells(x, y, x, y);
+		edits.set(shownColonies());
+	}
+	
+	/**
+	 * @return The positions of the colonies shown on the board.
+	 */
+	private List<Position> shownColonies() {
+		List<Position> colonies = new ArrayList<>();
+		for (int y = 0; y < shown.length; y++) {
+			for (int i = 0; i < shown[y].length; i++) {
+				for (long word = shown[y][i]; word != 0; word &= word - 1) {
+					colonies.add(new Position(i * Long.SIZE + Long.numberOfTrailingZeros(word), y));
+				}
+			}
+		}
+		return colonies;
 	}
 }
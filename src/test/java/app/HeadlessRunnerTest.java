@@ -0,0 +1,116 @@
+package app;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import game.BitBoardState;
+import game.LifeEngine;
+import game.LifePattern;
+import game.MacrocellFormat;
+import game.MacrocellPattern;
+import game.Position;
+import game.RleFormat;
+import game.Rule;
+import game.SparseState;
+import game.Topology;
+
+class HeadlessRunnerTest {
+
+	private static final List<Position> BLOCK = Arrays.asList(new Position(1, 1), new Position(2, 1),
+			new Position(1, 2), new Position(2, 2));
+
+	private static final List<Position> BLINKER = Arrays.asList(new Position(1, 2), new Position(2, 2),
+			new Position(3, 2));
+
+	private static final List<Position> GLIDER = Arrays.asList(new Position(1, 0), new Position(2, 1),
+			new Position(0, 2), new Position(1, 2), new Position(2, 2));
+
+
+	/**
+	 * Verifies that a run searching for cycles stops at the first update that
+	 * doesn't change the board.
+	 */
+	@Test
+	void stableTest() {
+		String report = run(new BitBoardState(8, 8, BLOCK), 100, null, 64);
+		assertTrue(report.contains("Generations:        1 (stable)"), report);
+		assertTrue(report.contains("Final population:   4"), report);
+	}
+
+	/**
+	 * Verifies that a run stops at the first cycle found and reports its
+	 * period and start.
+	 */
+	@Test
+	void cycleTest() {
+		String report = run(new SparseState(5, 5, BLINKER), 100, null, 64);
+		assertTrue(report.contains("Generations:        2 (entered period-2 cycle at generation 0)"), report);
+		assertTrue(report.contains("Final population:   3"), report);
+	}
+
+	/**
+	 * Verifies that a run without a cycle search steps to exactly the last
+	 * generation, even when it isn't a multiple of the step size, and that a
+	 * stable board still ends the run between steps.
+	 */
+	@Test
+	void stepTest() {
+		LifeEngine glider = new BitBoardState(64, 64, GLIDER, Rule.CONWAY, Topology.TORUS);
+		String report = run(glider, 3000, null, 0);
+		assertTrue(report.contains("Generations:        3000\n"), report);
+		assertTrue(report.contains("Final population:   5"), report);
+		assertEquals(3000, glider.getGeneration());
+		report = run(new BitBoardState(8, 8, BLOCK), 5000, null, 0);
+		assertTrue(report.contains("Generations:        1025 (stable)"), report);
+		assertTrue(report.contains("Final population:   4"), report);
+	}
+
+	/**
+	 * Verifies that the final generation is saved as RLE, or as Macrocell for
+	 * the Macrocell suffix.
+	 */
+	@Test
+	void outputTest(@TempDir Path directory) throws IOException {
+		Path rle = directory.resolve("glider.rle");
+		String report = run(new BitBoardState(16, 16, GLIDER, Rule.CONWAY, Topology.TORUS), 10, rle, 0);
+		assertTrue(report.contains("Saved:              " + rle), report);
+		try (Reader in = Files.newBufferedReader(rle, StandardCharsets.US_ASCII)) {
+			LifePattern pattern = RleFormat.read(in);
+			assertEquals(5, pattern.getPopulation());
+			assertEquals(Topology.TORUS, pattern.getTopology());
+		}
+		Path macrocell = directory.resolve("glider" + HeadlessRunner.MACROCELL_SUFFIX);
+		run(new BitBoardState(16, 16, GLIDER), 4, macrocell, 64);
+		try (Reader in = Files.newBufferedReader(macrocell, StandardCharsets.US_ASCII)) {
+			MacrocellPattern pattern = MacrocellFormat.read(in);
+			assertEquals(5, pattern.toEngine(16, 16).getPopulation());
+		}
+	}
+
+
+	/**
+	 * Runs an engine and returns the printed report, with line breaks as
+	 * {@code \n}.
+	 */
+	private static String run(LifeEngine engine, long maxGenerations, Path output, int cycleHistory) {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		try (PrintStream out = new PrintStream(buffer, true, "UTF-8")) {
+			new HeadlessRunner("test", engine, maxGenerations, out, output, cycleHistory).run();
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+		return new String(buffer.toByteArray(), StandardCharsets.UTF_8).replace(System.lineSeparator(), "\n");
+	}
+}
@@ -0,0 +1,139 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class BitBoardStateTest extends LifeEngineTest {
+
+	@Override
+	protected LifeEngine createEngine(int width, int height, Collection<Position> colonies, Rule rule,
+			Topology topology) {
+		return new BitBoardState(width, height, colonies, rule, topology);
+	}
+
+	/**
+	 * Verifies that a blinker crossing a word boundary oscillates correctly.
+	 *
+	 * ###
+	 */
+	@Test
+	void wordBoundaryTest() {
+		List<Position> colonies = new ArrayList<>(3);
+		colonies.add(new Position(63, 10));
+		colonies.add(new Position(64, 10));
+		colonies.add(new Position(65, 10));
+		BitBoardState state = new BitBoardState(130, 20, colonies);
+		assertTrue(state.update());
+		Set<Position> actualColonies = state.getColonies();
+		assertEquals(3, actualColonies.size());
+		assertTrue(actualColonies.contains(new Position(64, 9)));
+		assertTrue(actualColonies.contains(new Position(64, 11)));
+		assertTrue(state.update());
+		assertEquals(colonies.size(), state.getColonies().size());
+		assertTrue(state.getColonies().containsAll(colonies));
+	}
+
+	/**
+	 * Verifies that colonies are never born outside the board.
+	 */
+	@Test
+	void edgeTest() {
+		List<Position> colonies = new ArrayList<>(3);
+		colonies.add(new Position(69, 0));
+		colonies.add(new Position(69, 1));
+		colonies.add(new Position(69, 2));
+		BitBoardState state = new BitBoardState(70, 3, colonies);
+		state.update();
+		Set<Position> actualColonies = state.getColonies();
+		assertEquals(2, actualColonies.size());
+		assertTrue(actualColonies.contains(new Position(68, 1)));
+		assertTrue(actualColonies.contains(new Position(69, 1)));
+	}
+
+	/**
+	 * Verifies that colonies outside the board are rejected.
+	 */
+	@Test
+	void outsideBoardTest() {
+		List<Position> colonies = new ArrayList<>(1);
+		colonies.add(new Position(11, 5));
+		assertThrows(IllegalArgumentException.class, () -> new BitBoardState(11, 11, colonies));
+	}
+
+	/**
+	 * Verifies that a step over a huge number of generations of a board that
+	 * settles skips the generations after it has settled.
+	 */
+	@Test
+	void settledStepTest() {
+		List<Position> colonies = new ArrayList<>();
+		// A block and two lone cells that die in the first generation.
+		colonies.add(new Position(10, 10));
+		colonies.add(new Position(11, 10));
+		colonies.add(new Position(10, 11));
+		colonies.add(new Position(11, 11));
+		colonies.add(new Position(40, 30));
+		colonies.add(new Position(41, 31));
+		BitBoardState state = new BitBoardState(100, 100, colonies);
+		state.step(1L << 40);
+		assertEquals(1L << 40, state.getGeneration());
+		Set<Position> block = new HashSet<>(colonies.subList(0, 4));
+		assertEquals(block, state.getColonies());
+		assertEquals(2, state.getChanges().size());
+	}
+
+	/**
+	 * Verifies that wrapping agrees with the reference engine for widths around
+	 * the word size, where the cells across the left and right edges are in
+	 * different words.
+	 */
+	@Test
+	void wrapWidthTest() {
+		for (int width : new int[] { 1, 2, 63, 64, 65, 100, 128 }) {
+			for (Topology topology : new Topology[] { Topology.TORUS, Topology.KLEIN_BOTTLE }) {
+				List<Position> colonies = randomSoup(width, 21, width);
+				GameOfLifeState expected = new GameOfLifeState(width, 21, colonies, Rule.CONWAY, topology);
+				BitBoardState actual = new BitBoardState(width, 21, colonies, Rule.CONWAY, topology);
+				for (int i = 0; i < 20; i++) {
+					assertEquals(expected.update(), actual.update());
+					assertEquals(expected.getColonies(), actual.getColonies(), width + " " + topology);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Verifies that mirroring a row moves every cell to the other side.
+	 */
+	@Test
+	void mirrorTest() {
+		for (int width : new int[] { 1, 63, 64, 65, 130 }) {
+			long[] row = new long[(width + Long.SIZE - 1) / Long.SIZE];
+			long[] mirrored = new long[row.length];
+			for (int x : new int[] { 0, 1, 3, width - 1 }) {
+				row[x / Long.SIZE] |= 1L << x;
+			}
+			BitBoardState.mirror(row, mirrored, width);
+			for (int x = 0; x < width; x++) {
+				int m = width - 1 - x;
+				assertEquals(row[x / Long.SIZE] >>> x & 1, mirrored[m / Long.SIZE] >>> m & 1, width + " " + x);
+			}
+		}
+	}
+
+	/**
+	 * Verifies that a bit packed board can't be infinite.
+	 */
+	@Test
+	void infiniteTest() {
+		assertThrows(IllegalArgumentException.class,
+				() -> new BitBoardState(10, 10, new ArrayList<>(), Rule.CONWAY, Topology.INFINITE));
+	}
+}
@@ -0,0 +1,124 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class CycleDetectorTest {
+
+	/**
+	 * Verifies that a blinker is found to be a period 2 cycle from the start.
+	 */
+	@Test
+	void blinkerTest() {
+		LifeEngine engine = new BitBoardState(5, 5,
+				Arrays.asList(new Position(1, 2), new Position(2, 2), new Position(3, 2)));
+		CycleDetector cycles = new CycleDetector(engine);
+		engine.update();
+		assertFalse(cycles.observe());
+		assertEquals(0, cycles.getPeriod());
+		assertEquals(-1, cycles.getCycleStart());
+		engine.update();
+		assertTrue(cycles.observe());
+		assertEquals(2, cycles.getPeriod());
+		assertEquals(0, cycles.getCycleStart());
+	}
+
+	/**
+	 * Verifies that an engine that doesn't keep the hash of its board is
+	 * followed through its changes.
+	 */
+	@Test
+	void untrackedTest() {
+		LifeEngine engine = new GameOfLifeState(5, 5,
+				Arrays.asList(new Position(1, 2), new Position(2, 2), new Position(3, 2))) {
+			@Override
+			public boolean trackHash() {
+				return false;
+			}
+		};
+		CycleDetector cycles = new CycleDetector(engine);
+		assertThrows(IllegalStateException.class, engine::getHash);
+		engine.update();
+		assertFalse(cycles.observe());
+		engine.update();
+		assertTrue(cycles.observe());
+		assertEquals(2, cycles.getPeriod());
+		assertEquals(0, cycles.getCycleStart());
+	}
+
+	/**
+	 * Verifies that cycles longer than the history are not found.
+	 */
+	@Test
+	void historyTest() {
+		List<Position> blinker = Arrays.asList(new Position(1, 2), new Position(2, 2), new Position(3, 2));
+		LifeEngine engine = new GameOfLifeState(5, 5, blinker);
+		CycleDetector cycles = new CycleDetector(engine, 1);
+		for (int i = 0; i < 10; i++) {
+			engine.update();
+			assertFalse(cycles.observe());
+		}
+		assertThrows(IllegalArgumentException.class, () -> new CycleDetector(engine, 0));
+	}
+
+	/**
+	 * Verifies that every engine finds the same cycle in random soups as a
+	 * search comparing whole generations.
+	 */
+	@Test
+	void soupTest() {
+		for (String name : LifeEngines.names()) {
+			// Gliders escaping a soup on an infinite plane never repeat.
+			if (LifeEngines.defaultTopology(name) != Topology.BOUNDED) {
+				continue;
+			}
+			for (long seed = 0; seed < 4; seed++) {
+				LifeEngine engine = LifeEngines.create(name, 24, 24, LifeEngineTest.randomSoup(24, 24, seed), Rule.CONWAY);
+				CycleDetector cycles = new CycleDetector(engine);
+				Map<Set<Position>, Long> seen = new HashMap<>();
+				seen.put(engine.getColonies(), 0L);
+				long expectedStart = -1;
+				long expectedPeriod = 0;
+				while (expectedPeriod == 0) {
+					engine.update();
+					Long earlier = seen.putIfAbsent(engine.getColonies(), engine.getGeneration());
+					boolean found = cycles.observe();
+					assertEquals(earlier != null, found, name);
+					if (earlier != null) {
+						expectedStart = earlier;
+						expectedPeriod = engine.getGeneration() - earlier;
+					}
+				}
+				assertEquals(expectedPeriod, cycles.getPeriod(), name);
+				assertEquals(expectedStart, cycles.getCycleStart(), name);
+			}
+		}
+	}
+
+
+	/**
+	 * Verifies that a short history keeps finding exactly the repetitions within
+	 * its window while old generations are forgotten.
+	 */
+	@Test
+	void windowTest() {
+		int history = 5;
+		LifeEngine engine = new TiledBitBoardState(64, 64, LifeEngineTest.randomSoup(64, 64, 9));
+		CycleDetector cycles = new CycleDetector(engine, history);
+		Map<Set<Position>, Long> latest = new HashMap<>();
+		latest.put(engine.getColonies(), 0L);
+		for (int i = 0; i < 600; i++) {
+			engine.update();
+			Long earlier = latest.put(engine.getColonies(), engine.getGeneration());
+			boolean expected = earlier != null && engine.getGeneration() - earlier <= history;
+			assertEquals(expected, cycles.observe(), "generation " + engine.getGeneration());
+		}
+	}
+}
@@ -158,4 +158,34 @@ class GameOfLifeStateTest {
 		}
 		assertFalse(state.update());
 	}
+
+	/**
+	 * Verifies that {@link GameOfLifeState#getChanges()} reports the births and
+	 * deaths of a blinker.
+	 * 
+	 * ###
+	 */
+	@Test
+	void changesTest() {
+		List<Position> colonies = new ArrayList<>(3);
+		colonies.add(new Position(4, 5));
+		colonies.add(new Position(5, 5));
+		colonies.add(new Position(6, 5));
+		GameOfLifeState state = new GameOfLifeState(11, 11, colonies);
+		assertTrue(state.getChanges().isEmpty());
+		state.update();
+		ChangeSet changes = state.getChanges();
+		assertEquals(4, changes.size());
+		for (int i = 0; i < changes.size(); i++) {
+			Position pos = new Position(changes.getX(i), changes.getY(i));
+			assertEquals(changes.isBirth(i), state.isColony(pos.getX(), pos.getY()));
+			assertNotEquals(changes.isBirth(i), colonies.contains(pos));
+		}
+		state.step(2);
+		assertTrue(state.getChanges().isEmpty());
+		state.step(3);
+		assertEquals(4, state.getChanges().size());
+		state.step(0);
+		assertTrue(state.getChanges().isEmpty());
+	}
 }
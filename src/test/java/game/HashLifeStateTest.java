@@ -0,0 +1,93 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class HashLifeStateTest extends LifeEngineTest {
+
+	@Override
+	protected LifeEngine createEngine(int width, int height, Collection<Position> colonies, Rule rule,
+			Topology topology) {
+		return new HashLifeState(width, height, colonies, rule, topology);
+	}
+
+	@Override
+	protected boolean leapsOverGenerations() {
+		return true;
+	}
+
+	/**
+	 * Verifies that a glider crossing a large board is advanced correctly in large
+	 * leaps, and that it is destroyed at the board edge.
+	 *
+	 *  #
+	 *   #
+	 * ###
+	 */
+	@Test
+	void gliderTest() {
+		List<Position> colonies = new ArrayList<>(5);
+		colonies.add(new Position(1, 0));
+		colonies.add(new Position(2, 1));
+		colonies.add(new Position(0, 2));
+		colonies.add(new Position(1, 2));
+		colonies.add(new Position(2, 2));
+		GameOfLifeState expected = new GameOfLifeState(300, 200, colonies);
+		HashLifeState actual = new HashLifeState(300, 200, colonies);
+		for (int steps : new int[] { 1, 3, 64, 100, 300, 500 }) {
+			for (int i = 0; i < steps; i++) {
+				expected.update();
+			}
+			actual.step(steps);
+			assertEquals(expected.getGeneration(), actual.getGeneration());
+			assertEquals(expected.getColonies(), actual.getColonies());
+		}
+		assertTrue(actual.getCacheSize() > 0);
+		assertTrue(actual.getCacheHits() > 0);
+		assertTrue(actual.getCacheMisses() > 0);
+	}
+
+	/**
+	 * Verifies that a huge number of generations of an oscillator is cheap.
+	 *
+	 * ###
+	 */
+	@Test
+	void blinkerTest() {
+		List<Position> colonies = new ArrayList<>(3);
+		colonies.add(new Position(499, 500));
+		colonies.add(new Position(500, 500));
+		colonies.add(new Position(501, 500));
+		HashLifeState state = new HashLifeState(1000, 1000, colonies);
+		state.step(1L << 40);
+		assertEquals(1L << 40, state.getGeneration());
+		assertEquals(3, state.getPopulation());
+		assertTrue(state.isColony(499, 500));
+		state.step((1L << 40) + 1);
+		assertTrue(state.isColony(500, 499));
+		assertTrue(state.isColony(500, 501));
+	}
+
+	/**
+	 * Verifies that a wrapping board must be a square with a power of two side
+	 * and that a board can't be infinite.
+	 */
+	@Test
+	void topologyTest() {
+		List<Position> colonies = new ArrayList<>();
+		assertThrows(IllegalArgumentException.class,
+				() -> new HashLifeState(64, 32, colonies, Rule.CONWAY, Topology.TORUS));
+		assertThrows(IllegalArgumentException.class,
+				() -> new HashLifeState(48, 48, colonies, Rule.CONWAY, Topology.KLEIN_BOTTLE));
+		assertThrows(IllegalArgumentException.class,
+				() -> new HashLifeState(2, 2, colonies, Rule.CONWAY, Topology.TORUS));
+		assertThrows(IllegalArgumentException.class,
+				() -> new HashLifeState(64, 64, colonies, Rule.CONWAY, Topology.INFINITE));
+		assertEquals(Topology.TORUS, new HashLifeState(4, 4, colonies, Rule.CONWAY, Topology.TORUS).getTopology());
+	}
+}
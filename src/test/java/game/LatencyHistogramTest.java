@@ -0,0 +1,61 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+	/**
+	 * Verifies that small values are recorded exactly and that the count, mean
+	 * and max are exact.
+	 */
+	@Test
+	void smallValuesTest() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getValueAtPercentile(50));
+		for (int value = 1; value <= 50; value++) {
+			histogram.record(value);
+		}
+		histogram.record(-5);
+		assertEquals(51, histogram.getCount());
+		assertEquals(50, histogram.getMax());
+		assertEquals(1275 / 51.0, histogram.getMean(), 1e-9);
+		assertEquals(0, histogram.getValueAtPercentile(0));
+		assertEquals(25, histogram.getValueAtPercentile(50));
+		assertEquals(50, histogram.getValueAtPercentile(100));
+	}
+
+	/**
+	 * Verifies that percentiles of values spread over many magnitudes are off
+	 * by less than the bucket precision, also at the end of the range.
+	 */
+	@Test
+	void precisionTest() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		Random random = new Random(5);
+		long[] values = new long[10000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = random.nextLong() >>> random.nextInt(64);
+			histogram.record(values[i]);
+		}
+		Arrays.sort(values);
+		for (double percentile : new double[] { 1, 10, 50, 90, 99, 99.9 }) {
+			long expected = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+			long actual = histogram.getValueAtPercentile(percentile);
+			assertTrue(actual >= expected, percentile + ": " + actual + " < " + expected);
+			assertTrue(actual - expected <= expected / 32, percentile + ": " + actual + " far above " + expected);
+		}
+		assertEquals(values[values.length - 1], histogram.getMax());
+		assertEquals(histogram.getMax(), histogram.getValueAtPercentile(100));
+
+		histogram.record(Long.MAX_VALUE);
+		assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(100));
+		assertThrows(IllegalArgumentException.class, () -> histogram.getValueAtPercentile(100.5));
+		assertThrows(IllegalArgumentException.class, () -> histogram.getValueAtPercentile(Double.NaN));
+	}
+}
@@ -0,0 +1,403 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Behavior shared by all {@link LifeEngine} implementations. Every engine is
+ * verified against the reference engine, {@link GameOfLifeState}.
+ */
+abstract class LifeEngineTest {
+
+	/**
+	 * Creates the engine under test.
+	 */
+	protected abstract LifeEngine createEngine(int width, int height, Collection<Position> colonies, Rule rule,
+			Topology topology);
+
+	/**
+	 * The topology of the engines created by the shorter overloads of
+	 * {@code createEngine} and of the reference engines they are compared to.
+	 */
+	protected Topology topology() {
+		return Topology.BOUNDED;
+	}
+
+	/**
+	 * Whether the engine under test leaps over the generations of a step, and
+	 * only counts the births and deaths between its first and last generation.
+	 */
+	protected boolean leapsOverGenerations() {
+		return false;
+	}
+
+	/**
+	 * Creates the engine under test with the default topology.
+	 */
+	protected LifeEngine createEngine(int width, int height, Collection<Position> colonies, Rule rule) {
+		return createEngine(width, height, colonies, rule, topology());
+	}
+
+	/**
+	 * Creates the engine under test with Conway's rule.
+	 */
+	protected LifeEngine createEngine(int width, int height, Collection<Position> colonies) {
+		return createEngine(width, height, colonies, Rule.CONWAY);
+	}
+
+	/**
+	 * Verifies that a colony with exactly two neighbors is alive after
+	 * {@link LifeEngine#update()}.
+	 *
+	 *  #
+	 * # #
+	 *  #
+	 */
+	@Test
+	void twoNeighborTest() {
+		List<Position> colonies = new ArrayList<>(4);
+		colonies.add(new Position(5, 5));
+		colonies.add(new Position(4, 6));
+		colonies.add(new Position(6, 6));
+		colonies.add(new Position(5, 7));
+		LifeEngine engine = createEngine(11, 11, colonies);
+		assertFalse(engine.update());
+		Set<Position> actualColonies = engine.getColonies();
+		assertTrue(actualColonies.size() == colonies.size());
+		assertTrue(colonies.containsAll(actualColonies));
+	}
+
+	/**
+	 * Verifies that a new colony is born in a square with exactly three neighboring
+	 * colonies after {@link LifeEngine#update()}.
+	 *
+	 * # #
+	 *  #
+	 */
+	@Test
+	void threeNeighborTest() {
+		List<Position> colonies = new ArrayList<>(3);
+		colonies.add(new Position(4, 5));
+		colonies.add(new Position(6, 5));
+		colonies.add(new Position(5, 6));
+		LifeEngine engine = createEngine(11, 11, colonies);
+		assertTrue(engine.update());
+		Set<Position> actualColonies = engine.getColonies();
+		assertTrue(actualColonies.size() == 2);
+		assertTrue(actualColonies.contains(new Position(5, 5)));
+	}
+
+	/**
+	 * Verifies the expected behavior of {@link LifeEngine#update()} for a small
+	 * explorer shape.
+	 *
+	 *  #
+	 * ###
+	 * # #
+	 *  #
+	 */
+	@Test
+	void explorerTest() {
+		List<Position> colonies = new ArrayList<>(7);
+		colonies.add(new Position(25, 25));
+		colonies.add(new Position(24, 26));
+		colonies.add(new Position(25, 26));
+		colonies.add(new Position(26, 26));
+		colonies.add(new Position(24, 27));
+		colonies.add(new Position(26, 27));
+		colonies.add(new Position(25, 28));
+		LifeEngine engine = createEngine(50, 50, colonies);
+		// Takes 16 generations for the state to stabilize.
+		for (int i = 0; i < 16; i++) {
+			assertTrue(engine.update());
+		}
+		assertFalse(engine.update());
+		assertEquals(17, engine.getGeneration());
+	}
+
+	/**
+	 * Verifies the cell queries of a new engine.
+	 */
+	@Test
+	void queryTest() {
+		List<Position> colonies = new ArrayList<>(2);
+		colonies.add(new Position(0, 0));
+		colonies.add(new Position(6, 10));
+		LifeEngine engine = createEngine(7, 11, colonies);
+		assertEquals(7, engine.getWidth());
+		assertEquals(11, engine.getHeight());
+		assertEquals(0, engine.getGeneration());
+		assertEquals(2, engine.getPopulation());
+		assertTrue(engine.isColony(0, 0));
+		assertTrue(engine.isColony(6, 10));
+		assertFalse(engine.isColony(1, 0));
+	}
+
+	/**
+	 * Verifies that the engine agrees with the reference engine on every
+	 * generation of a random soup, including the board edges.
+	 */
+	@Test
+	void randomSoupTest() {
+		int width = 150;
+		int height = 90;
+		List<Position> colonies = randomSoup(width, height, 42);
+		GameOfLifeState expected = new GameOfLifeState(width, height, colonies, Rule.CONWAY, topology());
+		LifeEngine actual = createEngine(width, height, colonies);
+		for (int i = 0; i < 100; i++) {
+			assertEquals(expected.update(), actual.update());
+			assertEquals(expected.getColonies(), actual.getColonies());
+			assertEquals(expected.getPopulation(), actual.getPopulation());
+		}
+		assertEquals(expected.getGeneration(), actual.getGeneration());
+	}
+
+	/**
+	 * Verifies that {@link LifeEngine#step(long)} ends up in the same state as
+	 * repeated calls to {@link LifeEngine#update()}.
+	 */
+	@Test
+	void stepTest() {
+		int width = 100;
+		int height = 100;
+		List<Position> colonies = randomSoup(width, height, 7);
+		GameOfLifeState expected = new GameOfLifeState(width, height, colonies, Rule.CONWAY, topology());
+		LifeEngine actual = createEngine(width, height, colonies);
+		for (int i = 0; i < 37; i++) {
+			expected.update();
+		}
+		actual.step(37);
+		assertEquals(expected.getGeneration(), actual.getGeneration());
+		assertEquals(expected.getColonies(), actual.getColonies());
+	}
+
+	/**
+	 * Verifies that steps of many different sizes, in sequence, end up in the
+	 * same state as repeated calls to {@link LifeEngine#update()}.
+	 */
+	@Test
+	void stepSizesTest() {
+		int width = 130;
+		int height = 75;
+		List<Position> colonies = randomSoup(width, height, 11);
+		GameOfLifeState expected = new GameOfLifeState(width, height, colonies, Rule.HIGHLIFE, topology());
+		LifeEngine actual = createEngine(width, height, colonies, Rule.HIGHLIFE);
+		for (long generations : new long[] { 2, 7, 8, 9, 1, 17, 64, 3 }) {
+			for (long i = 0; i < generations; i++) {
+				expected.update();
+			}
+			actual.step(generations);
+			assertEquals(expected.getGeneration(), actual.getGeneration());
+			assertEquals(expected.getColonies(), actual.getColonies(), "generation " + actual.getGeneration());
+		}
+	}
+
+	/**
+	 * Verifies that {@link LifeEngine#forEachLive(CellConsumer)} visits every
+	 * colony exactly once.
+	 */
+	@Test
+	void forEachLiveTest() {
+		int width = 90;
+		int height = 66;
+		LifeEngine engine = createEngine(width, height, randomSoup(width, height, 13));
+		for (int i = 0; i < 3; i++) {
+			List<Position> visited = new ArrayList<>();
+			engine.forEachLive((x, y) -> visited.add(new Position(x, y)));
+			assertEquals(engine.getPopulation(), visited.size());
+			assertEquals(engine.getColonies(), new HashSet<>(visited));
+			engine.step(4);
+		}
+	}
+
+	/**
+	 * Verifies that the engine agrees with the reference engine on a random soup
+	 * for rules other than Conway's.
+	 */
+	@Test
+	void ruleTest() {
+		int width = 70;
+		int height = 40;
+		List<Position> colonies = randomSoup(width, height, 5);
+		for (Rule rule : new Rule[] { Rule.HIGHLIFE, Rule.DAY_AND_NIGHT, Rule.SEEDS, Rule.parse("B3/S012345678") }) {
+			GameOfLifeState expected = new GameOfLifeState(width, height, colonies, rule, topology());
+			LifeEngine actual = createEngine(width, height, colonies, rule);
+			assertEquals(rule, actual.getRule());
+			for (int i = 0; i < 30; i++) {
+				assertEquals(expected.update(), actual.update());
+				assertEquals(expected.getColonies(), actual.getColonies(), rule.toString());
+			}
+		}
+	}
+
+	/**
+	 * Verifies that the engine agrees with the reference engine on a random soup
+	 * on a torus and on a Klein bottle, for single updates and for steps.
+	 */
+	@Test
+	void wrapTest() {
+		int size = 64;
+		List<Position> colonies = randomSoup(size, size, 17);
+		for (Topology topology : new Topology[] { Topology.TORUS, Topology.KLEIN_BOTTLE }) {
+			GameOfLifeState expected = new GameOfLifeState(size, size, colonies, Rule.CONWAY, topology);
+			LifeEngine actual = createEngine(size, size, colonies, Rule.CONWAY, topology);
+			assertEquals(topology, actual.getTopology());
+			for (int i = 0; i < 40; i++) {
+				assertEquals(expected.update(), actual.update());
+				assertEquals(expected.getColonies(), actual.getColonies(), topology.toString());
+			}
+			expected.step(45);
+			actual.step(45);
+			assertEquals(expected.getColonies(), actual.getColonies(), topology.toString());
+		}
+	}
+
+	/**
+	 * Verifies that a glider on a torus crosses every edge and returns to where
+	 * it started, and that a glider on a Klein bottle comes back mirrored.
+	 */
+	@Test
+	void wrappedGliderTest() {
+		int size = 16;
+		List<Position> glider = new ArrayList<>();
+		glider.add(new Position(1, 0));
+		glider.add(new Position(2, 1));
+		glider.add(new Position(0, 2));
+		glider.add(new Position(1, 2));
+		glider.add(new Position(2, 2));
+		LifeEngine torus = createEngine(size, size, glider, Rule.CONWAY, Topology.TORUS);
+		// A glider moves one cell diagonally every 4 generations.
+		torus.step(4 * size);
+		assertEquals(new HashSet<>(glider), torus.getColonies());
+		LifeEngine klein = createEngine(size, size, glider, Rule.CONWAY, Topology.KLEIN_BOTTLE);
+		klein.step(4 * size);
+		assertEquals(5, klein.getPopulation());
+		assertNotEquals(new HashSet<>(glider), klein.getColonies());
+		// Crossing the bottom edge twice undoes the mirroring.
+		klein.step(4 * size);
+		assertEquals(new HashSet<>(glider), klein.getColonies());
+	}
+
+	/**
+	 * Verifies that applying {@link LifeEngine#getChanges()} to the previous
+	 * colonies gives the current colonies, both for single updates and for
+	 * steps over several generations.
+	 */
+	@Test
+	void changesTest() {
+		int width = 80;
+		int height = 70;
+		LifeEngine engine = createEngine(width, height, randomSoup(width, height, 3));
+		assertTrue(engine.getChanges().isEmpty());
+		for (long generations : new long[] { 1, 1, 5, 0, 1, 12 }) {
+			Set<Position> colonies = new HashSet<>(engine.getColonies());
+			engine.step(generations);
+			ChangeSet changes = engine.getChanges();
+			for (int i = 0; i < changes.size(); i++) {
+				Position pos = new Position(changes.getX(i), changes.getY(i));
+				if (changes.isBirth(i)) {
+					assertTrue(colonies.add(pos));
+				} else {
+					assertTrue(colonies.remove(pos));
+				}
+			}
+			assertEquals(engine.getColonies(), colonies);
+			if (generations == 0) {
+				assertTrue(changes.isEmpty());
+			}
+		}
+	}
+
+	/**
+	 * Verifies that {@link LifeEngine#getBirths()} and
+	 * {@link LifeEngine#getDeaths()} agree with the changes of a single update
+	 * and with the reference engine, which counts every generation of a step,
+	 * and that they add up to the population.
+	 */
+	@Test
+	void birthsAndDeathsTest() {
+		int width = 75;
+		int height = 60;
+		List<Position> colonies = randomSoup(width, height, 19);
+		GameOfLifeState expected = new GameOfLifeState(width, height, colonies, Rule.CONWAY, topology());
+		LifeEngine actual = createEngine(width, height, colonies);
+		assertEquals(0, actual.getBirths());
+		assertEquals(0, actual.getDeaths());
+		for (long generations : new long[] { 1, 1, 6, 0, 1, 9, 20 }) {
+			long population = actual.getPopulation();
+			expected.step(generations);
+			actual.step(generations);
+			String message = "generation " + actual.getGeneration();
+			assertEquals(expected.getPopulation(), actual.getPopulation(), message);
+			assertEquals(population + actual.getBirths() - actual.getDeaths(), actual.getPopulation(), message);
+			if (generations == 1) {
+				ChangeSet changes = actual.getChanges();
+				long births = 0;
+				for (int i = 0; i < changes.size(); i++) {
+					births += changes.isBirth(i) ? 1 : 0;
+				}
+				assertEquals(births, actual.getBirths(), message);
+				assertEquals(changes.size() - births, actual.getDeaths(), message);
+			}
+			if (generations <= 1 || !leapsOverGenerations()) {
+				assertEquals(expected.getBirths(), actual.getBirths(), message);
+				assertEquals(expected.getDeaths(), actual.getDeaths(), message);
+			}
+		}
+	}
+
+	/**
+	 * Verifies that the hash kept by the engine equals the hash of its
+	 * colonies after single updates and steps, see {@link CycleDetector}.
+	 */
+	@Test
+	void hashTest() {
+		int width = 66;
+		int height = 50;
+		LifeEngine engine = createEngine(width, height, randomSoup(width, height, 23));
+		assertTrue(engine.trackHash());
+		for (long generations : new long[] { 0, 1, 1, 7, 0, 1, 30 }) {
+			engine.step(generations);
+			long hash = 0;
+			for (Position pos : engine.getColonies()) {
+				hash ^= CycleDetector.key(pos.getX(), pos.getY());
+			}
+			assertEquals(hash, engine.getHash(), "generation " + engine.getGeneration());
+			assertTrue(engine.trackHash());
+			assertEquals(hash, engine.getHash());
+		}
+	}
+
+
+	/**
+	 * A random soup where every cell is alive with probability 1/2.
+	 */
+	static List<Position> randomSoup(int width, int height, long seed) {
+		return randomSoup(width, height, seed, 2);
+	}
+
+	/**
+	 * A random soup where every cell is alive with probability
+	 * {@code 1 / oneIn}.
+	 */
+	static List<Position> randomSoup(int width, int height, long seed, int oneIn) {
+		Random random = new Random(seed);
+		List<Position> colonies = new ArrayList<>();
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				if (random.nextInt(oneIn) == 0) {
+					colonies.add(new Position(x, y));
+				}
+			}
+		}
+		return colonies;
+	}
+}
@@ -0,0 +1,85 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Test;
+
+class LifeMetricsTest {
+
+	/**
+	 * Verifies that a metered engine behaves like the engine it wraps, and
+	 * records the generations, population, births and deaths of every update
+	 * and step.
+	 */
+	@Test
+	void meteredEngineTest() throws Exception {
+		List<Position> soup = LifeEngineTest.randomSoup(40, 40, 9);
+		for (String name : LifeEngines.names()) {
+			GameOfLifeState expected = new GameOfLifeState(40, 40, soup, Rule.CONWAY, LifeEngines.defaultTopology(name));
+			LifeMetrics metrics = new LifeMetrics();
+			MeteredEngine engine = new MeteredEngine(
+					LifeEngines.create(name, 40, 40, soup, Rule.CONWAY, LifeEngines.defaultTopology(name)), metrics);
+			long births = 0;
+			long deaths = 0;
+			for (int i = 0; i < 20; i++) {
+				assertEquals(expected.update(), engine.update(), name);
+				ChangeSet changes = engine.getChanges();
+				int born = 0;
+				for (int j = 0; j < changes.size(); j++) {
+					born += changes.isBirth(j) ? 1 : 0;
+				}
+				assertEquals(born, metrics.getLastBirths(), name);
+				assertEquals(changes.size() - born, metrics.getLastDeaths(), name);
+				births += born;
+				deaths += changes.size() - born;
+			}
+			assertEquals(births, metrics.getBirths(), name);
+			assertEquals(deaths, metrics.getDeaths(), name);
+			assertEquals(soup.size() + births - deaths, metrics.getPopulation(), name);
+			expected.step(30);
+			engine.step(30);
+			assertEquals(expected.getColonies(), engine.getColonies(), name);
+			assertEquals(expected.getPopulation(), metrics.getPopulation(), name);
+			assertEquals(expected.getPopulation(), engine.getPopulation(), name);
+			assertEquals(50, metrics.getGenerations(), name);
+			assertEquals(21, metrics.getUpdateCount(), name);
+			assertTrue(metrics.getUpdateLatency50thNanos() <= metrics.getUpdateLatencyMaxNanos(), name);
+			engine.close();
+		}
+	}
+
+	/**
+	 * Verifies that registered metrics can be read over JMX, and that the name
+	 * is free again after unregistering.
+	 */
+	@Test
+	void jmxTest() throws Exception {
+		LifeMetrics metrics = new LifeMetrics();
+		metrics.record(10, 5000, 42, 7, 3);
+		ObjectName name = metrics.register("metrics test");
+		try {
+			assertThrows(IllegalStateException.class, () -> metrics.register("metrics test"));
+			assertThrows(IllegalStateException.class, () -> new LifeMetrics().register("metrics test"));
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			assertEquals(LifeMetrics.DOMAIN, name.getDomain());
+			assertEquals(10L, server.getAttribute(name, "Generations"));
+			assertEquals(42L, server.getAttribute(name, "Population"));
+			assertEquals(7L, server.getAttribute(name, "Births"));
+			assertEquals(3L, server.getAttribute(name, "LastDeaths"));
+			assertEquals(1L, server.getAttribute(name, "UpdateCount"));
+			assertEquals(500L, server.getAttribute(name, "UpdateLatencyMaxNanos"));
+		} finally {
+			metrics.unregister();
+		}
+		assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+		LifeMetrics other = new LifeMetrics();
+		other.register("metrics test");
+		other.unregister();
+	}
+}
@@ -0,0 +1,143 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class MacrocellFormatTest {
+
+	private static final String GLIDER = "[M2] (golly 2.0)\n#R B3/S23\n#C A comment\n.*$..*$***$\n4 1 0 0 0\n";
+
+
+	/**
+	 * Verifies that a glider is read correctly.
+	 */
+	@Test
+	void readTest() throws IOException {
+		MacrocellPattern pattern = MacrocellFormat.read(new StringReader(GLIDER));
+		assertEquals(Rule.CONWAY, pattern.getRule());
+		assertEquals(0, pattern.getGeneration());
+		assertEquals(2, pattern.getNodeCount());
+		assertEquals(4, pattern.getLevel());
+		HashLifeState engine = pattern.toEngine(16, 16);
+		Set<Position> expected = new HashSet<>();
+		expected.add(new Position(1, 0));
+		expected.add(new Position(2, 1));
+		expected.add(new Position(0, 2));
+		expected.add(new Position(1, 2));
+		expected.add(new Position(2, 2));
+		assertEquals(expected, normalize(engine.getColonies()));
+		engine.step(4);
+		assertEquals(expected, normalize(engine.getColonies()));
+	}
+
+	/**
+	 * Verifies that a pattern of more cells than a board can hold loads in
+	 * memory proportional to its unique nodes.
+	 */
+	@Test
+	void hugeTest() throws IOException {
+		// A glider in every 16x16 square of a 2^30 square board.
+		StringBuilder file = new StringBuilder("[M2]\n.*$..*$***$\n4 1 0 0 0\n");
+		for (int level = 5; level <= 30; level++) {
+			int child = level - 3;
+			file.append(level).append(' ').append(child).append(' ').append(child).append(' ').append(child)
+					.append(' ').append(child).append('\n');
+		}
+		MacrocellPattern pattern = MacrocellFormat.read(new StringReader(file.toString()));
+		assertEquals(30, pattern.getLevel());
+		HashLifeState engine = pattern.toEngine(HashLifeState.MAX_SIZE, HashLifeState.MAX_SIZE);
+		assertEquals(5L << 2 * 26, engine.getPopulation());
+		assertTrue(engine.isColony(16 * 12345 + 1, 16 * 6789));
+		assertFalse(engine.isColony(16 * 12345, 16 * 6789));
+		assertTrue(engine.getCacheSize() < 100);
+	}
+
+	/**
+	 * Verifies that a written generation is read back with the same colonies,
+	 * rule and generation.
+	 */
+	@Test
+	void roundTripTest() throws IOException {
+		List<Position> colonies = new ArrayList<>();
+		for (Position p : LifeEngineTest.randomSoup(50, 30, 5, 3)) {
+			colonies.add(new Position(p.getX() + 40, p.getY() + 50));
+		}
+		HashLifeState engine = new HashLifeState(200, 150, colonies, Rule.HIGHLIFE);
+		engine.step(10);
+		StringWriter out = new StringWriter();
+		MacrocellFormat.write(engine, out);
+		MacrocellPattern pattern = MacrocellFormat.read(new StringReader(out.toString()));
+		assertEquals(Rule.HIGHLIFE, pattern.getRule());
+		assertEquals(10, pattern.getGeneration());
+		HashLifeState copy = pattern.toEngine(200, 150);
+		assertEquals(10, copy.getGeneration());
+		assertEquals(normalize(engine.getColonies()), normalize(copy.getColonies()));
+		engine.step(20);
+		copy.step(20);
+		assertEquals(normalize(engine.getColonies()), normalize(copy.getColonies()));
+	}
+
+	/**
+	 * Verifies that an empty board and a board smaller than a leaf are written
+	 * and read back.
+	 */
+	@Test
+	void smallTest() throws IOException {
+		for (int size : new int[] { 1, 3, 8 }) {
+			List<Position> colonies = new ArrayList<>();
+			for (int x = 0; x < size; x += 2) {
+				colonies.add(new Position(x, size - 1));
+			}
+			for (List<Position> board : Arrays.asList(colonies, new ArrayList<Position>())) {
+				HashLifeState engine = new HashLifeState(size, size, board);
+				StringWriter out = new StringWriter();
+				MacrocellFormat.write(engine, out);
+				HashLifeState copy = MacrocellFormat.read(new StringReader(out.toString())).toEngine(size, size);
+				assertEquals(engine.getColonies(), copy.getColonies());
+			}
+		}
+	}
+
+	/**
+	 * Verifies that malformed patterns are rejected.
+	 */
+	@Test
+	void malformedTest() {
+		assertThrows(IllegalArgumentException.class, () -> MacrocellFormat.read(new StringReader(".*$\n")));
+		assertThrows(IllegalArgumentException.class, () -> MacrocellFormat.read(new StringReader("[M2]\n")));
+		assertThrows(IllegalArgumentException.class, () -> MacrocellFormat.read(new StringReader("[M2]\n.*$\n4 2 0 0 0\n")));
+		assertThrows(IllegalArgumentException.class, () -> MacrocellFormat.read(new StringReader("[M2]\n.*$\n5 1 0 0 0\n")));
+		assertThrows(IllegalArgumentException.class, () -> MacrocellFormat.read(new StringReader("[M2]\n1 0 1 1 0\n")));
+		assertThrows(IllegalArgumentException.class, () -> MacrocellFormat.read(new StringReader("[M2]\n.........*$\n")));
+		assertThrows(IllegalArgumentException.class, () -> MacrocellFormat.read(new StringReader("[M2]\n.*$\n4 1 0 0\n")));
+		assertThrows(IllegalArgumentException.class,
+				() -> MacrocellFormat.read(new StringReader(GLIDER)).toEngine(2, 2));
+	}
+
+
+	/**
+	 * Moves colonies so that their bounding box starts at (0, 0).
+	 */
+	private static Set<Position> normalize(Set<Position> colonies) {
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+		for (Position pos : colonies) {
+			minX = Math.min(minX, pos.getX());
+			minY = Math.min(minY, pos.getY());
+		}
+		Set<Position> normalized = new HashSet<>();
+		for (Position pos : colonies) {
+			normalized.add(new Position(pos.getX() - minX, pos.getY() - minY));
+		}
+		return normalized;
+	}
+}
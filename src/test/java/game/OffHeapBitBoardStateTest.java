@@ -0,0 +1,70 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class OffHeapBitBoardStateTest extends LifeEngineTest {
+
+	@Override
+	protected LifeEngine createEngine(int width, int height, Collection<Position> colonies, Rule rule,
+			Topology topology) {
+		return new OffHeapBitBoardState(width, height, colonies, rule, topology);
+	}
+
+	/**
+	 * Verifies that a board larger than the on-heap engines allow runs a glider
+	 * across it.
+	 *
+	 *  #
+	 *   #
+	 * ###
+	 */
+	@Test
+	void largeBoardTest() {
+		List<Position> glider = new ArrayList<>(5);
+		int x = 4000;
+		glider.add(new Position(x + 1, 0));
+		glider.add(new Position(x + 2, 1));
+		glider.add(new Position(x, 2));
+		glider.add(new Position(x + 1, 2));
+		glider.add(new Position(x + 2, 2));
+		try (OffHeapBitBoardState state = new OffHeapBitBoardState(5000, 200, glider)) {
+			state.step(400);
+			assertEquals(5, state.getPopulation());
+			for (Position pos : glider) {
+				assertTrue(state.isColony(pos.getX() + 100, pos.getY() + 100));
+			}
+			assertEquals(10, state.getChanges().size());
+		}
+		assertThrows(IllegalArgumentException.class,
+				() -> new OffHeapBitBoardState(OffHeapBitBoardState.MAX_SIZE + 1, 10, glider));
+	}
+
+	/**
+	 * Verifies that a closed engine refuses to touch its released memory, and
+	 * that closing it again does nothing.
+	 */
+	@Test
+	void closeTest() {
+		List<Position> colonies = new ArrayList<>();
+		colonies.add(new Position(1, 1));
+		OffHeapBitBoardState state = new OffHeapBitBoardState(10, 10, colonies);
+		state.step(3);
+		assertFalse(state.isClosed());
+		state.close();
+		assertTrue(state.isClosed());
+		state.close();
+		assertThrows(IllegalStateException.class, state::update);
+		assertThrows(IllegalStateException.class, () -> state.step(2));
+		assertThrows(IllegalStateException.class, state::getColonies);
+		assertThrows(IllegalStateException.class, state::getChanges);
+		assertThrows(IllegalStateException.class, () -> state.isColony(1, 1));
+		assertEquals(3, state.getGeneration());
+		assertEquals(10, state.getWidth());
+	}
+}
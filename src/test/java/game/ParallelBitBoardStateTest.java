@@ -0,0 +1,44 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+class ParallelBitBoardStateTest extends LifeEngineTest {
+
+	private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+
+	@AfterAll
+	static void shutdown() {
+		POOL.shutdown();
+	}
+
+	@Override
+	protected LifeEngine createEngine(int width, int height, Collection<Position> colonies, Rule rule,
+			Topology topology) {
+		return new ParallelBitBoardState(width, height, colonies, rule, topology, POOL);
+	}
+
+	/**
+	 * Verifies that the parallel engine agrees with the sequential engine on a
+	 * board that is split into many strips.
+	 */
+	@Test
+	void stripBoundaryTest() {
+		int width = 200;
+		int height = 333;
+		List<Position> colonies = LifeEngineTest.randomSoup(width, height, 11);
+		BitBoardState expected = new BitBoardState(width, height, colonies);
+		LifeEngine actual = createEngine(width, height, colonies);
+		for (int i = 0; i < 50; i++) {
+			assertEquals(expected.update(), actual.update());
+		}
+		assertEquals(expected.getColonies(), actual.getColonies());
+	}
+}
@@ -0,0 +1,92 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class PositionTest {
+
+	/**
+	 * Verifies that positions survive packing into a {@code long}, including at
+	 * the ends of the coordinate range, and that positions on or next to a
+	 * board never pack into the empty key of the primitive maps.
+	 */
+	@Test
+	void packTest() {
+		int[] values = { Integer.MIN_VALUE, -2049, -1, 0, 1, 2047, 2048, Integer.MAX_VALUE };
+		for (int x : values) {
+			for (int y : values) {
+				Position pos = new Position(x, y);
+				long key = pos.toLong();
+				assertEquals(Position.toLong(x, y), key);
+				assertEquals(x, Position.x(key));
+				assertEquals(y, Position.y(key));
+				assertEquals(pos, Position.fromLong(key));
+			}
+		}
+		for (int x = -1; x <= GameOfLifeState.MAX_WIDTH; x++) {
+			assertNotEquals(LongByteMap.EMPTY, Position.toLong(x, -1));
+			assertNotEquals(LongByteMap.EMPTY, Position.toLong(x, 0));
+		}
+	}
+
+	/**
+	 * Verifies that the Morton key interleaves the coordinates and orders the
+	 * quadrants of the plane like the quadrants of each quadrant.
+	 */
+	@Test
+	void mortonKeyTest() {
+		// The sign bits are flipped, so 0 is the start of the upper half.
+		assertEquals(0xC000000000000000L, Position.mortonKey(0, 0));
+		assertEquals(0xC000000000000001L, Position.mortonKey(1, 0));
+		assertEquals(0xC000000000000002L, Position.mortonKey(0, 1));
+		assertEquals(0xC00000000000000FL, Position.mortonKey(3, 3));
+		assertEquals(0L, Position.mortonKey(Integer.MIN_VALUE, Integer.MIN_VALUE));
+		assertEquals(-1L, Position.mortonKey(Integer.MAX_VALUE, Integer.MAX_VALUE));
+		assertEquals(0x5555555555555555L, Position.mortonKey(Integer.MAX_VALUE, Integer.MIN_VALUE));
+		assertEquals(Position.mortonKey(-7, 12), new Position(-7, 12).mortonKey());
+
+		List<Position> positions = new ArrayList<>();
+		for (int y = -2; y < 2; y++) {
+			for (int x = -2; x < 2; x++) {
+				positions.add(new Position(x, y));
+			}
+		}
+		positions.sort((a, b) -> Long.compareUnsigned(a.mortonKey(), b.mortonKey()));
+		// Each 2x2 block is visited in a Z before moving on to the next block.
+		int[][] expected = { { -2, -2 }, { -1, -2 }, { -2, -1 }, { -1, -1 }, { 0, -2 }, { 1, -2 }, { 0, -1 },
+				{ 1, -1 }, { -2, 0 }, { -1, 0 }, { -2, 1 }, { -1, 1 }, { 0, 0 }, { 1, 0 }, { 0, 1 }, { 1, 1 } };
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(new Position(expected[i][0], expected[i][1]), positions.get(i));
+		}
+	}
+
+	/**
+	 * Verifies that positions are ordered by x and then by y, also where the
+	 * difference of two coordinates overflows.
+	 */
+	@Test
+	void compareToTest() {
+		assertTrue(new Position(0, 5).compareTo(new Position(1, 0)) < 0);
+		assertTrue(new Position(1, 0).compareTo(new Position(0, 5)) > 0);
+		assertTrue(new Position(3, -1).compareTo(new Position(3, 2)) < 0);
+		assertEquals(0, new Position(3, 2).compareTo(new Position(3, 2)));
+		assertTrue(new Position(Integer.MIN_VALUE, 0).compareTo(new Position(Integer.MAX_VALUE, 0)) < 0);
+		assertTrue(new Position(0, Integer.MAX_VALUE).compareTo(new Position(0, Integer.MIN_VALUE)) > 0);
+
+		List<Position> positions = new ArrayList<>();
+		positions.add(new Position(2, 1));
+		positions.add(new Position(-1, 7));
+		positions.add(new Position(2, -3));
+		positions.add(new Position(0, 0));
+		Collections.sort(positions);
+		assertEquals(new Position(-1, 7), positions.get(0));
+		assertEquals(new Position(0, 0), positions.get(1));
+		assertEquals(new Position(2, -3), positions.get(2));
+		assertEquals(new Position(2, 1), positions.get(3));
+	}
+}
@@ -0,0 +1,202 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class RleFormatTest {
+
+	/**
+	 * Verifies that a glider with comments and a header is read correctly.
+	 */
+	@Test
+	void readTest() throws IOException {
+		LifePattern pattern = RleFormat.read(new StringReader("#N Glider\n#C A comment\nx = 3, y = 3, rule = B3/S23\nbob$2bo$3o!\n"));
+		assertEquals(3, pattern.getWidth());
+		assertEquals(3, pattern.getHeight());
+		assertEquals(Rule.CONWAY, pattern.getRule());
+		assertEquals(5, pattern.getPopulation());
+		Set<Position> expected = new HashSet<>();
+		expected.add(new Position(11, 20));
+		expected.add(new Position(12, 21));
+		expected.add(new Position(10, 22));
+		expected.add(new Position(11, 22));
+		expected.add(new Position(12, 22));
+		assertEquals(expected, new HashSet<>(pattern.getColonies(10, 20)));
+	}
+
+	/**
+	 * Verifies that run counts, row end counts and line breaks anywhere
+	 * between tags are read correctly, and that the old S/B rule notation is
+	 * understood.
+	 */
+	@Test
+	void runTest() throws IOException {
+		LifePattern pattern = RleFormat.read(new StringReader("x = 12, y = 4, rule = 23/36\r\n3o\r\n8b\r\no2$\r\n12o!"));
+		assertEquals(Rule.parse("B36/S23"), pattern.getRule());
+		Set<Position> expected = new HashSet<>();
+		for (int x = 0; x < 3; x++) {
+			expected.add(new Position(x, 0));
+		}
+		expected.add(new Position(11, 0));
+		for (int x = 0; x < 12; x++) {
+			expected.add(new Position(x, 2));
+		}
+		assertEquals(expected, new HashSet<>(pattern.getColonies(0, 0)));
+	}
+
+	/**
+	 * Verifies that the rule defaults to Conway's and that an empty pattern can
+	 * be read.
+	 */
+	@Test
+	void emptyTest() throws IOException {
+		LifePattern pattern = RleFormat.read(new StringReader("x = 0, y = 0\n!"));
+		assertEquals(Rule.CONWAY, pattern.getRule());
+		assertEquals(0, pattern.getPopulation());
+		assertTrue(pattern.getColonies(0, 0).isEmpty());
+	}
+
+	/**
+	 * Verifies that a Golly topology suffix of the rule gives the topology and
+	 * board size of the pattern, and that patterns without one may be put on
+	 * any board.
+	 */
+	@Test
+	void topologyTest() throws IOException {
+		LifePattern torus = RleFormat.read(new StringReader("x = 3, y = 1, rule = B3/S23:T64,64\n3o!"));
+		assertEquals(Rule.CONWAY, torus.getRule());
+		assertEquals(Topology.TORUS, torus.getTopology());
+		assertEquals(64, torus.getBoardWidth());
+		assertEquals(64, torus.getBoardHeight());
+		LifePattern plane = RleFormat.read(new StringReader("x = 3, y = 1, rule = 23/3:P10,20\n3o!"));
+		assertEquals(Rule.CONWAY, plane.getRule());
+		assertEquals(Topology.BOUNDED, plane.getTopology());
+		assertEquals(10, plane.getBoardWidth());
+		assertEquals(20, plane.getBoardHeight());
+		LifePattern klein = RleFormat.read(new StringReader("x = 3, y = 1, rule = B3/S23:K32*,32\n3o!"));
+		assertEquals(Topology.KLEIN_BOTTLE, klein.getTopology());
+		assertEquals(32, klein.getBoardWidth());
+		LifePattern none = RleFormat.read(new StringReader("x = 3, y = 1, rule = B3/S23\n3o!"));
+		assertNull(none.getTopology());
+		assertEquals(0, none.getBoardWidth());
+		StringWriter out = new StringWriter();
+		RleFormat.write(new BitBoardState(64, 32, torus.getColonies(0, 0), Rule.CONWAY, Topology.TORUS), out);
+		LifePattern written = RleFormat.read(new StringReader(out.toString()));
+		assertEquals(Topology.TORUS, written.getTopology());
+		assertEquals(64, written.getBoardWidth());
+		assertEquals(32, written.getBoardHeight());
+	}
+
+	/**
+	 * Verifies that topologies no engine can run are rejected rather than
+	 * ignored.
+	 */
+	@Test
+	void unsupportedTopologyTest() {
+		for (String suffix : new String[] { "S64", "C64,64", "K32,32*", "T64+1,64", "T0,64", "P64", "T", "X64,64" }) {
+			assertThrows(IllegalArgumentException.class,
+					() -> RleFormat.read(new StringReader("x = 3, y = 1, rule = B3/S23:" + suffix + "\n3o!")), suffix);
+		}
+		assertThrows(IllegalArgumentException.class,
+				() -> RleFormat.read(new StringReader("x = 3, y = 1, rule = B3/S23:T2,2\n3o!")));
+		assertThrows(IllegalArgumentException.class, () -> RleFormat.parseRule("B3/S23:T64,64"));
+	}
+
+	/**
+	 * Verifies that malformed patterns are rejected.
+	 */
+	@Test
+	void malformedTest() {
+		assertThrows(IllegalArgumentException.class, () -> RleFormat.read(new StringReader("bo!")));
+		assertThrows(IllegalArgumentException.class, () -> RleFormat.read(new StringReader("x = 2\nbo!")));
+		assertThrows(IllegalArgumentException.class, () -> RleFormat.read(new StringReader("x = 2, y = 1\n3o!")));
+		assertThrows(IllegalArgumentException.class, () -> RleFormat.read(new StringReader("x = 2, y = 1\no$o!")));
+		assertThrows(IllegalArgumentException.class, () -> RleFormat.read(new StringReader("x = 2, y = 1\no*!")));
+	}
+
+	/**
+	 * Verifies that a written generation is read back with the same colonies,
+	 * rule and bounding box, and that no written line is longer than 70
+	 * characters.
+	 */
+	@Test
+	void roundTripTest() throws IOException {
+		Random random = new Random(4);
+		List<Position> colonies = new ArrayList<>();
+		for (int x = 5; x < 150; x++) {
+			for (int y = 7; y < 90; y++) {
+				if (random.nextInt(5) == 0) {
+					colonies.add(new Position(x, y));
+				}
+			}
+		}
+		LifeEngine engine = new BitBoardState(160, 100, colonies, Rule.HIGHLIFE);
+		engine.step(3);
+		StringWriter out = new StringWriter();
+		RleFormat.write(engine, out);
+		for (String line : out.toString().split("\\R")) {
+			assertTrue(line.length() <= 70, line);
+		}
+		LifePattern pattern = RleFormat.read(new StringReader(out.toString()));
+		assertEquals(Rule.HIGHLIFE, pattern.getRule());
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = 0, maxY = 0;
+		for (Position pos : engine.getColonies()) {
+			minX = Math.min(minX, pos.getX());
+			minY = Math.min(minY, pos.getY());
+			maxX = Math.max(maxX, pos.getX());
+			maxY = Math.max(maxY, pos.getY());
+		}
+		assertEquals(maxX - minX + 1, pattern.getWidth());
+		assertEquals(maxY - minY + 1, pattern.getHeight());
+		assertEquals(engine.getColonies(), new HashSet<>(pattern.getColonies(minX, minY)));
+	}
+
+	/**
+	 * Verifies that colonies of an infinite engine that are far apart, on
+	 * negative coordinates and across tile edges, are written without looking
+	 * at the whole bounding box.
+	 */
+	@Test
+	void farApartTest() throws IOException {
+		Random random = new Random(7);
+		List<Position> colonies = new ArrayList<>();
+		for (int x = -70; x < 70; x++) {
+			for (int y = -70; y < 70; y++) {
+				if (random.nextInt(3) == 0) {
+					colonies.add(new Position(x, y));
+				}
+			}
+		}
+		colonies.add(new Position(-100_000_000, 5));
+		colonies.add(new Position(100_000_000, 100_000));
+		colonies.add(new Position(100_000_001, 100_000));
+		LifeEngine engine = new UnboundedState(10, 10, colonies);
+		StringWriter out = new StringWriter();
+		RleFormat.write(engine, out);
+		LifePattern pattern = RleFormat.read(new StringReader(out.toString()));
+		assertEquals(200_000_002, pattern.getWidth());
+		assertEquals(100_071, pattern.getHeight());
+		assertEquals(engine.getColonies(), new HashSet<>(pattern.getColonies(-100_000_000, -70)));
+	}
+
+	/**
+	 * Verifies that an empty board is written as an empty pattern.
+	 */
+	@Test
+	void writeEmptyTest() throws IOException {
+		StringWriter out = new StringWriter();
+		RleFormat.write(new BitBoardState(10, 10, new ArrayList<>()), out);
+		LifePattern pattern = RleFormat.read(new StringReader(out.toString()));
+		assertEquals(0, pattern.getPopulation());
+	}
+}
@@ -0,0 +1,76 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class RuleTest {
+
+	/**
+	 * Verifies that Conway's rule is parsed and evaluated correctly.
+	 */
+	@Test
+	void conwayTest() {
+		Rule rule = Rule.parse("b3/s23");
+		assertEquals(Rule.CONWAY, rule);
+		assertEquals("B3/S23", rule.toString());
+		for (int n = 0; n <= 8; n++) {
+			assertEquals(n == 3, rule.isAlive(false, n));
+			assertEquals(n == 2 || n == 3, rule.isAlive(true, n));
+		}
+	}
+
+	/**
+	 * Verifies that the 3x3 neighborhood table agrees with the neighbor count
+	 * table.
+	 */
+	@Test
+	void neighborhoodTest() {
+		for (Rule rule : new Rule[] { Rule.CONWAY, Rule.HIGHLIFE, Rule.DAY_AND_NIGHT, Rule.SEEDS }) {
+			for (int cells = 0; cells < 512; cells++) {
+				boolean alive = (cells & 1 << 4) != 0;
+				int neighbors = Integer.bitCount(cells) - (alive ? 1 : 0);
+				assertEquals(rule.isAlive(alive, neighbors), rule.isAlive(cells));
+			}
+		}
+	}
+
+	/**
+	 * Verifies that the bit sliced evaluation agrees with the neighbor count
+	 * table for every neighbor count.
+	 */
+	@Test
+	void nextBitsTest() {
+		for (Rule rule : new Rule[] { Rule.CONWAY, Rule.HIGHLIFE, Rule.DAY_AND_NIGHT, Rule.SEEDS }) {
+			long ones = 0, twos = 0, fours = 0, eights = 0;
+			// Bit n holds a dead cell with n neighbors, bit 16 + n a living one.
+			for (int n = 0; n <= 8; n++) {
+				for (int bit : new int[] { n, 16 + n }) {
+					ones |= (long) (n & 1) << bit;
+					twos |= (long) (n >> 1 & 1) << bit;
+					fours |= (long) (n >> 2 & 1) << bit;
+					eights |= (long) (n >> 3 & 1) << bit;
+				}
+			}
+			long alive = 0x1FFL << 16;
+			long next = rule.nextBits(ones, twos, fours, eights, alive);
+			for (int n = 0; n <= 8; n++) {
+				assertEquals(rule.isAlive(false, n), (next >>> n & 1) != 0, rule + " birth " + n);
+				assertEquals(rule.isAlive(true, n), (next >>> 16 + n & 1) != 0, rule + " survival " + n);
+			}
+		}
+	}
+
+	/**
+	 * Verifies that malformed and unsupported rules are rejected.
+	 */
+	@Test
+	void malformedTest() {
+		assertEquals("B2/S", Rule.parse("B2/S").toString());
+		assertThrows(IllegalArgumentException.class, () -> Rule.parse("23/3"));
+		assertThrows(IllegalArgumentException.class, () -> Rule.parse("B3S23"));
+		assertThrows(IllegalArgumentException.class, () -> Rule.parse("B39/S23"));
+		assertThrows(IllegalArgumentException.class, () -> Rule.parse("B33/S23"));
+		assertThrows(IllegalArgumentException.class, () -> Rule.parse("B03/S23"));
+	}
+}
@@ -0,0 +1,108 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class SnapshotExchangeTest {
+
+	private static final int SIZE = 100;
+
+	private static final int GENERATIONS = 2000;
+
+
+	/**
+	 * Verifies that only the latest published generation is polled, and only
+	 * once.
+	 */
+	@Test
+	void latestTest() {
+		LifeEngine engine = new BitBoardState(SIZE, SIZE, LifeEngineTest.randomSoup(SIZE, SIZE, 1, 3));
+		SnapshotExchange exchange = new SnapshotExchange(SIZE, SIZE);
+		assertNull(exchange.poll());
+		exchange.publish(engine);
+		engine.update();
+		exchange.publish(engine);
+		BoardSnapshot snapshot = exchange.poll();
+		assertNotNull(snapshot);
+		assertEquals(1, snapshot.getGeneration());
+		assertSnapshot(engine, snapshot, engine.getPopulation());
+		assertNull(exchange.poll());
+		engine.update();
+		exchange.publish(engine);
+		snapshot = exchange.poll();
+		assertEquals(2, snapshot.getGeneration());
+		assertSnapshot(engine, snapshot, engine.getPopulation());
+	}
+
+	/**
+	 * Verifies that a reader polling while a writer publishes as fast as it can
+	 * only ever sees complete generations, in increasing order.
+	 */
+	@Test
+	void tornGenerationTest() throws InterruptedException {
+		List<Position> colonies = LifeEngineTest.randomSoup(SIZE, SIZE, 2, 3);
+		List<BoardSnapshot> expected = new ArrayList<>(GENERATIONS + 1);
+		LifeEngine engine = new BitBoardState(SIZE, SIZE, colonies);
+		for (int generation = 0; generation <= GENERATIONS; generation++) {
+			BoardSnapshot snapshot = new BoardSnapshot(SIZE, SIZE);
+			snapshot.capture(engine);
+			expected.add(snapshot);
+			engine.update();
+		}
+		SnapshotExchange exchange = new SnapshotExchange(SIZE, SIZE);
+		Thread writer = new Thread(() -> {
+			LifeEngine writerEngine = new BitBoardState(SIZE, SIZE, colonies);
+			exchange.publish(writerEngine);
+			for (int generation = 0; generation < GENERATIONS; generation++) {
+				writerEngine.update();
+				exchange.publish(writerEngine);
+			}
+		});
+		writer.start();
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+		long last = -1;
+		int polled = 0;
+		while (last < GENERATIONS && System.nanoTime() < deadline) {
+			BoardSnapshot snapshot = exchange.poll();
+			if (snapshot == null) {
+				continue;
+			}
+			assertTrue(snapshot.getGeneration() > last, "Generation went from " + last + " to " + snapshot.getGeneration());
+			last = snapshot.getGeneration();
+			BoardSnapshot want = expected.get((int) last);
+			assertSnapshot(want, snapshot, want.getPopulation());
+			polled++;
+		}
+		writer.join();
+		assertEquals(GENERATIONS, last);
+		assertTrue(polled > 1);
+	}
+
+
+	/**
+	 * Asserts that a snapshot has the expected colonies and population.
+	 */
+	private static void assertSnapshot(LifeEngine expected, BoardSnapshot actual, long population) {
+		BoardSnapshot snapshot = new BoardSnapshot(expected.getWidth(), expected.getHeight());
+		snapshot.capture(expected);
+		assertSnapshot(snapshot, actual, population);
+	}
+
+	private static void assertSnapshot(BoardSnapshot expected, BoardSnapshot actual, long population) {
+		long generation = actual.getGeneration();
+		long count = 0;
+		for (int y = 0; y < actual.getHeight(); y++) {
+			for (int i = 0; i < actual.getWordCount(); i++) {
+				assertEquals(expected.getWord(y, i), actual.getWord(y, i), "Torn row " + y + " in generation " + generation);
+				count += Long.bitCount(actual.getWord(y, i));
+			}
+		}
+		assertEquals(population, actual.getPopulation(), "Torn population in generation " + generation);
+		assertEquals(population, count, "Torn population in generation " + generation);
+	}
+}
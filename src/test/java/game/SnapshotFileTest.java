@@ -0,0 +1,177 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SnapshotFileTest {
+
+	@TempDir
+	Path directory;
+
+
+	/**
+	 * Verifies that a written generation is read back with the same colonies,
+	 * rule, generation and dimensions.
+	 */
+	@Test
+	void roundTripTest() throws IOException {
+		LifeEngine engine = new BitBoardState(130, 70, LifeEngineTest.randomSoup(130, 70, 6, 3), Rule.HIGHLIFE);
+		engine.step(7);
+		Path file = directory.resolve("board.life");
+		SnapshotFile.write(engine, file);
+		assertEquals(64 + 70 * 3 * 8, Files.size(file));
+		BoardSnapshot snapshot = SnapshotFile.read(file);
+		assertEquals(130, snapshot.getWidth());
+		assertEquals(70, snapshot.getHeight());
+		assertEquals(Rule.HIGHLIFE, snapshot.getRule());
+		assertEquals(7, snapshot.getGeneration());
+		assertEquals(engine.getPopulation(), snapshot.getPopulation());
+		assertEquals(engine.getColonies(), new HashSet<>(snapshot.getColonies()));
+	}
+
+	/**
+	 * Verifies that every engine restored from a snapshot continues exactly
+	 * like the engine the snapshot was taken of.
+	 */
+	@Test
+	void restoreTest() throws IOException {
+		Path file = directory.resolve("board.life");
+		// The soup is kept away from the edges, so that nothing leaves the board
+		// of an infinite engine before the snapshot.
+		List<Position> colonies = new ArrayList<>();
+		for (Position p : LifeEngineTest.randomSoup(100, 90, 7, 3)) {
+			colonies.add(new Position(p.getX() + 30, p.getY() + 30));
+		}
+		for (String name : LifeEngines.names()) {
+			LifeEngine engine = LifeEngines.create(name, 160, 150, colonies, Rule.CONWAY);
+			engine.step(5);
+			SnapshotFile.write(engine, file);
+			LifeEngine restored = LifeEngines.restore(name, SnapshotFile.read(file));
+			assertEquals(5, restored.getGeneration(), name);
+			assertEquals(engine.getColonies(), restored.getColonies(), name);
+			engine.step(20);
+			restored.step(20);
+			assertEquals(25, restored.getGeneration(), name);
+			assertEquals(engine.getColonies(), restored.getColonies(), name);
+		}
+	}
+
+	/**
+	 * Verifies that the topology is saved, so that a restored engine keeps
+	 * wrapping, and that files of version 1 are read as bounded boards.
+	 */
+	@Test
+	void topologyTest() throws IOException {
+		Path file = directory.resolve("board.life");
+		for (Topology topology : new Topology[] { Topology.TORUS, Topology.KLEIN_BOTTLE }) {
+			LifeEngine engine = new TiledBitBoardState(64, 64, LifeEngineTest.randomSoup(64, 64, 9, 3), Rule.CONWAY, topology);
+			engine.step(3);
+			SnapshotFile.write(engine, file);
+			BoardSnapshot snapshot = SnapshotFile.read(file);
+			assertEquals(topology, snapshot.getTopology());
+			LifeEngine restored = LifeEngines.restore(LifeEngines.HASHLIFE, snapshot);
+			assertEquals(topology, restored.getTopology());
+			engine.step(30);
+			restored.step(30);
+			assertEquals(engine.getColonies(), restored.getColonies(), topology.toString());
+		}
+
+		// A version 1 header has the rule length where the topology is now.
+		byte[] bytes = Files.readAllBytes(file);
+		ByteBuffer header = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(4, 1);
+		header.position(32);
+		header.putShort((short) 6);
+		header.put("B3/S23".getBytes(StandardCharsets.US_ASCII));
+		Files.write(file, bytes);
+		BoardSnapshot snapshot = SnapshotFile.read(file);
+		assertEquals(Topology.BOUNDED, snapshot.getTopology());
+		assertEquals(Rule.CONWAY, snapshot.getRule());
+	}
+
+	/**
+	 * Verifies that the colonies an infinite engine has outside its board are
+	 * saved and restored with the board.
+	 */
+	@Test
+	void infiniteTest() throws IOException {
+		List<Position> colonies = new ArrayList<>();
+		// A glider about to leave the board.
+		colonies.add(new Position(8, 7));
+		colonies.add(new Position(9, 8));
+		colonies.add(new Position(7, 9));
+		colonies.add(new Position(8, 9));
+		colonies.add(new Position(9, 9));
+		Path file = directory.resolve("board.life");
+		for (String name : new String[] { LifeEngines.REFERENCE, LifeEngines.SPARSE, LifeEngines.UNBOUNDED }) {
+			LifeEngine engine = LifeEngines.create(name, 10, 10, colonies, Rule.CONWAY, Topology.INFINITE);
+			engine.step(4);
+			SnapshotFile.write(engine, file);
+			BoardSnapshot snapshot = SnapshotFile.read(file);
+			assertEquals(Topology.INFINITE, snapshot.getTopology(), name);
+			assertEquals(5, snapshot.getPopulation(), name);
+			assertEquals(engine.getColonies(), new HashSet<>(snapshot.getColonies()), name);
+			assertEquals(1, engine.getColonies().stream().filter(pos -> pos.getX() < 10 && pos.getY() < 10)
+					.filter(pos -> snapshot.isAlive(pos.getX(), pos.getY())).count(), name);
+
+			LifeEngine restored = LifeEngines.restore(name, snapshot);
+			engine.step(20);
+			restored.step(20);
+			assertEquals(engine.getColonies(), restored.getColonies(), name);
+		}
+
+		// A file that lists colonies outside a bounded board is rejected.
+		LifeEngine engine = LifeEngines.create(LifeEngines.SPARSE, 10, 10, colonies, Rule.CONWAY, Topology.INFINITE);
+		engine.step(4);
+		SnapshotFile.write(engine, file);
+		byte[] bytes = Files.readAllBytes(file);
+		bytes[32] = (byte) Topology.BOUNDED.ordinal();
+		Files.write(file, bytes);
+		assertThrows(IllegalArgumentException.class, () -> SnapshotFile.read(file));
+	}
+
+	/**
+	 * Verifies that files that aren't complete snapshots are rejected.
+	 */
+	@Test
+	void malformedTest() throws IOException {
+		Path file = directory.resolve("board.life");
+		SnapshotFile.write(new GameOfLifeState(70, 10, LifeEngineTest.randomSoup(70, 10, 8, 3)), file);
+		byte[] valid = Files.readAllBytes(file);
+
+		Files.write(file, Arrays.copyOf(valid, 40));
+		assertThrows(IllegalArgumentException.class, () -> SnapshotFile.read(file));
+		Files.write(file, Arrays.copyOf(valid, valid.length - 8));
+		assertThrows(IllegalArgumentException.class, () -> SnapshotFile.read(file));
+
+		byte[] magic = valid.clone();
+		magic[0] = 'X';
+		Files.write(file, magic);
+		assertThrows(IllegalArgumentException.class, () -> SnapshotFile.read(file));
+
+		byte[] population = valid.clone();
+		ByteBuffer.wrap(population).order(ByteOrder.LITTLE_ENDIAN).putLong(24, 1);
+		Files.write(file, population);
+		assertThrows(IllegalArgumentException.class, () -> SnapshotFile.read(file));
+
+		// A colony at x = 127 of a 70 wide board.
+		byte[] outside = valid.clone();
+		outside[64 + 15] |= (byte) 0x80;
+		Files.write(file, outside);
+		assertThrows(IllegalArgumentException.class, () -> SnapshotFile.read(file));
+	}
+}
@@ -0,0 +1,93 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class SparseStateTest extends LifeEngineTest {
+
+	@Override
+	protected LifeEngine createEngine(int width, int height, Collection<Position> colonies, Rule rule,
+			Topology topology) {
+		return new SparseState(width, height, colonies, rule, topology);
+	}
+
+	/**
+	 * Verifies that colonies are never born outside the board, including at
+	 * negative coordinates.
+	 */
+	@Test
+	void edgeTest() {
+		List<Position> colonies = new ArrayList<>(3);
+		colonies.add(new Position(0, 0));
+		colonies.add(new Position(0, 1));
+		colonies.add(new Position(0, 2));
+		SparseState state = new SparseState(3, 3, colonies);
+		state.update();
+		Set<Position> actualColonies = state.getColonies();
+		assertEquals(2, actualColonies.size());
+		assertTrue(actualColonies.contains(new Position(0, 1)));
+		assertTrue(actualColonies.contains(new Position(1, 1)));
+	}
+
+	/**
+	 * Verifies that the tables keep working when they have to grow, starting
+	 * from an explorer and a glider that grow into a larger population.
+	 */
+	@Test
+	void growTest() {
+		List<Position> colonies = new ArrayList<>(12);
+		colonies.add(new Position(100, 100));
+		colonies.add(new Position(99, 101));
+		colonies.add(new Position(100, 101));
+		colonies.add(new Position(101, 101));
+		colonies.add(new Position(99, 102));
+		colonies.add(new Position(101, 102));
+		colonies.add(new Position(100, 103));
+		colonies.add(new Position(300, 300));
+		colonies.add(new Position(301, 300));
+		colonies.add(new Position(302, 300));
+		colonies.add(new Position(300, 301));
+		colonies.add(new Position(301, 302));
+		GameOfLifeState expected = new GameOfLifeState(600, 400, colonies);
+		SparseState actual = new SparseState(600, 400, colonies);
+		for (int i = 0; i < 200; i++) {
+			assertEquals(expected.update(), actual.update());
+		}
+		assertEquals(expected.getColonies(), actual.getColonies());
+	}
+
+	/**
+	 * Verifies that colonies on an infinite board keep living after leaving
+	 * the board, in both directions.
+	 */
+	@Test
+	void infiniteTest() {
+		List<Position> colonies = new ArrayList<>(10);
+		// A glider moving south east and one moving north west.
+		colonies.add(new Position(7, 6));
+		colonies.add(new Position(8, 7));
+		colonies.add(new Position(6, 8));
+		colonies.add(new Position(7, 8));
+		colonies.add(new Position(8, 8));
+		colonies.add(new Position(1, 1));
+		colonies.add(new Position(2, 1));
+		colonies.add(new Position(3, 1));
+		colonies.add(new Position(1, 2));
+		colonies.add(new Position(2, 3));
+		GameOfLifeState expected = new GameOfLifeState(10, 10, colonies, Rule.CONWAY, Topology.INFINITE);
+		SparseState actual = new SparseState(10, 10, colonies, Rule.CONWAY, Topology.INFINITE);
+		for (int i = 0; i < 100; i++) {
+			assertEquals(expected.update(), actual.update());
+		}
+		assertEquals(expected.getColonies(), actual.getColonies());
+		assertEquals(10, actual.getPopulation());
+		assertTrue(actual.isColony(33, 32));
+		assertTrue(actual.isColony(-24, -24));
+	}
+}
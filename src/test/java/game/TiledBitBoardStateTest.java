@@ -0,0 +1,111 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class TiledBitBoardStateTest extends LifeEngineTest {
+
+	@Override
+	protected LifeEngine createEngine(int width, int height, Collection<Position> colonies, Rule rule,
+			Topology topology) {
+		return new TiledBitBoardState(width, height, colonies, rule, topology);
+	}
+
+	/**
+	 * Verifies that a glider crossing several tiles is computed correctly and
+	 * that only the tiles around it are marked as changed.
+	 *
+	 *  #
+	 *   #
+	 * ###
+	 */
+	@Test
+	void gliderTest() {
+		List<Position> colonies = new ArrayList<>(5);
+		colonies.add(new Position(1, 0));
+		colonies.add(new Position(2, 1));
+		colonies.add(new Position(0, 2));
+		colonies.add(new Position(1, 2));
+		colonies.add(new Position(2, 2));
+		GameOfLifeState expected = new GameOfLifeState(300, 200, colonies);
+		TiledBitBoardState actual = new TiledBitBoardState(300, 200, colonies);
+		for (int i = 0; i < 400; i++) {
+			assertEquals(expected.update(), actual.update());
+			assertEquals(expected.getColonies(), actual.getColonies());
+			assertTrue(actual.getDirtyTileCount() <= 4);
+		}
+	}
+
+	/**
+	 * Verifies that no tile is changed once the board has settled.
+	 *
+	 * ##
+	 * ##
+	 */
+	@Test
+	void stillLifeTest() {
+		List<Position> colonies = new ArrayList<>(4);
+		colonies.add(new Position(63, 31));
+		colonies.add(new Position(64, 31));
+		colonies.add(new Position(63, 32));
+		colonies.add(new Position(64, 32));
+		TiledBitBoardState state = new TiledBitBoardState(200, 100, colonies);
+		assertFalse(state.update());
+		assertEquals(0, state.getDirtyTileCount());
+		assertFalse(state.update());
+		assertEquals(colonies.size(), state.getColonies().size());
+		assertTrue(state.getColonies().containsAll(colonies));
+	}
+
+	/**
+	 * Verifies that a step over a huge number of generations of a board that
+	 * settles skips the generations after it has settled.
+	 */
+	@Test
+	void settledStepTest() {
+		List<Position> colonies = new ArrayList<>();
+		// A block and two lone cells that die in the first generation.
+		colonies.add(new Position(10, 10));
+		colonies.add(new Position(11, 10));
+		colonies.add(new Position(10, 11));
+		colonies.add(new Position(11, 11));
+		colonies.add(new Position(40, 30));
+		colonies.add(new Position(41, 31));
+		TiledBitBoardState state = new TiledBitBoardState(100, 100, colonies);
+		state.step(1L << 40);
+		assertEquals(1L << 40, state.getGeneration());
+		Set<Position> block = new HashSet<>(colonies.subList(0, 4));
+		assertEquals(block, state.getColonies());
+		assertEquals(2, state.getChanges().size());
+	}
+
+	/**
+	 * Verifies that a glider crossing the edges of a wrapping board activates
+	 * the tiles on the other side, on a board with partial edge tiles.
+	 */
+	@Test
+	void wrappedTilesTest() {
+		List<Position> colonies = new ArrayList<>(5);
+		colonies.add(new Position(197, 90));
+		colonies.add(new Position(198, 91));
+		colonies.add(new Position(196, 92));
+		colonies.add(new Position(197, 92));
+		colonies.add(new Position(198, 92));
+		for (Topology topology : new Topology[] { Topology.TORUS, Topology.KLEIN_BOTTLE }) {
+			GameOfLifeState expected = new GameOfLifeState(200, 100, colonies, Rule.CONWAY, topology);
+			TiledBitBoardState actual = new TiledBitBoardState(200, 100, colonies, Rule.CONWAY, topology);
+			for (int i = 0; i < 80; i++) {
+				assertEquals(expected.update(), actual.update());
+				assertEquals(expected.getColonies(), actual.getColonies(), topology + " " + i);
+			}
+			assertTrue(actual.getDirtyTileCount() <= 4);
+		}
+	}
+}
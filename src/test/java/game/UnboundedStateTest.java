@@ -0,0 +1,161 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class UnboundedStateTest extends LifeEngineTest {
+
+	@Override
+	protected LifeEngine createEngine(int width, int height, Collection<Position> colonies, Rule rule,
+			Topology topology) {
+		return new UnboundedState(width, height, colonies, rule, topology);
+	}
+
+	@Override
+	protected Topology topology() {
+		return Topology.INFINITE;
+	}
+
+	/**
+	 * Verifies that the plane can't wrap.
+	 */
+	@Override
+	@Test
+	void wrapTest() {
+		for (Topology topology : new Topology[] { Topology.BOUNDED, Topology.TORUS, Topology.KLEIN_BOTTLE }) {
+			assertThrows(IllegalArgumentException.class,
+					() -> new UnboundedState(64, 64, new ArrayList<>(), Rule.CONWAY, topology));
+		}
+	}
+
+	/**
+	 * The plane doesn't wrap, see {@link #wrapTest()}.
+	 */
+	@Override
+	@Test
+	void wrappedGliderTest() {
+	}
+
+	/**
+	 * Verifies that a glider keeps flying far beyond the board, including
+	 * across the negative coordinates, and that only the tiles around it are
+	 * stored.
+	 *
+	 * ###
+	 * #
+	 *  #
+	 */
+	@Test
+	void gliderTest() {
+		List<Position> glider = new ArrayList<>(5);
+		glider.add(new Position(0, 0));
+		glider.add(new Position(1, 0));
+		glider.add(new Position(2, 0));
+		glider.add(new Position(0, 1));
+		glider.add(new Position(1, 2));
+		UnboundedState state = new UnboundedState(10, 10, glider);
+		// The glider moves one cell up and left every 4 generations.
+		for (int i = 0; i < 1000; i++) {
+			state.update();
+			assertEquals(5, state.getPopulation());
+			assertTrue(state.getTileCount() <= 4);
+		}
+		state.step(4 * 100000 - 1000);
+		Set<Position> expected = new HashSet<>();
+		for (Position p : glider) {
+			expected.add(new Position(p.getX() - 100000, p.getY() - 100000));
+		}
+		assertEquals(expected, state.getColonies());
+		assertTrue(state.getTileCount() <= 4);
+		assertTrue(state.isColony(-100000, -99999));
+		assertFalse(state.isColony(1, 0));
+	}
+
+	/**
+	 * Verifies that a glider gun on the plane agrees with the sparse engine on
+	 * an infinite board, and that it keeps adding a glider every 30
+	 * generations long after the gliders have left the board.
+	 */
+	@Test
+	void gliderGunTest() {
+		List<Position> gun = gliderGun();
+		SparseState expected = new SparseState(40, 20, gun, Rule.CONWAY, Topology.INFINITE);
+		UnboundedState actual = new UnboundedState(40, 20, gun);
+		for (int i = 0; i < 300; i++) {
+			assertEquals(expected.update(), actual.update());
+			assertEquals(expected.getColonies(), actual.getColonies());
+		}
+		actual.step(30000 - 300);
+		long population = actual.getPopulation();
+		actual.step(30);
+		// Every glider has 5 colonies.
+		assertEquals(population + 5, actual.getPopulation());
+		assertEquals(actual.getColonies().size(), actual.getPopulation());
+	}
+
+	/**
+	 * Verifies that colonies placed anywhere on the plane are kept, and that
+	 * the viewport still has to be a valid board size.
+	 */
+	@Test
+	void placementTest() {
+		List<Position> colonies = new ArrayList<>();
+		// Blocks far apart, also at the ends of the plane.
+		for (int[] corner : new int[][] { { -5000000, 7 }, { 123456789, -987654321 }, { Integer.MIN_VALUE, 0 },
+				{ Integer.MAX_VALUE - 1, Integer.MAX_VALUE - 1 } }) {
+			for (int dx = 0; dx < 2; dx++) {
+				for (int dy = 0; dy < 2; dy++) {
+					colonies.add(new Position(corner[0] + dx, corner[1] + dy));
+				}
+			}
+		}
+		UnboundedState state = new UnboundedState(10, 10, colonies);
+		assertEquals(new HashSet<>(colonies), state.getColonies());
+		assertFalse(state.update());
+		assertEquals(new HashSet<>(colonies), state.getColonies());
+		assertEquals(0, state.getDirtyTileCount());
+		assertThrows(IllegalArgumentException.class, () -> new UnboundedState(0, 10, colonies));
+		assertThrows(IllegalArgumentException.class,
+				() -> new UnboundedState(GameOfLifeState.MAX_WIDTH + 1, 10, colonies));
+	}
+
+	/**
+	 * Verifies that a board that dies out releases all of its tiles.
+	 */
+	@Test
+	void dieOutTest() {
+		List<Position> colonies = new ArrayList<>();
+		colonies.add(new Position(-64, 63));
+		colonies.add(new Position(-63, 64));
+		colonies.add(new Position(500, 500));
+		UnboundedState state = new UnboundedState(10, 10, colonies);
+		assertTrue(state.update());
+		assertEquals(0, state.getPopulation());
+		state.update();
+		assertEquals(0, state.getTileCount());
+		assertFalse(state.update());
+	}
+
+	/**
+	 * The Gosper glider gun, firing gliders towards the lower right.
+	 */
+	private static List<Position> gliderGun() {
+		int[][] cells = { { 24, 0 }, { 22, 1 }, { 24, 1 }, { 12, 2 }, { 13, 2 }, { 20, 2 }, { 21, 2 }, { 34, 2 },
+				{ 35, 2 }, { 11, 3 }, { 15, 3 }, { 20, 3 }, { 21, 3 }, { 34, 3 }, { 35, 3 }, { 0, 4 }, { 1, 4 },
+				{ 10, 4 }, { 16, 4 }, { 20, 4 }, { 21, 4 }, { 0, 5 }, { 1, 5 }, { 10, 5 }, { 14, 5 }, { 16, 5 },
+				{ 17, 5 }, { 22, 5 }, { 24, 5 }, { 10, 6 }, { 16, 6 }, { 24, 6 }, { 11, 7 }, { 15, 7 }, { 12, 8 },
+				{ 13, 8 } };
+		List<Position> gun = new ArrayList<>(cells.length);
+		for (int[] cell : cells) {
+			gun.add(new Position(cell[0], cell[1]));
+		}
+		return gun;
+	}
+}
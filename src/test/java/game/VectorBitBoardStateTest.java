@@ -0,0 +1,61 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the {@value LifeEngines#VECTOR} engine through {@link LifeEngines},
+ * since the engine is only compiled with the {@code vector} profile. Without
+ * it the tests cover the fallback.
+ */
+class VectorBitBoardStateTest extends LifeEngineTest {
+
+	@Override
+	protected LifeEngine createEngine(int width, int height, Collection<Position> colonies, Rule rule,
+			Topology topology) {
+		return LifeEngines.create(LifeEngines.VECTOR, width, height, colonies, rule, topology);
+	}
+
+	/**
+	 * Verifies that the engine falls back to the scalar bit packed engine
+	 * exactly when the Vector API isn't available.
+	 */
+	@Test
+	void fallbackTest() {
+		LifeEngine engine = createEngine(10, 10, new ArrayList<>());
+		assertEquals(LifeEngines.isVectorAvailable(), engine.getClass() != BitBoardState.class);
+		assertTrue(engine instanceof BitBoardState);
+	}
+
+	/**
+	 * Verifies that boards wide enough for several vectors per row, with and
+	 * without words left over after the last vector, agree with the scalar
+	 * bit packed engine for several rules and topologies.
+	 */
+	@Test
+	void wideTest() {
+		for (int width : new int[] { 640, 1000, 1088, 2047 }) {
+			int height = 24;
+			List<Position> colonies = randomSoup(width, height, width, 3);
+			for (Rule rule : new Rule[] { Rule.CONWAY, Rule.HIGHLIFE, Rule.SEEDS }) {
+				for (Topology topology : new Topology[] { Topology.BOUNDED, Topology.TORUS }) {
+					String message = width + " " + rule + " " + topology;
+					BitBoardState expected = new BitBoardState(width, height, colonies, rule, topology);
+					LifeEngine actual = createEngine(width, height, colonies, rule, topology);
+					for (int i = 0; i < 5; i++) {
+						assertEquals(expected.update(), actual.update(), message);
+						assertEquals(expected.getColonies(), actual.getColonies(), message);
+					}
+					expected.step(20);
+					actual.step(20);
+					assertEquals(expected.getColonies(), actual.getColonies(), message);
+				}
+			}
+		}
+	}
+}
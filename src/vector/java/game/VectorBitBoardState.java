@@ -0,0 +1,239 @@
+package game;
+
+import static jdk.incubator.vector.VectorOperators.AND_NOT;
+import static jdk.incubator.vector.VectorOperators.LSHL;
+import static jdk.incubator.vector.VectorOperators.LSHR;
+import static jdk.incubator.vector.VectorOperators.OR;
+import static jdk.incubator.vector.VectorOperators.XOR;
+
+import java.util.Collection;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Bit packed game of life game state that computes several words of a row per
+ * instruction with the incubating Vector API. The board is stored and stepped
+ * exactly like in {@link BitBoardState}, only the row kernel differs: the
+ * words of the three rows are loaded into {@link LongVector} lanes, once at
+ * the word itself and once shifted a word to either side, and the full adders
+ * then run on all lanes at once.
+ * <p>
+ * The first and last word of every row need the cells across the left and
+ * right edges and are computed one at a time. Rows too narrow for a full
+ * vector between them are computed by the scalar kernel.
+ * <p>
+ * Only compiled with the {@code vector} profile and only usable when the
+ * {@code jdk.incubator.vector} module is added at run time, see
+ * {@link LifeEngines#VECTOR} for the fallback otherwise.
+ */
+public class VectorBitBoardState extends BitBoardState {
+
+	private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+	private final boolean conway;
+
+	/**
+	 * Whether a dead cell with n neighbors is born and whether a living cell
+	 * with n neighbors survives.
+	 */
+	private final boolean[] birth;
+	private final boolean[] survive;
+
+	private final boolean wrap;
+
+	/**
+	 * Mask with a bit set for every cell in the last word of a row that is
+	 * inside the board.
+	 */
+	private final long lastWordMask;
+
+
+	/**
+	 * Initializes the game of life game state.
+	 *
+	 * @param width    The board width. Must be positive and less than
+	 *                 {@value GameOfLifeState#MAX_WIDTH}.
+	 * @param height   The board height. Must be positive and less than
+	 *                 {@value GameOfLifeState#MAX_HEIGHT}.
+	 * @param colonies The initial colony positions. May be empty, but must not be
+	 *                 {@code null}. All positions must be inside the board.
+	 */
+	public VectorBitBoardState(int width, int height, Collection<Position> colonies) {
+		this(width, height, colonies, Rule.CONWAY);
+	}
+
+	/**
+	 * Initializes the game state.
+	 *
+	 * @param width    The board width. Must be positive and less than
+	 *                 {@value GameOfLifeState#MAX_WIDTH}.
+	 * @param height   The board height. Must be positive and less than
+	 *                 {@value GameOfLifeState#MAX_HEIGHT}.
+	 * @param colonies The initial colony positions. May be empty, but must not be
+	 *                 {@code null}. All positions must be inside the board.
+	 * @param rule     The rule deciding which colonies survive and are born. Must
+	 *                 not be {@code null}.
+	 */
+	public VectorBitBoardState(int width, int height, Collection<Position> colonies, Rule rule) {
+		this(width, height, colonies, rule, Topology.BOUNDED);
+	}
+
+	/**
+	 * Initializes the game state, see
+	 * {@link BitBoardState#BitBoardState(int, int, Collection, Rule, Topology)}.
+	 *
+	 * @param width    The board width. Must be positive and less than
+	 *                 {@value GameOfLifeState#MAX_WIDTH}.
+	 * @param height   The board height. Must be positive and less than
+	 *                 {@value GameOfLifeState#MAX_HEIGHT}.
+	 * @param colonies The initial colony positions. May be empty, but must not be
+	 *                 {@code null}. All positions must be inside the board.
+	 * @param rule     The rule deciding which colonies survive and are born. Must
+	 *                 not be {@code null}.
+	 * @param topology How the board edges connect. Must not be {@code null} or
+	 *                 {@link Topology#INFINITE}.
+	 * @throws IllegalArgumentException If the topology is infinite.
+	 */
+	public VectorBitBoardState(int width, int height, Collection<Position> colonies, Rule rule, Topology topology) {
+		super(width, height, colonies, rule, topology);
+		this.conway = rule.equals(Rule.CONWAY);
+		this.birth = counts(rule, false);
+		this.survive = counts(rule, true);
+		this.wrap = topology.wraps();
+		this.lastWordMask = lastWordMask(width);
+	}
+
+	/**
+	 * Restores the game state from a snapshot, at the generation of the
+	 * snapshot.
+	 *
+	 * @param snapshot The snapshot. Must not be {@code null}.
+	 */
+	public VectorBitBoardState(BoardSnapshot snapshot) {
+		super(snapshot);
+		this.conway = snapshot.getRule().equals(Rule.CONWAY);
+		this.birth = counts(snapshot.getRule(), false);
+		this.survive = counts(snapshot.getRule(), true);
+		this.wrap = snapshot.getTopology().wraps();
+		this.lastWordMask = lastWordMask(snapshot.getWidth());
+	}
+
+
+	/**
+	 * Computes the next generation of a row, see {@link BitBoardState#nextWord}
+	 * for the full adders. The whole kernel is written out in this method, as
+	 * the vectors only stay in registers when every operation on them is
+	 * compiled into the same method.
+	 */
+	@Override
+	long stepRow(long[] above, long[] row, long[] below, long[] out) {
+		int words = row.length;
+		int lanes = SPECIES.length();
+		// Every vector also reads the word before and after it, which stay inside
+		// the row as long as the vector ends before the last word.
+		int lastVector = words - 1 - lanes;
+		if (lastVector < 1) {
+			return super.stepRow(above, row, below, out);
+		}
+		long changed = stepWord(above, row, below, out, 0);
+		LongVector changedLanes = LongVector.zero(SPECIES);
+		for (int start = 1; start < words - 1; start += lanes) {
+			// The last vector overlaps the one before instead of leaving the
+			// remaining words to the scalar loop. Recomputing a word gives the
+			// same result, as only the current generation is read.
+			int i = Math.min(start, lastVector);
+			LongVector n = LongVector.fromArray(SPECIES, above, i);
+			LongVector nw = n.lanewise(LSHL, 1).or(LongVector.fromArray(SPECIES, above, i - 1).lanewise(LSHR, 63));
+			LongVector ne = n.lanewise(LSHR, 1).or(LongVector.fromArray(SPECIES, above, i + 1).lanewise(LSHL, 63));
+			LongVector alive = LongVector.fromArray(SPECIES, row, i);
+			LongVector w = alive.lanewise(LSHL, 1).or(LongVector.fromArray(SPECIES, row, i - 1).lanewise(LSHR, 63));
+			LongVector e = alive.lanewise(LSHR, 1).or(LongVector.fromArray(SPECIES, row, i + 1).lanewise(LSHL, 63));
+			LongVector s = LongVector.fromArray(SPECIES, below, i);
+			LongVector sw = s.lanewise(LSHL, 1).or(LongVector.fromArray(SPECIES, below, i - 1).lanewise(LSHR, 63));
+			LongVector se = s.lanewise(LSHR, 1).or(LongVector.fromArray(SPECIES, below, i + 1).lanewise(LSHL, 63));
+
+			LongVector aboveHalf = nw.lanewise(XOR, n);
+			LongVector aboveSum = aboveHalf.lanewise(XOR, ne);
+			LongVector aboveCarry = nw.and(n).or(ne.and(aboveHalf));
+			LongVector sideSum = w.lanewise(XOR, e);
+			LongVector sideCarry = w.and(e);
+			LongVector belowHalf = sw.lanewise(XOR, s);
+			LongVector belowSum = belowHalf.lanewise(XOR, se);
+			LongVector belowCarry = sw.and(s).or(se.and(belowHalf));
+
+			LongVector onesHalf = aboveSum.lanewise(XOR, sideSum);
+			LongVector ones = onesHalf.lanewise(XOR, belowSum);
+			LongVector onesCarry = aboveSum.and(sideSum).or(belowSum.and(onesHalf));
+			LongVector twosHalf = aboveCarry.lanewise(XOR, sideCarry);
+			LongVector twosSum = twosHalf.lanewise(XOR, belowCarry);
+			LongVector twosCarry = aboveCarry.and(sideCarry).or(belowCarry.and(twosHalf));
+			LongVector twos = twosSum.lanewise(XOR, onesCarry);
+			LongVector foursCarry = twosSum.and(onesCarry);
+			LongVector fours = twosCarry.lanewise(XOR, foursCarry);
+			LongVector eights = twosCarry.and(foursCarry);
+
+			LongVector next;
+			if (conway) {
+				// Two neighbors keeps a colony alive, three neighbors gives birth.
+				next = twos.lanewise(AND_NOT, fours.or(eights)).and(ones.or(alive));
+			} else {
+				next = LongVector.zero(SPECIES);
+				for (int count = 0; count <= 8; count++) {
+					if (!birth[count] && !survive[count]) {
+						continue;
+					}
+					LongVector cells = ((count & 1) != 0 ? ones : ones.not())
+							.and((count & 2) != 0 ? twos : twos.not())
+							.and((count & 4) != 0 ? fours : fours.not())
+							.and((count & 8) != 0 ? eights : eights.not());
+					if (!survive[count]) {
+						cells = cells.lanewise(AND_NOT, alive);
+					} else if (!birth[count]) {
+						cells = cells.and(alive);
+					}
+					next = next.or(cells);
+				}
+			}
+			next.intoArray(out, i);
+			changedLanes = changedLanes.or(next.lanewise(XOR, alive));
+		}
+		changed |= changedLanes.reduceLanes(OR);
+		return changed | stepWord(above, row, below, out, words - 1);
+	}
+
+	/**
+	 * Computes the next generation of a single word of a row, including the
+	 * cells across the left and right edges.
+	 *
+	 * @return A word with a bit set for every cell that changed.
+	 */
+	private long stepWord(long[] above, long[] row, long[] below, long[] out, int i) {
+		int width = getWidth();
+		long next = nextWord(getRule(),
+				word(above, i - 1, width, wrap), word(above, i, width, wrap), word(above, i + 1, width, wrap),
+				word(row, i - 1, width, wrap), word(row, i, width, wrap), word(row, i + 1, width, wrap),
+				word(below, i - 1, width, wrap), word(below, i, width, wrap), word(below, i + 1, width, wrap));
+		if (i == row.length - 1) {
+			next &= lastWordMask;
+		}
+		out[i] = next;
+		return next ^ row[i];
+	}
+
+	/**
+	 * @return For every neighbor count, whether a cell in the given state is
+	 *         alive in the next generation.
+	 */
+	private static boolean[] counts(Rule rule, boolean alive) {
+		boolean[] counts = new boolean[9];
+		for (int n = 0; n < counts.length; n++) {
+			counts[n] = rule.isAlive(alive, n);
+		}
+		return counts;
+	}
+
+	private static long lastWordMask(int width) {
+		return width % Long.SIZE == 0 ? -1L : (1L << width % Long.SIZE) - 1;
+	}
+}